@@ -0,0 +1,89 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Interned instruments, so that positions can refer to a ticker and its
+ * company by an int id instead of holding the strings.
+ *
+ * <p>Ids are assigned once per ticker, in order, and never reused. The
+ * company of a ticker is the one it was first interned with. Reads are
+ * lock-free; interning a new ticker copies the tables, which is rare since
+ * there are far fewer instruments than positions.
+ */
+public abstract class Instruments {
+
+	private static final Map<String, Integer> idLookup = new ConcurrentHashMap<>();
+
+	private static volatile String[] tickers = new String[0];
+
+	private static volatile String[] companies = new String[0];
+
+
+	/**
+	 * Return the id of the given ticker, assigning one if necessary.
+	 */
+	public static int intern(String ticker, String company) {
+		Integer id = idLookup.get(ticker);
+		return (id != null ? id : add(ticker, company));
+	}
+
+	private static synchronized int add(String ticker, String company) {
+		Integer id = idLookup.get(ticker);
+		if (id != null) {
+			return id;
+		}
+		int newId = tickers.length;
+		String[] newTickers = Arrays.copyOf(tickers, newId + 1);
+		String[] newCompanies = Arrays.copyOf(companies, newId + 1);
+		newTickers[newId] = ticker;
+		newCompanies[newId] = company;
+		// Publish the names before the id
+		companies = newCompanies;
+		tickers = newTickers;
+		idLookup.put(ticker, newId);
+		return newId;
+	}
+
+	/**
+	 * Return the id of the given ticker, or -1 if it was never interned.
+	 */
+	public static int find(String ticker) {
+		Integer id = idLookup.get(ticker);
+		return (id != null ? id : -1);
+	}
+
+	public static String getTicker(int id) {
+		return tickers[id];
+	}
+
+	public static String getCompany(int id) {
+		return companies[id];
+	}
+
+	/**
+	 * The number of interned tickers.
+	 */
+	public static int size() {
+		return tickers.length;
+	}
+
+}
@@ -15,53 +15,245 @@
  */
 package org.springframework.samples.portfolio;
 
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 
+/**
+ * The positions of a user, kept in an immutable array that is replaced
+ * atomically on every change. Reads never lock, and concurrent changes are
+ * retried with compare-and-set, so no update is lost.
+ *
+ * <p>To hold millions of portfolios, positions are stored compactly rather
+ * than as {@link PortfolioPosition} objects: one {@code long[]} holds the
+ * version followed by three longs per position, the {@link Instruments} id
+ * and shares, the price, and the update time. A position is looked up by
+ * scanning for the id of its ticker, which for the few positions of a
+ * portfolio is faster than a hash map and takes no extra memory.
+ * {@link PortfolioPosition} objects are created only when positions are read,
+ * and the list returned by {@link #getPositions()} is kept until the next
+ * change, so all readers of one state share it.
+ *
+ * <p>Every successful trade increments the {@link #getVersion() version} of
+ * the portfolio, which allows a journal of trades to be replayed without
+ * applying a trade twice.
+ */
 public class Portfolio {
 
-	private final Map<String,PortfolioPosition> positionLookup = new LinkedHashMap<>();
+	private static final AtomicReferenceFieldUpdater<Portfolio, long[]> DATA_UPDATER =
+			AtomicReferenceFieldUpdater.newUpdater(Portfolio.class, long[].class, "data");
+
+	private static final int HEADER_LENGTH = 1;
+
+	private static final int POSITION_LENGTH = 3;
+
+	private static final long[] EMPTY = new long[HEADER_LENGTH];
+
+
+	// version, then per position: instrument id << 32 | shares, price bits, update time
+	private volatile long[] data = EMPTY;
+
+	// The positions of one data array, once read
+	private volatile PositionsView positionsView;
 
 
+	/**
+	 * Return a read-only list of the positions at one point in time, not
+	 * affected by later changes. The list is shared by all callers until the
+	 * positions change.
+	 */
 	public List<PortfolioPosition> getPositions() {
-		return new ArrayList<PortfolioPosition>(positionLookup.values());
+		long[] data = this.data;
+		PositionsView view = this.positionsView;
+		if (view != null && view.data == data) {
+			return view.positions;
+		}
+		PortfolioPosition[] positions = new PortfolioPosition[getPositionCount(data)];
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = createPosition(data, HEADER_LENGTH + i * POSITION_LENGTH);
+		}
+		view = new PositionsView(data, Collections.unmodifiableList(Arrays.asList(positions)));
+		this.positionsView = view;
+		return view.positions;
 	}
 
 	public void addPosition(PortfolioPosition position) {
-		this.positionLookup.put(position.getTicker(), position);
+		int instrument = Instruments.intern(position.getTicker(), position.getCompany());
+		long[] current;
+		long[] updated;
+		do {
+			current = this.data;
+			int offset = indexOf(current, instrument);
+			if (offset < 0) {
+				offset = current.length;
+				updated = Arrays.copyOf(current, current.length + POSITION_LENGTH);
+			}
+			else {
+				updated = current.clone();
+			}
+			setPosition(updated, offset, instrument, position.getShares(), position.getPrice(),
+					position.getUpdateTime());
+		}
+		while (!DATA_UPDATER.compareAndSet(this, current, updated));
+	}
+
+	/**
+	 * The number of trades applied to this portfolio.
+	 */
+	public long getVersion() {
+		return this.data[0];
+	}
+
+	/**
+	 * Return a copy with the positions and version of this portfolio at one
+	 * point in time. The copy shares the immutable state of this portfolio,
+	 * so this neither blocks trades nor copies positions.
+	 */
+	public Portfolio copy() {
+		Portfolio copy = new Portfolio();
+		copy.positionsView = this.positionsView;
+		copy.data = this.data;
+		return copy;
+	}
+
+	/**
+	 * Replace all positions and the version, e.g. when loading a snapshot.
+	 */
+	public void restore(List<PortfolioPosition> positions, long version) {
+		long[] data = new long[HEADER_LENGTH];
+		for (PortfolioPosition position : positions) {
+			int instrument = Instruments.intern(position.getTicker(), position.getCompany());
+			int offset = indexOf(data, instrument);
+			if (offset < 0) {
+				offset = data.length;
+				data = Arrays.copyOf(data, data.length + POSITION_LENGTH);
+			}
+			setPosition(data, offset, instrument, position.getShares(), position.getPrice(),
+					position.getUpdateTime());
+		}
+		data[0] = version;
+		this.data = data;
 	}
 
 	public PortfolioPosition getPortfolioPosition(String ticker) {
-		return this.positionLookup.get(ticker);
+		long[] data = this.data;
+		int offset = indexOf(data, Instruments.find(ticker));
+		return (offset >= 0 ? createPosition(data, offset) : null);
 	}
 
 	/**
 	 * @return the updated position or null
 	 */
 	public PortfolioPosition buy(String ticker, int sharesToBuy) {
-		PortfolioPosition position = this.positionLookup.get(ticker);
-		if ((position == null) || (sharesToBuy < 1)) {
-			return null;
-		}
-		position = new PortfolioPosition(position, sharesToBuy);
-		this.positionLookup.put(ticker, position);
-		return position;
+		return (sharesToBuy < 1 ? null : trade(ticker, sharesToBuy, Double.NaN));
+	}
+
+	/**
+	 * Buy at the given price, which is averaged into the price of the
+	 * position weighted by shares, i.e. the price is the average cost.
+	 * @return the updated position or null
+	 */
+	public PortfolioPosition buy(String ticker, int sharesToBuy, double price) {
+		return (sharesToBuy < 1 ? null : trade(ticker, sharesToBuy, price));
 	}
 
 	/**
+	 * Selling leaves the price of the position, i.e. its average cost, as is.
 	 * @return the updated position or null
 	 */
 	public PortfolioPosition sell(String ticker, int sharesToSell) {
-		PortfolioPosition position = this.positionLookup.get(ticker);
-		if ((position == null) || (sharesToSell < 1) || (position.getShares() < sharesToSell)) {
-			return null;
+		return (sharesToSell < 1 ? null : trade(ticker, -sharesToSell, Double.NaN));
+	}
+
+	/**
+	 * Return the price of a position after buying shares at the given price.
+	 * @param price the price paid, or {@code NaN} to keep the current price
+	 */
+	protected static double averagePrice(int shares, double currentPrice, int sharesBought, double price) {
+		if (Double.isNaN(price) || sharesBought <= 0) {
+			return currentPrice;
+		}
+		return (shares * currentPrice + sharesBought * price) / (shares + sharesBought);
+	}
+
+	private PortfolioPosition trade(String ticker, int sharesToAddOrSubtract, double price) {
+		int instrument = Instruments.find(ticker);
+		while (true) {
+			long[] current = this.data;
+			int offset = indexOf(current, instrument);
+			if (offset < 0) {
+				return null;
+			}
+			int shares = getShares(current, offset) + sharesToAddOrSubtract;
+			if (shares < 0) {
+				return null;
+			}
+			double newPrice = averagePrice(getShares(current, offset), getPrice(current, offset),
+					sharesToAddOrSubtract, price);
+			long[] updated = current.clone();
+			setPosition(updated, offset, instrument, shares, newPrice, System.currentTimeMillis());
+			updated[0] = current[0] + 1;
+			if (DATA_UPDATER.compareAndSet(this, current, updated)) {
+				return createPosition(updated, offset);
+			}
+		}
+	}
+
+	private static int getPositionCount(long[] data) {
+		return (data.length - HEADER_LENGTH) / POSITION_LENGTH;
+	}
+
+	/**
+	 * Return the offset of the position in the given instrument, or -1.
+	 */
+	private static int indexOf(long[] data, int instrument) {
+		if (instrument < 0) {
+			return -1;
+		}
+		for (int offset = HEADER_LENGTH; offset < data.length; offset += POSITION_LENGTH) {
+			if ((int) (data[offset] >>> 32) == instrument) {
+				return offset;
+			}
+		}
+		return -1;
+	}
+
+	private static void setPosition(long[] data, int offset, int instrument, int shares, double price,
+			long updateTime) {
+
+		data[offset] = ((long) instrument << 32) | (shares & 0xFFFFFFFFL);
+		data[offset + 1] = Double.doubleToRawLongBits(price);
+		data[offset + 2] = updateTime;
+	}
+
+	private static int getShares(long[] data, int offset) {
+		return (int) data[offset];
+	}
+
+	private static double getPrice(long[] data, int offset) {
+		return Double.longBitsToDouble(data[offset + 1]);
+	}
+
+	private static PortfolioPosition createPosition(long[] data, int offset) {
+		int instrument = (int) (data[offset] >>> 32);
+		return new PortfolioPosition(Instruments.getCompany(instrument), Instruments.getTicker(instrument),
+				getPrice(data, offset), getShares(data, offset), data[offset + 2]);
+	}
+
+
+	private static class PositionsView {
+
+		private final long[] data;
+
+		private final List<PortfolioPosition> positions;
+
+
+		PositionsView(long[] data, List<PortfolioPosition> positions) {
+			this.data = data;
+			this.positions = positions;
 		}
-		position = new PortfolioPosition(position, -sharesToSell);
-		this.positionLookup.put(ticker, position);
-		return position;
 	}
 
 }
@@ -37,6 +37,14 @@ public class PortfolioPosition {
 		this.updateTime = System.currentTimeMillis();
 	}
 
+	public PortfolioPosition(String company, String ticker, double price, int shares, long updateTime) {
+		this.company = company;
+		this.ticker = ticker;
+		this.price = price;
+		this.shares = shares;
+		this.updateTime = updateTime;
+	}
+
 	public PortfolioPosition(PortfolioPosition other, int sharesToAddOrSubtract) {
 		this.company = other.company;
 		this.ticker = other.ticker;
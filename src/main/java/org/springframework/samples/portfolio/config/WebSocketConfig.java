@@ -1,12 +1,24 @@
 package org.springframework.samples.portfolio.config;
 
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.samples.portfolio.service.SharedFrameStompEncoder;
+import org.springframework.samples.portfolio.web.ConflatingWebSocketHandlerDecoratorFactory;
+import org.springframework.samples.portfolio.web.TradeRateLimitInterceptor;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.messaging.StompSubProtocolHandler;
+import org.springframework.web.socket.messaging.SubProtocolHandler;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
 
 @Configuration
 @EnableScheduling
@@ -27,4 +39,49 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 		registry.setPreservePublishOrder(true);
 	}
 
+	@Override
+	public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+		// Slow clients get only the latest price per ticker
+		registration.addDecoratorFactory(quoteConflationDecoratorFactory());
+	}
+
+	@Override
+	public void configureClientInboundChannel(ChannelRegistration registration) {
+		// Over-limit trades are rejected before reaching a controller
+		registration.interceptors(tradeRateLimitInterceptor());
+	}
+
+	@Bean
+	public TradeRateLimitInterceptor tradeRateLimitInterceptor() {
+		return new TradeRateLimitInterceptor("/app/trade", "/app/order", "/app/order.cancel");
+	}
+
+	@Bean
+	public ConflatingWebSocketHandlerDecoratorFactory quoteConflationDecoratorFactory() {
+		return new ConflatingWebSocketHandlerDecoratorFactory("/topic/price.stock.", quoteConflationExecutor());
+	}
+
+	@Bean
+	public ThreadPoolTaskExecutor quoteConflationExecutor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(Runtime.getRuntime().availableProcessors() * 2);
+		executor.setThreadNamePrefix("quoteConflation-");
+		executor.setAllowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	@Bean
+	public SmartInitializingSingleton sharedFrameEncoderInstaller(ApplicationContext context) {
+		// Quotes are encoded into a STOMP frame once, not once per subscriber;
+		// the registry creates the STOMP handler without a way to set its encoder
+		return () -> {
+			SubProtocolWebSocketHandler handler = context.getBean(SubProtocolWebSocketHandler.class);
+			for (SubProtocolHandler protocolHandler : handler.getProtocolHandlers()) {
+				if (protocolHandler instanceof StompSubProtocolHandler) {
+					((StompSubProtocolHandler) protocolHandler).setEncoder(new SharedFrameStompEncoder());
+				}
+			}
+		};
+	}
+
 }
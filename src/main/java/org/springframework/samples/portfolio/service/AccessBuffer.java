@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+
+/**
+ * Records cache lookups without locking, for a single consumer to apply to
+ * a structure that is not thread-safe, such as a {@link FrequencySketch},
+ * while holding a lock.
+ *
+ * <p>A ring buffer of a fixed size. Adding claims a slot with a CAS, and an
+ * element that does not fit, or loses the race for its slot, is dropped,
+ * which only makes frequency estimates a little less exact.
+ */
+class AccessBuffer<E> {
+
+	private final AtomicReferenceArray<E> elements;
+
+	private final int mask;
+
+	private final AtomicLong writeCount = new AtomicLong();
+
+	// Written by the consumer only
+	private volatile long readCount;
+
+
+	/**
+	 * @param size the number of elements, rounded up to a power of two
+	 */
+	AccessBuffer(int size) {
+		size = (size > 1 ? Integer.highestOneBit(size - 1) << 1 : 1);
+		this.elements = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+	}
+
+
+	/**
+	 * Add the given element unless the buffer is full.
+	 * @return {@code false} if the buffer is full and should be drained
+	 */
+	boolean offer(E element) {
+		long writeCount = this.writeCount.get();
+		if (writeCount - this.readCount > this.mask) {
+			return false;
+		}
+		if (this.writeCount.compareAndSet(writeCount, writeCount + 1)) {
+			this.elements.lazySet((int) writeCount & this.mask, element);
+		}
+		return true;
+	}
+
+	/**
+	 * Pass the added elements to the given consumer, in the order added.
+	 * Must not be called concurrently.
+	 */
+	void drainTo(Consumer<E> consumer) {
+		long readCount = this.readCount;
+		long writeCount = this.writeCount.get();
+		while (readCount < writeCount) {
+			int index = (int) readCount & this.mask;
+			E element = this.elements.get(index);
+			if (element == null) {
+				// Claimed but not written yet
+				break;
+			}
+			this.elements.lazySet(index, null);
+			consumer.accept(element);
+			readCount++;
+		}
+		this.readCount = readCount;
+	}
+
+}
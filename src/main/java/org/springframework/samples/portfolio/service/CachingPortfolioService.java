@@ -0,0 +1,470 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.samples.portfolio.Portfolio;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+
+/**
+ * Keeps a bounded number of portfolios in memory, loaded from a
+ * {@link PortfolioRepository} when first used, typically when the user
+ * subscribes to "/app/positions" after logging in.
+ *
+ * <p>Concurrent lookups of a portfolio that is not in memory wait for a
+ * single load, so sessions reconnecting all at once after a restart load each
+ * portfolio only once. A lookup of a cached portfolio is a hash map read.
+ *
+ * <p>When the cache is full, the portfolio to evict is chosen the way TinyLFU
+ * does: a {@link FrequencySketch} estimates how often each user was looked up
+ * recently, and a newly loaded portfolio is only kept if its user is more
+ * frequent than the least recently loaded one, which gets a second chance if
+ * it was read since. Active users therefore stay cached while one-off
+ * lookups, e.g. a burst of logins, pass through. The sketch is not
+ * thread-safe, so lookups are recorded in an {@link AccessBuffer} and
+ * counted in the sketch under the eviction lock.
+ *
+ * <p>Portfolios changed since they were loaded are saved when evicted, but
+ * only after a delay, since a trade may have looked up the portfolio just
+ * before it was evicted. Until then a lookup takes the evicted portfolio back
+ * into the cache. All changed portfolios are saved on shutdown. Callers
+ * should therefore not hold on to a portfolio beyond the task at hand.
+ *
+ * <p>Active with the "portfolio-cache" profile.
+ */
+@Service
+@Profile("portfolio-cache")
+public class CachingPortfolioService implements PortfolioService, SmartLifecycle {
+
+	private static final Log logger = LogFactory.getLog(CachingPortfolioService.class);
+
+	private static final int ACCESS_BUFFER_SIZE = 256;
+
+	private final PortfolioRepository repository;
+
+	private final int maximumSize;
+
+	private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+	// One future per portfolio being loaded, for lookups to wait on
+	private final Map<String, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+
+	// Evicted portfolios not written back yet
+	private final Map<String, Entry> evicted = new ConcurrentHashMap<>();
+
+	// Guarded by evictionLock
+	private final FrequencySketch sketch;
+
+	// Lookups not counted in the sketch yet
+	private final AccessBuffer<String> accessBuffer = new AccessBuffer<>(ACCESS_BUFFER_SIZE);
+
+	// Cached entries, least recently loaded first
+	private final Deque<Entry> evictionQueue = new ArrayDeque<>();
+
+	private final ReentrantLock evictionLock = new ReentrantLock();
+
+	private long writeBackDelayNanos = TimeUnit.SECONDS.toNanos(1);
+
+	private ScheduledExecutorService writeBackExecutor;
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong loadCount = new AtomicLong();
+
+	private final AtomicLong sharedLoadCount = new AtomicLong();
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	private final AtomicLong writeCount = new AtomicLong();
+
+
+	/**
+	 * @param repository where portfolios are loaded from and saved to
+	 * @param maximumSize the maximum number of portfolios to keep in memory
+	 */
+	@Autowired
+	public CachingPortfolioService(PortfolioRepository repository,
+			@Value("${portfolio.cache.maximum-size:10000}") int maximumSize) {
+
+		this.repository = repository;
+		this.maximumSize = Math.max(maximumSize, 1);
+		this.sketch = new FrequencySketch(this.maximumSize);
+	}
+
+
+	/**
+	 * How long in milliseconds to keep an evicted portfolio before saving it.
+	 * Set with the "portfolio.cache.write-back-delay" property.
+	 * <p>By default this is set to 1000.
+	 */
+	@Value("${portfolio.cache.write-back-delay:1000}")
+	public void setWriteBackDelay(long millis) {
+		this.writeBackDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(millis, 0));
+	}
+
+	/**
+	 * Return the portfolio of the given user, loading it if it is not cached.
+	 * @throws IllegalArgumentException if the repository does not know the user
+	 */
+	@Override
+	public Portfolio findPortfolio(String username) {
+		recordAccess(username);
+		Entry entry = this.cache.get(username);
+		if (entry != null) {
+			if (!entry.referenced) {
+				entry.referenced = true;
+			}
+			this.hitCount.incrementAndGet();
+			return entry.portfolio;
+		}
+		return load(username).portfolio;
+	}
+
+	private void recordAccess(String username) {
+		if (!this.accessBuffer.offer(username) && this.evictionLock.tryLock()) {
+			// Full, count the buffered lookups unless another thread is already
+			try {
+				drainAccessBuffer();
+				this.sketch.increment(username);
+			}
+			finally {
+				this.evictionLock.unlock();
+			}
+		}
+	}
+
+	private void drainAccessBuffer() {
+		this.accessBuffer.drainTo(this.sketch::increment);
+	}
+
+	private Entry load(String username) {
+		CompletableFuture<Entry> future = new CompletableFuture<>();
+		CompletableFuture<Entry> existing = this.loading.putIfAbsent(username, future);
+		if (existing != null) {
+			this.sharedLoadCount.incrementAndGet();
+			try {
+				return existing.join();
+			}
+			catch (CompletionException ex) {
+				throw (ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : ex);
+			}
+		}
+		try {
+			// Loaded by another lookup that finished just before
+			Entry entry = this.cache.get(username);
+			if (entry == null) {
+				entry = loadEntry(username);
+			}
+			future.complete(entry);
+			return entry;
+		}
+		catch (RuntimeException ex) {
+			future.completeExceptionally(ex);
+			throw ex;
+		}
+		finally {
+			this.loading.remove(username, future);
+		}
+	}
+
+	private Entry loadEntry(String username) {
+		this.evictionLock.lock();
+		try {
+			// Moved back under the lock, so forEachPortfolio sees it in one of the maps
+			Entry entry = this.evicted.remove(username);
+			if (entry != null) {
+				admit(entry);
+				return entry;
+			}
+		}
+		finally {
+			this.evictionLock.unlock();
+		}
+		Portfolio portfolio = this.repository.load(username);
+		if (portfolio == null) {
+			throw new IllegalArgumentException(username);
+		}
+		this.loadCount.incrementAndGet();
+		Entry entry = new Entry(username, portfolio);
+		admit(entry);
+		return entry;
+	}
+
+	private void admit(Entry candidate) {
+		this.evictionLock.lock();
+		try {
+			this.cache.put(candidate.username, candidate);
+			this.evictionQueue.addLast(candidate);
+			if (this.evictionQueue.size() > this.maximumSize) {
+				drainAccessBuffer();
+				evict(selectVictim(candidate));
+			}
+		}
+		finally {
+			this.evictionLock.unlock();
+		}
+	}
+
+	private Entry selectVictim(Entry candidate) {
+		Entry victim = this.evictionQueue.peekFirst();
+		for (int i = this.evictionQueue.size(); i > 0 && victim.referenced && victim != candidate; i--) {
+			// Second chance for entries read since they were last considered
+			victim.referenced = false;
+			this.evictionQueue.addLast(this.evictionQueue.pollFirst());
+			victim = this.evictionQueue.peekFirst();
+		}
+		if (victim != candidate &&
+				this.sketch.frequency(candidate.username) <= this.sketch.frequency(victim.username)) {
+			this.rejectedCount.incrementAndGet();
+			return candidate;
+		}
+		return victim;
+	}
+
+	private void evict(Entry entry) {
+		if (this.evictionQueue.peekFirst() == entry) {
+			this.evictionQueue.pollFirst();
+		}
+		else {
+			// The candidate, at or near the end
+			this.evictionQueue.removeLastOccurrence(entry);
+		}
+		this.cache.remove(entry.username, entry);
+		entry.evictedNanos = System.nanoTime();
+		this.evicted.put(entry.username, entry);
+		this.evictionCount.incrementAndGet();
+	}
+
+	/**
+	 * Save the portfolios evicted more than the write-back delay ago, if
+	 * they were changed, and drop them. A portfolio that fails to save is
+	 * kept and saved on the next attempt.
+	 */
+	void writeBackEvicted() {
+		long cutoff = System.nanoTime() - this.writeBackDelayNanos;
+		for (Entry entry : this.evicted.values()) {
+			if (entry.evictedNanos - cutoff > 0 || !writeBack(entry)) {
+				continue;
+			}
+			if (this.evicted.remove(entry.username, entry) && entry.isDirty()) {
+				logger.warn("Portfolio of " + entry.username + " changed " +
+						TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - entry.evictedNanos) +
+						"ms after it was evicted, consider a longer write-back delay");
+				writeBack(entry);
+			}
+		}
+	}
+
+	private boolean writeBack(Entry entry) {
+		if (!entry.isDirty()) {
+			return true;
+		}
+		Portfolio copy = entry.portfolio.copy();
+		try {
+			this.repository.save(entry.username, copy);
+		}
+		catch (RuntimeException ex) {
+			logger.error("Failed to save portfolio of " + entry.username, ex);
+			return false;
+		}
+		entry.savedVersion = copy.getVersion();
+		this.writeCount.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Pass every username and portfolio to the given action. Portfolios that
+	 * are not cached are loaded from the repository for the call only, and
+	 * changes to them are lost.
+	 * <p>Cached and evicted portfolios are collected under the eviction lock,
+	 * so a portfolio taken back into the cache meanwhile is not missed and
+	 * passed on as its older saved copy.
+	 */
+	@Override
+	public void forEachPortfolio(BiConsumer<String, Portfolio> action) {
+		Map<String, Portfolio> inMemory = new LinkedHashMap<>();
+		this.evictionLock.lock();
+		try {
+			for (Entry entry : this.cache.values()) {
+				inMemory.put(entry.username, entry.portfolio);
+			}
+			for (Entry entry : this.evicted.values()) {
+				inMemory.putIfAbsent(entry.username, entry.portfolio);
+			}
+		}
+		finally {
+			this.evictionLock.unlock();
+		}
+		inMemory.forEach(action);
+		this.repository.forEach((username, portfolio) -> {
+			if (!inMemory.containsKey(username)) {
+				action.accept(username, portfolio);
+			}
+		});
+	}
+
+	/**
+	 * The number of cached portfolios.
+	 */
+	public int getSize() {
+		return this.cache.size();
+	}
+
+	public int getMaximumSize() {
+		return this.maximumSize;
+	}
+
+	public long getHitCount() {
+		return this.hitCount.get();
+	}
+
+	/**
+	 * The number of portfolios loaded from the repository.
+	 */
+	public long getLoadCount() {
+		return this.loadCount.get();
+	}
+
+	/**
+	 * The number of lookups that waited for a load started by another lookup.
+	 */
+	public long getSharedLoadCount() {
+		return this.sharedLoadCount.get();
+	}
+
+	/**
+	 * The number of portfolios evicted, including those not kept after loading.
+	 */
+	public long getEvictionCount() {
+		return this.evictionCount.get();
+	}
+
+	/**
+	 * The number of loaded portfolios not kept because their user was used
+	 * less often than the user they would have replaced.
+	 */
+	public long getRejectedCount() {
+		return this.rejectedCount.get();
+	}
+
+	/**
+	 * The number of portfolios saved to the repository.
+	 */
+	public long getWriteCount() {
+		return this.writeCount.get();
+	}
+
+	/**
+	 * The number of evicted portfolios waiting to be written back.
+	 */
+	public int getPendingWriteCount() {
+		return this.evicted.size();
+	}
+
+	@Override
+	public synchronized void start() {
+		if (this.writeBackExecutor == null) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("portfolioWriteBack-");
+			threadFactory.setDaemon(true);
+			this.writeBackExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+			long period = Math.max(TimeUnit.NANOSECONDS.toMillis(this.writeBackDelayNanos) / 2, 1);
+			this.writeBackExecutor.scheduleWithFixedDelay(this::writeBackEvicted, period, period, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Save all changed portfolios, cached or evicted.
+	 */
+	@Override
+	public synchronized void stop() {
+		if (this.writeBackExecutor != null) {
+			this.writeBackExecutor.shutdownNow();
+			try {
+				this.writeBackExecutor.awaitTermination(5, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			this.writeBackExecutor = null;
+		}
+		this.cache.values().forEach(this::writeBack);
+		for (Entry entry : this.evicted.values()) {
+			if (writeBack(entry)) {
+				this.evicted.remove(entry.username, entry);
+			}
+		}
+	}
+
+	@Override
+	public synchronized boolean isRunning() {
+		return (this.writeBackExecutor != null);
+	}
+
+	@Override
+	public int getPhase() {
+		// Stop after the TradeServiceImpl, so trades no longer change portfolios
+		return Integer.MAX_VALUE - 1;
+	}
+
+
+	private static class Entry {
+
+		private final String username;
+
+		private final Portfolio portfolio;
+
+		private volatile long savedVersion;
+
+		private volatile boolean referenced;
+
+		private volatile long evictedNanos;
+
+
+		Entry(String username, Portfolio portfolio) {
+			this.username = username;
+			this.portfolio = portfolio;
+			this.savedVersion = portfolio.getVersion();
+		}
+
+		boolean isDirty() {
+			return (this.portfolio.getVersion() != this.savedVersion);
+		}
+	}
+
+}
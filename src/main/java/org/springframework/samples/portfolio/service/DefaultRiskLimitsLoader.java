@@ -0,0 +1,48 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Gives every user the same limits, set with the "portfolio.risk.max-order-shares",
+ * "portfolio.risk.max-position-shares" and "portfolio.risk.max-order-notional"
+ * properties. Replace with a {@link RiskLimitsLoader} bean backed by the
+ * system that owns per-user limits.
+ */
+@Component
+public class DefaultRiskLimitsLoader implements RiskLimitsLoader {
+
+	private final RiskLimits limits;
+
+
+	public DefaultRiskLimitsLoader(
+			@Value("${portfolio.risk.max-order-shares:10000}") int maxOrderShares,
+			@Value("${portfolio.risk.max-position-shares:100000}") int maxPositionShares,
+			@Value("${portfolio.risk.max-order-notional:1000000}") double maxOrderNotional) {
+
+		this.limits = new RiskLimits(maxOrderShares, maxPositionShares, maxOrderNotional);
+	}
+
+
+	@Override
+	public RiskLimits loadLimits(String username) {
+		return this.limits;
+	}
+
+}
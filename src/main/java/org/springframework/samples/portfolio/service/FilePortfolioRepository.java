@@ -0,0 +1,146 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.function.BiConsumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.samples.portfolio.Portfolio;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Stores each portfolio in its own file in a directory, in the format of
+ * {@link PortfolioSnapshotFile}. Files are named after the hex encoded
+ * username, and replaced atomically, so a crash while saving leaves the
+ * previous portfolio in place.
+ *
+ * <p>An empty directory is seeded with the portfolios of the sample users.
+ *
+ * <p>Active with the "portfolio-cache" profile.
+ */
+@Component
+@Profile("portfolio-cache")
+public class FilePortfolioRepository implements PortfolioRepository {
+
+	private static final Log logger = LogFactory.getLog(FilePortfolioRepository.class);
+
+	static final String SUFFIX = ".portfolio";
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+
+	private final Path directory;
+
+
+	/**
+	 * @param directory the directory for portfolio files, created if necessary
+	 */
+	public FilePortfolioRepository(
+			@Value("${portfolio.repository.path:${java.io.tmpdir}/portfolio-repository}") String directory) {
+
+		this.directory = Paths.get(directory);
+		try {
+			Files.createDirectories(this.directory);
+			boolean empty = true;
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory)) {
+				for (Path path : stream) {
+					if (path.getFileName().toString().endsWith(".tmp")) {
+						Files.delete(path);
+					}
+					else if (path.getFileName().toString().endsWith(SUFFIX)) {
+						empty = false;
+					}
+				}
+			}
+			if (empty) {
+				PortfolioServiceImpl.createSamplePortfolios().forEach(this::save);
+				logger.info("Seeded " + this.directory + " with the sample portfolios");
+			}
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Failed to open portfolio repository " + directory, ex);
+		}
+	}
+
+
+	public Path getDirectory() {
+		return this.directory;
+	}
+
+	@Override
+	public Portfolio load(String username) {
+		Path path = getPath(username);
+		if (!Files.exists(path)) {
+			return null;
+		}
+		Portfolio[] result = new Portfolio[1];
+		try {
+			PortfolioSnapshotFile.read(path, (name, portfolio) -> result[0] = portfolio);
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Failed to load portfolio of " + username, ex);
+		}
+		return result[0];
+	}
+
+	@Override
+	public void save(String username, Portfolio portfolio) {
+		Path path = getPath(username);
+		try {
+			Path tempPath = Files.createTempFile(this.directory, path.getFileName().toString(), ".tmp");
+			PortfolioSnapshotFile.write(tempPath, Collections.singletonMap(username, portfolio));
+			Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Failed to save portfolio of " + username, ex);
+		}
+	}
+
+	@Override
+	public void forEach(BiConsumer<String, Portfolio> action) {
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, "*" + SUFFIX)) {
+			for (Path path : stream) {
+				PortfolioSnapshotFile.read(path, action);
+			}
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Failed to read portfolios in " + this.directory, ex);
+		}
+	}
+
+	private Path getPath(String username) {
+		byte[] bytes = username.getBytes(StandardCharsets.UTF_8);
+		StringBuilder sb = new StringBuilder(bytes.length * 2 + SUFFIX.length());
+		for (byte b : bytes) {
+			sb.append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+		}
+		return this.directory.resolve(sb.append(SUFFIX).toString());
+	}
+
+}
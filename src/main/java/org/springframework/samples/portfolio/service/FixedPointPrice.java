@@ -0,0 +1,145 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Helpers for prices represented as a {@code long} number of ticks with a
+ * fixed decimal scale, e.g. 2453 ticks with scale 2 is 24.53.
+ *
+ * <p>All methods are allocation-free except {@link #toBigDecimal}.
+ */
+public abstract class FixedPointPrice {
+
+	/** Maximum scale supported, enough for any listed instrument. */
+	public static final int MAX_SCALE = 8;
+
+	/** Maximum number of chars {@link #format} writes. */
+	public static final int MAX_LENGTH = 21;
+
+	private static final long[] POWERS_OF_TEN = new long[MAX_SCALE + 1];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+
+	/**
+	 * Return 10 to the power of the given scale.
+	 */
+	public static long unit(int scale) {
+		return POWERS_OF_TEN[scale];
+	}
+
+	/**
+	 * Parse a plain decimal value such as "24.30" into ticks of the given
+	 * scale, dropping digits beyond the scale.
+	 * @throws IllegalArgumentException if the value is not a decimal number
+	 * or its ticks do not fit into a {@code long}
+	 */
+	public static long parse(CharSequence value, int scale) {
+		if (scale < 0 || scale > MAX_SCALE) {
+			throw new IllegalArgumentException("Unsupported scale " + scale);
+		}
+		long ticks = 0;
+		int fractionDigits = -1;
+		boolean negative = false;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (i == 0 && c == '-') {
+				negative = true;
+			}
+			else if (c == '.' && fractionDigits < 0) {
+				fractionDigits = 0;
+			}
+			else if (c >= '0' && c <= '9') {
+				if (fractionDigits == scale) {
+					continue;
+				}
+				if (ticks > (Long.MAX_VALUE - (c - '0')) / 10) {
+					throw new IllegalArgumentException("Price out of range: " + value);
+				}
+				ticks = ticks * 10 + (c - '0');
+				if (fractionDigits >= 0) {
+					fractionDigits++;
+				}
+			}
+			else {
+				throw new IllegalArgumentException("Invalid price: " + value);
+			}
+		}
+		long unit = POWERS_OF_TEN[scale - Math.max(fractionDigits, 0)];
+		if (ticks > Long.MAX_VALUE / unit) {
+			throw new IllegalArgumentException("Price out of range: " + value);
+		}
+		ticks *= unit;
+		return (negative ? -ticks : ticks);
+	}
+
+	/**
+	 * Write the price as plain decimal text into the given buffer which must
+	 * have room for at least {@link #MAX_LENGTH} chars.
+	 * @return the number of chars written
+	 * @throws IllegalArgumentException for {@link Long#MIN_VALUE}, which has
+	 * no positive counterpart
+	 */
+	public static int format(long ticks, int scale, char[] buffer) {
+		if (ticks == Long.MIN_VALUE) {
+			throw new IllegalArgumentException("Price out of range: " + ticks);
+		}
+		int pos = MAX_LENGTH;
+		long value = Math.abs(ticks);
+		for (int i = 0; i < scale; i++) {
+			buffer[--pos] = (char) ('0' + (value % 10));
+			value /= 10;
+		}
+		if (scale > 0) {
+			buffer[--pos] = '.';
+		}
+		do {
+			buffer[--pos] = (char) ('0' + (value % 10));
+			value /= 10;
+		}
+		while (value > 0);
+		if (ticks < 0) {
+			buffer[--pos] = '-';
+		}
+		int length = MAX_LENGTH - pos;
+		System.arraycopy(buffer, pos, buffer, 0, length);
+		return length;
+	}
+
+	public static double toDouble(long ticks, int scale) {
+		return (double) ticks / POWERS_OF_TEN[scale];
+	}
+
+	public static BigDecimal toBigDecimal(long ticks, int scale) {
+		return BigDecimal.valueOf(ticks, scale);
+	}
+
+	/**
+	 * Convert to ticks of the given scale, rounding half up any extra digits.
+	 */
+	public static long fromBigDecimal(BigDecimal value, int scale) {
+		return value.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+	}
+
+}
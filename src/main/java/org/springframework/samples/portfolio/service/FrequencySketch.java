@@ -0,0 +1,122 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+
+/**
+ * Estimates how often keys were seen recently, for deciding which entries a
+ * bounded cache should keep (TinyLFU).
+ *
+ * <p>A count-min sketch with four 4-bit counters per key, packed sixteen to a
+ * {@code long}, so it takes 8 bytes per cache entry no matter how many
+ * distinct keys are seen. An estimate never undercounts, except through
+ * aging: after ten increments per entry every counter is halved, so keys that
+ * were popular long ago lose out to keys popular now.
+ *
+ * <p>Not thread-safe: concurrent increments lose counts and can partly
+ * undo a halving, which skews estimates towards keys that were popular
+ * before. Callers must serialize access, e.g. as
+ * {@link CachingPortfolioService} does by buffering lookups and counting
+ * them under its eviction lock.
+ */
+class FrequencySketch {
+
+	private static final long[] SEEDS = {
+			0x97CB3127A3A5B3C5L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0x9E3779B97F4A7C15L};
+
+	private static final long RESET_MASK = 0x7777777777777777L;
+
+	private static final int MAX_COUNT = 15;
+
+
+	private final long[] table;
+
+	private final int sampleSize;
+
+	private int incrementCount;
+
+
+	/**
+	 * @param maximumSize the maximum number of entries in the cache
+	 */
+	FrequencySketch(int maximumSize) {
+		int size = Math.max(Math.min(maximumSize, 1 << 30), 16);
+		this.table = new long[Integer.highestOneBit(size - 1) << 1];
+		this.sampleSize = 10 * size;
+	}
+
+
+	/**
+	 * Count one occurrence of the given key.
+	 */
+	void increment(Object key) {
+		int hash = spread(key.hashCode());
+		boolean added = false;
+		for (int i = 0; i < SEEDS.length; i++) {
+			int index = indexOf(hash, i);
+			int shift = offsetOf(hash, i);
+			long word = this.table[index];
+			if (((word >>> shift) & MAX_COUNT) < MAX_COUNT) {
+				this.table[index] = word + (1L << shift);
+				added = true;
+			}
+		}
+		if (added && ++this.incrementCount >= this.sampleSize) {
+			reset();
+		}
+	}
+
+	/**
+	 * The estimated number of recent occurrences of the given key, at most 15.
+	 */
+	int frequency(Object key) {
+		int hash = spread(key.hashCode());
+		int frequency = MAX_COUNT;
+		for (int i = 0; i < SEEDS.length; i++) {
+			long count = (this.table[indexOf(hash, i)] >>> offsetOf(hash, i)) & MAX_COUNT;
+			frequency = (int) Math.min(frequency, count);
+		}
+		return frequency;
+	}
+
+	/**
+	 * Halve all counters.
+	 */
+	private void reset() {
+		for (int i = 0; i < this.table.length; i++) {
+			this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+		}
+		this.incrementCount /= 2;
+	}
+
+	private int indexOf(int hash, int i) {
+		long h = (hash + SEEDS[i]) * SEEDS[i];
+		h += (h >>> 32);
+		return (int) h & (this.table.length - 1);
+	}
+
+	private static int offsetOf(int hash, int i) {
+		// One of the 16 counters of the word, a different one per hash function
+		return (((hash >>> (i << 3)) & 3) << 2 | i) << 2;
+	}
+
+	private static int spread(int hash) {
+		hash = ((hash >>> 16) ^ hash) * 0x45D9F3B;
+		hash = ((hash >>> 16) ^ hash) * 0x45D9F3B;
+		return (hash >>> 16) ^ hash;
+	}
+
+}
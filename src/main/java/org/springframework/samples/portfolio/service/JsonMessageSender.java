@@ -0,0 +1,124 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.core.AbstractMessageSendingTemplate;
+import org.springframework.messaging.core.MessageSendingOperations;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+
+/**
+ * Sends payloads that are serialized to JSON up front, bypassing the message
+ * converters of the messaging template.
+ *
+ * <p>A payload is serialized once with {@link #serialize} and the resulting
+ * bytes can then be sent to any number of destinations. The broker shares the
+ * same byte array with every subscriber of a destination, so the JSON cost of
+ * a message does not grow with the number of subscribers or destinations.
+ *
+ * <p>Each sent message also carries a message id and a
+ * {@link SharedFrameStompEncoder.FrameCache} shared by the copies the broker
+ * delivers to subscribers, so that {@link SharedFrameStompEncoder} encodes
+ * the STOMP frame once rather than once per session.
+ */
+public class JsonMessageSender {
+
+	private final MessageSendingOperations<String> messagingTemplate;
+
+	private final ObjectWriter objectWriter;
+
+	private final AtomicLong messageIdCounter = new AtomicLong();
+
+
+	/**
+	 * Serialize with the {@code ObjectMapper} of the template's Jackson
+	 * message converter, if it has one.
+	 */
+	public JsonMessageSender(MessageSendingOperations<String> messagingTemplate) {
+		this(messagingTemplate, findObjectMapper(messagingTemplate));
+	}
+
+	public JsonMessageSender(MessageSendingOperations<String> messagingTemplate, ObjectMapper objectMapper) {
+		this.messagingTemplate = messagingTemplate;
+		this.objectWriter = objectMapper.writer();
+	}
+
+
+	/**
+	 * Serialize the given payload to UTF-8 encoded JSON.
+	 * @throws MessageConversionException if the payload cannot be serialized
+	 */
+	public byte[] serialize(Object payload) {
+		try {
+			return this.objectWriter.writeValueAsBytes(payload);
+		}
+		catch (JsonProcessingException ex) {
+			throw new MessageConversionException("Could not serialize " + payload, ex);
+		}
+	}
+
+	/**
+	 * Send previously serialized JSON to the given destination. The byte array
+	 * must not be modified afterwards since it is shared with subscribers.
+	 */
+	public void send(String destination, byte[] json) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+		accessor.setNativeHeader(StompHeaderAccessor.STOMP_MESSAGE_ID_HEADER,
+				"p-" + this.messageIdCounter.incrementAndGet());
+		accessor.setHeader(SharedFrameStompEncoder.FRAME_CACHE_HEADER, new SharedFrameStompEncoder.FrameCache());
+		accessor.setLeaveMutable(true);
+		this.messagingTemplate.send(destination, MessageBuilder.createMessage(json, accessor.getMessageHeaders()));
+	}
+
+	/**
+	 * Serialize the payload and send it to the given destination.
+	 */
+	public void convertAndSend(String destination, Object payload) {
+		send(destination, serialize(payload));
+	}
+
+	private static ObjectMapper findObjectMapper(MessageSendingOperations<String> messagingTemplate) {
+		if (messagingTemplate instanceof AbstractMessageSendingTemplate) {
+			MessageConverter converter = ((AbstractMessageSendingTemplate<?>) messagingTemplate).getMessageConverter();
+			List<MessageConverter> converters = (converter instanceof CompositeMessageConverter ?
+					((CompositeMessageConverter) converter).getConverters() : Collections.singletonList(converter));
+			for (MessageConverter candidate : converters) {
+				if (candidate instanceof MappingJackson2MessageConverter) {
+					return ((MappingJackson2MessageConverter) candidate).getObjectMapper();
+				}
+			}
+		}
+		return new ObjectMapper();
+	}
+
+}
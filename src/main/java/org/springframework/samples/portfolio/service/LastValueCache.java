@@ -0,0 +1,75 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Keeps the last published quote of every ticker so that new subscribers
+ * can be sent current prices right away instead of waiting for the next
+ * publishing round.
+ *
+ * <p>Memory is proportional to the number of instruments. A snapshot holds
+ * only the tickers a subscriber asks for, so its size does not grow with
+ * the number of instruments.
+ */
+@Component
+public class LastValueCache implements QuoteListener {
+
+	private final Map<String, Quote> quotes = new ConcurrentHashMap<>();
+
+
+	@Override
+	public void onQuote(Quote quote) {
+		this.quotes.put(quote.getTicker(), quote);
+	}
+
+	/**
+	 * Return the last quote for the given ticker, or {@code null}.
+	 */
+	public Quote getQuote(String ticker) {
+		return this.quotes.get(ticker);
+	}
+
+	public Collection<Quote> getQuotes() {
+		return this.quotes.values();
+	}
+
+	public int size() {
+		return this.quotes.size();
+	}
+
+	/**
+	 * Return the cached quotes of the given tickers. Tickers without a quote
+	 * are left out.
+	 */
+	public QuoteBatch getSnapshot(Collection<String> tickers) {
+		QuoteBatch batch = new QuoteBatch();
+		for (String ticker : tickers) {
+			Quote quote = this.quotes.get(ticker);
+			if (quote != null) {
+				batch.add(quote);
+			}
+		}
+		return batch;
+	}
+
+}
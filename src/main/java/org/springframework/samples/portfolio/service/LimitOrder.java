@@ -0,0 +1,89 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.math.BigDecimal;
+
+/**
+ * A trade to execute only at the given price or better, matched against the
+ * orders of other users in an {@link OrderBook}. While it rests in a book, the
+ * order is also the node of the FIFO queue of its price level.
+ */
+public class LimitOrder extends Trade {
+
+	/** The {@link FixedPointPrice} scale of limit prices, i.e. prices are matched in cents. */
+	public static final int PRICE_SCALE = 2;
+
+
+	private int remaining;
+
+	// Owned by the OrderBook
+
+	String key;
+
+	OrderBook.PriceLevel level;
+
+	LimitOrder previous;
+
+	LimitOrder next;
+
+
+	public BigDecimal getPrice() {
+		return FixedPointPrice.toBigDecimal(getPriceTicks(), PRICE_SCALE);
+	}
+
+	/**
+	 * Set the limit price. A price with more decimals than
+	 * {@link #PRICE_SCALE} is not a valid limit, and leaves the order without
+	 * a price, for it to be rejected.
+	 */
+	public void setPrice(BigDecimal price) {
+		setPriceTicks(price.stripTrailingZeros().scale() <= PRICE_SCALE ?
+				FixedPointPrice.fromBigDecimal(price, PRICE_SCALE) : 0);
+	}
+
+	/**
+	 * Set the limit price in ticks of {@link #PRICE_SCALE}, i.e. in cents.
+	 */
+	public void setPriceTicks(long priceTicks) {
+		setPrice(priceTicks, PRICE_SCALE);
+	}
+
+	@Override
+	public void setShares(int shares) {
+		super.setShares(shares);
+		this.remaining = shares;
+	}
+
+	/**
+	 * The number of shares not filled yet.
+	 */
+	public int getRemaining() {
+		return this.remaining;
+	}
+
+	void fill(int shares) {
+		this.remaining -= shares;
+	}
+
+	@Override
+	public String toString() {
+		return "[orderId=" + getOrderId() + ", ticker=" + getTicker() + ", shares=" + getShares() +
+				", remaining=" + this.remaining + ", action=" + getAction() + ", price=" + getPrice() +
+				", username=" + getUsername() + "]";
+	}
+
+}
@@ -0,0 +1,570 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.samples.portfolio.Portfolio;
+import org.springframework.samples.portfolio.PortfolioPosition;
+import org.springframework.stereotype.Service;
+
+
+/**
+ * Keeps all positions off-heap in a memory-mapped file, so a large number
+ * of portfolios adds no objects for the garbage collector to trace, and
+ * positions are there after a restart without loading anything.
+ *
+ * <p>The file is a {@value #HEADER_SIZE} byte header followed by a fixed
+ * number of {@value #RECORD_SIZE} byte records that form an open addressing
+ * hash table keyed by username and ticker, with linear probing:
+ * <pre>
+ * header: int magic, int version, int record size, int capacity, int used records
+ * record: int state, int next record, long ticker (see {@link TickFile#encodeTicker}),
+ *         double price, int shares, int reserved, long update time,
+ *         byte username length, 32 bytes username, byte company length, 54 bytes company
+ * </pre>
+ * Each user has a header record with ticker 0 that holds the version of the
+ * portfolio in the update time field, and links the position records of the
+ * user in insertion order through their next record field. Since the index
+ * is part of the file, opening an existing file is only a matter of mapping
+ * it. A crash while adding a position can leave it out of the list of the
+ * user's positions, though it can still be looked up and traded.
+ *
+ * <p>{@link #findPortfolio} returns a view that reads and writes the records
+ * of the user on each call. Access to the records of a user is serialized
+ * by one of a fixed number of locks. Adding records takes the write lock of
+ * one more {@link StampedLock}, and lookups validate an optimistic read of
+ * it, so they see the records other users added under other locks.
+ * Changes are visible to other processes mapping the file and survive a
+ * crash of this process right away, and are forced to disk on shutdown.
+ */
+@Service
+@Profile("portfolio-mapped")
+public class MappedPortfolioService implements PortfolioService, DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(MappedPortfolioService.class);
+
+	public static final int MAGIC = 0x50504F53;  // "PPOS"
+
+	public static final int VERSION = 1;
+
+	public static final int HEADER_SIZE = 64;
+
+	public static final int RECORD_SIZE = 128;
+
+	public static final int MAX_USERNAME_LENGTH = 32;
+
+	public static final int MAX_COMPANY_LENGTH = 54;
+
+	private static final int USED_COUNT = 16;
+
+	private static final int STATE = 0;
+
+	private static final int NEXT = 4;
+
+	private static final int TICKER = 8;
+
+	private static final int PRICE = 16;
+
+	private static final int SHARES = 24;
+
+	private static final int TIME = 32;
+
+	private static final int USERNAME = 40;
+
+	private static final int COMPANY = USERNAME + 1 + MAX_USERNAME_LENGTH;
+
+	private static final int FREE = 0;
+
+	private static final int USED = 1;
+
+	private static final int REMOVED = 2;
+
+	private static final int LOCK_COUNT = 1024;
+
+
+	private final Path path;
+
+	private final FileChannel channel;
+
+	private final MappedByteBuffer buffer;
+
+	private final int capacity;
+
+	private final StampedLock insertLock = new StampedLock();
+
+	private final Object[] userLocks = new Object[LOCK_COUNT];
+
+	// Guarded by insertLock
+	private int usedCount;
+
+
+	/**
+	 * @param path the file to map, created with the given capacity if it does not exist
+	 * @param capacity the number of records, rounded up to a power of two,
+	 * ignored for an existing file; each user takes one record plus one per position
+	 */
+	public MappedPortfolioService(
+			@Value("${portfolio.mapped.path:${java.io.tmpdir}/portfolio-positions.dat}") String path,
+			@Value("${portfolio.mapped.capacity:65536}") int capacity) {
+
+		this.path = Paths.get(path);
+		for (int i = 0; i < LOCK_COUNT; i++) {
+			this.userLocks[i] = new Object();
+		}
+		boolean exists;
+		try {
+			exists = Files.exists(this.path) && Files.size(this.path) > 0;
+			if (!exists) {
+				capacity = (capacity > 1 ? Integer.highestOneBit(capacity - 1) << 1 : 1);
+				if ((long) capacity * RECORD_SIZE + HEADER_SIZE > Integer.MAX_VALUE) {
+					throw new IllegalArgumentException("Capacity too large for one mapping: " + capacity);
+				}
+			}
+			else {
+				capacity = (int) ((Files.size(this.path) - HEADER_SIZE) / RECORD_SIZE);
+			}
+			this.capacity = capacity;
+			this.channel = FileChannel.open(this.path,
+					StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0,
+					(long) capacity * RECORD_SIZE + HEADER_SIZE);
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Failed to map " + path, ex);
+		}
+		if (exists) {
+			openExisting();
+		}
+		else {
+			this.buffer.putInt(0, MAGIC);
+			this.buffer.putInt(4, VERSION);
+			this.buffer.putInt(8, RECORD_SIZE);
+			this.buffer.putInt(12, this.capacity);
+			PortfolioServiceImpl.createSamplePortfolios().forEach(this::addPortfolio);
+			logger.info("Created " + this.path + " with " + this.capacity + " records");
+		}
+	}
+
+	private void openExisting() {
+		if (this.buffer.getInt(0) != MAGIC || this.buffer.getInt(4) != VERSION ||
+				this.buffer.getInt(8) != RECORD_SIZE || this.buffer.getInt(12) != this.capacity) {
+			throw new IllegalStateException("Not a portfolio file of version " + VERSION + ": " + this.path);
+		}
+		this.usedCount = this.buffer.getInt(USED_COUNT);
+		logger.info("Opened " + this.path + " with " + this.usedCount + " of " + this.capacity + " records used");
+	}
+
+
+	@Override
+	public Portfolio findPortfolio(String username) {
+		byte[] usernameBytes = encodeUsername(username);
+		synchronized (getUserLock(usernameBytes)) {
+			int header = findRecord(usernameBytes, 0);
+			if (header < 0) {
+				throw new IllegalArgumentException(username);
+			}
+			return new MappedPortfolio(usernameBytes, header);
+		}
+	}
+
+	@Override
+	public void forEachPortfolio(BiConsumer<String, Portfolio> action) {
+		List<String> usernames = new ArrayList<>();
+		long stamp = this.insertLock.readLock();
+		try {
+			for (int index = 0; index < this.capacity; index++) {
+				if (getState(index) == USED && this.buffer.getLong(offsetOf(index) + TICKER) == 0) {
+					usernames.add(getUsername(index));
+				}
+			}
+		}
+		finally {
+			this.insertLock.unlockRead(stamp);
+		}
+		for (String username : usernames) {
+			action.accept(username, findPortfolio(username));
+		}
+	}
+
+	/**
+	 * Add the portfolio of a user with a copy of the given positions and version.
+	 * @return {@code false} if the user already has a portfolio
+	 */
+	public boolean addPortfolio(String username, Portfolio portfolio) {
+		byte[] usernameBytes = encodeUsername(username);
+		synchronized (getUserLock(usernameBytes)) {
+			if (findRecord(usernameBytes, 0) >= 0) {
+				return false;
+			}
+			int header = insertRecord(usernameBytes, 0, null, 0, 0, portfolio.getVersion());
+			MappedPortfolio mapped = new MappedPortfolio(usernameBytes, header);
+			for (PortfolioPosition position : portfolio.getPositions()) {
+				mapped.addPosition(position);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * The number of records in use, including removed positions.
+	 */
+	public int getUsedRecordCount() {
+		long stamp = this.insertLock.readLock();
+		try {
+			return this.usedCount;
+		}
+		finally {
+			this.insertLock.unlockRead(stamp);
+		}
+	}
+
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	@Override
+	public void destroy() throws IOException {
+		this.buffer.force();
+		this.channel.close();
+	}
+
+	private Object getUserLock(byte[] username) {
+		return this.userLocks[hash(username, 0) & (LOCK_COUNT - 1)];
+	}
+
+	/**
+	 * Return the record of the given user and ticker, or -1.
+	 */
+	private int findRecord(byte[] username, long ticker) {
+		long stamp = this.insertLock.tryOptimisticRead();
+		int index = probe(username, ticker);
+		if (!this.insertLock.validate(stamp)) {
+			// A record was being added while probing
+			stamp = this.insertLock.readLock();
+			try {
+				index = probe(username, ticker);
+			}
+			finally {
+				this.insertLock.unlockRead(stamp);
+			}
+		}
+		return index;
+	}
+
+	private int probe(byte[] username, long ticker) {
+		int index = hash(username, ticker) & (this.capacity - 1);
+		for (int i = 0; i < this.capacity; i++) {
+			int state = getState(index);
+			if (state == FREE) {
+				return -1;
+			}
+			if (state == USED && this.buffer.getLong(offsetOf(index) + TICKER) == ticker &&
+					usernameEquals(index, username)) {
+				return index;
+			}
+			index = (index + 1) & (this.capacity - 1);
+		}
+		return -1;
+	}
+
+	/**
+	 * Write a new record, its state last, so a crash of this process cannot
+	 * leave a partly written record in use. The caller holds the lock of the
+	 * user and has checked the record does not exist.
+	 */
+	private int insertRecord(byte[] username, long ticker, byte[] company, double price, int shares, long time) {
+		long stamp = this.insertLock.writeLock();
+		try {
+			if (this.usedCount == this.capacity) {
+				throw new IllegalStateException("No free records in " + this.path);
+			}
+			int index = hash(username, ticker) & (this.capacity - 1);
+			while (getState(index) == USED) {
+				index = (index + 1) & (this.capacity - 1);
+			}
+			if (getState(index) == FREE) {
+				this.usedCount++;
+				this.buffer.putInt(USED_COUNT, this.usedCount);
+			}
+			int offset = offsetOf(index);
+			this.buffer.putInt(offset + NEXT, -1);
+			this.buffer.putLong(offset + TICKER, ticker);
+			this.buffer.putDouble(offset + PRICE, price);
+			this.buffer.putInt(offset + SHARES, shares);
+			this.buffer.putLong(offset + TIME, time);
+			putBytes(offset + USERNAME, username);
+			putBytes(offset + COMPANY, (company != null ? company : new byte[0]));
+			this.buffer.putInt(offset + STATE, USED);
+			return index;
+		}
+		finally {
+			this.insertLock.unlockWrite(stamp);
+		}
+	}
+
+	private int getState(int index) {
+		return this.buffer.getInt(offsetOf(index) + STATE);
+	}
+
+	private static int offsetOf(int index) {
+		return HEADER_SIZE + index * RECORD_SIZE;
+	}
+
+	private boolean usernameEquals(int index, byte[] username) {
+		int offset = offsetOf(index) + USERNAME;
+		if (this.buffer.get(offset) != username.length) {
+			return false;
+		}
+		for (int i = 0; i < username.length; i++) {
+			if (this.buffer.get(offset + 1 + i) != username[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private String getUsername(int index) {
+		return getString(offsetOf(index) + USERNAME);
+	}
+
+	private void putBytes(int offset, byte[] bytes) {
+		this.buffer.put(offset, (byte) bytes.length);
+		for (int i = 0; i < bytes.length; i++) {
+			this.buffer.put(offset + 1 + i, bytes[i]);
+		}
+	}
+
+	private String getString(int offset) {
+		byte[] bytes = new byte[this.buffer.get(offset)];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = this.buffer.get(offset + 1 + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static byte[] encodeUsername(String username) {
+		byte[] bytes = username.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > MAX_USERNAME_LENGTH) {
+			throw new IllegalArgumentException("Username too long: " + username);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Encode the given ticker, or return 0, the ticker of user headers, if
+	 * it cannot be stored.
+	 */
+	private static long encodeTicker(String ticker) {
+		return (TickFile.isEncodable(ticker) ? TickFile.encodeTicker(ticker) : 0);
+	}
+
+	private static int hash(byte[] username, long ticker) {
+		long hash = 1;
+		for (byte b : username) {
+			hash = 31 * hash + b;
+		}
+		hash = hash * 0x9E3779B97F4A7C15L + ticker;
+		// Finalizer of MurmurHash3
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		return (int) hash;
+	}
+
+
+	/**
+	 * A portfolio whose every method reads or writes the records of its user.
+	 * Positions are not removed, except by {@link #restore}, and tickers are
+	 * limited to {@value TickFile#MAX_TICKER_LENGTH} ASCII characters.
+	 */
+	private class MappedPortfolio extends Portfolio {
+
+		private final byte[] username;
+
+		private final int header;
+
+		private final Object lock;
+
+
+		MappedPortfolio(byte[] username, int header) {
+			this.username = username;
+			this.header = header;
+			this.lock = getUserLock(username);
+		}
+
+
+		@Override
+		public List<PortfolioPosition> getPositions() {
+			List<PortfolioPosition> positions = new ArrayList<>();
+			synchronized (this.lock) {
+				for (int index = getNext(this.header); index >= 0; index = getNext(index)) {
+					positions.add(createPosition(index));
+				}
+			}
+			return Collections.unmodifiableList(positions);
+		}
+
+		@Override
+		public void addPosition(PortfolioPosition position) {
+			long ticker = encodeTicker(position.getTicker());
+			if (ticker == 0) {
+				throw new IllegalArgumentException("Invalid ticker: " + position.getTicker());
+			}
+			byte[] company = position.getCompany().getBytes(StandardCharsets.UTF_8);
+			if (company.length > MAX_COMPANY_LENGTH) {
+				throw new IllegalArgumentException("Company name too long: " + position.getCompany());
+			}
+			synchronized (this.lock) {
+				int index = findRecord(this.username, ticker);
+				if (index >= 0) {
+					int offset = offsetOf(index);
+					buffer.putDouble(offset + PRICE, position.getPrice());
+					buffer.putInt(offset + SHARES, position.getShares());
+					buffer.putLong(offset + TIME, position.getUpdateTime());
+					return;
+				}
+				index = insertRecord(this.username, ticker, company, position.getPrice(), position.getShares(),
+						position.getUpdateTime());
+				int last = this.header;
+				while (getNext(last) >= 0) {
+					last = getNext(last);
+				}
+				buffer.putInt(offsetOf(last) + NEXT, index);
+			}
+		}
+
+		@Override
+		public long getVersion() {
+			synchronized (this.lock) {
+				return buffer.getLong(offsetOf(this.header) + TIME);
+			}
+		}
+
+		/**
+		 * Return a copy on the heap.
+		 */
+		@Override
+		public Portfolio copy() {
+			Portfolio copy = new Portfolio();
+			synchronized (this.lock) {
+				copy.restore(getPositions(), getVersion());
+			}
+			return copy;
+		}
+
+		@Override
+		public void restore(List<PortfolioPosition> positions, long version) {
+			synchronized (this.lock) {
+				int index = getNext(this.header);
+				while (index >= 0) {
+					int next = getNext(index);
+					// Keep the slot occupied for probing; a later insert may reuse it
+					buffer.putInt(offsetOf(index) + STATE, REMOVED);
+					index = next;
+				}
+				buffer.putInt(offsetOf(this.header) + NEXT, -1);
+				for (PortfolioPosition position : positions) {
+					addPosition(position);
+				}
+				buffer.putLong(offsetOf(this.header) + TIME, version);
+			}
+		}
+
+		@Override
+		public PortfolioPosition getPortfolioPosition(String ticker) {
+			long encoded = encodeTicker(ticker);
+			if (encoded == 0) {
+				return null;
+			}
+			synchronized (this.lock) {
+				int index = findRecord(this.username, encoded);
+				return (index >= 0 ? createPosition(index) : null);
+			}
+		}
+
+		@Override
+		public PortfolioPosition buy(String ticker, int sharesToBuy) {
+			return (sharesToBuy < 1 ? null : trade(ticker, sharesToBuy, Double.NaN));
+		}
+
+		@Override
+		public PortfolioPosition buy(String ticker, int sharesToBuy, double price) {
+			return (sharesToBuy < 1 ? null : trade(ticker, sharesToBuy, price));
+		}
+
+		@Override
+		public PortfolioPosition sell(String ticker, int sharesToSell) {
+			return (sharesToSell < 1 ? null : trade(ticker, -sharesToSell, Double.NaN));
+		}
+
+		private PortfolioPosition trade(String ticker, int sharesToAddOrSubtract, double price) {
+			long encoded = encodeTicker(ticker);
+			if (encoded == 0) {
+				return null;
+			}
+			synchronized (this.lock) {
+				int index = findRecord(this.username, encoded);
+				if (index < 0) {
+					return null;
+				}
+				int offset = offsetOf(index);
+				int currentShares = buffer.getInt(offset + SHARES);
+				int shares = currentShares + sharesToAddOrSubtract;
+				if (shares < 0) {
+					return null;
+				}
+				buffer.putDouble(offset + PRICE,
+						averagePrice(currentShares, buffer.getDouble(offset + PRICE), sharesToAddOrSubtract, price));
+				buffer.putInt(offset + SHARES, shares);
+				buffer.putLong(offset + TIME, System.currentTimeMillis());
+				int headerOffset = offsetOf(this.header);
+				buffer.putLong(headerOffset + TIME, buffer.getLong(headerOffset + TIME) + 1);
+				return createPosition(index);
+			}
+		}
+
+		private int getNext(int index) {
+			return buffer.getInt(offsetOf(index) + NEXT);
+		}
+
+		private PortfolioPosition createPosition(int index) {
+			int offset = offsetOf(index);
+			return new PortfolioPosition(getString(offset + COMPANY),
+					TickFile.decodeTicker(buffer.getLong(offset + TICKER)),
+					buffer.getDouble(offset + PRICE), buffer.getInt(offset + SHARES), buffer.getLong(offset + TIME));
+		}
+	}
+
+}
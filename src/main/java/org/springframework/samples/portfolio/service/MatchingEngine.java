@@ -0,0 +1,359 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.samples.portfolio.PortfolioPosition;
+import org.springframework.samples.portfolio.service.Trade.TradeAction;
+import org.springframework.stereotype.Service;
+
+
+/**
+ * Matches the limit orders of users in one {@link OrderBook} per ticker.
+ *
+ * <p>Each book is accessed only from the shard of its ticker, so matching
+ * needs no locking. Both sides of a fill are settled as trades through the
+ * {@link TradeService}, so they execute on the shard of their user and are
+ * published as position updates like any other trade. The seller is settled
+ * first. Shares offered in sell orders are reserved from when the order is
+ * placed until it is cancelled or its fills are settled, so they cannot be
+ * offered twice, and the {@link TradeServiceImpl} rejects trades that would
+ * sell them. Should the seller still no longer hold the shares, e.g. after
+ * a trade that raced with placing the order, the fill is dropped and both
+ * users are sent a rejected {@link TradeAck} for it on "/queue/trade-acks". Likewise, the shares of buy orders count towards the position limit
+ * of the {@link PreTradeRiskPipeline} until then, for orders as well as for
+ * trades executed by the {@link TradeServiceImpl}.
+ */
+@Service
+public class MatchingEngine implements OrderReservations, SmartLifecycle {
+
+	private static final Log logger = LogFactory.getLog(MatchingEngine.class);
+
+	private final TradeService tradeService;
+
+	private final PortfolioService portfolioService;
+
+	private final SimpMessageSendingOperations messagingTemplate;
+
+	private TradeSequencer orderSequencer =
+			new TradeSequencer("orderShard-", Math.max(Runtime.getRuntime().availableProcessors() / 2, 1));
+
+	// Books are created and accessed on the shard of their ticker
+	private final Map<String, Book> books = new ConcurrentHashMap<>();
+
+	// User and order id -> ticker, for resting orders
+	private final Map<String, String> restingOrders = new ConcurrentHashMap<>();
+
+	private PreTradeRiskPipeline riskPipeline;
+
+	private final AtomicLong fillCount = new AtomicLong();
+
+	private final AtomicLong droppedFillCount = new AtomicLong();
+
+
+	@Autowired
+	public MatchingEngine(TradeService tradeService, PortfolioService portfolioService,
+			SimpMessageSendingOperations messagingTemplate) {
+
+		this.tradeService = tradeService;
+		this.portfolioService = portfolioService;
+		this.messagingTemplate = messagingTemplate;
+	}
+
+	/**
+	 * The number of threads to match orders on. The orders of one ticker
+	 * always match on the same thread. Set with the "portfolio.order.shards"
+	 * property.
+	 * <p>By default this is set to half the number of available processors.
+	 */
+	@Value("${portfolio.order.shards:0}")
+	public void setShardCount(int shardCount) {
+		if (shardCount > 0) {
+			this.orderSequencer = new TradeSequencer("orderShard-", shardCount);
+		}
+	}
+
+	/**
+	 * Pre-trade checks for placed orders. Fills are settled without them.
+	 */
+	@Autowired(required = false)
+	public void setRiskPipeline(PreTradeRiskPipeline riskPipeline) {
+		this.riskPipeline = riskPipeline;
+	}
+
+	/**
+	 * Match the given order and rest its remainder in the book of its ticker.
+	 * @return the outcome of placing the order; fills are sent as position updates
+	 */
+	public CompletableFuture<TradeAck> placeOrder(LimitOrder order) {
+		if (order.getTicker() == null) {
+			return CompletableFuture.completedFuture(TradeAck.rejected(order, "Ticker is required"));
+		}
+		return execute(order.getTicker(), () -> doPlaceOrder(order));
+	}
+
+	/**
+	 * Remove a resting order of the given user.
+	 */
+	public CompletableFuture<TradeAck> cancelOrder(String username, String orderId) {
+		LimitOrder request = new LimitOrder();
+		request.setUsername(username);
+		request.setOrderId(orderId);
+		String ticker = this.restingOrders.get(OrderBook.getKey(username, orderId));
+		if (ticker == null) {
+			return CompletableFuture.completedFuture(TradeAck.rejected(request, "Unknown order"));
+		}
+		return execute(ticker, () -> doCancelOrder(ticker, request));
+	}
+
+	private CompletableFuture<TradeAck> execute(String ticker, OrderTask task) {
+		CompletableFuture<TradeAck> future = new CompletableFuture<>();
+		try {
+			this.orderSequencer.execute(ticker, () -> {
+				try {
+					future.complete(task.execute());
+				}
+				catch (RuntimeException ex) {
+					logger.error("Failed to process order for " + ticker, ex);
+					future.completeExceptionally(ex);
+				}
+			});
+		}
+		catch (RejectedExecutionException ex) {
+			future.completeExceptionally(ex);
+		}
+		return future;
+	}
+
+	private TradeAck doPlaceOrder(LimitOrder order) {
+		String reason = getRejectReason(order);
+		if (reason != null) {
+			return TradeAck.rejected(order, reason);
+		}
+		Book book = this.books.computeIfAbsent(order.getTicker(), Book::new);
+		if (order.getAction() == TradeAction.Sell) {
+			PortfolioPosition position =
+					this.portfolioService.findPortfolio(order.getUsername()).getPortfolioPosition(order.getTicker());
+			if (position.getShares() - book.getReservedShares(order.getUsername()) < order.getShares()) {
+				return TradeAck.rejected(order, "Not enough shares");
+			}
+		}
+		String key = OrderBook.getKey(order.getUsername(), order.getOrderId());
+		if (this.restingOrders.containsKey(key)) {
+			return TradeAck.rejected(order, "Duplicate order id");
+		}
+		// Until cancelled or, once matched, until settled
+		book.reserve(order.getAction(), order.getUsername(), order.getShares());
+
+		book.orders.submit(order, (buy, sell, priceTicks, shares) -> {
+			this.fillCount.incrementAndGet();
+			LimitOrder resting = (buy == order ? sell : buy);
+			if (resting.getRemaining() == 0) {
+				this.restingOrders.remove(OrderBook.getKey(resting.getUsername(), resting.getOrderId()));
+			}
+			settle(book, buy, sell, priceTicks, shares);
+		});
+
+		if (order.getRemaining() > 0) {
+			this.restingOrders.put(key, order.getTicker());
+		}
+		logger.debug("Placed " + order + " in " + book.orders);
+		return TradeAck.accepted(order, null);
+	}
+
+	private String getRejectReason(LimitOrder order) {
+		if (order.getOrderId() == null || order.getAction() == null) {
+			return "Order id and action are required";
+		}
+		if (order.getShares() < 1) {
+			return "Invalid number of shares";
+		}
+		if (order.getPriceTicks() < 1) {
+			return "Invalid price";
+		}
+		PortfolioPosition position =
+				this.portfolioService.findPortfolio(order.getUsername()).getPortfolioPosition(order.getTicker());
+		if (position == null) {
+			return "No position in " + order.getTicker();
+		}
+		if (this.riskPipeline == null) {
+			return null;
+		}
+		return this.riskPipeline.check(order, position, getBuyShares(order.getUsername(), order.getTicker()));
+	}
+
+	private TradeAck doCancelOrder(String ticker, LimitOrder request) {
+		Book book = this.books.get(ticker);
+		LimitOrder order = (book != null ? book.orders.cancel(request.getUsername(), request.getOrderId()) : null);
+		if (order == null) {
+			return TradeAck.rejected(request, "Unknown order");
+		}
+		this.restingOrders.remove(OrderBook.getKey(order.getUsername(), order.getOrderId()));
+		book.reserve(order.getAction(), order.getUsername(), -order.getRemaining());
+		return TradeAck.cancelled(order);
+	}
+
+	private void settle(Book book, LimitOrder buy, LimitOrder sell, long priceTicks, int shares) {
+		Trade sellTrade = createFill(sell, priceTicks, shares);
+		Trade buyTrade = createFill(buy, priceTicks, shares);
+		CompletableFuture<TradeAck> sold = this.tradeService.settleTrade(sellTrade);
+		// Settled or not, the position of the seller no longer needs to cover the fill
+		sold.whenComplete((ack, ex) -> release(book, sell, shares));
+		sold.thenCompose(ack -> {
+			if (ack.getStatus() != TradeAck.Status.Accepted) {
+				this.droppedFillCount.incrementAndGet();
+				logger.warn("Dropped fill of " + shares + " " + sell.getTicker() + " from " + sell +
+						" to " + buy + ": " + ack.getReason());
+				sendAck(sell.getUsername(), ack);
+				sendAck(buy.getUsername(), TradeAck.rejected(buyTrade, "Seller could not deliver"));
+				return CompletableFuture.completedFuture(ack);
+			}
+			return this.tradeService.settleTrade(buyTrade);
+		}).whenComplete((ack, ex) -> {
+			release(book, buy, shares);
+			if (ex != null) {
+				logger.error("Failed to settle fill of " + shares + " " + sell.getTicker(), ex);
+			}
+		});
+	}
+
+	private void release(Book book, LimitOrder order, int shares) {
+		try {
+			this.orderSequencer.execute(book.orders.getTicker(),
+					() -> book.reserve(order.getAction(), order.getUsername(), -shares));
+		}
+		catch (RejectedExecutionException ex) {
+			// Stopped, no more orders are placed
+		}
+	}
+
+	/**
+	 * Tell a user that a fill of their order was dropped, since the order is
+	 * no longer in the book.
+	 */
+	private void sendAck(String username, TradeAck ack) {
+		this.messagingTemplate.convertAndSendToUser(username, "/queue/trade-acks", ack);
+	}
+
+	private static Trade createFill(LimitOrder order, long priceTicks, int shares) {
+		Trade trade = new Trade();
+		trade.setOrderId(order.getOrderId());
+		trade.setUsername(order.getUsername());
+		trade.setTicker(order.getTicker());
+		trade.setAction(order.getAction());
+		trade.setShares(shares);
+		trade.setPrice(priceTicks, LimitOrder.PRICE_SCALE);
+		return trade;
+	}
+
+	@Override
+	public int getBuyShares(String username, String ticker) {
+		Book book = this.books.get(ticker);
+		return (book != null ? book.getBuyShares(username) : 0);
+	}
+
+	@Override
+	public int getReservedShares(String username, String ticker) {
+		Book book = this.books.get(ticker);
+		return (book != null ? book.getReservedShares(username) : 0);
+	}
+
+	/**
+	 * The number of orders resting in books.
+	 */
+	public int getRestingOrderCount() {
+		return this.restingOrders.size();
+	}
+
+	public long getFillCount() {
+		return this.fillCount.get();
+	}
+
+	/**
+	 * The number of fills not settled because the seller no longer held the shares.
+	 */
+	public long getDroppedFillCount() {
+		return this.droppedFillCount.get();
+	}
+
+	@Override
+	public void start() {
+		this.orderSequencer.start();
+	}
+
+	@Override
+	public void stop() {
+		this.orderSequencer.stop();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.orderSequencer.isRunning();
+	}
+
+
+	private interface OrderTask {
+
+		TradeAck execute();
+	}
+
+
+	/**
+	 * The book of a ticker and the shares of the orders of each user that are
+	 * resting or matched but not yet settled. The shares are changed on the
+	 * shard of the ticker only, but read from the shards of trades too.
+	 */
+	private static class Book {
+
+		private final OrderBook orders;
+
+		// Shares the position of the seller must cover
+		private final Map<String, Integer> reservedShares = new ConcurrentHashMap<>();
+
+		// Shares that may still add to the position of the buyer
+		private final Map<String, Integer> buyShares = new ConcurrentHashMap<>();
+
+
+		Book(String ticker) {
+			this.orders = new OrderBook(ticker);
+		}
+
+		int getReservedShares(String username) {
+			return this.reservedShares.getOrDefault(username, 0);
+		}
+
+		int getBuyShares(String username) {
+			return this.buyShares.getOrDefault(username, 0);
+		}
+
+		void reserve(TradeAction action, String username, int shares) {
+			Map<String, Integer> map = (action == TradeAction.Sell ? this.reservedShares : this.buyShares);
+			map.merge(username, shares, (a, b) -> (a + b != 0 ? a + b : null));
+		}
+	}
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.springframework.samples.portfolio.service.Trade.TradeAction;
+
+
+/**
+ * The resting limit orders of one ticker, matched by price and then time.
+ *
+ * <p>Each side keeps its price levels in a sorted map, best price first, and
+ * each level queues its orders in arrival order in a doubly-linked list
+ * formed by the orders themselves. An index by user and order id allows
+ * cancelling an order in O(1) without searching its level. Order ids need
+ * only be unique per user. An incoming order is matched
+ * against the best levels of the other side at the price of the resting
+ * orders, and any remainder rests in the book.
+ *
+ * <p>Not thread-safe: all calls for one book must come from one thread, e.g.
+ * through a {@link TradeSequencer} keyed by ticker.
+ */
+public class OrderBook {
+
+	private final String ticker;
+
+	// Highest price first
+	private final NavigableMap<Long, PriceLevel> bids = new TreeMap<>(Collections.reverseOrder());
+
+	// Lowest price first
+	private final NavigableMap<Long, PriceLevel> asks = new TreeMap<>();
+
+	private final Map<String, LimitOrder> orderLookup = new HashMap<>();
+
+
+	public OrderBook(String ticker) {
+		this.ticker = ticker;
+	}
+
+
+	public String getTicker() {
+		return this.ticker;
+	}
+
+	/**
+	 * Return the key of an order, unique across users.
+	 */
+	static String getKey(String username, String orderId) {
+		return username + ":" + orderId;
+	}
+
+	/**
+	 * Match the given order against resting orders and rest its remainder.
+	 * @param order the incoming order, with an order id unique for its user
+	 * @param handler notified of each fill, in matching order
+	 * @return the number of shares filled
+	 */
+	public int submit(LimitOrder order, FillHandler handler) {
+		if (order.getAction() == null || order.getShares() < 1 || order.getPriceTicks() < 1) {
+			throw new IllegalArgumentException("Invalid order " + order);
+		}
+		String key = getKey(order.getUsername(), order.getOrderId());
+		if (this.orderLookup.containsKey(key)) {
+			throw new IllegalArgumentException("Duplicate order id " + order.getOrderId());
+		}
+		boolean buy = (order.getAction() == TradeAction.Buy);
+		NavigableMap<Long, PriceLevel> opposite = (buy ? this.asks : this.bids);
+		int filled = 0;
+		while (order.getRemaining() > 0 && !opposite.isEmpty()) {
+			PriceLevel level = opposite.firstEntry().getValue();
+			if (buy ? level.price > order.getPriceTicks() : level.price < order.getPriceTicks()) {
+				break;
+			}
+			while (order.getRemaining() > 0 && level.head != null) {
+				LimitOrder resting = level.head;
+				int shares = Math.min(order.getRemaining(), resting.getRemaining());
+				order.fill(shares);
+				resting.fill(shares);
+				level.shares -= shares;
+				filled += shares;
+				if (resting.getRemaining() == 0) {
+					unlink(resting);
+					this.orderLookup.remove(resting.key);
+				}
+				handler.onFill(buy ? order : resting, buy ? resting : order, level.price, shares);
+			}
+			if (level.head == null) {
+				opposite.remove(level.price);
+			}
+		}
+		if (order.getRemaining() > 0) {
+			NavigableMap<Long, PriceLevel> side = (buy ? this.bids : this.asks);
+			PriceLevel level = side.get(order.getPriceTicks());
+			if (level == null) {
+				level = new PriceLevel(order.getPriceTicks());
+				side.put(level.price, level);
+			}
+			level.append(order);
+			order.key = key;
+			this.orderLookup.put(key, order);
+		}
+		return filled;
+	}
+
+	/**
+	 * Remove the resting order of the given user with the given id.
+	 * @return the removed order, or {@code null} if it is not in the book
+	 */
+	public LimitOrder cancel(String username, String orderId) {
+		LimitOrder order = this.orderLookup.remove(getKey(username, orderId));
+		if (order == null) {
+			return null;
+		}
+		PriceLevel level = order.level;
+		level.shares -= order.getRemaining();
+		unlink(order);
+		if (level.head == null) {
+			(order.getAction() == TradeAction.Buy ? this.bids : this.asks).remove(level.price);
+		}
+		return order;
+	}
+
+	private static void unlink(LimitOrder order) {
+		PriceLevel level = order.level;
+		if (order.previous != null) {
+			order.previous.next = order.next;
+		}
+		else {
+			level.head = order.next;
+		}
+		if (order.next != null) {
+			order.next.previous = order.previous;
+		}
+		else {
+			level.tail = order.previous;
+		}
+		order.level = null;
+		order.previous = null;
+		order.next = null;
+	}
+
+	public LimitOrder getOrder(String username, String orderId) {
+		return this.orderLookup.get(getKey(username, orderId));
+	}
+
+	/**
+	 * The number of resting orders.
+	 */
+	public int getOrderCount() {
+		return this.orderLookup.size();
+	}
+
+	/**
+	 * The highest bid in cents, or 0 if there are no bids.
+	 */
+	public long getBestBid() {
+		return (this.bids.isEmpty() ? 0 : this.bids.firstKey());
+	}
+
+	/**
+	 * The lowest ask in cents, or 0 if there are no asks.
+	 */
+	public long getBestAsk() {
+		return (this.asks.isEmpty() ? 0 : this.asks.firstKey());
+	}
+
+	/**
+	 * The number of resting shares at the given price in cents.
+	 */
+	public int getShares(TradeAction action, long priceTicks) {
+		PriceLevel level = (action == TradeAction.Buy ? this.bids : this.asks).get(priceTicks);
+		return (level != null ? level.shares : 0);
+	}
+
+	@Override
+	public String toString() {
+		return "OrderBook[" + this.ticker + ", orders=" + getOrderCount() +
+				", bid=" + getBestBid() + ", ask=" + getBestAsk() + "]";
+	}
+
+
+	/**
+	 * Callback for the fills of an incoming order.
+	 */
+	public interface FillHandler {
+
+		/**
+		 * @param buy the buy order, incoming or resting
+		 * @param sell the sell order, incoming or resting
+		 * @param priceTicks the price of the resting order in cents
+		 * @param shares the number of shares filled
+		 */
+		void onFill(LimitOrder buy, LimitOrder sell, long priceTicks, int shares);
+	}
+
+
+	/**
+	 * The orders at one price, in arrival order.
+	 */
+	static class PriceLevel {
+
+		private final long price;
+
+		private LimitOrder head;
+
+		private LimitOrder tail;
+
+		private int shares;
+
+
+		PriceLevel(long price) {
+			this.price = price;
+		}
+
+		void append(LimitOrder order) {
+			order.level = this;
+			order.previous = this.tail;
+			if (this.tail != null) {
+				this.tail.next = order;
+			}
+			else {
+				this.head = order;
+			}
+			this.tail = order;
+			this.shares += order.getRemaining();
+		}
+	}
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+
+/**
+ * The shares of users' orders that rest in a book or matched but are not yet
+ * settled, for trades outside the book to take into account. Implemented by
+ * the {@link MatchingEngine} and detected by the {@link TradeServiceImpl}.
+ *
+ * <p>Methods may be called from any thread, and return the shares as of a
+ * recent point in time.
+ */
+public interface OrderReservations {
+
+	/**
+	 * The shares of the given user's buy orders in the given ticker, which may
+	 * still add to the position.
+	 */
+	int getBuyShares(String username, String ticker);
+
+	/**
+	 * The shares of the given user's sell orders in the given ticker, which
+	 * the position must still cover.
+	 */
+	int getReservedShares(String username, String ticker);
+
+}
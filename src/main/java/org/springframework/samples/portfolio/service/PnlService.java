@@ -0,0 +1,262 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.samples.portfolio.Portfolio;
+import org.springframework.samples.portfolio.PortfolioPosition;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.AbstractSubProtocolEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+
+/**
+ * Values the portfolios of users subscribed to "/user/queue/pnl" at the
+ * latest quotes and sends them their market value and profit and loss.
+ *
+ * <p>Each quote adjusts the market value of the users holding its ticker,
+ * found through a {@link TickerInterestIndex} of the subscribed users, by the
+ * price change times the shares held, so the cost of a quote is proportional
+ * to its holders rather than to all portfolios. The index is separate from
+ * the one for "/user/queue/quotes", so valuing a portfolio does not also
+ * stream its quotes to the user. A user's valuation is dropped when the last
+ * session that subscribed disconnects. A trade marks the user's valuation for a
+ * full revaluation from the portfolio, which also corrects any drift from a
+ * quote that raced with the trade.
+ *
+ * <p>Changed valuations are sent every publish interval, so each user
+ * receives at most one update per interval however many quotes arrive.
+ */
+@Service
+public class PnlService implements QuoteListener, PositionListener, ApplicationListener<AbstractSubProtocolEvent> {
+
+	private static final Log logger = LogFactory.getLog(PnlService.class);
+
+	public static final String PNL_DESTINATION = "/user/queue/pnl";
+
+
+	private final SimpMessageSendingOperations messagingTemplate;
+
+	private final PortfolioService portfolioService;
+
+	// Holders of each ticker among the subscribed users
+	private final TickerInterestIndex holders;
+
+	// Latest price per ticker
+	private final Map<String, Double> prices = new ConcurrentHashMap<>();
+
+	private final Map<String, Valuation> valuations = new ConcurrentHashMap<>();
+
+	private final Queue<Valuation> changedValuations = new ConcurrentLinkedQueue<>();
+
+
+	@Autowired
+	public PnlService(SimpMessageSendingOperations messagingTemplate, PortfolioService portfolioService) {
+		this.messagingTemplate = messagingTemplate;
+		this.portfolioService = portfolioService;
+		this.holders = new TickerInterestIndex(portfolioService, PNL_DESTINATION);
+	}
+
+
+	@Override
+	public void onApplicationEvent(AbstractSubProtocolEvent event) {
+		this.holders.onApplicationEvent(event);
+		Principal user = event.getUser();
+		if (user == null) {
+			return;
+		}
+		if (event instanceof SessionSubscribeEvent) {
+			String destination = SimpMessageHeaderAccessor.wrap(event.getMessage()).getDestination();
+			if (PNL_DESTINATION.equals(destination)) {
+				register(user.getName());
+			}
+		}
+		else if (event instanceof SessionDisconnectEvent && !this.holders.isRegistered(user.getName())) {
+			Valuation valuation = this.valuations.remove(user.getName());
+			if (valuation != null) {
+				this.changedValuations.remove(valuation);
+			}
+		}
+	}
+
+	/**
+	 * Start valuing the portfolio of a subscribed user, unless already done.
+	 * The user is added to the holders with its session beforehand, so the
+	 * valuation is dropped again when the last session disconnects.
+	 */
+	private void register(String username) {
+		if (!this.holders.isRegistered(username)) {
+			// Disconnected meanwhile
+			return;
+		}
+		Valuation valuation = this.valuations.computeIfAbsent(username, Valuation::new);
+		// Send the current valuation to the new subscriber
+		valuation.markStale();
+		markChanged(valuation);
+	}
+
+	@Override
+	public void onQuote(Quote quote) {
+		double price = FixedPointPrice.toDouble(quote.getPriceTicks(), quote.getScale());
+		Double previous = this.prices.put(quote.getTicker(), price);
+		if (previous != null && previous == price) {
+			return;
+		}
+		for (String username : this.holders.getUsers(quote.getTicker())) {
+			Valuation valuation = this.valuations.get(username);
+			if (valuation != null) {
+				valuation.applyQuote(quote.getTicker(), price);
+				markChanged(valuation);
+			}
+		}
+	}
+
+	@Override
+	public void onPositionChange(String username, PortfolioPosition position) {
+		this.holders.onPositionChange(username, position);
+		Valuation valuation = this.valuations.get(username);
+		if (valuation != null) {
+			valuation.markStale();
+			markChanged(valuation);
+		}
+	}
+
+	private void markChanged(Valuation valuation) {
+		if (valuation.markChanged()) {
+			this.changedValuations.add(valuation);
+		}
+	}
+
+	/**
+	 * Send the valuations that changed since the last run. Set the interval
+	 * with the "portfolio.pnl.publish-interval" property.
+	 */
+	@Scheduled(fixedDelayString = "${portfolio.pnl.publish-interval:1000}")
+	public void sendValuations() {
+		Valuation valuation;
+		int count = this.changedValuations.size();
+		for (int i = 0; i < count && (valuation = this.changedValuations.poll()) != null; i++) {
+			PortfolioValuation value = valuation.getValue(this.prices, this.portfolioService);
+			if (logger.isTraceEnabled()) {
+				logger.trace("Sending " + value + " to " + valuation.username);
+			}
+			this.messagingTemplate.convertAndSendToUser(valuation.username, "/queue/pnl", value);
+		}
+	}
+
+	/**
+	 * Return the current valuation of the given user, or {@code null} if the
+	 * user is not registered.
+	 */
+	public PortfolioValuation getValuation(String username) {
+		Valuation valuation = this.valuations.get(username);
+		return (valuation != null ? valuation.getValue(this.prices, this.portfolioService) : null);
+	}
+
+
+	/**
+	 * The running valuation of one portfolio. Quotes are applied on the
+	 * publishing thread, while trades and sending happen on other threads.
+	 *
+	 * <p>The portfolio is looked up again on every full revaluation, since
+	 * the {@link PortfolioService} may have replaced it, e.g. by evicting and
+	 * reloading it. Any trade on the new instance marks the valuation stale.
+	 */
+	private static class Valuation {
+
+		private final String username;
+
+		// The portfolio as of the last full revaluation
+		private Portfolio portfolio;
+
+		// The price each position is valued at, so no price change is applied twice
+		private final Map<String, Double> valuedPrices = new HashMap<>();
+
+		private double marketValue;
+
+		private double cost;
+
+		private boolean stale = true;
+
+		private boolean changed;
+
+
+		Valuation(String username) {
+			this.username = username;
+		}
+
+		synchronized void applyQuote(String ticker, double price) {
+			if (this.stale) {
+				return;
+			}
+			PortfolioPosition position = this.portfolio.getPortfolioPosition(ticker);
+			if (position != null) {
+				// Unquoted positions are valued at their own price
+				double previous = this.valuedPrices.getOrDefault(ticker, position.getPrice());
+				this.marketValue += position.getShares() * (price - previous);
+				this.valuedPrices.put(ticker, price);
+			}
+		}
+
+		synchronized void markStale() {
+			this.stale = true;
+		}
+
+		/**
+		 * @return whether the valuation was unchanged until now
+		 */
+		synchronized boolean markChanged() {
+			boolean wasChanged = this.changed;
+			this.changed = true;
+			return !wasChanged;
+		}
+
+		synchronized PortfolioValuation getValue(Map<String, Double> prices, PortfolioService portfolioService) {
+			if (this.stale) {
+				double marketValue = 0;
+				double cost = 0;
+				this.portfolio = portfolioService.findPortfolio(this.username);
+				this.valuedPrices.clear();
+				for (PortfolioPosition position : this.portfolio.getPositions()) {
+					double price = prices.getOrDefault(position.getTicker(), position.getPrice());
+					this.valuedPrices.put(position.getTicker(), price);
+					marketValue += position.getShares() * price;
+					cost += position.getShares() * position.getPrice();
+				}
+				this.marketValue = marketValue;
+				this.cost = cost;
+				this.stale = false;
+			}
+			this.changed = false;
+			return new PortfolioValuation(this.marketValue, this.cost, System.currentTimeMillis());
+		}
+	}
+
+}
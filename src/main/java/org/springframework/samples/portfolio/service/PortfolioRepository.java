@@ -0,0 +1,48 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.util.function.BiConsumer;
+
+import org.springframework.samples.portfolio.Portfolio;
+
+
+/**
+ * Durable storage of portfolios, e.g. files or a database, read and written
+ * by {@link CachingPortfolioService} when portfolios are loaded and evicted.
+ * Called while users wait for their portfolio to load, so it may block, but
+ * should not take long.
+ */
+public interface PortfolioRepository {
+
+	/**
+	 * Return the stored portfolio of the given user, or {@code null} if the
+	 * user is unknown.
+	 */
+	Portfolio load(String username);
+
+	/**
+	 * Store the portfolio of the given user, replacing any stored before.
+	 * @param portfolio a {@link Portfolio#copy() copy} that does not change while saved
+	 */
+	void save(String username, Portfolio portfolio);
+
+	/**
+	 * Pass every stored username and portfolio to the given action.
+	 */
+	void forEach(BiConsumer<String, Portfolio> action);
+
+}
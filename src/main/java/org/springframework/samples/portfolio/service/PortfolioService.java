@@ -15,6 +15,8 @@
  */
 package org.springframework.samples.portfolio.service;
 
+import java.util.function.BiConsumer;
+
 import org.springframework.samples.portfolio.Portfolio;
 
 
@@ -22,4 +24,13 @@ public interface PortfolioService {
 
 	Portfolio findPortfolio(String username);
 
+	/**
+	 * Pass every username and portfolio to the given action.
+	 * <p>Trades keep executing during the iteration, so a portfolio may change
+	 * while or after it is passed to the action, and users added meanwhile may
+	 * or may not be included. Actions that need a consistent view of one
+	 * portfolio, e.g. for a snapshot, should take a {@link Portfolio#copy()}.
+	 */
+	void forEachPortfolio(BiConsumer<String, Portfolio> action);
+
 }
@@ -16,47 +16,81 @@
 
 package org.springframework.samples.portfolio.service;
 
+import org.springframework.context.annotation.Profile;
 import org.springframework.samples.portfolio.Portfolio;
 import org.springframework.samples.portfolio.PortfolioPosition;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
 /**
+ * Keeps all portfolios in memory. Replaced by {@link MappedPortfolioService}
+ * with the "portfolio-mapped" profile, and by {@link CachingPortfolioService}
+ * with the "portfolio-cache" profile.
+ *
  * @author Rob Winch
  */
 @Service
+@Profile("!portfolio-mapped & !portfolio-cache")
 public class PortfolioServiceImpl implements PortfolioService {
 
-	// user -> Portfolio
-	private final Map<String, Portfolio> portfolioLookup = new HashMap<>();
+	private final PortfolioStore portfolioStore = new PortfolioStore(64, 1024);
 
 
 	public PortfolioServiceImpl() {
+		createSamplePortfolios().forEach(this.portfolioStore::putIfAbsent);
+	}
+
+
+	/**
+	 * The portfolios of the sample users.
+	 */
+	static Map<String, Portfolio> createSamplePortfolios() {
+		Map<String, Portfolio> portfolios = new LinkedHashMap<>();
 
 		Portfolio portfolio = new Portfolio();
 		portfolio.addPosition(new PortfolioPosition("Citrix Systems, Inc.", "CTXS", 24.30, 75));
 		portfolio.addPosition(new PortfolioPosition("Dell Inc.", "DELL", 13.44, 50));
 		portfolio.addPosition(new PortfolioPosition("Microsoft", "MSFT", 34.15, 33));
 		portfolio.addPosition(new PortfolioPosition("Oracle", "ORCL", 31.22, 45));
-		this.portfolioLookup.put("fabrice", portfolio);
+		portfolios.put("fabrice", portfolio);
 
 		portfolio = new Portfolio();
 		portfolio.addPosition(new PortfolioPosition("EMC Corporation", "EMC", 24.30, 75));
 		portfolio.addPosition(new PortfolioPosition("Google Inc", "GOOG", 905.09, 5));
 		portfolio.addPosition(new PortfolioPosition("VMware, Inc.", "VMW", 65.58, 23));
 		portfolio.addPosition(new PortfolioPosition("Red Hat", "RHT", 48.30, 15));
-		this.portfolioLookup.put("paulson", portfolio);
+		portfolios.put("paulson", portfolio);
+		return portfolios;
 	}
 
 
+	@Override
 	public Portfolio findPortfolio(String username) {
-		Portfolio portfolio = this.portfolioLookup.get(username);
+		Portfolio portfolio = this.portfolioStore.get(username);
 		if (portfolio == null) {
 			throw new IllegalArgumentException(username);
 		}
 		return portfolio;
 	}
 
+	@Override
+	public void forEachPortfolio(BiConsumer<String, Portfolio> action) {
+		this.portfolioStore.forEach(action);
+	}
+
+	/**
+	 * Add the portfolio of a user, e.g. when loading users from another system.
+	 * @return {@code false} if the user already has a portfolio
+	 */
+	public boolean addPortfolio(String username, Portfolio portfolio) {
+		return (this.portfolioStore.putIfAbsent(username, portfolio) == null);
+	}
+
+	public int getPortfolioCount() {
+		return this.portfolioStore.size();
+	}
+
 }
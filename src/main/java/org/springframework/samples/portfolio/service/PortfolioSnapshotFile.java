@@ -0,0 +1,167 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.springframework.samples.portfolio.Portfolio;
+import org.springframework.samples.portfolio.PortfolioPosition;
+
+
+/**
+ * Binary layout of a snapshot of portfolios, big-endian:
+ * <pre>
+ * header:      int magic, int version, long timestamp (millis)
+ * instruments: int count, then per instrument: UTF ticker, UTF company, double price
+ * portfolios:  int count, then per portfolio: UTF username, long version,
+ *              int position count, then per position: int instrument, int shares
+ * trailer:     int CRC32 of all preceding bytes
+ * </pre>
+ * Positions refer to a table of distinct instruments, so each position takes
+ * 8 bytes no matter how many users hold the same ticker.
+ */
+public abstract class PortfolioSnapshotFile {
+
+	public static final int MAGIC = 0x50534E50;  // "PSNP"
+
+	public static final int VERSION = 1;
+
+
+	/**
+	 * Write the given portfolios, which should be {@link Portfolio#copy()
+	 * copies} if they may change while written, and force the file to the
+	 * storage device.
+	 */
+	public static void write(Path path, Map<String, Portfolio> portfolios) throws IOException {
+		Map<String, Integer> instrumentLookup = new HashMap<>();
+		List<PortfolioPosition> instruments = new ArrayList<>();
+		for (Portfolio portfolio : portfolios.values()) {
+			for (PortfolioPosition position : portfolio.getPositions()) {
+				if (instrumentLookup.putIfAbsent(getInstrumentKey(position), instruments.size()) == null) {
+					instruments.add(position);
+				}
+			}
+		}
+
+		CRC32 crc = new CRC32();
+		OutputStream fileOut = Files.newOutputStream(path);
+		try (DataOutputStream out = new DataOutputStream(
+				new CheckedOutputStream(new BufferedOutputStream(fileOut, 64 * 1024), crc))) {
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(System.currentTimeMillis());
+			out.writeInt(instruments.size());
+			for (PortfolioPosition instrument : instruments) {
+				out.writeUTF(instrument.getTicker());
+				out.writeUTF(instrument.getCompany());
+				out.writeDouble(instrument.getPrice());
+			}
+			out.writeInt(portfolios.size());
+			for (Map.Entry<String, Portfolio> entry : portfolios.entrySet()) {
+				Portfolio portfolio = entry.getValue();
+				List<PortfolioPosition> positions = portfolio.getPositions();
+				out.writeUTF(entry.getKey());
+				out.writeLong(portfolio.getVersion());
+				out.writeInt(positions.size());
+				for (PortfolioPosition position : positions) {
+					out.writeInt(instrumentLookup.get(getInstrumentKey(position)));
+					out.writeInt(position.getShares());
+				}
+			}
+			out.writeInt((int) crc.getValue());
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			channel.force(true);
+		}
+	}
+
+	private static String getInstrumentKey(PortfolioPosition position) {
+		return position.getTicker() + '\0' + position.getCompany() + '\0' + position.getPrice();
+	}
+
+	/**
+	 * Read a snapshot and pass each username and portfolio to the given
+	 * consumer once the whole file has been verified.
+	 * @return the number of portfolios read
+	 * @throws IllegalStateException if the file is not a valid snapshot
+	 */
+	public static int read(Path path, BiConsumer<String, Portfolio> consumer) throws IOException {
+		Map<String, Portfolio> portfolios = new HashMap<>();
+		CRC32 crc = new CRC32();
+		InputStream fileIn = Files.newInputStream(path);
+		try (DataInputStream in = new DataInputStream(
+				new CheckedInputStream(new BufferedInputStream(fileIn, 64 * 1024), crc))) {
+
+			if (in.readInt() != MAGIC) {
+				throw new IllegalStateException("Not a portfolio snapshot: " + path);
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IllegalStateException("Unsupported portfolio snapshot version " + version);
+			}
+			in.readLong();
+			PortfolioPosition[] instruments = new PortfolioPosition[in.readInt()];
+			for (int i = 0; i < instruments.length; i++) {
+				String ticker = in.readUTF();
+				instruments[i] = new PortfolioPosition(in.readUTF(), ticker, in.readDouble(), 0);
+			}
+			int portfolioCount = in.readInt();
+			for (int i = 0; i < portfolioCount; i++) {
+				String username = in.readUTF();
+				long portfolioVersion = in.readLong();
+				int positionCount = in.readInt();
+				List<PortfolioPosition> positions = new ArrayList<>(positionCount);
+				for (int j = 0; j < positionCount; j++) {
+					PortfolioPosition instrument = instruments[in.readInt()];
+					positions.add(new PortfolioPosition(instrument, in.readInt()));
+				}
+				Portfolio portfolio = new Portfolio();
+				portfolio.restore(positions, portfolioVersion);
+				portfolios.put(username, portfolio);
+			}
+			int checksum = (int) crc.getValue();
+			if (in.readInt() != checksum) {
+				throw new IllegalStateException("Corrupt portfolio snapshot: " + path);
+			}
+		}
+		catch (EOFException ex) {
+			throw new IllegalStateException("Incomplete portfolio snapshot: " + path, ex);
+		}
+		portfolios.forEach(consumer);
+		return portfolios.size();
+	}
+
+}
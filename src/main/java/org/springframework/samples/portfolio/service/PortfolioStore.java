@@ -0,0 +1,109 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.springframework.samples.portfolio.Portfolio;
+
+
+/**
+ * Portfolios by username, spread over a fixed number of shards by the hash
+ * of the username.
+ *
+ * <p>Each shard is a {@link ConcurrentHashMap}, so lookups are O(1) and
+ * lock-free and users in different shards never contend on updates. Sharding
+ * also bounds the size of each hash table: with millions of users a single
+ * map would grow by allocating one table of tens of megabytes at a time, a
+ * humongous allocation for G1, whereas shards grow one small table at a time.
+ */
+public class PortfolioStore {
+
+	private final Map<String, Portfolio>[] shards;
+
+	private final int mask;
+
+
+	/**
+	 * @param shardCount the number of shards, rounded up to a power of two
+	 * @param expectedSize the expected number of portfolios, to size shards up front
+	 */
+	public PortfolioStore(int shardCount, int expectedSize) {
+		int count = (shardCount > 1 ? Integer.highestOneBit(shardCount - 1) << 1 : 1);
+		@SuppressWarnings("unchecked")
+		Map<String, Portfolio>[] shards = (Map<String, Portfolio>[]) new Map<?, ?>[count];
+		this.shards = shards;
+		for (int i = 0; i < count; i++) {
+			this.shards[i] = new ConcurrentHashMap<>(Math.max(expectedSize / count, 16));
+		}
+		this.mask = count - 1;
+	}
+
+
+	private Map<String, Portfolio> getShard(String username) {
+		int hash = username.hashCode();
+		// Spread high bits, as ConcurrentHashMap uses the low ones within the shard
+		return this.shards[(hash ^ (hash >>> 16) ^ (hash >>> 24)) & this.mask];
+	}
+
+	/**
+	 * Return the portfolio of the given user, or {@code null}.
+	 */
+	public Portfolio get(String username) {
+		return getShard(username).get(username);
+	}
+
+	/**
+	 * Add the portfolio of the given user unless one exists.
+	 * @return the existing portfolio, or {@code null} if the given one was added
+	 */
+	public Portfolio putIfAbsent(String username, Portfolio portfolio) {
+		return getShard(username).putIfAbsent(username, portfolio);
+	}
+
+	public Portfolio computeIfAbsent(String username, Function<String, Portfolio> factory) {
+		return getShard(username).computeIfAbsent(username, factory);
+	}
+
+	public Portfolio remove(String username) {
+		return getShard(username).remove(username);
+	}
+
+	/**
+	 * Pass every username and portfolio to the given action, shard by shard.
+	 */
+	public void forEach(BiConsumer<String, Portfolio> action) {
+		for (Map<String, Portfolio> shard : this.shards) {
+			shard.forEach(action);
+		}
+	}
+
+	public int size() {
+		int size = 0;
+		for (Map<String, Portfolio> shard : this.shards) {
+			size += shard.size();
+		}
+		return size;
+	}
+
+	public int getShardCount() {
+		return this.shards.length;
+	}
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+
+/**
+ * The value of a user's portfolio at the latest quotes, sent on "/user/queue/pnl".
+ */
+public class PortfolioValuation {
+
+	private final double marketValue;
+
+	private final double cost;
+
+	private final long timestamp;
+
+
+	public PortfolioValuation(double marketValue, double cost, long timestamp) {
+		this.marketValue = marketValue;
+		this.cost = cost;
+		this.timestamp = timestamp;
+	}
+
+
+	/**
+	 * The shares of each position at the latest quote of its ticker, or at
+	 * the position price for tickers not quoted yet.
+	 */
+	public double getMarketValue() {
+		return this.marketValue;
+	}
+
+	/**
+	 * The shares of each position at the position price.
+	 */
+	public double getCost() {
+		return this.cost;
+	}
+
+	public double getProfitAndLoss() {
+		return this.marketValue - this.cost;
+	}
+
+	public long getTimestamp() {
+		return this.timestamp;
+	}
+
+	@Override
+	public String toString() {
+		return "PortfolioValuation [marketValue=" + this.marketValue + ", cost=" + this.cost + "]";
+	}
+
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import org.springframework.samples.portfolio.PortfolioPosition;
+
+
+/**
+ * Callback for positions changed by an executed trade. Beans of this type are
+ * detected automatically by the {@link TradeServiceImpl}.
+ *
+ * <p>Listeners are invoked on the thread that executed the trade, right after
+ * the portfolio was updated or, with a {@link TradeJournal}, once the trade
+ * is durable. They must not block.
+ */
+public interface PositionListener {
+
+	void onPositionChange(String username, PortfolioPosition position);
+
+}
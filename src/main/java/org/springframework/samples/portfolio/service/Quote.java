@@ -17,16 +17,33 @@ package org.springframework.samples.portfolio.service;
 
 import java.math.BigDecimal;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
+
+/**
+ * A price for a ticker held as fixed-point ticks and a scale, see
+ * {@link FixedPointPrice}. Serialized as {@code {"ticker":..., "price":...}}
+ * with the price as a plain JSON number.
+ */
+@JsonSerialize(using = QuoteSerializer.class)
 public class Quote {
 
 	private String ticker;
 
-	private BigDecimal price;
+	private long priceTicks;
+
+	private int scale;
+
+
+	public Quote(String ticker, long priceTicks, int scale) {
+		this.ticker = ticker;
+		this.priceTicks = priceTicks;
+		this.scale = scale;
+	}
 
 	public Quote(String ticker, BigDecimal price) {
 		this.ticker = ticker;
-		this.price = price;
+		setPrice(price);
 	}
 
 	private Quote() {
@@ -40,16 +57,29 @@ public class Quote {
 		this.ticker = ticker;
 	}
 
+	public long getPriceTicks() {
+		return this.priceTicks;
+	}
+
+	public int getScale() {
+		return this.scale;
+	}
+
+	/**
+	 * Return the price as a {@code BigDecimal}. This allocates and is meant
+	 * for clients and tests rather than for the quote publishing path.
+	 */
 	public BigDecimal getPrice() {
-		return this.price;
+		return FixedPointPrice.toBigDecimal(this.priceTicks, this.scale);
 	}
 
 	public void setPrice(BigDecimal price) {
-		this.price = price;
+		this.scale = Math.min(Math.max(price.scale(), 0), FixedPointPrice.MAX_SCALE);
+		this.priceTicks = FixedPointPrice.fromBigDecimal(price, this.scale);
 	}
 
 	@Override
 	public String toString() {
-		return "Quote [ticker=" + this.ticker + ", price=" + this.price + "]";
+		return "Quote [ticker=" + this.ticker + ", price=" + getPrice() + "]";
 	}
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+
+/**
+ * All quotes that changed in one publishing round, sent as a single message.
+ * Serialized as parallel arrays to avoid repeating field names:
+ * {@code {"tickers":["GOOG","MSFT"],"prices":[893.49,34.21]}}.
+ */
+@JsonSerialize(using = QuoteBatchSerializer.class)
+public class QuoteBatch {
+
+	private final List<Quote> quotes = new ArrayList<>();
+
+
+	public void add(Quote quote) {
+		this.quotes.add(quote);
+	}
+
+	public List<Quote> getQuotes() {
+		return this.quotes;
+	}
+
+	public boolean isEmpty() {
+		return this.quotes.isEmpty();
+	}
+
+	public void clear() {
+		this.quotes.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "QuoteBatch[size=" + this.quotes.size() + "]";
+	}
+
+}
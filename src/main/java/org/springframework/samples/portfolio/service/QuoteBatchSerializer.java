@@ -0,0 +1,56 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+
+/**
+ * Writes a {@link QuoteBatch} as parallel "tickers" and "prices" arrays.
+ */
+public class QuoteBatchSerializer extends StdSerializer<QuoteBatch> {
+
+	private static final long serialVersionUID = 1L;
+
+
+	public QuoteBatchSerializer() {
+		super(QuoteBatch.class);
+	}
+
+	@Override
+	public void serialize(QuoteBatch batch, JsonGenerator generator, SerializerProvider provider) throws IOException {
+		List<Quote> quotes = batch.getQuotes();
+		generator.writeStartObject();
+		generator.writeArrayFieldStart("tickers");
+		for (int i = 0; i < quotes.size(); i++) {
+			generator.writeString(quotes.get(i).getTicker());
+		}
+		generator.writeEndArray();
+		generator.writeArrayFieldStart("prices");
+		for (int i = 0; i < quotes.size(); i++) {
+			Quote quote = quotes.get(i);
+			QuoteSerializer.writePrice(quote.getPriceTicks(), quote.getScale(), generator);
+		}
+		generator.writeEndArray();
+		generator.writeEndObject();
+	}
+
+}
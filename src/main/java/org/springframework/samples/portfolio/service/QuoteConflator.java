@@ -0,0 +1,87 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+
+/**
+ * Holds the latest {@link Quote} per ticker between publishing rounds.
+ * Producers {@link #offer} quotes as fast as they arrive and a publisher
+ * {@link #flush flushes} at its own rate, seeing only the newest price of
+ * each ticker that changed since the previous flush.
+ *
+ * <p>Safe for concurrent producers and a single flushing thread.
+ */
+public class QuoteConflator {
+
+	private final Map<String, Quote> latest = new ConcurrentHashMap<>();
+
+	private final AtomicLong offeredCount = new AtomicLong();
+
+	private final AtomicLong conflatedCount = new AtomicLong();
+
+
+	public void offer(Quote quote) {
+		this.offeredCount.incrementAndGet();
+		if (this.latest.put(quote.getTicker(), quote) != null) {
+			this.conflatedCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Hand the pending quotes to the given consumer and clear them.
+	 * @return the number of quotes flushed
+	 */
+	public int flush(Consumer<Quote> consumer) {
+		int count = 0;
+		for (Quote quote : this.latest.values()) {
+			if (this.latest.remove(quote.getTicker(), quote)) {
+				consumer.accept(quote);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public int getPendingCount() {
+		return this.latest.size();
+	}
+
+	/**
+	 * The total number of quotes offered.
+	 */
+	public long getOfferedCount() {
+		return this.offeredCount.get();
+	}
+
+	/**
+	 * The number of quotes replaced by a newer one before being flushed.
+	 */
+	public long getConflatedCount() {
+		return this.conflatedCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return "QuoteConflator[pending=" + getPendingCount() + ", offered=" + getOfferedCount() +
+				", conflated=" + getConflatedCount() + "]";
+	}
+
+}
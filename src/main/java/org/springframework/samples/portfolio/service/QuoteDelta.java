@@ -0,0 +1,103 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+
+/**
+ * One entry of the delta-encoded quote stream. Each ticker has its own
+ * sequence number, incremented by one per message, so clients can detect a
+ * gap and ask for a new snapshot.
+ *
+ * <p>A full entry carries the price in ticks and its scale:
+ * {@code {"t":"GOOG","s":1,"k":89349,"x":2}}. A delta entry carries only the
+ * change in ticks since the previous sequence: {@code {"t":"GOOG","s":2,"d":-13}}.
+ *
+ * @see QuoteDeltaEncoder
+ */
+@JsonSerialize(using = QuoteDeltaSerializer.class)
+public class QuoteDelta {
+
+	private final String ticker;
+
+	private final long sequence;
+
+	private final long priceTicks;
+
+	private final int scale;
+
+	private final long change;
+
+	private final boolean full;
+
+
+	private QuoteDelta(String ticker, long sequence, long priceTicks, int scale, long change, boolean full) {
+		this.ticker = ticker;
+		this.sequence = sequence;
+		this.priceTicks = priceTicks;
+		this.scale = scale;
+		this.change = change;
+		this.full = full;
+	}
+
+	public static QuoteDelta full(String ticker, long sequence, long priceTicks, int scale) {
+		return new QuoteDelta(ticker, sequence, priceTicks, scale, 0, true);
+	}
+
+	public static QuoteDelta change(String ticker, long sequence, long priceTicks, int scale, long change) {
+		return new QuoteDelta(ticker, sequence, priceTicks, scale, change, false);
+	}
+
+
+	public String getTicker() {
+		return this.ticker;
+	}
+
+	public long getSequence() {
+		return this.sequence;
+	}
+
+	public long getPriceTicks() {
+		return this.priceTicks;
+	}
+
+	public int getScale() {
+		return this.scale;
+	}
+
+	/**
+	 * The change in ticks since the previous sequence, for a non-full entry.
+	 */
+	public long getChange() {
+		return this.change;
+	}
+
+	/**
+	 * Whether the entry carries the full price rather than a change.
+	 */
+	public boolean isFull() {
+		return this.full;
+	}
+
+	@Override
+	public String toString() {
+		return "QuoteDelta [ticker=" + this.ticker + ", sequence=" + this.sequence +
+				(this.full ? ", price=" + FixedPointPrice.toBigDecimal(this.priceTicks, this.scale) :
+						", change=" + this.change) + "]";
+	}
+
+}
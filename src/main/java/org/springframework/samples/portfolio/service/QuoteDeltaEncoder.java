@@ -0,0 +1,84 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Turns quotes into {@link QuoteDelta} entries, keeping the last sequence and
+ * price per ticker, and provides a consistent snapshot of that state for
+ * clients that subscribe or need to resynchronize after a gap.
+ *
+ * <p>Entries for the same ticker must be encoded and published from one
+ * thread at a time so that sequence numbers go out in order.
+ */
+public class QuoteDeltaEncoder {
+
+	private final Map<String, TickerState> states = new ConcurrentHashMap<>();
+
+
+	public QuoteDelta encode(Quote quote) {
+		TickerState state = this.states.computeIfAbsent(quote.getTicker(), TickerState::new);
+		return state.update(quote.getPriceTicks(), quote.getScale());
+	}
+
+	/**
+	 * Return a full entry with the current sequence and price of every ticker.
+	 */
+	public List<QuoteDelta> getSnapshot() {
+		List<QuoteDelta> snapshot = new ArrayList<>(this.states.size());
+		for (TickerState state : this.states.values()) {
+			snapshot.add(state.snapshot());
+		}
+		return snapshot;
+	}
+
+
+	private static class TickerState {
+
+		private final String ticker;
+
+		private long sequence;
+
+		private long priceTicks;
+
+		private int scale;
+
+
+		TickerState(String ticker) {
+			this.ticker = ticker;
+		}
+
+		synchronized QuoteDelta update(long priceTicks, int scale) {
+			long change = priceTicks - this.priceTicks;
+			boolean full = (this.sequence == 0 || scale != this.scale);
+			this.sequence++;
+			this.priceTicks = priceTicks;
+			this.scale = scale;
+			return (full ? QuoteDelta.full(this.ticker, this.sequence, priceTicks, scale) :
+					QuoteDelta.change(this.ticker, this.sequence, priceTicks, scale, change));
+		}
+
+		synchronized QuoteDelta snapshot() {
+			return QuoteDelta.full(this.ticker, this.sequence, this.priceTicks, this.scale);
+		}
+	}
+
+}
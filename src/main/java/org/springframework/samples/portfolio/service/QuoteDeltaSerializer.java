@@ -0,0 +1,52 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+
+/**
+ * Writes a {@link QuoteDelta} with single letter field names.
+ */
+public class QuoteDeltaSerializer extends StdSerializer<QuoteDelta> {
+
+	private static final long serialVersionUID = 1L;
+
+
+	public QuoteDeltaSerializer() {
+		super(QuoteDelta.class);
+	}
+
+	@Override
+	public void serialize(QuoteDelta delta, JsonGenerator generator, SerializerProvider provider) throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField("t", delta.getTicker());
+		generator.writeNumberField("s", delta.getSequence());
+		if (delta.isFull()) {
+			generator.writeNumberField("k", delta.getPriceTicks());
+			generator.writeNumberField("x", delta.getScale());
+		}
+		else {
+			generator.writeNumberField("d", delta.getChange());
+		}
+		generator.writeEndObject();
+	}
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.util.function.Consumer;
+
+
+/**
+ * A source of quotes consumed by the {@link QuoteService}.
+ *
+ * <p>A feed emits quotes from its own thread(s) once started. The consumer
+ * must be thread-safe and should return quickly.
+ *
+ * @see RandomQuoteFeed
+ * @see TickFileQuoteFeed
+ */
+public interface QuoteFeed {
+
+	/**
+	 * Start emitting quotes to the given consumer.
+	 */
+	void start(Consumer<Quote> consumer);
+
+	/**
+	 * Stop emitting quotes and release any resources.
+	 */
+	void stop();
+
+}
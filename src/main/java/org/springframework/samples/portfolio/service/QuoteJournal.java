@@ -0,0 +1,303 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Records every published quote in an append-only journal of
+ * {@link TickFile tick file} segments that can be replayed with the
+ * {@link TickFileQuoteFeed} or read by time with {@link QuoteJournalReader}.
+ *
+ * <p>{@link #onQuote} copies the quote into a pre-allocated ring buffer and
+ * returns without blocking or allocating; if the ring is full the quote is
+ * dropped and counted. A writer thread drains the ring through a
+ * {@code FileChannel}, starts a new segment when the current one reaches the
+ * configured size, and writes a sparse time index next to each segment.
+ * Quotes with tickers a tick file cannot hold, i.e. longer than 8 chars or
+ * not ASCII, are skipped and counted.
+ *
+ * <p>The ring has a single producer: quotes must be published from one thread
+ * at a time, which is the case for {@link QuoteService}.
+ *
+ * <p>Active with the "quote-journal" profile.
+ */
+@Component
+@Profile("quote-journal")
+public class QuoteJournal implements QuoteListener, SmartLifecycle {
+
+	private static final Log logger = LogFactory.getLog(QuoteJournal.class);
+
+	/** Number of records between two entries of a segment's time index. */
+	static final int INDEX_INTERVAL = 4096;
+
+	static final String SEGMENT_SUFFIX = ".ticks";
+
+	static final String INDEX_SUFFIX = ".idx";
+
+
+	private final Path directory;
+
+	private long segmentSize = 64 * 1024 * 1024;
+
+	private final int mask;
+
+	private final long[] timestamps;
+
+	private final long[] tickers;
+
+	private final long[] prices;
+
+	private final int[] scales;
+
+	// Next slot to write, advanced by the producer only
+	private final AtomicLong head = new AtomicLong();
+
+	// Next slot to read, advanced by the writer thread only
+	private final AtomicLong tail = new AtomicLong();
+
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	private final AtomicLong writtenCount = new AtomicLong();
+
+	private final AtomicLong skippedCount = new AtomicLong();
+
+	private int segmentCount;
+
+	private volatile Thread writerThread;
+
+
+	/**
+	 * @param directory the directory for segment files, created if necessary
+	 * @param capacity how many quotes may wait to be written, rounded up to a power of two
+	 */
+	public QuoteJournal(
+			@Value("${portfolio.quote.journal.path:${java.io.tmpdir}/portfolio-quotes}") String directory,
+			@Value("${portfolio.quote.journal.capacity:65536}") int capacity) {
+
+		this.directory = Paths.get(directory);
+		int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+		this.mask = size - 1;
+		this.timestamps = new long[size];
+		this.tickers = new long[size];
+		this.prices = new long[size];
+		this.scales = new int[size];
+	}
+
+
+	/**
+	 * The size in bytes at which to start a new segment. Set with the
+	 * "portfolio.quote.journal.segment-size" property.
+	 * <p>By default this is set to 64MB.
+	 */
+	@Value("${portfolio.quote.journal.segment-size:67108864}")
+	public void setSegmentSize(long segmentSize) {
+		this.segmentSize = Math.min(Math.max(segmentSize, TickFile.HEADER_SIZE + TickFile.RECORD_SIZE), 1L << 30);
+	}
+
+	public Path getDirectory() {
+		return this.directory;
+	}
+
+	/**
+	 * The number of quotes dropped because the writer could not keep up.
+	 */
+	public long getDroppedCount() {
+		return this.droppedCount.get();
+	}
+
+	public long getWrittenCount() {
+		return this.writtenCount.get();
+	}
+
+	/**
+	 * The number of quotes not recorded because their ticker cannot be encoded.
+	 */
+	public long getSkippedCount() {
+		return this.skippedCount.get();
+	}
+
+	@Override
+	public void onQuote(Quote quote) {
+		if (!TickFile.isEncodable(quote.getTicker())) {
+			if (this.skippedCount.getAndIncrement() == 0) {
+				logger.warn("Not recording quotes of tickers longer than " + TickFile.MAX_TICKER_LENGTH +
+						" chars or not ASCII, e.g. " + quote.getTicker());
+			}
+			return;
+		}
+		long head = this.head.get();
+		if (head - this.tail.get() > this.mask) {
+			this.droppedCount.incrementAndGet();
+			return;
+		}
+		int slot = (int) head & this.mask;
+		this.timestamps[slot] = System.currentTimeMillis();
+		this.tickers[slot] = TickFile.encodeTicker(quote.getTicker());
+		this.prices[slot] = quote.getPriceTicks();
+		this.scales[slot] = quote.getScale();
+		this.head.lazySet(head + 1);
+	}
+
+	@Override
+	public synchronized void start() {
+		Thread thread = new Thread(this::writeQuotes, "quoteJournal");
+		thread.setDaemon(true);
+		this.writerThread = thread;
+		thread.start();
+	}
+
+	@Override
+	public synchronized void stop() {
+		Thread thread = this.writerThread;
+		this.writerThread = null;
+		if (thread != null) {
+			LockSupport.unpark(thread);
+			try {
+				thread.join(5000);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return (this.writerThread != null);
+	}
+
+	@Override
+	public int getPhase() {
+		// Start before and stop after the QuoteService
+		return Integer.MAX_VALUE - 1;
+	}
+
+	private void writeQuotes() {
+		Segment segment = null;
+		try {
+			Files.createDirectories(this.directory);
+			while (true) {
+				boolean stopping = (this.writerThread == null);
+				long tail = this.tail.get();
+				long head = this.head.get();
+				if (tail == head) {
+					if (segment != null) {
+						segment.flush();
+					}
+					if (stopping) {
+						break;
+					}
+					LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+					continue;
+				}
+				for (long sequence = tail; sequence < head; sequence++) {
+					int slot = (int) sequence & this.mask;
+					if (segment == null || segment.size() >= this.segmentSize) {
+						if (segment != null) {
+							segment.close();
+						}
+						segment = openSegment(this.timestamps[slot]);
+					}
+					segment.write(this.timestamps[slot], this.tickers[slot], this.prices[slot], this.scales[slot]);
+				}
+				// Free the slots before counting them as written
+				this.tail.set(head);
+				this.writtenCount.addAndGet(head - tail);
+			}
+		}
+		catch (IOException ex) {
+			logger.error("Quote journal in " + this.directory + " failed, no more quotes will be recorded", ex);
+		}
+		finally {
+			if (segment != null) {
+				try {
+					segment.close();
+				}
+				catch (IOException ex) {
+					logger.error("Failed to close quote journal segment", ex);
+				}
+			}
+		}
+	}
+
+	private Segment openSegment(long firstTimestamp) throws IOException {
+		String name = String.format("%013d-%06d", firstTimestamp, this.segmentCount++);
+		logger.debug("Starting quote journal segment " + name);
+		return new Segment(this.directory.resolve(name + SEGMENT_SUFFIX), this.directory.resolve(name + INDEX_SUFFIX));
+	}
+
+
+	/**
+	 * A tick file and its index of (timestamp, record number) pairs.
+	 */
+	private static class Segment {
+
+		private final TickFileWriter writer;
+
+		private final DataOutputStream index;
+
+
+		Segment(Path file, Path indexFile) throws IOException {
+			this.writer = new TickFileWriter(file);
+			this.index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)));
+		}
+
+		long size() {
+			return TickFile.HEADER_SIZE + this.writer.getRecordCount() * TickFile.RECORD_SIZE;
+		}
+
+		void write(long timestamp, long ticker, long priceTicks, int scale) throws IOException {
+			long recordNumber = this.writer.getRecordCount();
+			if (recordNumber % INDEX_INTERVAL == 0) {
+				this.index.writeLong(timestamp);
+				this.index.writeLong(recordNumber);
+			}
+			this.writer.write(timestamp, ticker, priceTicks, scale);
+		}
+
+		void flush() throws IOException {
+			this.writer.flush();
+			this.index.flush();
+		}
+
+		void close() throws IOException {
+			try {
+				this.writer.close();
+			}
+			finally {
+				this.index.close();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Reads the quotes recorded by a {@link QuoteJournal} within a time range,
+ * using segment names and segment indexes to skip directly to the first
+ * record of interest. Useful for offline analysis; for replaying a journal
+ * through the application use the {@link TickFileQuoteFeed}.
+ */
+public class QuoteJournalReader {
+
+	private final Path directory;
+
+	private final TickFile.TickerCache tickerCache = new TickFile.TickerCache(1024);
+
+
+	public QuoteJournalReader(Path directory) {
+		this.directory = directory;
+	}
+
+
+	/**
+	 * Pass every recorded quote with {@code from <= timestamp < to} to the
+	 * given handler, in recorded order.
+	 * @return the number of quotes read
+	 */
+	public long read(long from, long to, TickHandler handler) throws IOException {
+		List<Path> segments = getSegments();
+		int first = 0;
+		for (int i = 1; i < segments.size(); i++) {
+			if (getFirstTimestamp(segments.get(i)) < from) {
+				first = i;
+			}
+		}
+		long count = 0;
+		for (int i = first; i < segments.size(); i++) {
+			Path segment = segments.get(i);
+			if (getFirstTimestamp(segment) >= to) {
+				break;
+			}
+			count += readSegment(segment, from, to, handler);
+		}
+		return count;
+	}
+
+	private long readSegment(Path segment, long from, long to, TickHandler handler) throws IOException {
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < TickFile.HEADER_SIZE) {
+				return 0;
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			TickFile.readHeader(buffer);
+			long recordCount = (size - TickFile.HEADER_SIZE) / TickFile.RECORD_SIZE;
+			long count = 0;
+			for (long record = findStartRecord(segment, from); record < recordCount; record++) {
+				int offset = (int) (TickFile.HEADER_SIZE + record * TickFile.RECORD_SIZE);
+				long timestamp = TickFile.getTimestamp(buffer, offset);
+				if (timestamp >= to) {
+					break;
+				}
+				if (timestamp >= from) {
+					String ticker = this.tickerCache.get(TickFile.getTicker(buffer, offset));
+					handler.handle(timestamp,
+							new Quote(ticker, TickFile.getPriceTicks(buffer, offset), TickFile.getScale(buffer, offset)));
+					count++;
+				}
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * Use the segment index to find the last indexed record at or before the
+	 * given time, from where a scan finds the first matching record.
+	 */
+	private long findStartRecord(Path segment, long from) throws IOException {
+		String name = segment.getFileName().toString();
+		Path indexFile = segment.resolveSibling(
+				name.substring(0, name.length() - QuoteJournal.SEGMENT_SUFFIX.length()) + QuoteJournal.INDEX_SUFFIX);
+		if (!Files.exists(indexFile)) {
+			return 0;
+		}
+		ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(indexFile));
+		long start = 0;
+		while (index.remaining() >= 16) {
+			long timestamp = index.getLong();
+			long record = index.getLong();
+			if (timestamp >= from) {
+				break;
+			}
+			start = record;
+		}
+		return start;
+	}
+
+	private List<Path> getSegments() throws IOException {
+		List<Path> segments = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, "*" + QuoteJournal.SEGMENT_SUFFIX)) {
+			for (Path segment : stream) {
+				segments.add(segment);
+			}
+		}
+		Collections.sort(segments);
+		return segments;
+	}
+
+	private static long getFirstTimestamp(Path segment) {
+		String name = segment.getFileName().toString();
+		return Long.parseLong(name.substring(0, name.indexOf('-')));
+	}
+
+
+	/**
+	 * Callback for recorded quotes.
+	 */
+	public interface TickHandler {
+
+		void handle(long timestamp, Quote quote);
+	}
+
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+
+/**
+ * Callback for quotes published by the {@link QuoteService}. Beans of this
+ * type are detected automatically.
+ *
+ * <p>Listeners are invoked on the publishing thread, one quote at a time and
+ * in publishing order, and must not block.
+ */
+public interface QuoteListener {
+
+	void onQuote(Quote quote);
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+
+/**
+ * Writes a {@link Quote} in the same JSON shape as a bean with a
+ * {@code BigDecimal} price, formatting the fixed-point price directly into
+ * the generator without creating intermediate objects.
+ */
+public class QuoteSerializer extends StdSerializer<Quote> {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final ThreadLocal<char[]> buffers =
+			ThreadLocal.withInitial(() -> new char[FixedPointPrice.MAX_LENGTH]);
+
+
+	public QuoteSerializer() {
+		super(Quote.class);
+	}
+
+	@Override
+	public void serialize(Quote quote, JsonGenerator generator, SerializerProvider provider) throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField("ticker", quote.getTicker());
+		generator.writeFieldName("price");
+		writePrice(quote.getPriceTicks(), quote.getScale(), generator);
+		generator.writeEndObject();
+	}
+
+	/**
+	 * Write a fixed-point price as a JSON number.
+	 */
+	public static void writePrice(long ticks, int scale, JsonGenerator generator) throws IOException {
+		char[] buffer = buffers.get();
+		int length = FixedPointPrice.format(ticks, scale, buffer);
+		generator.writeNumber(buffer, 0, length);
+	}
+
+}
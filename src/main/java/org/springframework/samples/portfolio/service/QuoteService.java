@@ -15,40 +15,91 @@
  */
 package org.springframework.samples.portfolio.service;
 
-import java.math.BigDecimal;
-import java.math.MathContext;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Random;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationListener;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.messaging.core.MessageSendingOperations;
 import org.springframework.messaging.simp.broker.BrokerAvailabilityEvent;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
 
 @Service
-public class QuoteService implements ApplicationListener<BrokerAvailabilityEvent> {
+public class QuoteService implements ApplicationListener<BrokerAvailabilityEvent>, SmartLifecycle {
 
 	private static Log logger = LogFactory.getLog(QuoteService.class);
 
-	private final MessageSendingOperations<String> messagingTemplate;
+	private final JsonMessageSender messageSender;
 
-	private final StockQuoteGenerator quoteGenerator = new StockQuoteGenerator();
+	private final QuoteFeed quoteFeed;
+
+	private final TickerInterestIndex interestIndex;
+
+	private final QuoteConflator quoteConflator = new QuoteConflator();
+
+	private final Consumer<Quote> quoteSender = this::sendQuote;
+
+	private final QuoteBatch quoteBatch = new QuoteBatch();
+
+	private final QuoteDeltaEncoder quoteDeltaEncoder = new QuoteDeltaEncoder();
+
+	private List<QuoteListener> quoteListeners = Collections.emptyList();
+
+	private boolean batchEnabled;
+
+	private boolean deltaEnabled;
 
 	private AtomicBoolean brokerAvailable = new AtomicBoolean();
 
+	private volatile boolean running;
+
 
 	@Autowired
-	public QuoteService(MessageSendingOperations<String> messagingTemplate) {
-		this.messagingTemplate = messagingTemplate;
+	public QuoteService(MessageSendingOperations<String> messagingTemplate, QuoteFeed quoteFeed,
+			TickerInterestIndex interestIndex) {
+
+		this.messageSender = new JsonMessageSender(messagingTemplate);
+		this.quoteFeed = quoteFeed;
+		this.interestIndex = interestIndex;
+	}
+
+	/**
+	 * Listeners to notify of every published quote.
+	 */
+	@Autowired(required = false)
+	public void setQuoteListeners(List<QuoteListener> quoteListeners) {
+		this.quoteListeners = quoteListeners;
+	}
+
+	/**
+	 * Whether to also publish all quotes of a round as one message to
+	 * "/topic/price.batch". Set with the "portfolio.quote.batch" property.
+	 * <p>By default this is set to false.
+	 */
+	@Value("${portfolio.quote.batch:false}")
+	public void setBatchEnabled(boolean batchEnabled) {
+		this.batchEnabled = batchEnabled;
+	}
+
+	/**
+	 * Whether to also publish a delta-encoded stream with per-ticker sequence
+	 * numbers to "/topic/price.delta.{ticker}". Set with the
+	 * "portfolio.quote.delta" property.
+	 * <p>By default this is set to false.
+	 * @see QuoteDelta
+	 */
+	@Value("${portfolio.quote.delta:false}")
+	public void setDeltaEnabled(boolean deltaEnabled) {
+		this.deltaEnabled = deltaEnabled;
 	}
 
 	@Override
@@ -56,55 +107,73 @@ public class QuoteService implements ApplicationListener<BrokerAvailabilityEvent
 		this.brokerAvailable.set(event.isBrokerAvailable());
 	}
 
-	@Scheduled(fixedDelay=2000)
+	@Override
+	public void start() {
+		this.quoteFeed.start(this.quoteConflator::offer);
+		this.running = true;
+	}
+
+	@Override
+	public void stop() {
+		this.running = false;
+		this.quoteFeed.stop();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	/**
+	 * Publish the latest price of each ticker that changed since the last run.
+	 * The rate is set with the "portfolio.quote.publish-interval" property.
+	 */
+	@Scheduled(fixedDelayString="${portfolio.quote.publish-interval:500}")
 	public void sendQuotes() {
-		for (Quote quote : this.quoteGenerator.generateQuotes()) {
-			if (logger.isTraceEnabled()) {
-				logger.trace("Sending quote " + quote);
-			}
+		this.quoteConflator.flush(this.quoteSender);
+		if (!this.quoteBatch.isEmpty()) {
 			if (this.brokerAvailable.get()) {
-				this.messagingTemplate.convertAndSend("/topic/price.stock." + quote.getTicker(), quote);
+				this.messageSender.convertAndSend("/topic/price.batch", this.quoteBatch);
 			}
+			this.quoteBatch.clear();
 		}
 	}
 
+	public QuoteConflator getQuoteConflator() {
+		return this.quoteConflator;
+	}
 
-	private static class StockQuoteGenerator {
-
-		private static final MathContext mathContext = new MathContext(2);
-
-		private final Random random = new Random();
-
-		private final Map<String, String> prices = new ConcurrentHashMap<>();
-
+	/**
+	 * Return the current sequence and price of every ticker in the delta stream.
+	 */
+	public List<QuoteDelta> getDeltaSnapshot() {
+		return this.quoteDeltaEncoder.getSnapshot();
+	}
 
-		public StockQuoteGenerator() {
-			this.prices.put("CTXS", "24.30");
-			this.prices.put("DELL", "13.03");
-			this.prices.put("EMC", "24.13");
-			this.prices.put("GOOG", "893.49");
-			this.prices.put("MSFT", "34.21");
-			this.prices.put("ORCL", "31.22");
-			this.prices.put("RHT", "48.30");
-			this.prices.put("VMW", "66.98");
+	private void sendQuote(Quote quote) {
+		if (logger.isTraceEnabled()) {
+			logger.trace("Sending quote " + quote);
 		}
-
-		public Set<Quote> generateQuotes() {
-			Set<Quote> quotes = new HashSet<>();
-			for (String ticker : this.prices.keySet()) {
-				BigDecimal price = getPrice(ticker);
-				quotes.add(new Quote(ticker, price));
+		if (this.brokerAvailable.get()) {
+			// Serialized once, the payload is shared by all subscribers and users
+			byte[] json = this.messageSender.serialize(quote);
+			this.messageSender.send("/topic/price.stock." + quote.getTicker(), json);
+			for (String user : this.interestIndex.getUsers(quote.getTicker())) {
+				this.messageSender.send("/user/" + StringUtils.replace(user, "/", "%2F") + "/queue/quotes", json);
 			}
-			return quotes;
 		}
-
-		private BigDecimal getPrice(String ticker) {
-			BigDecimal seedPrice = new BigDecimal(this.prices.get(ticker), mathContext);
-			double range = seedPrice.multiply(new BigDecimal(0.02)).doubleValue();
-			BigDecimal priceChange = new BigDecimal(String.valueOf(this.random.nextDouble() * range), mathContext);
-			return seedPrice.add(priceChange);
+		if (this.batchEnabled) {
+			this.quoteBatch.add(quote);
+		}
+		if (this.deltaEnabled) {
+			QuoteDelta delta = this.quoteDeltaEncoder.encode(quote);
+			if (this.brokerAvailable.get()) {
+				this.messageSender.convertAndSend("/topic/price.delta." + quote.getTicker(), delta);
+			}
+		}
+		for (int i = 0; i < this.quoteListeners.size(); i++) {
+			this.quoteListeners.get(i).onQuote(quote);
 		}
-
 	}
 
 }
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Generates prices as fixed-point ticks around a seed price at a fixed rate.
+ * Apart from the {@link Quote} handed to the consumer nothing is allocated
+ * per tick.
+ *
+ * <p>Besides the tickers of the sample portfolios, the feed can generate
+ * synthetic instruments ("X0", "X1", ...) for load testing with a large
+ * instrument universe. Tickers and seed prices are held in arrays that are
+ * partitioned into contiguous shards, one per thread. Each shard has its own
+ * random source and passes its quotes straight to the consumer, which must
+ * therefore be thread-safe when more than one thread is used.
+ *
+ * <p>This is the default feed, unless the "tick-replay" profile is active.
+ */
+@Component
+@Profile("!tick-replay")
+public class RandomQuoteFeed implements QuoteFeed {
+
+	private static final Log logger = LogFactory.getLog(RandomQuoteFeed.class);
+
+	private static final int SCALE = 2;
+
+	private static final String[] TICKERS = {"CTXS", "DELL", "EMC", "GOOG", "MSFT", "ORCL", "RHT", "VMW"};
+
+	private static final String[] PRICES = {"24.30", "13.03", "24.13", "893.49", "34.21", "31.22", "48.30", "66.98"};
+
+	private static final String SYNTHETIC_PREFIX = "X";
+
+	private static final long SYNTHETIC_SEED = 20140110L;
+
+
+	private final String[] tickers;
+
+	private final long[] seedPrices;
+
+	private int threadCount = 1;
+
+	private long interval = 2000;
+
+	private ScheduledExecutorService executor;
+
+
+	public RandomQuoteFeed() {
+		this(TICKERS.length);
+	}
+
+	/**
+	 * @param instrumentCount the number of instruments to generate quotes for;
+	 * any beyond the sample portfolio tickers are synthetic
+	 */
+	@Autowired
+	public RandomQuoteFeed(@Value("${portfolio.quote.instruments:8}") int instrumentCount) {
+		int count = Math.max(instrumentCount, TICKERS.length);
+		this.tickers = new String[count];
+		this.seedPrices = new long[count];
+		for (int i = 0; i < TICKERS.length; i++) {
+			this.tickers[i] = TICKERS[i];
+			this.seedPrices[i] = FixedPointPrice.parse(PRICES[i], SCALE);
+		}
+		// Fixed seed, so synthetic instruments are the same across restarts and recordings
+		SplittableRandom random = new SplittableRandom(SYNTHETIC_SEED);
+		for (int i = TICKERS.length; i < count; i++) {
+			this.tickers[i] = SYNTHETIC_PREFIX + Integer.toString(i - TICKERS.length, Character.MAX_RADIX).toUpperCase();
+			this.seedPrices[i] = random.nextLong(500, 50000);
+		}
+	}
+
+
+	/**
+	 * How often to generate a quote for each ticker, in milliseconds. Set
+	 * with the "portfolio.quote.feed-interval" property.
+	 * <p>By default this is set to 2000.
+	 */
+	@Value("${portfolio.quote.feed-interval:2000}")
+	public void setInterval(long interval) {
+		this.interval = interval;
+	}
+
+	/**
+	 * The number of threads, and shards, to generate quotes with. Set with the
+	 * "portfolio.quote.feed-threads" property.
+	 * <p>By default this is set to 1.
+	 */
+	@Value("${portfolio.quote.feed-threads:1}")
+	public void setThreadCount(int threadCount) {
+		this.threadCount = Math.max(1, Math.min(threadCount, this.tickers.length));
+	}
+
+	public int getInstrumentCount() {
+		return this.tickers.length;
+	}
+
+	@Override
+	public synchronized void start(Consumer<Quote> consumer) {
+		logger.info("Generating quotes for " + this.tickers.length + " instruments on " + this.threadCount + " thread(s)");
+		this.executor = Executors.newScheduledThreadPool(this.threadCount, new CustomizableThreadFactory("quoteFeed-"));
+		for (Shard shard : createShards(this.threadCount, consumer)) {
+			this.executor.scheduleWithFixedDelay(shard, this.interval, this.interval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (this.executor != null) {
+			this.executor.shutdownNow();
+			this.executor = null;
+		}
+	}
+
+	/**
+	 * Generate one quote for each instrument on the calling thread.
+	 */
+	public void generateQuotes(Consumer<Quote> consumer) {
+		new Shard(0, this.tickers.length, new SplittableRandom(), consumer).run();
+	}
+
+	private Shard[] createShards(int count, Consumer<Quote> consumer) {
+		SplittableRandom random = new SplittableRandom();
+		Shard[] shards = new Shard[count];
+		for (int i = 0; i < count; i++) {
+			int from = (int) ((long) this.tickers.length * i / count);
+			int to = (int) ((long) this.tickers.length * (i + 1) / count);
+			shards[i] = new Shard(from, to, random.split(), consumer);
+		}
+		return shards;
+	}
+
+
+	/**
+	 * A contiguous range of instruments, ticked by one thread at a time.
+	 */
+	private class Shard implements Runnable {
+
+		private final int from;
+
+		private final int to;
+
+		private final SplittableRandom random;
+
+		private final Consumer<Quote> consumer;
+
+
+		Shard(int from, int to, SplittableRandom random, Consumer<Quote> consumer) {
+			this.from = from;
+			this.to = to;
+			this.random = random;
+			this.consumer = consumer;
+		}
+
+		@Override
+		public void run() {
+			String[] tickers = RandomQuoteFeed.this.tickers;
+			long[] seedPrices = RandomQuoteFeed.this.seedPrices;
+			for (int i = this.from; i < this.to; i++) {
+				long seedPrice = seedPrices[i];
+				long price = seedPrice + (long) (this.random.nextDouble() * (seedPrice / 50));
+				this.consumer.accept(new Quote(tickers[i], price, SCALE));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Holds the {@link RiskLimits} of each user for the pre-trade checks.
+ *
+ * <p>The limits of a user are loaded on their first trade. After that a
+ * lookup is a hash map read and nothing else, not even a clock read. A
+ * background thread reloads limits older than the refresh interval while
+ * trades keep using the current ones, so the {@link RiskLimitsLoader} is
+ * never called on the trade path again. If a reload fails, the current
+ * limits are kept until the next sweep.
+ *
+ * <p>Limits not used for {@value #MAX_IDLE_REFRESHES} refresh intervals are
+ * dropped instead of reloaded, and loaded again on the user's next trade, so
+ * the cache and the reloads scale with the active users only.
+ */
+@Component
+public class RiskLimitCache implements SmartLifecycle {
+
+	private static final Log logger = LogFactory.getLog(RiskLimitCache.class);
+
+	static final int MAX_IDLE_REFRESHES = 2;
+
+	private final RiskLimitsLoader loader;
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	private long refreshIntervalMillis = 60000;
+
+	private ScheduledExecutorService refreshExecutor;
+
+	private final AtomicLong refreshCount = new AtomicLong();
+
+
+	@Autowired
+	public RiskLimitCache(RiskLimitsLoader loader) {
+		this.loader = loader;
+	}
+
+
+	/**
+	 * How long loaded limits are used before they are reloaded, in
+	 * milliseconds. Set with the "portfolio.risk.limits.refresh-interval"
+	 * property.
+	 * <p>By default this is set to 60000.
+	 */
+	@Value("${portfolio.risk.limits.refresh-interval:60000}")
+	public void setRefreshInterval(long millis) {
+		this.refreshIntervalMillis = millis;
+	}
+
+	/**
+	 * Return the limits of the given user, loading them on first use.
+	 */
+	public RiskLimits getLimits(String username) {
+		Entry entry = this.entries.get(username);
+		if (entry == null) {
+			entry = this.entries.computeIfAbsent(username, name -> new Entry(this.loader.loadLimits(name)));
+		}
+		if (!entry.used) {
+			entry.used = true;
+		}
+		return entry.limits;
+	}
+
+	/**
+	 * Reload the limits loaded more than a refresh interval ago, or drop them
+	 * if they were not used for {@link #MAX_IDLE_REFRESHES} such intervals.
+	 */
+	void refreshStaleLimits() {
+		long staleNanos = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(this.refreshIntervalMillis);
+		for (Map.Entry<String, Entry> mapEntry : this.entries.entrySet()) {
+			Entry entry = mapEntry.getValue();
+			if (entry.loadedNanos - staleNanos > 0) {
+				continue;
+			}
+			if (entry.used) {
+				entry.used = false;
+				entry.idleRefreshes = 0;
+			}
+			else if (++entry.idleRefreshes >= MAX_IDLE_REFRESHES) {
+				this.entries.remove(mapEntry.getKey(), entry);
+				continue;
+			}
+			try {
+				entry.limits = this.loader.loadLimits(mapEntry.getKey());
+				entry.loadedNanos = System.nanoTime();
+				this.refreshCount.incrementAndGet();
+			}
+			catch (RuntimeException ex) {
+				logger.warn("Failed to refresh risk limits of " + mapEntry.getKey(), ex);
+			}
+		}
+	}
+
+	public int size() {
+		return this.entries.size();
+	}
+
+	public long getRefreshCount() {
+		return this.refreshCount.get();
+	}
+
+	@Override
+	public synchronized void start() {
+		if (this.refreshExecutor == null) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("riskLimitRefresh-");
+			threadFactory.setDaemon(true);
+			this.refreshExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+			// Sweep often enough that limits are at most 1.5 intervals old
+			long period = Math.max(this.refreshIntervalMillis / 2, 1);
+			this.refreshExecutor.scheduleWithFixedDelay(this::refreshStaleLimits, period, period, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (this.refreshExecutor != null) {
+			this.refreshExecutor.shutdownNow();
+			this.refreshExecutor = null;
+		}
+	}
+
+	@Override
+	public synchronized boolean isRunning() {
+		return (this.refreshExecutor != null);
+	}
+
+
+	private static class Entry {
+
+		private volatile RiskLimits limits;
+
+		private volatile long loadedNanos = System.nanoTime();
+
+		// Whether used since the last refresh, only set if not already
+		private volatile boolean used = true;
+
+		// Refreshes in a row without use, accessed by the refresh thread only
+		private int idleRefreshes;
+
+
+		Entry(RiskLimits limits) {
+			this.limits = limits;
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+
+/**
+ * The pre-trade limits of a user. A limit of 0 means no limit.
+ */
+public class RiskLimits {
+
+	public static final RiskLimits NONE = new RiskLimits(0, 0, 0);
+
+
+	private final int maxOrderShares;
+
+	private final int maxPositionShares;
+
+	private final double maxOrderNotional;
+
+
+	public RiskLimits(int maxOrderShares, int maxPositionShares, double maxOrderNotional) {
+		this.maxOrderShares = maxOrderShares;
+		this.maxPositionShares = maxPositionShares;
+		this.maxOrderNotional = maxOrderNotional;
+	}
+
+
+	/**
+	 * The maximum number of shares in one trade.
+	 */
+	public int getMaxOrderShares() {
+		return this.maxOrderShares;
+	}
+
+	/**
+	 * The maximum number of shares held in one ticker after a buy.
+	 */
+	public int getMaxPositionShares() {
+		return this.maxPositionShares;
+	}
+
+	/**
+	 * The maximum value of one trade at the latest quote.
+	 */
+	public double getMaxOrderNotional() {
+		return this.maxOrderNotional;
+	}
+
+	@Override
+	public String toString() {
+		return "RiskLimits [maxOrderShares=" + this.maxOrderShares + ", maxPositionShares=" +
+				this.maxPositionShares + ", maxOrderNotional=" + this.maxOrderNotional + "]";
+	}
+
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+
+/**
+ * Source of the pre-trade limits of users, e.g. a risk system or a
+ * database. Called off the trade path by {@link RiskLimitCache}, so it may
+ * block.
+ */
+public interface RiskLimitsLoader {
+
+	/**
+	 * Return the limits of the given user, never {@code null}.
+	 */
+	RiskLimits loadLimits(String username);
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+
+
+/**
+ * {@link StompEncoder} that encodes a message published to many subscribers
+ * once rather than once per WebSocket session.
+ *
+ * <p>The simple broker delivers a copy of the published message to every
+ * subscriber, which differs only in the session and the subscription id.
+ * Messages sent by {@link JsonMessageSender} carry a {@link FrameCache} and a
+ * message id shared by all copies, so the frames of two subscribers with the
+ * same subscription id, e.g. "sub-0" from every browser that subscribed to
+ * a ticker first, are byte for byte the same. The encoder caches the frame in
+ * the message per subscription id and destination, and returns the same
+ * array for every further subscriber, without encoding headers or copying
+ * the payload again.
+ *
+ * <p>Set on the {@code StompSubProtocolHandler} in {@code WebSocketConfig}.
+ */
+public class SharedFrameStompEncoder extends StompEncoder {
+
+	/** The header with the {@link FrameCache} of a message. */
+	public static final String FRAME_CACHE_HEADER = "sharedFrameCache";
+
+
+	@Override
+	public byte[] encode(Map<String, Object> headers, byte[] payload) {
+		Object cache = headers.get(FRAME_CACHE_HEADER);
+		if (!(cache instanceof FrameCache)) {
+			return super.encode(headers, payload);
+		}
+		String key = SimpMessageHeaderAccessor.getSubscriptionId(headers) + "\n" +
+				SimpMessageHeaderAccessor.getFirstNativeHeader(StompHeaderAccessor.STOMP_DESTINATION_HEADER, headers);
+		return ((FrameCache) cache).frames.computeIfAbsent(key, k -> super.encode(headers, payload));
+	}
+
+
+	/**
+	 * The encoded frames of one published message, by subscription id and
+	 * destination. Garbage collected along with the message.
+	 */
+	public static final class FrameCache {
+
+		private final Map<String, byte[]> frames = new ConcurrentHashMap<>(4);
+
+
+		public int size() {
+			return this.frames.size();
+		}
+
+		@Override
+		public String toString() {
+			return "FrameCache[" + this.frames.size() + " frames]";
+		}
+	}
+
+}
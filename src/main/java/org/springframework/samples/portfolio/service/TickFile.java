@@ -0,0 +1,178 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Binary layout of a tick file: a {@value #HEADER_SIZE} byte header followed
+ * by fixed-size, big-endian records of {@value #RECORD_SIZE} bytes:
+ * <pre>
+ * header: int magic, int version, int record size, int reserved
+ * record: long timestamp (millis), 8 bytes ASCII ticker (zero padded),
+ *         long price ticks, int scale, int reserved
+ * </pre>
+ * Fixed-size records allow reading a memory-mapped file without parsing and
+ * seeking to any record by position.
+ */
+public abstract class TickFile {
+
+	public static final int MAGIC = 0x5449434B;  // "TICK"
+
+	public static final int VERSION = 1;
+
+	public static final int HEADER_SIZE = 16;
+
+	public static final int RECORD_SIZE = 32;
+
+	public static final int MAX_TICKER_LENGTH = 8;
+
+
+	public static void writeHeader(ByteBuffer buffer) {
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0);
+	}
+
+	/**
+	 * Verify the header at the buffer's current position and move past it.
+	 */
+	public static void readHeader(ByteBuffer buffer) {
+		if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+			throw new IllegalStateException("Not a tick file");
+		}
+		int version = buffer.getInt();
+		int recordSize = buffer.getInt();
+		if (version != VERSION || recordSize != RECORD_SIZE) {
+			throw new IllegalStateException("Unsupported tick file version " + version);
+		}
+		buffer.getInt();
+	}
+
+	public static void writeRecord(ByteBuffer buffer, long timestamp, Quote quote) {
+		writeRecord(buffer, timestamp, encodeTicker(quote.getTicker()), quote.getPriceTicks(), quote.getScale());
+	}
+
+	/**
+	 * Variant of {@link #writeRecord(ByteBuffer, long, Quote)} with the ticker
+	 * already {@link #encodeTicker encoded}.
+	 */
+	public static void writeRecord(ByteBuffer buffer, long timestamp, long ticker, long priceTicks, int scale) {
+		buffer.putLong(timestamp);
+		buffer.putLong(ticker);
+		buffer.putLong(priceTicks);
+		buffer.putInt(scale);
+		buffer.putInt(0);
+	}
+
+	public static long getTimestamp(ByteBuffer buffer, int offset) {
+		return buffer.getLong(offset);
+	}
+
+	public static long getTicker(ByteBuffer buffer, int offset) {
+		return buffer.getLong(offset + 8);
+	}
+
+	public static long getPriceTicks(ByteBuffer buffer, int offset) {
+		return buffer.getLong(offset + 16);
+	}
+
+	public static int getScale(ByteBuffer buffer, int offset) {
+		return buffer.getInt(offset + 24);
+	}
+
+	/**
+	 * Whether the given ticker can be {@link #encodeTicker encoded}, i.e. it
+	 * has 1 to 8 ASCII chars.
+	 */
+	public static boolean isEncodable(String ticker) {
+		if (ticker == null || ticker.isEmpty() || ticker.length() > MAX_TICKER_LENGTH) {
+			return false;
+		}
+		for (int i = 0; i < ticker.length(); i++) {
+			char c = ticker.charAt(i);
+			if (c == 0 || c > 127) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Pack an ASCII ticker of up to 8 chars into a long.
+	 * @throws IllegalArgumentException if the ticker is not {@link #isEncodable encodable}
+	 */
+	public static long encodeTicker(String ticker) {
+		if (!isEncodable(ticker)) {
+			throw new IllegalArgumentException("Ticker must have 1 to 8 ASCII chars: " + ticker);
+		}
+		long value = 0;
+		for (int i = 0; i < MAX_TICKER_LENGTH; i++) {
+			value = (value << 8) | (i < ticker.length() ? (ticker.charAt(i) & 0xFF) : 0);
+		}
+		return value;
+	}
+
+	public static String decodeTicker(long value) {
+		byte[] bytes = new byte[MAX_TICKER_LENGTH];
+		int length = 0;
+		for (int i = 0; i < MAX_TICKER_LENGTH; i++) {
+			byte b = (byte) (value >>> (56 - 8 * i));
+			if (b == 0) {
+				break;
+			}
+			bytes[length++] = b;
+		}
+		return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+	}
+
+
+	/**
+	 * Cache of decoded tickers so that reading a record for a ticker seen
+	 * before does not allocate.
+	 */
+	public static class TickerCache {
+
+		private final long[] keys;
+
+		private final String[] values;
+
+		private final int mask;
+
+
+		/**
+		 * @param size the number of slots, rounded up to a power of two
+		 */
+		public TickerCache(int size) {
+			int capacity = Integer.highestOneBit(Math.max(size - 1, 1)) << 1;
+			this.keys = new long[capacity];
+			this.values = new String[capacity];
+			this.mask = capacity - 1;
+		}
+
+		public String get(long ticker) {
+			int slot = (int) (ticker ^ (ticker >>> 29) ^ (ticker >>> 47)) & this.mask;
+			String value = this.values[slot];
+			if (value == null || this.keys[slot] != ticker) {
+				value = decodeTicker(ticker);
+				this.keys[slot] = ticker;
+				this.values[slot] = value;
+			}
+			return value;
+		}
+	}
+
+}
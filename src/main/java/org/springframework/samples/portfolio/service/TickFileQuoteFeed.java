@@ -0,0 +1,226 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Replays quotes recorded in {@link TickFile tick files} by memory-mapping
+ * them and reading records in place. The replay runs at the recorded pace, a
+ * multiple of it, or as fast as possible.
+ *
+ * <p>Active with the "tick-replay" profile. The location is set with the
+ * "portfolio.quote.replay.path" property and can be a single file or a
+ * directory of "*.ticks" files replayed in name order.
+ */
+@Component
+@Profile("tick-replay")
+public class TickFileQuoteFeed implements QuoteFeed {
+
+	private static final Log logger = LogFactory.getLog(TickFileQuoteFeed.class);
+
+	private static final long MAX_MAPPED_BYTES =
+			(Integer.MAX_VALUE / TickFile.RECORD_SIZE) * (long) TickFile.RECORD_SIZE;
+
+
+	private final Path path;
+
+	private double speed = 1;
+
+	private boolean loop = true;
+
+	private final TickFile.TickerCache tickerCache = new TickFile.TickerCache(1024);
+
+	private volatile Thread thread;
+
+
+	public TickFileQuoteFeed(@Value("${portfolio.quote.replay.path}") String path) {
+		this.path = Paths.get(path);
+	}
+
+
+	/**
+	 * The replay speed as a multiple of the recorded pace, or 0 to replay as
+	 * fast as possible. Set with the "portfolio.quote.replay.speed" property.
+	 * <p>By default this is set to 1.
+	 */
+	@Value("${portfolio.quote.replay.speed:1}")
+	public void setSpeed(double speed) {
+		this.speed = speed;
+	}
+
+	/**
+	 * Whether to start over when the end of the recording is reached. Set
+	 * with the "portfolio.quote.replay.loop" property.
+	 * <p>By default this is set to true.
+	 */
+	@Value("${portfolio.quote.replay.loop:true}")
+	public void setLoop(boolean loop) {
+		this.loop = loop;
+	}
+
+	@Override
+	public synchronized void start(Consumer<Quote> consumer) {
+		Thread thread = new Thread(() -> run(consumer), "tickReplay");
+		thread.setDaemon(true);
+		this.thread = thread;
+		thread.start();
+	}
+
+	@Override
+	public synchronized void stop() {
+		Thread thread = this.thread;
+		this.thread = null;
+		if (thread != null) {
+			thread.interrupt();
+			try {
+				thread.join(1000);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private boolean isRunning() {
+		return (this.thread == Thread.currentThread());
+	}
+
+	private void run(Consumer<Quote> consumer) {
+		try {
+			do {
+				long count = replay(consumer);
+				logger.debug("Replayed " + count + " quotes from " + this.path);
+				if (count == 0) {
+					break;
+				}
+			}
+			while (this.loop && isRunning());
+		}
+		catch (IOException ex) {
+			logger.error("Tick replay from " + this.path + " failed", ex);
+		}
+	}
+
+	/**
+	 * Replay every file once on the calling thread, stopping early if the
+	 * thread is interrupted.
+	 * @return the number of quotes emitted
+	 */
+	long replay(Consumer<Quote> consumer) throws IOException {
+		Pacer pacer = new Pacer(this.speed);
+		long count = 0;
+		for (Path file : getFiles()) {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				long size = channel.size();
+				if (size < TickFile.HEADER_SIZE) {
+					continue;
+				}
+				TickFile.readHeader(channel.map(FileChannel.MapMode.READ_ONLY, 0, TickFile.HEADER_SIZE));
+				long end = size - (size - TickFile.HEADER_SIZE) % TickFile.RECORD_SIZE;
+				for (long position = TickFile.HEADER_SIZE; position < end; position += MAX_MAPPED_BYTES) {
+					long length = Math.min(MAX_MAPPED_BYTES, end - position);
+					MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+					for (int offset = 0; offset < length; offset += TickFile.RECORD_SIZE) {
+						if (!pacer.await(TickFile.getTimestamp(buffer, offset))) {
+							return count;
+						}
+						String ticker = this.tickerCache.get(TickFile.getTicker(buffer, offset));
+						consumer.accept(new Quote(ticker,
+								TickFile.getPriceTicks(buffer, offset), TickFile.getScale(buffer, offset)));
+						count++;
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	private List<Path> getFiles() throws IOException {
+		if (!Files.isDirectory(this.path)) {
+			return Collections.singletonList(this.path);
+		}
+		List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.path, "*.ticks")) {
+			for (Path file : stream) {
+				files.add(file);
+			}
+		}
+		Collections.sort(files);
+		return files;
+	}
+
+
+	/**
+	 * Maps recorded timestamps onto the wall clock at the configured speed.
+	 */
+	private static class Pacer {
+
+		private final double speed;
+
+		private long firstTimestamp = -1;
+
+		private long startNanos;
+
+
+		Pacer(double speed) {
+			this.speed = speed;
+		}
+
+		/**
+		 * Wait until a record with the given timestamp is due.
+		 * @return false if interrupted
+		 */
+		boolean await(long timestamp) {
+			if (this.speed <= 0) {
+				return !Thread.currentThread().isInterrupted();
+			}
+			if (this.firstTimestamp < 0) {
+				this.firstTimestamp = timestamp;
+				this.startNanos = System.nanoTime();
+			}
+			long dueNanos = this.startNanos + (long) ((timestamp - this.firstTimestamp) * 1_000_000 / this.speed);
+			long waitNanos;
+			while ((waitNanos = dueNanos - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(waitNanos);
+				if (Thread.currentThread().isInterrupted()) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+}
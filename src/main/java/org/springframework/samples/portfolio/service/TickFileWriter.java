@@ -0,0 +1,113 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Writes a {@link TickFile} through a {@link FileChannel}, buffering records
+ * and writing them in bulk. Not thread-safe.
+ */
+public class TickFileWriter implements Closeable {
+
+	private final FileChannel channel;
+
+	private final ByteBuffer buffer;
+
+	private long recordCount;
+
+
+	/**
+	 * Create a new file, replacing any existing one, and write the header.
+	 */
+	public TickFileWriter(Path path) throws IOException {
+		this(path, 1024);
+	}
+
+	/**
+	 * @param bufferedRecords how many records to buffer before writing
+	 */
+	public TickFileWriter(Path path, int bufferedRecords) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		this.buffer = ByteBuffer.allocateDirect(Math.max(bufferedRecords, 1) * TickFile.RECORD_SIZE);
+		TickFile.writeHeader(this.buffer);
+	}
+
+
+	public void write(long timestamp, Quote quote) throws IOException {
+		write(timestamp, TickFile.encodeTicker(quote.getTicker()), quote.getPriceTicks(), quote.getScale());
+	}
+
+	/**
+	 * Variant of {@link #write(long, Quote)} with the ticker already
+	 * {@link TickFile#encodeTicker encoded}.
+	 */
+	public void write(long timestamp, long ticker, long priceTicks, int scale) throws IOException {
+		if (this.buffer.remaining() < TickFile.RECORD_SIZE) {
+			flush();
+		}
+		TickFile.writeRecord(this.buffer, timestamp, ticker, priceTicks, scale);
+		this.recordCount++;
+	}
+
+	/**
+	 * Write buffered records to the channel.
+	 */
+	public void flush() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) {
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	/**
+	 * Force written records to the storage device.
+	 */
+	public void sync() throws IOException {
+		flush();
+		this.channel.force(false);
+	}
+
+	public long getRecordCount() {
+		return this.recordCount;
+	}
+
+	/**
+	 * The current size of the file, excluding buffered records.
+	 */
+	public long size() throws IOException {
+		return this.channel.size();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		}
+		finally {
+			this.channel.close();
+		}
+	}
+
+}
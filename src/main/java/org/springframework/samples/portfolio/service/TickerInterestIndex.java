@@ -0,0 +1,257 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.security.Principal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.samples.portfolio.PortfolioPosition;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.AbstractSubProtocolEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+
+/**
+ * Index from ticker to the users holding it, used to send each user only
+ * the quotes of their own positions on "/user/queue/quotes". The
+ * {@link PnlService} keeps a separate index of the users subscribed to
+ * "/user/queue/pnl", to revalue only the holders of a quoted ticker.
+ *
+ * <p>A user is added when subscribing to the destination of the index for
+ * the first time, or through {@link #register}, from the holdings in the
+ * {@link PortfolioService}. After that the user's entries are updated
+ * incrementally as trades change positions. A user is removed again when
+ * the last session that subscribed disconnects.
+ *
+ * <p>Reads are lock-free and return a shared array, which suits the
+ * publishing thread that looks up every quote. Changes are rare and copy
+ * the array of the affected ticker. The holdings of a new user are read
+ * outside the lock, since that may load the portfolio, while position changes
+ * arriving meanwhile are kept and applied on top.
+ */
+@Component
+public class TickerInterestIndex implements PositionListener, ApplicationListener<AbstractSubProtocolEvent> {
+
+	private static final Log logger = LogFactory.getLog(TickerInterestIndex.class);
+
+	public static final String QUOTE_DESTINATION = "/user/queue/quotes";
+
+	private static final String[] NO_USERS = new String[0];
+
+
+	private final PortfolioService portfolioService;
+
+	private final String destination;
+
+	private final Map<String, String[]> usersByTicker = new ConcurrentHashMap<>();
+
+	private final Map<String, Set<String>> tickersByUser = new HashMap<>();
+
+	private final Map<String, Set<String>> sessionsByUser = new HashMap<>();
+
+	// Users whose positions are being read, with the changes seen meanwhile
+	private final Map<String, Map<String, Boolean>> registering = new HashMap<>();
+
+
+	@Autowired
+	public TickerInterestIndex(PortfolioService portfolioService) {
+		this(portfolioService, QUOTE_DESTINATION);
+	}
+
+	/**
+	 * Create an index of the users subscribed to the given destination.
+	 */
+	public TickerInterestIndex(PortfolioService portfolioService, String destination) {
+		this.portfolioService = portfolioService;
+		this.destination = destination;
+	}
+
+
+	/**
+	 * Return the users holding the given ticker. The array must not be modified.
+	 */
+	public String[] getUsers(String ticker) {
+		String[] users = this.usersByTicker.get(ticker);
+		return (users != null ? users : NO_USERS);
+	}
+
+	/**
+	 * Return the number of users in the index.
+	 */
+	public synchronized int getUserCount() {
+		return this.tickersByUser.size();
+	}
+
+	/**
+	 * Whether the given user is in the index.
+	 */
+	public synchronized boolean isRegistered(String username) {
+		return (this.tickersByUser.containsKey(username) || this.registering.containsKey(username));
+	}
+
+	@Override
+	public void onApplicationEvent(AbstractSubProtocolEvent event) {
+		Principal user = event.getUser();
+		if (user == null) {
+			return;
+		}
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+		if (event instanceof SessionSubscribeEvent && this.destination.equals(accessor.getDestination())) {
+			addSession(user.getName(), accessor.getSessionId());
+		}
+		else if (event instanceof SessionDisconnectEvent) {
+			removeSession(user.getName(), ((SessionDisconnectEvent) event).getSessionId());
+		}
+	}
+
+	private void addSession(String username, String sessionId) {
+		synchronized (this) {
+			this.sessionsByUser.computeIfAbsent(username, key -> new HashSet<>()).add(sessionId);
+		}
+		register(username);
+	}
+
+	private synchronized void removeSession(String username, String sessionId) {
+		Set<String> sessionIds = this.sessionsByUser.get(username);
+		if (sessionIds == null || !sessionIds.remove(sessionId) || !sessionIds.isEmpty()) {
+			return;
+		}
+		this.sessionsByUser.remove(username);
+		// Still being read, the registration is then not published
+		this.registering.remove(username);
+		Set<String> tickers = this.tickersByUser.remove(username);
+		if (tickers == null) {
+			return;
+		}
+		for (String ticker : tickers) {
+			remove(ticker, username);
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Removed " + this.destination + " interest for " + username);
+		}
+	}
+
+	/**
+	 * Add the current holdings of the given user, unless already known.
+	 */
+	public void register(String username) {
+		Map<String, Boolean> changes = new HashMap<>();
+		synchronized (this) {
+			if (isRegistered(username)) {
+				return;
+			}
+			this.registering.put(username, changes);
+		}
+		List<PortfolioPosition> positions;
+		try {
+			positions = this.portfolioService.findPortfolio(username).getPositions();
+		}
+		catch (RuntimeException ex) {
+			synchronized (this) {
+				this.registering.remove(username, changes);
+			}
+			throw ex;
+		}
+		synchronized (this) {
+			if (!this.registering.remove(username, changes)) {
+				return;
+			}
+			this.tickersByUser.put(username, new HashSet<>());
+			for (PortfolioPosition position : positions) {
+				if (position.getShares() > 0) {
+					add(position.getTicker(), username);
+				}
+			}
+			changes.forEach((ticker, held) -> {
+				if (held) {
+					add(ticker, username);
+				}
+				else {
+					remove(ticker, username);
+				}
+			});
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Registered " + this.destination + " interest for " + username);
+		}
+	}
+
+	@Override
+	public synchronized void onPositionChange(String username, PortfolioPosition position) {
+		Map<String, Boolean> changes = this.registering.get(username);
+		if (changes != null) {
+			changes.put(position.getTicker(), position.getShares() > 0);
+			return;
+		}
+		if (!this.tickersByUser.containsKey(username)) {
+			return;
+		}
+		if (position.getShares() > 0) {
+			add(position.getTicker(), username);
+		}
+		else {
+			remove(position.getTicker(), username);
+		}
+	}
+
+	private void add(String ticker, String username) {
+		this.tickersByUser.get(username).add(ticker);
+		String[] users = getUsers(ticker);
+		for (String user : users) {
+			if (user.equals(username)) {
+				return;
+			}
+		}
+		users = Arrays.copyOf(users, users.length + 1);
+		users[users.length - 1] = username;
+		this.usersByTicker.put(ticker, users);
+	}
+
+	private void remove(String ticker, String username) {
+		Set<String> tickers = this.tickersByUser.get(username);
+		if (tickers != null) {
+			tickers.remove(ticker);
+		}
+		String[] users = getUsers(ticker);
+		for (int i = 0; i < users.length; i++) {
+			if (users[i].equals(username)) {
+				if (users.length == 1) {
+					this.usersByTicker.remove(ticker);
+				}
+				else {
+					String[] remaining = new String[users.length - 1];
+					System.arraycopy(users, 0, remaining, 0, i);
+					System.arraycopy(users, i + 1, remaining, i, users.length - i - 1);
+					this.usersByTicker.put(ticker, remaining);
+				}
+				return;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+
+/**
+ * A hashed timer wheel that hands items to a consumer once their delay has
+ * elapsed, with O(1) cost to schedule and to expire an item.
+ *
+ * <p>Time is divided into ticks and each slot of the wheel holds the items
+ * that expire in one tick, plus the number of full rotations still to go for
+ * delays longer than the wheel. New items are queued without locking and are
+ * moved into the wheel by a single worker thread, which also runs the
+ * consumer. Items therefore expire up to one tick late, and the consumer must
+ * not block.
+ */
+public class TimerWheel<T> {
+
+	private static final Log logger = LogFactory.getLog(TimerWheel.class);
+
+
+	private final String name;
+
+	private final long tickNanos;
+
+	private final Timeout<T>[] wheel;
+
+	private final int mask;
+
+	private final Consumer<T> consumer;
+
+	private final Queue<Timeout<T>> newTimeouts = new ConcurrentLinkedQueue<>();
+
+	private final AtomicLong pendingCount = new AtomicLong();
+
+	private final AtomicLong expiredCount = new AtomicLong();
+
+	private final AtomicLong totalLatenessNanos = new AtomicLong();
+
+	private volatile long maxLatenessNanos;
+
+	private volatile Thread workerThread;
+
+	private long startTime;
+
+
+	/**
+	 * @param name the name of the worker thread
+	 * @param tickDuration the duration of one tick, i.e. the precision
+	 * @param unit the unit of the tick duration
+	 * @param wheelSize the number of slots, rounded up to a power of two
+	 * @param consumer the consumer of expired items
+	 */
+	public TimerWheel(String name, long tickDuration, TimeUnit unit, int wheelSize, Consumer<T> consumer) {
+		this.name = name;
+		this.tickNanos = unit.toNanos(tickDuration);
+		int size = Integer.highestOneBit(Math.max(wheelSize - 1, 1)) << 1;
+		@SuppressWarnings("unchecked")
+		Timeout<T>[] wheel = (Timeout<T>[]) new Timeout<?>[size];
+		this.wheel = wheel;
+		this.mask = size - 1;
+		this.consumer = consumer;
+	}
+
+
+	/**
+	 * Hand the given item to the consumer after the given delay.
+	 */
+	public void schedule(T item, long delay, TimeUnit unit) {
+		this.pendingCount.incrementAndGet();
+		this.newTimeouts.add(new Timeout<>(item, System.nanoTime() + unit.toNanos(delay)));
+	}
+
+	/**
+	 * The number of scheduled items that have not expired yet.
+	 */
+	public long getPendingCount() {
+		return this.pendingCount.get();
+	}
+
+	public long getExpiredCount() {
+		return this.expiredCount.get();
+	}
+
+	/**
+	 * The average time in milliseconds between the due time of an item and
+	 * the time it was handed to the consumer.
+	 */
+	public double getAverageLateness() {
+		long count = this.expiredCount.get();
+		return (count > 0 ? (double) this.totalLatenessNanos.get() / count / 1_000_000 : 0);
+	}
+
+	/**
+	 * The maximum time in milliseconds between the due time of an item and
+	 * the time it was handed to the consumer.
+	 */
+	public double getMaxLateness() {
+		return (double) this.maxLatenessNanos / 1_000_000;
+	}
+
+	public synchronized void start() {
+		if (this.workerThread != null) {
+			return;
+		}
+		Thread thread = new Thread(this::run, this.name);
+		thread.setDaemon(true);
+		this.workerThread = thread;
+		thread.start();
+	}
+
+	/**
+	 * Stop the worker thread. Items that have not expired are discarded.
+	 */
+	public synchronized void stop() {
+		Thread thread = this.workerThread;
+		this.workerThread = null;
+		if (thread != null) {
+			thread.interrupt();
+			try {
+				thread.join(5000);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	public boolean isRunning() {
+		return (this.workerThread != null);
+	}
+
+	private void run() {
+		this.startTime = System.nanoTime();
+		long tick = 0;
+		while (this.workerThread == Thread.currentThread()) {
+			long deadline = this.startTime + (tick + 1) * this.tickNanos;
+			long sleep;
+			while ((sleep = deadline - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(sleep);
+				if (Thread.interrupted()) {
+					return;
+				}
+			}
+			transferNewTimeouts(tick);
+			expire(tick);
+			tick++;
+		}
+	}
+
+	private void transferNewTimeouts(long tick) {
+		Timeout<T> timeout;
+		while ((timeout = this.newTimeouts.poll()) != null) {
+			long expiryTick = (timeout.deadline - this.startTime) / this.tickNanos;
+			timeout.remainingRounds = (expiryTick - tick) / this.wheel.length;
+			// Already due items go into the current slot
+			int slot = (int) (Math.max(expiryTick, tick) & this.mask);
+			timeout.next = this.wheel[slot];
+			this.wheel[slot] = timeout;
+		}
+	}
+
+	private void expire(long tick) {
+		int slot = (int) (tick & this.mask);
+		Timeout<T> previous = null;
+		Timeout<T> timeout = this.wheel[slot];
+		while (timeout != null) {
+			Timeout<T> next = timeout.next;
+			if (timeout.remainingRounds > 0) {
+				timeout.remainingRounds--;
+				previous = timeout;
+			}
+			else {
+				if (previous == null) {
+					this.wheel[slot] = next;
+				}
+				else {
+					previous.next = next;
+				}
+				timeout.next = null;
+				handle(timeout);
+			}
+			timeout = next;
+		}
+	}
+
+	private void handle(Timeout<T> timeout) {
+		long lateness = Math.max(System.nanoTime() - timeout.deadline, 0);
+		this.totalLatenessNanos.addAndGet(lateness);
+		if (lateness > this.maxLatenessNanos) {
+			this.maxLatenessNanos = lateness;
+		}
+		this.pendingCount.decrementAndGet();
+		this.expiredCount.incrementAndGet();
+		try {
+			this.consumer.accept(timeout.item);
+		}
+		catch (Throwable ex) {
+			logger.error("Failed to handle " + timeout.item, ex);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "TimerWheel[" + this.name + ", pending=" + getPendingCount() + ", expired=" + getExpiredCount() +
+				", avgLateness=" + String.format("%.1f", getAverageLateness()) + "ms" +
+				", maxLateness=" + String.format("%.1f", getMaxLateness()) + "ms]";
+	}
+
+
+	private static class Timeout<T> {
+
+		private final T item;
+
+		private final long deadline;
+
+		private long remainingRounds;
+
+		private Timeout<T> next;
+
+
+		Timeout(T item, long deadline) {
+			this.item = item;
+			this.deadline = deadline;
+		}
+	}
+
+}
@@ -18,6 +18,8 @@ package org.springframework.samples.portfolio.service;
 
 public class Trade {
 
+	private String orderId;
+
 	private String ticker;
 
 	private int shares;
@@ -26,6 +28,21 @@ public class Trade {
 
 	private String username;
 
+	private long priceTicks;
+
+	private int scale;
+
+
+	/**
+	 * An id chosen by the client to correlate the trade with its {@link TradeAck}.
+	 */
+	public String getOrderId() {
+		return this.orderId;
+	}
+
+	public void setOrderId(String orderId) {
+		this.orderId = orderId;
+	}
 
 	public String getTicker() {
 		return this.ticker;
@@ -59,9 +76,33 @@ public class Trade {
 		this.username = username;
 	}
 
+	/**
+	 * The price to execute at in ticks of {@link #getScale()}, or 0 to
+	 * execute at the price of the position.
+	 */
+	public long getPriceTicks() {
+		return this.priceTicks;
+	}
+
+	/**
+	 * The {@link FixedPointPrice} scale of the price.
+	 */
+	public int getScale() {
+		return this.scale;
+	}
+
+	/**
+	 * Set the price to execute at, e.g. the price of a fill. Deliberately not
+	 * a bean property, so that it cannot be set from a client message.
+	 */
+	public void setPrice(long priceTicks, int scale) {
+		this.priceTicks = priceTicks;
+		this.scale = scale;
+	}
+
 	@Override
 	public String toString() {
-		return "[ticker=" + this.ticker + ", shares=" + this.shares
+		return "[orderId=" + this.orderId + ", ticker=" + this.ticker + ", shares=" + this.shares
 				+ ", action=" + this.action + ", username=" + this.username + "]";
 	}
 
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import org.springframework.samples.portfolio.PortfolioPosition;
+
+
+/**
+ * The outcome of a trade, sent to the user right after execution and
+ * correlated with the request through the client-supplied order id.
+ */
+public class TradeAck {
+
+	private final String orderId;
+
+	private final Status status;
+
+	private final String ticker;
+
+	private final Trade.TradeAction action;
+
+	private final int shares;
+
+	private final PortfolioPosition position;
+
+	private final String reason;
+
+
+	private TradeAck(Trade trade, Status status, PortfolioPosition position, String reason) {
+		this.orderId = trade.getOrderId();
+		this.status = status;
+		this.ticker = trade.getTicker();
+		this.action = trade.getAction();
+		this.shares = trade.getShares();
+		this.position = position;
+		this.reason = reason;
+	}
+
+
+	public static TradeAck accepted(Trade trade, PortfolioPosition position) {
+		return new TradeAck(trade, Status.Accepted, position, null);
+	}
+
+	public static TradeAck rejected(Trade trade, String reason) {
+		return new TradeAck(trade, Status.Rejected, null, reason);
+	}
+
+	public static TradeAck cancelled(Trade trade) {
+		return new TradeAck(trade, Status.Cancelled, null, null);
+	}
+
+
+	public String getOrderId() {
+		return this.orderId;
+	}
+
+	public Status getStatus() {
+		return this.status;
+	}
+
+	public String getTicker() {
+		return this.ticker;
+	}
+
+	public Trade.TradeAction getAction() {
+		return this.action;
+	}
+
+	public int getShares() {
+		return this.shares;
+	}
+
+	/**
+	 * The position after the trade, or {@code null} if the trade was rejected
+	 * or is a {@link LimitOrder} that fills later.
+	 */
+	public PortfolioPosition getPosition() {
+		return this.position;
+	}
+
+	/**
+	 * Why the trade was rejected, or {@code null} if it was accepted.
+	 */
+	public String getReason() {
+		return this.reason;
+	}
+
+	@Override
+	public String toString() {
+		return "TradeAck [orderId=" + this.orderId + ", status=" + this.status + ", ticker=" + this.ticker +
+				", action=" + this.action + ", shares=" + this.shares + ", reason=" + this.reason + "]";
+	}
+
+
+	public enum Status {
+		Accepted, Rejected, Cancelled;
+	}
+
+}
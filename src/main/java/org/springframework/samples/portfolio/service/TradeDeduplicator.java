@@ -0,0 +1,216 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Remembers the outcome of recent trades by user and client order id, so a
+ * trade resent by a client, e.g. after reconnecting without having seen the
+ * acknowledgement, returns the original outcome instead of executing again.
+ *
+ * <p>Entries are spread over stripes by key, each an insertion-ordered map
+ * guarded by its own lock, so concurrent users rarely contend and a lookup
+ * holds the lock only for a hash map operation. Since all entries live for
+ * the same time, the oldest entry of a stripe is always the first to expire,
+ * and both expiry and the size bound evict from the head in O(1).
+ *
+ * <p>A trade that fails, as opposed to being rejected, is forgotten, so it
+ * can be retried.
+ */
+@Component
+public class TradeDeduplicator {
+
+	private static final Log logger = LogFactory.getLog(TradeDeduplicator.class);
+
+	private static final int STRIPE_COUNT = 64;
+
+
+	private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+
+	private long timeToLiveNanos = TimeUnit.MINUTES.toNanos(5);
+
+	private final AtomicLong duplicateCount = new AtomicLong();
+
+
+	public TradeDeduplicator() {
+		for (int i = 0; i < STRIPE_COUNT; i++) {
+			this.stripes[i] = new Stripe(100_000 / STRIPE_COUNT);
+		}
+	}
+
+
+	/**
+	 * The maximum number of trades to remember, divided evenly among stripes.
+	 * Set with the "portfolio.trade.dedupe.max-entries" property.
+	 * <p>By default this is set to 100000.
+	 */
+	@Value("${portfolio.trade.dedupe.max-entries:100000}")
+	public void setMaxEntries(int maxEntries) {
+		for (Stripe stripe : this.stripes) {
+			stripe.capacity = Math.max(maxEntries / STRIPE_COUNT, 1);
+		}
+	}
+
+	/**
+	 * How long to remember a trade, in milliseconds. Set with the
+	 * "portfolio.trade.dedupe.time-to-live" property.
+	 * <p>By default this is set to 5 minutes.
+	 */
+	@Value("${portfolio.trade.dedupe.time-to-live:300000}")
+	public void setTimeToLive(long millis) {
+		this.timeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+	/**
+	 * Execute the given trade, unless a trade with the same user and order id
+	 * was executed recently, in which case its outcome is returned, completed
+	 * or not. Trades without an order id are always executed.
+	 */
+	public CompletableFuture<TradeAck> execute(Trade trade,
+			Function<Trade, CompletableFuture<TradeAck>> execution) {
+
+		if (trade.getOrderId() == null) {
+			return execution.apply(trade);
+		}
+		String key = trade.getUsername() + ":" + trade.getOrderId();
+		Stripe stripe = getStripe(key);
+		CompletableFuture<TradeAck> future = new CompletableFuture<>();
+		CompletableFuture<TradeAck> existing = stripe.putIfAbsent(key, future, System.nanoTime());
+		if (existing != null) {
+			this.duplicateCount.incrementAndGet();
+			logger.debug("Duplicate trade " + trade);
+			return existing;
+		}
+		try {
+			execution.apply(trade).whenComplete((ack, ex) -> {
+				if (ex != null) {
+					stripe.remove(key, future);
+					future.completeExceptionally(ex);
+				}
+				else {
+					future.complete(ack);
+				}
+			});
+		}
+		catch (RuntimeException ex) {
+			stripe.remove(key, future);
+			throw ex;
+		}
+		return future;
+	}
+
+	private Stripe getStripe(String key) {
+		int hash = key.hashCode();
+		return this.stripes[(hash ^ (hash >>> 16)) & (STRIPE_COUNT - 1)];
+	}
+
+	/**
+	 * The number of trades answered with the outcome of an earlier trade.
+	 */
+	public long getDuplicateCount() {
+		return this.duplicateCount.get();
+	}
+
+	/**
+	 * The number of trades remembered, including expired ones not evicted yet.
+	 */
+	public int getSize() {
+		int size = 0;
+		for (Stripe stripe : this.stripes) {
+			size += stripe.size();
+		}
+		return size;
+	}
+
+
+	private class Stripe {
+
+		private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+		private int capacity;
+
+
+		Stripe(int capacity) {
+			this.capacity = capacity;
+		}
+
+		synchronized CompletableFuture<TradeAck> putIfAbsent(String key, CompletableFuture<TradeAck> future,
+				long now) {
+
+			evict(now);
+			Entry entry = this.entries.get(key);
+			if (entry != null) {
+				return entry.future;
+			}
+			this.entries.put(key, new Entry(future, now));
+			if (this.entries.size() > this.capacity) {
+				Iterator<Entry> iterator = this.entries.values().iterator();
+				iterator.next();
+				iterator.remove();
+			}
+			return null;
+		}
+
+		private void evict(long now) {
+			Iterator<Entry> iterator = this.entries.values().iterator();
+			while (iterator.hasNext()) {
+				if (now - iterator.next().createdNanos < TradeDeduplicator.this.timeToLiveNanos) {
+					break;
+				}
+				iterator.remove();
+			}
+		}
+
+		synchronized void remove(String key, CompletableFuture<TradeAck> future) {
+			Entry entry = this.entries.get(key);
+			if (entry != null && entry.future == future) {
+				this.entries.remove(key);
+			}
+		}
+
+		synchronized int size() {
+			return this.entries.size();
+		}
+	}
+
+
+	private static class Entry {
+
+		private final CompletableFuture<TradeAck> future;
+
+		private final long createdNanos;
+
+
+		Entry(CompletableFuture<TradeAck> future, long createdNanos) {
+			this.future = future;
+			this.createdNanos = createdNanos;
+		}
+	}
+
+}
@@ -0,0 +1,807 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.samples.portfolio.Portfolio;
+import org.springframework.samples.portfolio.PortfolioPosition;
+import org.springframework.samples.portfolio.service.Trade.TradeAction;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * A write-ahead log of executed trades, replayed into the
+ * {@link PortfolioService} on startup so that positions survive a restart.
+ *
+ * <p>{@link #append} queues a trade and returns a future that completes once
+ * the trade is on the storage device. A single writer thread drains the queue,
+ * writes all queued trades and forces them to the device with one
+ * {@code fsync}, i.e. trades executed concurrently share the cost of a
+ * commit. A commit interval can be set to wait for more trades to join a
+ * commit at the expense of latency.
+ *
+ * <p>Each record carries the {@link Portfolio#getVersion() version} of the
+ * portfolio after the trade, and replay skips records the portfolio already
+ * contains. Records are checksummed; a record torn by a crash at the end of
+ * the journal is discarded on startup, which is safe since its trade was
+ * never acknowledged.
+ *
+ * <p>Snapshots of all portfolios are taken periodically without stopping
+ * trading: the writer thread is asked to start a new segment, and since every
+ * trade in earlier segments was applied before it was appended, a
+ * {@link Portfolio#copy() copy} of each portfolio taken afterwards contains
+ * them. The snapshot is named after the first segment it may not contain, and
+ * once it is written, older segments and snapshots are deleted. On startup
+ * the latest snapshot is loaded and only later segments are replayed.
+ *
+ * <p>Active with the "trade-journal" profile.
+ */
+@Component
+@Profile("trade-journal")
+public class TradeJournal implements SmartLifecycle {
+
+	private static final Log logger = LogFactory.getLog(TradeJournal.class);
+
+	static final String SEGMENT_SUFFIX = ".trades";
+
+	static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+	static final int MAGIC = 0x54524a31;
+
+	static final int HEADER_SIZE = 8;
+
+	/** Version 2 added the price of the trade. */
+	static final int FORMAT_VERSION = 2;
+
+	/** Length and checksum of a record. */
+	private static final int FRAME_SIZE = 8;
+
+	/** Timestamp, version, ticker, shares, price, scale and user length. */
+	private static final int FIXED_PAYLOAD_SIZE = 39;
+
+	/** Fixed part of a record in format version 1, without the price. */
+	private static final int FIXED_PAYLOAD_SIZE_V1 = 30;
+
+	private static final int MAX_USERNAME_LENGTH = 255;
+
+
+	private final Path directory;
+
+	private final PortfolioService portfolioService;
+
+	private long segmentSize = 64 * 1024 * 1024;
+
+	private long commitIntervalNanos;
+
+	private long snapshotInterval = 60000;
+
+	private final Queue<Entry> pending = new ConcurrentLinkedQueue<>();
+
+	private final Queue<CompletableFuture<Long>> rollRequests = new ConcurrentLinkedQueue<>();
+
+	private final AtomicLong appendedCount = new AtomicLong();
+
+	private final AtomicLong committedCount = new AtomicLong();
+
+	private final AtomicLong commitCount = new AtomicLong();
+
+	private volatile long replayedCount;
+
+	private final AtomicLong snapshotCount = new AtomicLong();
+
+	private final Object snapshotMonitor = new Object();
+
+	private long snapshotSegmentNumber = -1;
+
+	private ScheduledExecutorService snapshotExecutor;
+
+	private volatile Throwable failure;
+
+	private volatile Thread writerThread;
+
+	// Accessed by the writer thread only, after start
+
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 1024);
+
+	private final CRC32 crc = new CRC32();
+
+	private final List<Entry> batch = new ArrayList<>();
+
+	private FileChannel segment;
+
+	private long segmentPosition;
+
+	private long nextSegmentNumber;
+
+
+	/**
+	 * @param directory the directory for segment files, created if necessary
+	 * @param portfolioService the portfolios to replay trades into on startup
+	 */
+	@Autowired
+	public TradeJournal(
+			@Value("${portfolio.trade.journal.path:${java.io.tmpdir}/portfolio-trades}") String directory,
+			PortfolioService portfolioService) {
+
+		this.directory = Paths.get(directory);
+		this.portfolioService = portfolioService;
+	}
+
+
+	/**
+	 * The size in bytes at which to start a new segment. Set with the
+	 * "portfolio.trade.journal.segment-size" property.
+	 * <p>By default this is set to 64MB.
+	 */
+	@Value("${portfolio.trade.journal.segment-size:67108864}")
+	public void setSegmentSize(long segmentSize) {
+		this.segmentSize = Math.max(segmentSize, HEADER_SIZE + FRAME_SIZE + FIXED_PAYLOAD_SIZE);
+	}
+
+	/**
+	 * How long in microseconds to wait after the first trade of a commit for
+	 * more trades to join it. Set with the
+	 * "portfolio.trade.journal.commit-interval" property.
+	 * <p>By default this is 0, i.e. a commit includes the trades that arrived
+	 * while the previous commit was being forced to the device.
+	 */
+	@Value("${portfolio.trade.journal.commit-interval:0}")
+	public void setCommitInterval(long commitIntervalMicros) {
+		this.commitIntervalNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(commitIntervalMicros, 0));
+	}
+
+	/**
+	 * How often in milliseconds to take a snapshot of all portfolios and
+	 * delete the segments it contains. Set with the
+	 * "portfolio.trade.journal.snapshot-interval" property.
+	 * <p>By default this is set to 60000. Use 0 to take no snapshots.
+	 */
+	@Value("${portfolio.trade.journal.snapshot-interval:60000}")
+	public void setSnapshotInterval(long snapshotInterval) {
+		this.snapshotInterval = Math.max(snapshotInterval, 0);
+	}
+
+	public Path getDirectory() {
+		return this.directory;
+	}
+
+	/**
+	 * The number of trades appended, including those not committed yet.
+	 */
+	public long getAppendedCount() {
+		return this.appendedCount.get();
+	}
+
+	/**
+	 * The number of trades forced to the storage device.
+	 */
+	public long getCommittedCount() {
+		return this.committedCount.get();
+	}
+
+	/**
+	 * The number of times trades were forced to the storage device.
+	 */
+	public long getCommitCount() {
+		return this.commitCount.get();
+	}
+
+	/**
+	 * The number of trades applied to portfolios on startup.
+	 */
+	public long getReplayedCount() {
+		return this.replayedCount;
+	}
+
+	public long getSnapshotCount() {
+		return this.snapshotCount.get();
+	}
+
+	/**
+	 * Return the reason the given trade cannot be appended, or {@code null}
+	 * if it can. Checked before the trade executes.
+	 */
+	public String check(Trade trade) {
+		if (trade.getUsername().getBytes(StandardCharsets.UTF_8).length > MAX_USERNAME_LENGTH) {
+			return "Username too long";
+		}
+		if (!TickFile.isEncodable(trade.getTicker())) {
+			return "Invalid ticker";
+		}
+		return null;
+	}
+
+	/**
+	 * Append a trade executed on the given portfolio version.
+	 * @param trade the trade
+	 * @param version the {@link Portfolio#getVersion() version} of the
+	 * portfolio after the trade
+	 * @return a future that completes when the trade is durable, or
+	 * completes exceptionally if the journal is not running or has failed
+	 */
+	public CompletableFuture<Void> append(Trade trade, long version) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		Thread thread = this.writerThread;
+		if (thread == null || this.failure != null) {
+			future.completeExceptionally(this.failure != null ?
+					new IllegalStateException("Trade journal failed", this.failure) :
+					new IllegalStateException("Trade journal is not running"));
+			return future;
+		}
+		byte[] username = trade.getUsername().getBytes(StandardCharsets.UTF_8);
+		if (username.length > MAX_USERNAME_LENGTH) {
+			throw new IllegalArgumentException("Username too long: " + trade.getUsername());
+		}
+		int shares = (trade.getAction() == TradeAction.Buy ? trade.getShares() : -trade.getShares());
+		Entry entry = new Entry(System.currentTimeMillis(), version,
+				TickFile.encodeTicker(trade.getTicker()), shares, trade.getPriceTicks(), trade.getScale(),
+				username, future);
+		this.pending.add(entry);
+		if (this.failure != null && this.pending.remove(entry)) {
+			// The writer thread failed after the check above and may have drained the queue already
+			future.completeExceptionally(new IllegalStateException("Trade journal failed", this.failure));
+			return future;
+		}
+		this.appendedCount.incrementAndGet();
+		LockSupport.unpark(thread);
+		return future;
+	}
+
+	/**
+	 * Replay the journal and start the writer thread.
+	 */
+	@Override
+	public synchronized void start() {
+		if (this.writerThread != null) {
+			return;
+		}
+		try {
+			Files.createDirectories(this.directory);
+			recover();
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Failed to recover trade journal in " + this.directory, ex);
+		}
+		Thread thread = new Thread(this::commitTrades, "tradeJournal");
+		thread.setDaemon(true);
+		this.writerThread = thread;
+		thread.start();
+		if (this.snapshotInterval > 0) {
+			this.snapshotExecutor = Executors.newSingleThreadScheduledExecutor(
+					new CustomizableThreadFactory("tradeJournalSnapshot-"));
+			this.snapshotExecutor.scheduleWithFixedDelay(() -> {
+				try {
+					takeSnapshot();
+				}
+				catch (Throwable ex) {
+					logger.error("Failed to take portfolio snapshot in " + this.directory, ex);
+				}
+			}, this.snapshotInterval, this.snapshotInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Commit queued trades and stop the writer thread. Trades should no
+	 * longer be appended at this point.
+	 */
+	@Override
+	public synchronized void stop() {
+		if (this.snapshotExecutor != null) {
+			this.snapshotExecutor.shutdownNow();
+			try {
+				this.snapshotExecutor.awaitTermination(5, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			this.snapshotExecutor = null;
+		}
+		Thread thread = this.writerThread;
+		this.writerThread = null;
+		if (thread != null) {
+			LockSupport.unpark(thread);
+			try {
+				thread.join(5000);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return (this.writerThread != null);
+	}
+
+	@Override
+	public int getPhase() {
+		// Start before and stop after the TradeServiceImpl
+		return Integer.MAX_VALUE - 1;
+	}
+
+
+	// Snapshots
+
+	/**
+	 * Write a snapshot of all portfolios and delete the segments and
+	 * snapshots it replaces. Trading continues while the snapshot is taken.
+	 * @return the snapshot file
+	 */
+	public Path takeSnapshot() throws IOException {
+		synchronized (this.snapshotMonitor) {
+			long segmentNumber = endSegment();
+			Path path = this.directory.resolve(getFileName(segmentNumber, SNAPSHOT_SUFFIX));
+			if (segmentNumber == this.snapshotSegmentNumber) {
+				// No trades since the last snapshot
+				return path;
+			}
+			long startTime = System.nanoTime();
+			Map<String, Portfolio> portfolios = new LinkedHashMap<>();
+			this.portfolioService.forEachPortfolio((username, portfolio) -> portfolios.put(username, portfolio.copy()));
+
+			Path tempPath = this.directory.resolve(path.getFileName() + ".tmp");
+			PortfolioSnapshotFile.write(tempPath, portfolios);
+			Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			syncDirectory();
+			this.snapshotSegmentNumber = segmentNumber;
+			this.snapshotCount.incrementAndGet();
+
+			int deleted = 0;
+			for (Path file : getFiles(this.directory, SEGMENT_SUFFIX, SNAPSHOT_SUFFIX)) {
+				if (getFileNumber(file) < segmentNumber) {
+					Files.delete(file);
+					deleted++;
+				}
+			}
+			logger.info("Wrote snapshot of " + portfolios.size() + " portfolios to " + path + " (" +
+					Files.size(path) + " bytes) in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) +
+					"ms, deleted " + deleted + " files");
+			return path;
+		}
+	}
+
+	/**
+	 * Have the writer thread finish the current segment.
+	 * @return the number of the next segment, i.e. the first segment that
+	 * may contain trades appended after this call
+	 */
+	private long endSegment() throws IOException {
+		Thread thread = this.writerThread;
+		if (thread == null) {
+			throw new IllegalStateException("Trade journal is not running");
+		}
+		CompletableFuture<Long> request = new CompletableFuture<>();
+		this.rollRequests.add(request);
+		LockSupport.unpark(thread);
+		try {
+			return request.get();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the end of a segment", ex);
+		}
+		catch (ExecutionException ex) {
+			throw new IOException("Failed to end trade journal segment", ex.getCause());
+		}
+	}
+
+	private void syncDirectory() {
+		try (FileChannel channel = FileChannel.open(this.directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		}
+		catch (IOException ex) {
+			// Not supported on all platforms
+			logger.debug("Could not sync directory " + this.directory, ex);
+		}
+	}
+
+
+	// Recovery
+
+	private void recover() throws IOException {
+		long startTime = System.nanoTime();
+		for (Path file : getFiles(this.directory, ".tmp")) {
+			Files.delete(file);
+		}
+
+		List<Path> snapshots = getFiles(this.directory, SNAPSHOT_SUFFIX);
+		long firstSegmentNumber = 0;
+		int restored = 0;
+		if (!snapshots.isEmpty()) {
+			Path snapshot = snapshots.get(snapshots.size() - 1);
+			firstSegmentNumber = getFileNumber(snapshot);
+			restored = PortfolioSnapshotFile.read(snapshot, this::restore);
+			this.snapshotSegmentNumber = firstSegmentNumber;
+		}
+
+		List<Path> segments = getSegments(this.directory);
+		long replayed = 0;
+		long skipped = 0;
+		int replayedSegments = 0;
+		for (int i = 0; i < segments.size(); i++) {
+			Path path = segments.get(i);
+			if (getFileNumber(path) < firstSegmentNumber) {
+				// Left over from a snapshot that was interrupted while deleting
+				continue;
+			}
+			replayedSegments++;
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+			if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+				throw new IllegalStateException("Not a trade journal segment: " + path);
+			}
+			int formatVersion = buffer.getInt(4);
+			if (formatVersion < 1 || formatVersion > FORMAT_VERSION) {
+				throw new IllegalStateException("Unsupported trade journal format " + formatVersion + ": " + path);
+			}
+			int fixedPayloadSize = (formatVersion == 1 ? FIXED_PAYLOAD_SIZE_V1 : FIXED_PAYLOAD_SIZE);
+			buffer.position(HEADER_SIZE);
+			while (buffer.hasRemaining()) {
+				int offset = buffer.position();
+				ByteBuffer payload = readPayload(buffer, fixedPayloadSize);
+				if (payload == null) {
+					if (i < segments.size() - 1) {
+						throw new IllegalStateException("Corrupt trade journal segment " + path + " at " + offset);
+					}
+					logger.warn("Discarding incomplete trade at the end of " + path + ", offset " + offset);
+					try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+						channel.truncate(offset);
+						channel.force(true);
+					}
+					break;
+				}
+				if (apply(payload, formatVersion)) {
+					replayed++;
+				}
+				else {
+					skipped++;
+				}
+			}
+		}
+		this.nextSegmentNumber = firstSegmentNumber;
+		if (!segments.isEmpty()) {
+			this.nextSegmentNumber = Math.max(getFileNumber(segments.get(segments.size() - 1)) + 1, firstSegmentNumber);
+		}
+		this.replayedCount = replayed;
+		logger.info("Restored " + restored + " portfolios from snapshot and replayed " + replayed + " trades from " +
+				replayedSegments + " segments in " + this.directory + ", skipped " + skipped + ", took " +
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + "ms");
+	}
+
+	private void restore(String username, Portfolio snapshot) {
+		Portfolio portfolio;
+		try {
+			portfolio = this.portfolioService.findPortfolio(username);
+		}
+		catch (IllegalArgumentException ex) {
+			logger.warn("Skipping snapshot of unknown user " + username);
+			return;
+		}
+		portfolio.restore(snapshot.getPositions(), snapshot.getVersion());
+	}
+
+	/**
+	 * Return the payload of the next record, or {@code null} if it is
+	 * incomplete or fails its checksum.
+	 */
+	private ByteBuffer readPayload(ByteBuffer buffer, int fixedPayloadSize) {
+		if (buffer.remaining() < FRAME_SIZE) {
+			return null;
+		}
+		int length = buffer.getInt();
+		int checksum = buffer.getInt();
+		if (length < fixedPayloadSize || length > fixedPayloadSize + MAX_USERNAME_LENGTH ||
+				length > buffer.remaining()) {
+			return null;
+		}
+		ByteBuffer payload = buffer.slice();
+		payload.limit(length);
+		this.crc.reset();
+		this.crc.update(payload.duplicate());
+		if ((int) this.crc.getValue() != checksum) {
+			return null;
+		}
+		buffer.position(buffer.position() + length);
+		return payload;
+	}
+
+	/**
+	 * Apply the trade in the given record unless the portfolio contains it.
+	 */
+	private boolean apply(ByteBuffer payload, int formatVersion) {
+		payload.getLong(); // timestamp
+		long version = payload.getLong();
+		String ticker = TickFile.decodeTicker(payload.getLong());
+		int shares = payload.getInt();
+		long priceTicks = 0;
+		int scale = 0;
+		if (formatVersion > 1) {
+			priceTicks = payload.getLong();
+			scale = payload.get();
+		}
+		byte[] bytes = new byte[payload.getShort() & 0xFFFF];
+		payload.get(bytes);
+		String username = new String(bytes, StandardCharsets.UTF_8);
+
+		Portfolio portfolio;
+		try {
+			portfolio = this.portfolioService.findPortfolio(username);
+		}
+		catch (IllegalArgumentException ex) {
+			logger.warn("Skipping trade of unknown user " + username);
+			return false;
+		}
+		if (version <= portfolio.getVersion()) {
+			return false;
+		}
+		PortfolioPosition position;
+		if (shares < 0) {
+			position = portfolio.sell(ticker, -shares);
+		}
+		else if (priceTicks > 0) {
+			position = portfolio.buy(ticker, shares, FixedPointPrice.toDouble(priceTicks, scale));
+		}
+		else {
+			position = portfolio.buy(ticker, shares);
+		}
+		if (position == null || portfolio.getVersion() != version) {
+			logger.warn("Replayed trade of " + shares + " " + ticker + " for " + username + " as version " +
+					portfolio.getVersion() + " but it was journaled as version " + version);
+		}
+		return true;
+	}
+
+	static List<Path> getSegments(Path directory) throws IOException {
+		return getFiles(directory, SEGMENT_SUFFIX);
+	}
+
+	static List<Path> getSnapshots(Path directory) throws IOException {
+		return getFiles(directory, SNAPSHOT_SUFFIX);
+	}
+
+	private static List<Path> getFiles(Path directory, String... suffixes) throws IOException {
+		List<Path> files = new ArrayList<>();
+		if (Files.isDirectory(directory)) {
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+				for (Path path : stream) {
+					for (String suffix : suffixes) {
+						if (path.getFileName().toString().endsWith(suffix)) {
+							files.add(path);
+						}
+					}
+				}
+			}
+		}
+		// Zero-padded numbers sort by name
+		Collections.sort(files);
+		return files;
+	}
+
+	private static String getFileName(long number, String suffix) {
+		return String.format("%010d", number) + suffix;
+	}
+
+	private static long getFileNumber(Path file) {
+		String name = file.getFileName().toString();
+		return Long.parseLong(name.substring(0, name.indexOf('.')));
+	}
+
+
+	// Writing
+
+	private void commitTrades() {
+		try {
+			while (true) {
+				boolean stopping = (this.writerThread == null);
+				if (!this.rollRequests.isEmpty()) {
+					if (!this.pending.isEmpty()) {
+						commit();
+					}
+					closeSegment();
+					CompletableFuture<Long> request;
+					while ((request = this.rollRequests.poll()) != null) {
+						request.complete(this.nextSegmentNumber);
+					}
+				}
+				if (this.pending.isEmpty()) {
+					if (stopping) {
+						break;
+					}
+					LockSupport.park(this);
+					continue;
+				}
+				if (this.commitIntervalNanos > 0 && !stopping) {
+					// Let concurrent trades join this commit
+					long deadline = System.nanoTime() + this.commitIntervalNanos;
+					long remaining;
+					while ((remaining = deadline - System.nanoTime()) > 0) {
+						LockSupport.parkNanos(this, remaining);
+					}
+				}
+				commit();
+			}
+		}
+		catch (Throwable ex) {
+			logger.error("Trade journal in " + this.directory + " failed, trades can no longer be acknowledged", ex);
+			this.failure = ex;
+			for (Entry entry : this.batch) {
+				entry.future.completeExceptionally(ex);
+			}
+			this.batch.clear();
+		}
+		finally {
+			closeSegment();
+			Throwable failure = this.failure;
+			Entry entry;
+			while ((entry = this.pending.poll()) != null) {
+				entry.future.completeExceptionally(failure != null ?
+						new IllegalStateException("Trade journal failed", failure) :
+						new IllegalStateException("Trade journal stopped"));
+			}
+			CompletableFuture<Long> request;
+			while ((request = this.rollRequests.poll()) != null) {
+				request.completeExceptionally(new IllegalStateException("Trade journal stopped"));
+			}
+		}
+	}
+
+	private void commit() throws IOException {
+		Entry entry;
+		while ((entry = this.pending.poll()) != null) {
+			this.batch.add(entry);
+			int recordSize = FRAME_SIZE + FIXED_PAYLOAD_SIZE + entry.username.length;
+			if (this.segment == null || this.segmentPosition + this.buffer.position() + recordSize > this.segmentSize) {
+				rollSegment();
+			}
+			if (this.buffer.remaining() < recordSize) {
+				writeBuffer();
+			}
+			writeRecord(entry);
+		}
+		writeBuffer();
+		this.segment.force(false);
+		this.committedCount.addAndGet(this.batch.size());
+		this.commitCount.incrementAndGet();
+		for (Entry committed : this.batch) {
+			committed.future.complete(null);
+		}
+		this.batch.clear();
+	}
+
+	private void writeRecord(Entry entry) {
+		int start = this.buffer.position();
+		this.buffer.position(start + FRAME_SIZE);
+		this.buffer.putLong(entry.timestamp);
+		this.buffer.putLong(entry.version);
+		this.buffer.putLong(entry.ticker);
+		this.buffer.putInt(entry.shares);
+		this.buffer.putLong(entry.priceTicks);
+		this.buffer.put((byte) entry.scale);
+		this.buffer.putShort((short) entry.username.length);
+		this.buffer.put(entry.username);
+		int end = this.buffer.position();
+
+		ByteBuffer payload = this.buffer.duplicate();
+		payload.position(start + FRAME_SIZE).limit(end);
+		this.crc.reset();
+		this.crc.update(payload);
+		this.buffer.putInt(start, end - start - FRAME_SIZE);
+		this.buffer.putInt(start + 4, (int) this.crc.getValue());
+	}
+
+	private void writeBuffer() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) {
+			this.segmentPosition += this.segment.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	private void rollSegment() throws IOException {
+		if (this.segment != null) {
+			writeBuffer();
+			this.segment.force(false);
+			this.segment.close();
+		}
+		Path path = this.directory.resolve(getFileName(this.nextSegmentNumber++, SEGMENT_SUFFIX));
+		logger.debug("Starting trade journal segment " + path);
+		this.segment = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		// Make the new file itself durable before the first commit to it completes
+		syncDirectory();
+		this.segmentPosition = 0;
+		this.buffer.putInt(MAGIC);
+		this.buffer.putInt(FORMAT_VERSION);
+	}
+
+	private void closeSegment() {
+		if (this.segment != null) {
+			try {
+				this.segment.close();
+			}
+			catch (IOException ex) {
+				logger.error("Failed to close trade journal segment", ex);
+			}
+			this.segment = null;
+		}
+	}
+
+
+	private static class Entry {
+
+		private final long timestamp;
+
+		private final long version;
+
+		private final long ticker;
+
+		private final int shares;
+
+		private final long priceTicks;
+
+		private final int scale;
+
+		private final byte[] username;
+
+		private final CompletableFuture<Void> future;
+
+
+		Entry(long timestamp, long version, long ticker, int shares, long priceTicks, int scale,
+				byte[] username, CompletableFuture<Void> future) {
+
+			this.timestamp = timestamp;
+			this.version = version;
+			this.ticker = ticker;
+			this.shares = shares;
+			this.priceTicks = priceTicks;
+			this.scale = scale;
+			this.username = username;
+			this.future = future;
+		}
+	}
+
+}
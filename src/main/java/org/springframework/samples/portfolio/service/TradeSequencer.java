@@ -0,0 +1,126 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.service;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+
+/**
+ * Runs tasks on a fixed set of single-threaded shards, selected by key.
+ *
+ * <p>All tasks for the same key run on the same thread in submission order,
+ * so state owned by a key, such as a user's portfolio, has a single writer
+ * and needs no locking. Tasks for different keys run in parallel on up to as
+ * many threads as there are shards.
+ */
+public class TradeSequencer {
+
+	private final String threadNamePrefix;
+
+	private final int shardCount;
+
+	private volatile ThreadPoolExecutor[] shards;
+
+
+	public TradeSequencer(String threadNamePrefix, int shardCount) {
+		this.threadNamePrefix = threadNamePrefix;
+		this.shardCount = Math.max(shardCount, 1);
+	}
+
+
+	public int getShardCount() {
+		return this.shardCount;
+	}
+
+	/**
+	 * Run the given task on the shard of the given key.
+	 * @throws RejectedExecutionException if the sequencer is not running
+	 */
+	public void execute(String key, Runnable task) {
+		ThreadPoolExecutor[] shards = this.shards;
+		if (shards == null) {
+			throw new RejectedExecutionException("Trade sequencer is not running");
+		}
+		shards[getShard(key)].execute(task);
+	}
+
+	/**
+	 * Return the index of the shard for the given key.
+	 */
+	public int getShard(String key) {
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		return (hash & Integer.MAX_VALUE) % this.shardCount;
+	}
+
+	/**
+	 * The number of tasks waiting to run, across all shards.
+	 */
+	public int getBacklog() {
+		int backlog = 0;
+		ThreadPoolExecutor[] shards = this.shards;
+		if (shards != null) {
+			for (ThreadPoolExecutor shard : shards) {
+				backlog += shard.getQueue().size();
+			}
+		}
+		return backlog;
+	}
+
+	public synchronized void start() {
+		if (this.shards != null) {
+			return;
+		}
+		ThreadPoolExecutor[] shards = new ThreadPoolExecutor[this.shardCount];
+		for (int i = 0; i < shards.length; i++) {
+			shards[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+					new CustomizableThreadFactory(this.threadNamePrefix + i + "-"));
+		}
+		this.shards = shards;
+	}
+
+	/**
+	 * Stop accepting tasks and wait for queued tasks to complete.
+	 */
+	public synchronized void stop() {
+		ThreadPoolExecutor[] shards = this.shards;
+		this.shards = null;
+		if (shards == null) {
+			return;
+		}
+		for (ThreadPoolExecutor shard : shards) {
+			shard.shutdown();
+		}
+		try {
+			for (ThreadPoolExecutor shard : shards) {
+				shard.awaitTermination(5, TimeUnit.SECONDS);
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public boolean isRunning() {
+		return (this.shards != null);
+	}
+
+}
@@ -15,9 +15,25 @@
  */
 package org.springframework.samples.portfolio.service;
 
+import java.util.concurrent.CompletableFuture;
+
 
 public interface TradeService {
 
-	void executeTrade(Trade trade);
+	/**
+	 * Execute the given trade, possibly asynchronously.
+	 * @return a future completed with the outcome of the trade, or exceptionally
+	 * if it could not be executed
+	 */
+	CompletableFuture<TradeAck> executeTrade(Trade trade);
+
+	/**
+	 * Execute a trade that settles a match between two orders, without the
+	 * pre-trade checks the orders already passed when placed.
+	 * <p>By default this is the same as {@link #executeTrade}.
+	 */
+	default CompletableFuture<TradeAck> settleTrade(Trade trade) {
+		return executeTrade(trade);
+	}
 
 }
@@ -18,31 +18,62 @@ package org.springframework.samples.portfolio.service;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.simp.SimpMessageSendingOperations;
 import org.springframework.samples.portfolio.Portfolio;
 import org.springframework.samples.portfolio.PortfolioPosition;
 import org.springframework.samples.portfolio.service.Trade.TradeAction;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.MimeTypeUtils;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 @Service
-public class TradeServiceImpl implements TradeService {
+public class TradeServiceImpl implements TradeService, SmartLifecycle {
 
 	private static final Log logger = LogFactory.getLog(TradeServiceImpl.class);
 
+	/** Simulated delay before the position update of a trade is sent. */
+	private static final long NOTIFICATION_DELAY = 1500;
+
 	private final SimpMessageSendingOperations messagingTemplate;
 
 	private final PortfolioService portfolioService;
 
-	private final List<TradeResult> tradeResults = new CopyOnWriteArrayList<>();
+	private final TimerWheel<TradeResult> tradeResults =
+			new TimerWheel<>("tradeNotifications", 10, TimeUnit.MILLISECONDS, 512, this::sendTradeNotification);
+
+	private final Map<String, Object> notificationHeaders =
+			Collections.singletonMap(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON);
+
+	private TradeSequencer tradeSequencer =
+			new TradeSequencer("tradeShard-", Runtime.getRuntime().availableProcessors());
+
+	private List<PositionListener> positionListeners = Collections.emptyList();
+
+	// "user:ticker" -> scheduled result, in coalescing mode only
+	private final Map<String, TradeResult> pendingResults = new ConcurrentHashMap<>();
+
+	private final AtomicLong coalescedCount = new AtomicLong();
+
+	private boolean coalesce;
+
+	private TradeJournal tradeJournal;
+
+	private PreTradeRiskPipeline riskPipeline;
+
+	private OrderReservations orderReservations;
 
 
 	@Autowired
@@ -51,53 +82,321 @@ public class TradeServiceImpl implements TradeService {
 		this.portfolioService = portfolioService;
 	}
 
+	/**
+	 * The number of threads to execute trades on. Trades of one user always
+	 * execute on the same thread, in the order received. Set with the
+	 * "portfolio.trade.shards" property.
+	 * <p>By default this is set to the number of available processors.
+	 */
+	@Value("${portfolio.trade.shards:0}")
+	public void setShardCount(int shardCount) {
+		if (shardCount > 0) {
+			this.tradeSequencer = new TradeSequencer("tradeShard-", shardCount);
+		}
+	}
+
+	/**
+	 * Whether to merge the results of trades for the same user and ticker
+	 * that are waiting to be sent into one position update with the latest
+	 * position. Set with the "portfolio.trade.coalesce" property.
+	 * <p>By default this is set to false.
+	 */
+	@Value("${portfolio.trade.coalesce:false}")
+	public void setCoalesce(boolean coalesce) {
+		this.coalesce = coalesce;
+	}
+
+	/**
+	 * Listeners to notify of every position changed by a trade.
+	 */
+	@Autowired(required = false)
+	public void setPositionListeners(List<PositionListener> positionListeners) {
+		this.positionListeners = positionListeners;
+	}
+
+	/**
+	 * A journal to append accepted trades to before they are acknowledged.
+	 */
+	@Autowired(required = false)
+	public void setTradeJournal(TradeJournal tradeJournal) {
+		this.tradeJournal = tradeJournal;
+	}
+
+	/**
+	 * Pre-trade checks to run on the shard of the user before a trade executes.
+	 */
+	@Autowired(required = false)
+	public void setRiskPipeline(PreTradeRiskPipeline riskPipeline) {
+		this.riskPipeline = riskPipeline;
+	}
+
+	/**
+	 * The orders whose buy shares count towards the position limit of a trade,
+	 * and whose sell shares a trade cannot sell. Lazy, since the
+	 * {@link MatchingEngine} settles its fills through this service.
+	 */
+	@Autowired(required = false)
+	public void setOrderReservations(@Lazy OrderReservations orderReservations) {
+		this.orderReservations = orderReservations;
+	}
+
 	/**
 	 * In real application a trade is probably executed in an external system, i.e. asynchronously.
 	 */
-	public void executeTrade(Trade trade) {
+	public CompletableFuture<TradeAck> executeTrade(Trade trade) {
+		return execute(trade, true);
+	}
 
+	@Override
+	public CompletableFuture<TradeAck> settleTrade(Trade trade) {
+		return execute(trade, false);
+	}
+
+	private CompletableFuture<TradeAck> execute(Trade trade, boolean checkRisk) {
+		CompletableFuture<TradeAck> future = new CompletableFuture<>();
+		try {
+			this.tradeSequencer.execute(trade.getUsername(), () -> {
+				try {
+					doExecuteTrade(trade, checkRisk).whenComplete((ack, ex) -> {
+						if (ex != null) {
+							logger.error("Failed to execute trade " + trade, ex);
+							future.completeExceptionally(ex);
+						}
+						else {
+							future.complete(ack);
+						}
+					});
+				}
+				catch (RuntimeException ex) {
+					logger.error("Failed to execute trade " + trade, ex);
+					future.completeExceptionally(ex);
+				}
+			});
+		}
+		catch (RejectedExecutionException ex) {
+			future.completeExceptionally(ex);
+		}
+		return future;
+	}
+
+	/**
+	 * Runs on the shard of the trading user, which is the only thread to
+	 * modify the user's portfolio, so pre-trade checks see the position the
+	 * trade changes. With a journal, listeners and the client are notified
+	 * once the trade is durable, and the trade is reverted if it cannot be
+	 * made durable.
+	 */
+	private CompletableFuture<TradeAck> doExecuteTrade(Trade trade, boolean checkRisk) {
 		Portfolio portfolio = this.portfolioService.findPortfolio(trade.getUsername());
 		String ticker = trade.getTicker();
 		int sharesToTrade = trade.getShares();
 
+		if (checkRisk && this.riskPipeline != null) {
+			int restingBuyShares = (this.orderReservations != null ?
+					this.orderReservations.getBuyShares(trade.getUsername(), ticker) : 0);
+			String reason = this.riskPipeline.check(trade, portfolio.getPortfolioPosition(ticker), restingBuyShares);
+			if (reason != null) {
+				return CompletableFuture.completedFuture(TradeAck.rejected(trade, reason));
+			}
+		}
+
+		// Fills of sell orders use up the shares reserved for them
+		if (checkRisk && this.orderReservations != null && trade.getAction() == TradeAction.Sell) {
+			int reservedShares = this.orderReservations.getReservedShares(trade.getUsername(), ticker);
+			PortfolioPosition position = portfolio.getPortfolioPosition(ticker);
+			if (reservedShares > 0 && position != null && position.getShares() - reservedShares < sharesToTrade) {
+				return CompletableFuture.completedFuture(TradeAck.rejected(trade,
+						"Not enough shares, " + reservedShares + " reserved by sell orders"));
+			}
+		}
+
+		if (this.tradeJournal != null) {
+			String reason = this.tradeJournal.check(trade);
+			if (reason != null) {
+				return CompletableFuture.completedFuture(TradeAck.rejected(trade, reason));
+			}
+		}
+
 		PortfolioPosition newPosition = (trade.getAction() == TradeAction.Buy) ?
-				portfolio.buy(ticker, sharesToTrade) : portfolio.sell(ticker, sharesToTrade);
+				buy(portfolio, trade) : portfolio.sell(ticker, sharesToTrade);
 
 		if (newPosition == null) {
-			String payload = "Rejected trade " + trade;
-			this.messagingTemplate.convertAndSendToUser(trade.getUsername(), "/queue/errors", payload);
-			return;
+			return CompletableFuture.completedFuture(
+					TradeAck.rejected(trade, getRejectReason(trade, portfolio.getPortfolioPosition(ticker))));
+		}
+
+		if (this.tradeJournal == null) {
+			return CompletableFuture.completedFuture(notifyPositionChange(trade, newPosition));
 		}
 
-		this.tradeResults.add(new TradeResult(trade.getUsername(), newPosition));
+		// Read by the only writer of the portfolio, so this is the version of this trade
+		CompletableFuture<Void> journaled = this.tradeJournal.append(trade, portfolio.getVersion());
+		CompletableFuture<TradeAck> result = new CompletableFuture<>();
+		journaled.whenComplete((v, ex) -> {
+			Runnable task = () -> {
+				if (ex != null) {
+					revertTrade(trade, portfolio);
+					result.completeExceptionally(ex);
+				}
+				else {
+					result.complete(notifyPositionChange(trade, newPosition));
+				}
+			};
+			// Back on the shard, in journal order, which is the order of the user's trades
+			try {
+				this.tradeSequencer.execute(trade.getUsername(), task);
+			}
+			catch (RejectedExecutionException rex) {
+				// Shutting down, no more trades execute
+				task.run();
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Buy at the price of the trade if it has one, e.g. a fill, or else at the
+	 * price of the position.
+	 */
+	private static PortfolioPosition buy(Portfolio portfolio, Trade trade) {
+		if (trade.getPriceTicks() > 0) {
+			double price = FixedPointPrice.toDouble(trade.getPriceTicks(), trade.getScale());
+			return portfolio.buy(trade.getTicker(), trade.getShares(), price);
+		}
+		return portfolio.buy(trade.getTicker(), trade.getShares());
+	}
+
+	private TradeAck notifyPositionChange(Trade trade, PortfolioPosition newPosition) {
+		for (PositionListener listener : this.positionListeners) {
+			listener.onPositionChange(trade.getUsername(), newPosition);
+		}
+		if (this.coalesce) {
+			schedulePositionUpdate(trade.getUsername(), newPosition);
+		}
+		else {
+			this.tradeResults.schedule(new TradeResult(trade.getUsername(), newPosition, null),
+					NOTIFICATION_DELAY, TimeUnit.MILLISECONDS);
+		}
+		return TradeAck.accepted(trade, newPosition);
 	}
 
-	@Scheduled(fixedDelay=1500)
-	public void sendTradeNotifications() {
+	/**
+	 * Undo a trade that could not be journaled with the opposite trade.
+	 * The average cost of a reverted buy is not restored.
+	 */
+	private void revertTrade(Trade trade, Portfolio portfolio) {
+		PortfolioPosition position = (trade.getAction() == TradeAction.Buy) ?
+				portfolio.sell(trade.getTicker(), trade.getShares()) :
+				portfolio.buy(trade.getTicker(), trade.getShares());
+		if (position == null) {
+			logger.error("Failed to revert trade " + trade + " after a trade journal failure");
+		}
+		else {
+			logger.warn("Reverted trade " + trade + " after a trade journal failure");
+		}
+	}
 
-		Map<String, Object> map = new HashMap<>();
-		map.put(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON);
+	private static String getRejectReason(Trade trade, PortfolioPosition position) {
+		if (position == null) {
+			return "No position in " + trade.getTicker();
+		}
+		if (trade.getShares() < 1) {
+			return "Invalid number of shares";
+		}
+		return "Not enough shares";
+	}
 
-		for (TradeResult result : this.tradeResults) {
-			if (System.currentTimeMillis() >= (result.timestamp + 1500)) {
-				logger.debug("Sending position update: " + result.position);
-				this.messagingTemplate.convertAndSendToUser(result.user, "/queue/position-updates", result.position, map);
-				this.tradeResults.remove(result);
+	/**
+	 * Update the pending result for the same user and ticker, if any, or
+	 * schedule a new one. The update is sent when the first result is due.
+	 */
+	private void schedulePositionUpdate(String user, PortfolioPosition position) {
+		String key = user + ":" + position.getTicker();
+		TradeResult[] created = new TradeResult[1];
+		this.pendingResults.compute(key, (k, pending) -> {
+			if (pending != null) {
+				pending.position = position;
+				this.coalescedCount.incrementAndGet();
+				return pending;
 			}
+			created[0] = new TradeResult(user, position, k);
+			return created[0];
+		});
+		if (created[0] != null) {
+			this.tradeResults.schedule(created[0], NOTIFICATION_DELAY, TimeUnit.MILLISECONDS);
 		}
 	}
 
+	private void sendTradeNotification(TradeResult result) {
+		if (result.key != null) {
+			// Stop merging; changes made before the removal are visible after it
+			this.pendingResults.remove(result.key, result);
+		}
+		PortfolioPosition position = result.position;
+		logger.debug("Sending position update: " + position);
+		this.messagingTemplate.convertAndSendToUser(result.user, "/queue/position-updates",
+				position, this.notificationHeaders);
+	}
 
-	private static class TradeResult {
+	/**
+	 * The number of position updates waiting for their delay to elapse.
+	 */
+	public long getNotificationBacklog() {
+		return this.tradeResults.getPendingCount();
+	}
+
+	/**
+	 * The delayed delivery of position updates, including lateness metrics.
+	 */
+	public TimerWheel<?> getNotificationScheduler() {
+		return this.tradeResults;
+	}
+
+	/**
+	 * The number of position updates not sent because a later trade for the
+	 * same user and ticker superseded them, in coalescing mode.
+	 */
+	public long getCoalescedCount() {
+		return this.coalescedCount.get();
+	}
+
+	public TradeSequencer getTradeSequencer() {
+		return this.tradeSequencer;
+	}
+
+	@Override
+	public void start() {
+		this.tradeResults.start();
+		this.tradeSequencer.start();
+	}
+
+	@Override
+	public void stop() {
+		this.tradeSequencer.stop();
+		this.tradeResults.stop();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.tradeSequencer.isRunning();
+	}
+
+
+	static class TradeResult {
 
 		private final String user;
-		private final PortfolioPosition position;
-		private final long timestamp;
+		private volatile PortfolioPosition position;
+		private final String key;
 
-		public TradeResult(String user, PortfolioPosition position) {
+		public TradeResult(String user, PortfolioPosition position, String key) {
 			this.user = user;
 			this.position = position;
-			this.timestamp = System.currentTimeMillis();
+			this.key = key;
+		}
+
+		@Override
+		public String toString() {
+			return "TradeResult[user=" + this.user + ", position=" + this.position + "]";
 		}
 	}
 
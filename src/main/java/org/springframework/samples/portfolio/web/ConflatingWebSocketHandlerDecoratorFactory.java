@@ -0,0 +1,97 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.web;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+
+/**
+ * Decorates the STOMP WebSocket handler so that every session it sees is a
+ * {@link ConflatingWebSocketSession}, giving each client its own latest-value
+ * conflation of quote frames.
+ */
+public class ConflatingWebSocketHandlerDecoratorFactory implements WebSocketHandlerDecoratorFactory {
+
+	private final String destinationPrefix;
+
+	private final Executor executor;
+
+	private int bufferSizeLimit = 1000;
+
+	private final Map<String, ConflatingWebSocketSession> sessions = new ConcurrentHashMap<>();
+
+	private final AtomicLong conflatedCount = new AtomicLong();
+
+
+	/**
+	 * @param destinationPrefix the prefix of destinations to conflate, e.g. "/topic/price.stock."
+	 * @param executor the executor to send messages with
+	 */
+	public ConflatingWebSocketHandlerDecoratorFactory(String destinationPrefix, Executor executor) {
+		this.destinationPrefix = destinationPrefix;
+		this.executor = executor;
+	}
+
+
+	/**
+	 * The maximum number of messages a session may have waiting to be sent
+	 * before it is closed. Conflated messages take up one slot per destination.
+	 * <p>By default this is set to 1000.
+	 */
+	public void setBufferSizeLimit(int bufferSizeLimit) {
+		this.bufferSizeLimit = bufferSizeLimit;
+	}
+
+	/**
+	 * The number of messages dropped in favor of a newer one, across all sessions.
+	 */
+	public long getConflatedCount() {
+		return this.conflatedCount.get();
+	}
+
+	@Override
+	public WebSocketHandler decorate(WebSocketHandler handler) {
+		return new WebSocketHandlerDecorator(handler) {
+
+			@Override
+			public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+				ConflatingWebSocketSession conflatingSession = new ConflatingWebSocketSession(session,
+						destinationPrefix, executor, bufferSizeLimit, conflatedCount);
+				sessions.put(session.getId(), conflatingSession);
+				super.afterConnectionEstablished(conflatingSession);
+			}
+
+			@Override
+			public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+				ConflatingWebSocketSession conflatingSession = sessions.remove(session.getId());
+				if (conflatingSession != null) {
+					conflatingSession.discard();
+				}
+				super.afterConnectionClosed(session, closeStatus);
+			}
+		};
+	}
+
+}
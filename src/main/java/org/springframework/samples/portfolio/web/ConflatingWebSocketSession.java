@@ -0,0 +1,186 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.web;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+
+/**
+ * Session decorator that sends messages from a separate thread and, while the
+ * client is still busy receiving earlier messages, keeps only the newest STOMP
+ * MESSAGE frame per subscription and destination for destinations that start
+ * with the configured prefix. Other frames are sent in order.
+ *
+ * <p>A slow client therefore sees the latest price of each ticker rather than
+ * a backlog of stale ones, while a fast client sees every frame.
+ *
+ * @see ConflatingWebSocketHandlerDecoratorFactory
+ */
+public class ConflatingWebSocketSession extends WebSocketSessionDecorator {
+
+	private static final Log logger = LogFactory.getLog(ConflatingWebSocketSession.class);
+
+	private static final String MESSAGE_COMMAND = "MESSAGE\n";
+
+	private static final String DESTINATION_HEADER = "\ndestination:";
+
+	private static final String SUBSCRIPTION_HEADER = "\nsubscription:";
+
+
+	private final String destinationPrefix;
+
+	private final Executor executor;
+
+	private final int bufferSizeLimit;
+
+	// Messages and conflation keys in send order
+	private final Queue<Object> queue = new ConcurrentLinkedQueue<>();
+
+	private final Map<String, WebSocketMessage<?>> latest = new ConcurrentHashMap<>();
+
+	private final AtomicInteger queueSize = new AtomicInteger();
+
+	private final AtomicBoolean sendInProgress = new AtomicBoolean();
+
+	private final AtomicLong conflatedCount;
+
+	private volatile boolean closed;
+
+
+	public ConflatingWebSocketSession(WebSocketSession session, String destinationPrefix,
+			Executor executor, int bufferSizeLimit, AtomicLong conflatedCount) {
+
+		super(session);
+		this.destinationPrefix = destinationPrefix;
+		this.executor = executor;
+		this.bufferSizeLimit = bufferSizeLimit;
+		this.conflatedCount = conflatedCount;
+	}
+
+
+	@Override
+	public void sendMessage(WebSocketMessage<?> message) throws IOException {
+		if (this.closed) {
+			return;
+		}
+		String key = getConflationKey(message);
+		if (key == null) {
+			enqueue(message);
+		}
+		else if (this.latest.put(key, message) == null) {
+			enqueue(key);
+		}
+		else {
+			this.conflatedCount.incrementAndGet();
+		}
+		scheduleSend();
+	}
+
+	private void enqueue(Object item) {
+		if (this.queueSize.incrementAndGet() > this.bufferSizeLimit) {
+			logger.debug("Closing " + getId() + ": buffer size limit exceeded");
+			discard();
+			try {
+				getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+			}
+			catch (IOException ex) {
+				// ignore
+			}
+			return;
+		}
+		this.queue.add(item);
+	}
+
+	private void scheduleSend() {
+		if (!this.queue.isEmpty() && this.sendInProgress.compareAndSet(false, true)) {
+			this.executor.execute(this::sendQueuedMessages);
+		}
+	}
+
+	private void sendQueuedMessages() {
+		try {
+			Object item;
+			while (!this.closed && (item = this.queue.poll()) != null) {
+				this.queueSize.decrementAndGet();
+				WebSocketMessage<?> message = (item instanceof String ?
+						this.latest.remove(item) : (WebSocketMessage<?>) item);
+				if (message != null) {
+					getDelegate().sendMessage(message);
+				}
+			}
+		}
+		catch (Throwable ex) {
+			logger.debug("Failed to send to " + getId() + ": " + ex.getMessage());
+			discard();
+		}
+		finally {
+			this.sendInProgress.set(false);
+		}
+		scheduleSend();
+	}
+
+	/**
+	 * Drop all pending messages and ignore any further ones.
+	 */
+	public void discard() {
+		this.closed = true;
+		this.queue.clear();
+		this.latest.clear();
+	}
+
+	private String getConflationKey(WebSocketMessage<?> message) {
+		if (!(message instanceof TextMessage)) {
+			return null;
+		}
+		String frame = ((TextMessage) message).getPayload();
+		if (!frame.startsWith(MESSAGE_COMMAND)) {
+			return null;
+		}
+		int headersEnd = frame.indexOf("\n\n");
+		int destination = frame.indexOf(DESTINATION_HEADER);
+		if (destination < 0 || destination > headersEnd) {
+			return null;
+		}
+		destination += DESTINATION_HEADER.length();
+		if (!frame.startsWith(this.destinationPrefix, destination)) {
+			return null;
+		}
+		int subscription = frame.indexOf(SUBSCRIPTION_HEADER);
+		if (subscription < 0 || subscription > headersEnd) {
+			return null;
+		}
+		subscription += SUBSCRIPTION_HEADER.length();
+		return frame.substring(subscription, frame.indexOf('\n', subscription)) + ":" +
+				frame.substring(destination, frame.indexOf('\n', destination));
+	}
+
+}
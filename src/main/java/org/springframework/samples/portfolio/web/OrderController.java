@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.web;
+
+import java.security.Principal;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.samples.portfolio.service.LimitOrder;
+import org.springframework.samples.portfolio.service.MatchingEngine;
+import org.springframework.samples.portfolio.service.TradeAck;
+import org.springframework.stereotype.Controller;
+
+
+/**
+ * Places and cancels limit orders. The outcome is sent to the session that
+ * sent the request, like for trades, and fills are sent as position updates.
+ */
+@Controller
+public class OrderController {
+
+	private static final Log logger = LogFactory.getLog(OrderController.class);
+
+	private final MatchingEngine matchingEngine;
+
+
+	@Autowired
+	public OrderController(MatchingEngine matchingEngine) {
+		this.matchingEngine = matchingEngine;
+	}
+
+
+	@MessageMapping("/order")
+	@SendToUser(destinations = "/queue/trade-acks", broadcast = false)
+	public CompletableFuture<TradeAck> placeOrder(LimitOrder order, Principal principal) {
+		order.setUsername(principal.getName());
+		logger.debug("Order: " + order);
+		return this.matchingEngine.placeOrder(order);
+	}
+
+	/**
+	 * Cancel the resting order with the order id of the given order.
+	 */
+	@MessageMapping("/order.cancel")
+	@SendToUser(destinations = "/queue/trade-acks", broadcast = false)
+	public CompletableFuture<TradeAck> cancelOrder(LimitOrder order, Principal principal) {
+		return this.matchingEngine.cancelOrder(principal.getName(), order.getOrderId());
+	}
+
+	@MessageExceptionHandler
+	@SendToUser("/queue/errors")
+	public String handleException(Throwable exception) {
+		return exception.getMessage();
+	}
+
+}
@@ -17,6 +17,7 @@ package org.springframework.samples.portfolio.web;
 
 import java.security.Principal;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -29,6 +30,8 @@ import org.springframework.samples.portfolio.Portfolio;
 import org.springframework.samples.portfolio.PortfolioPosition;
 import org.springframework.samples.portfolio.service.PortfolioService;
 import org.springframework.samples.portfolio.service.Trade;
+import org.springframework.samples.portfolio.service.TradeAck;
+import org.springframework.samples.portfolio.service.TradeDeduplicator;
 import org.springframework.samples.portfolio.service.TradeService;
 import org.springframework.stereotype.Controller;
 
@@ -42,6 +45,8 @@ public class PortfolioController {
 
 	private final TradeService tradeService;
 
+	private TradeDeduplicator tradeDeduplicator;
+
 
 	@Autowired
 	public PortfolioController(PortfolioService portfolioService, TradeService tradeService) {
@@ -49,6 +54,14 @@ public class PortfolioController {
 		this.tradeService = tradeService;
 	}
 
+	/**
+	 * Answer trades resent with the same order id with the original outcome.
+	 */
+	@Autowired(required = false)
+	public void setTradeDeduplicator(TradeDeduplicator tradeDeduplicator) {
+		this.tradeDeduplicator = tradeDeduplicator;
+	}
+
 	@SubscribeMapping("/positions")
 	public List<PortfolioPosition> getPositions(Principal principal) {
 		logger.debug("Positions for " + principal.getName());
@@ -56,11 +69,20 @@ public class PortfolioController {
 		return portfolio.getPositions();
 	}
 
+	/**
+	 * The trade executes asynchronously and its outcome is sent to the
+	 * session that placed it, with the order id the client supplied. A trade
+	 * resent with the same order id is acknowledged again without executing.
+	 */
 	@MessageMapping("/trade")
-	public void executeTrade(Trade trade, Principal principal) {
+	@SendToUser(destinations = "/queue/trade-acks", broadcast = false)
+	public CompletableFuture<TradeAck> executeTrade(Trade trade, Principal principal) {
 		trade.setUsername(principal.getName());
 		logger.debug("Trade: " + trade);
-		this.tradeService.executeTrade(trade);
+		if (this.tradeDeduplicator != null) {
+			return this.tradeDeduplicator.execute(trade, this.tradeService::executeTrade);
+		}
+		return this.tradeService.executeTrade(trade);
 	}
 
 	@MessageExceptionHandler
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.web;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.samples.portfolio.PortfolioPosition;
+import org.springframework.samples.portfolio.service.LastValueCache;
+import org.springframework.samples.portfolio.service.PortfolioService;
+import org.springframework.samples.portfolio.service.QuoteBatch;
+import org.springframework.samples.portfolio.service.QuoteDelta;
+import org.springframework.samples.portfolio.service.QuoteService;
+import org.springframework.stereotype.Controller;
+
+
+@Controller
+public class QuoteController {
+
+	/** The most tickers a client can ask for in one snapshot. */
+	static final int MAX_SNAPSHOT_TICKERS = 1000;
+
+
+	private final QuoteService quoteService;
+
+	private final LastValueCache lastValueCache;
+
+	private final PortfolioService portfolioService;
+
+
+	@Autowired
+	public QuoteController(QuoteService quoteService, LastValueCache lastValueCache,
+			PortfolioService portfolioService) {
+
+		this.quoteService = quoteService;
+		this.lastValueCache = lastValueCache;
+		this.portfolioService = portfolioService;
+	}
+
+	/**
+	 * The last price of the tickers listed in the comma-separated "tickers"
+	 * header of the subscription, or of the user's positions without one, for
+	 * clients to show before the next publishing round.
+	 */
+	@SubscribeMapping("/price.stock.snapshot")
+	public QuoteBatch getQuoteSnapshot(@Header(name = "tickers", required = false) String tickers,
+			Principal principal) {
+
+		List<String> tickerList;
+		if (tickers != null) {
+			tickerList = Arrays.asList(tickers.split(","));
+			if (tickerList.size() > MAX_SNAPSHOT_TICKERS) {
+				tickerList = tickerList.subList(0, MAX_SNAPSHOT_TICKERS);
+			}
+		}
+		else {
+			tickerList = new ArrayList<>();
+			for (PortfolioPosition position : this.portfolioService.findPortfolio(principal.getName()).getPositions()) {
+				tickerList.add(position.getTicker());
+			}
+		}
+		return this.lastValueCache.getSnapshot(tickerList);
+	}
+
+	/**
+	 * Snapshot of the delta stream that clients apply before any deltas with a
+	 * higher sequence number, and request again when they detect a gap.
+	 */
+	@SubscribeMapping("/price.delta.snapshot")
+	public List<QuoteDelta> getDeltaSnapshot() {
+		return this.quoteService.getDeltaSnapshot();
+	}
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.web;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.samples.portfolio.service.CachingPortfolioService;
+import org.springframework.samples.portfolio.service.MatchingEngine;
+import org.springframework.samples.portfolio.service.PreTradeRiskPipeline;
+import org.springframework.samples.portfolio.service.QuoteConflator;
+import org.springframework.samples.portfolio.service.QuoteService;
+import org.springframework.samples.portfolio.service.RiskLimitCache;
+import org.springframework.samples.portfolio.service.TimerWheel;
+import org.springframework.samples.portfolio.service.TradeDeduplicator;
+import org.springframework.samples.portfolio.service.TradeJournal;
+import org.springframework.samples.portfolio.service.TradeSequencer;
+import org.springframework.samples.portfolio.service.TradeServiceImpl;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Exposes counters of the quote and trade pipelines for monitoring.
+ */
+@RestController
+public class StatsController {
+
+	private final QuoteService quoteService;
+
+	private final TradeServiceImpl tradeService;
+
+	private final MatchingEngine matchingEngine;
+
+	private TradeJournal tradeJournal;
+
+	private TradeDeduplicator tradeDeduplicator;
+
+	private TradeRateLimitInterceptor rateLimitInterceptor;
+
+	private PreTradeRiskPipeline riskPipeline;
+
+	private RiskLimitCache riskLimitCache;
+
+	private CachingPortfolioService portfolioCache;
+
+
+	@Autowired
+	public StatsController(QuoteService quoteService, TradeServiceImpl tradeService, MatchingEngine matchingEngine) {
+		this.quoteService = quoteService;
+		this.tradeService = tradeService;
+		this.matchingEngine = matchingEngine;
+	}
+
+
+	@Autowired(required = false)
+	public void setTradeJournal(TradeJournal tradeJournal) {
+		this.tradeJournal = tradeJournal;
+	}
+
+	@Autowired(required = false)
+	public void setTradeDeduplicator(TradeDeduplicator tradeDeduplicator) {
+		this.tradeDeduplicator = tradeDeduplicator;
+	}
+
+	@Autowired(required = false)
+	public void setRateLimitInterceptor(TradeRateLimitInterceptor rateLimitInterceptor) {
+		this.rateLimitInterceptor = rateLimitInterceptor;
+	}
+
+	@Autowired(required = false)
+	public void setRiskPipeline(PreTradeRiskPipeline riskPipeline, RiskLimitCache riskLimitCache) {
+		this.riskPipeline = riskPipeline;
+		this.riskLimitCache = riskLimitCache;
+	}
+
+	@Autowired(required = false)
+	public void setPortfolioCache(CachingPortfolioService portfolioCache) {
+		this.portfolioCache = portfolioCache;
+	}
+
+	@RequestMapping(path = "/stats", method = RequestMethod.GET)
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+
+		QuoteConflator conflator = this.quoteService.getQuoteConflator();
+		Map<String, Object> quotes = new LinkedHashMap<>();
+		quotes.put("offered", conflator.getOfferedCount());
+		quotes.put("conflated", conflator.getConflatedCount());
+		quotes.put("pending", conflator.getPendingCount());
+		stats.put("quotes", quotes);
+
+		TradeSequencer sequencer = this.tradeService.getTradeSequencer();
+		Map<String, Object> trades = new LinkedHashMap<>();
+		trades.put("shards", sequencer.getShardCount());
+		trades.put("backlog", sequencer.getBacklog());
+		if (this.tradeDeduplicator != null) {
+			trades.put("remembered", this.tradeDeduplicator.getSize());
+			trades.put("duplicates", this.tradeDeduplicator.getDuplicateCount());
+		}
+		stats.put("trades", trades);
+
+		if (this.rateLimitInterceptor != null) {
+			Map<String, Object> rateLimit = new LinkedHashMap<>();
+			rateLimit.put("accepted", this.rateLimitInterceptor.getAcceptedCount());
+			rateLimit.put("sessionRejected", this.rateLimitInterceptor.getSessionRejectedCount());
+			rateLimit.put("userRejected", this.rateLimitInterceptor.getUserRejectedCount());
+			rateLimit.put("buckets", this.rateLimitInterceptor.getBucketCount());
+			stats.put("tradeRateLimit", rateLimit);
+		}
+
+		if (this.riskPipeline != null) {
+			Map<String, Object> risk = new LinkedHashMap<>();
+			risk.put("rejected", this.riskPipeline.getRejectedCounts());
+			risk.put("cachedLimits", this.riskLimitCache.size());
+			risk.put("limitRefreshes", this.riskLimitCache.getRefreshCount());
+			stats.put("risk", risk);
+		}
+
+		if (this.portfolioCache != null) {
+			Map<String, Object> cache = new LinkedHashMap<>();
+			cache.put("size", this.portfolioCache.getSize());
+			cache.put("maximumSize", this.portfolioCache.getMaximumSize());
+			cache.put("hits", this.portfolioCache.getHitCount());
+			cache.put("loads", this.portfolioCache.getLoadCount());
+			cache.put("sharedLoads", this.portfolioCache.getSharedLoadCount());
+			cache.put("evictions", this.portfolioCache.getEvictionCount());
+			cache.put("rejected", this.portfolioCache.getRejectedCount());
+			cache.put("writes", this.portfolioCache.getWriteCount());
+			cache.put("pendingWrites", this.portfolioCache.getPendingWriteCount());
+			stats.put("portfolioCache", cache);
+		}
+
+		TimerWheel<?> scheduler = this.tradeService.getNotificationScheduler();
+		Map<String, Object> notifications = new LinkedHashMap<>();
+		notifications.put("backlog", scheduler.getPendingCount());
+		notifications.put("sent", scheduler.getExpiredCount());
+		notifications.put("coalesced", this.tradeService.getCoalescedCount());
+		notifications.put("averageLatenessMillis", scheduler.getAverageLateness());
+		notifications.put("maxLatenessMillis", scheduler.getMaxLateness());
+		stats.put("tradeNotifications", notifications);
+
+		Map<String, Object> orders = new LinkedHashMap<>();
+		orders.put("resting", this.matchingEngine.getRestingOrderCount());
+		orders.put("fills", this.matchingEngine.getFillCount());
+		orders.put("droppedFills", this.matchingEngine.getDroppedFillCount());
+		stats.put("orders", orders);
+
+		if (this.tradeJournal != null) {
+			Map<String, Object> journal = new LinkedHashMap<>();
+			journal.put("appended", this.tradeJournal.getAppendedCount());
+			journal.put("committed", this.tradeJournal.getCommittedCount());
+			journal.put("commits", this.tradeJournal.getCommitCount());
+			journal.put("replayed", this.tradeJournal.getReplayedCount());
+			journal.put("snapshots", this.tradeJournal.getSnapshotCount());
+			stats.put("tradeJournal", journal);
+		}
+
+		return stats;
+	}
+
+}
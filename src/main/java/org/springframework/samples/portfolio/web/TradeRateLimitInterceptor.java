@@ -0,0 +1,316 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.portfolio.web;
+
+import java.security.Principal;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.samples.portfolio.service.Trade;
+import org.springframework.samples.portfolio.service.TradeAck;
+
+
+/**
+ * Limits the rate of trade frames per WebSocket session and per user, so a
+ * client flooding "/app/trade" cannot occupy the inbound channel threads
+ * that all users share.
+ *
+ * <p>Each session and each user has a token bucket that allows a burst of
+ * frames and then the configured rate. A bucket is a single {@link AtomicLong}
+ * holding the time at which it will be full again, updated with a CAS, so
+ * frames of different sessions never contend and frames of one session
+ * rarely do. The check reads only message headers and runs before the
+ * payload is converted or the controller invoked. Frames over either limit
+ * are dropped without using up a token of the other bucket, and the session
+ * that sent them is sent a rejected {@link TradeAck} on
+ * "/user/queue/trade-acks" instead. The ack is built from headers only, with
+ * the order id of the {@value #ORDER_ID_HEADER} header if the client sends
+ * one; clients can resend the frame with the same order id later.
+ *
+ * <p>The bucket of a session is removed when the session disconnects. User
+ * buckets that are full are removed by a sweep on disconnect, at most once
+ * per time a user bucket takes to fill, since a full bucket is the same as a
+ * new one. A user bucket still filling when a session disconnects is
+ * therefore removed by a later disconnect of any user.
+ */
+public class TradeRateLimitInterceptor implements ChannelInterceptor {
+
+	private static final Log logger = LogFactory.getLog(TradeRateLimitInterceptor.class);
+
+	/** Native header with the order id of the frame, for the rejected ack. */
+	public static final String ORDER_ID_HEADER = "order-id";
+
+	private static final String ACK_DESTINATION = "/queue/trade-acks";
+
+
+	private final Set<String> destinations;
+
+	private final Map<String, Bucket> sessionBuckets = new ConcurrentHashMap<>();
+
+	private final Map<String, Bucket> userBuckets = new ConcurrentHashMap<>();
+
+	private volatile RateLimit sessionLimit = new RateLimit(20, 10);
+
+	private volatile RateLimit userLimit = new RateLimit(50, 20);
+
+	private SimpMessageSendingOperations messagingTemplate;
+
+	private final AtomicLong acceptedCount = new AtomicLong();
+
+	private final AtomicLong sessionRejectedCount = new AtomicLong();
+
+	private final AtomicLong userRejectedCount = new AtomicLong();
+
+	private final AtomicLong nextSweepTime = new AtomicLong(System.nanoTime());
+
+
+	/**
+	 * @param destinations the destinations of the frames to limit, e.g. "/app/trade"
+	 */
+	public TradeRateLimitInterceptor(String... destinations) {
+		this.destinations = new HashSet<>(Arrays.asList(destinations));
+	}
+
+
+	/**
+	 * The sustained number of trade frames per second and the burst allowed
+	 * per session. Set with the "portfolio.trade.rate-limit.session" and
+	 * "portfolio.trade.rate-limit.session-burst" properties.
+	 * <p>By default this is set to 20 per second with bursts of 10.
+	 * A rate of 0 disables the limit.
+	 */
+	@Value("${portfolio.trade.rate-limit.session:20}")
+	public void setSessionRate(int rate) {
+		this.sessionLimit = new RateLimit(rate, this.sessionLimit.burst);
+	}
+
+	@Value("${portfolio.trade.rate-limit.session-burst:10}")
+	public void setSessionBurst(int burst) {
+		this.sessionLimit = new RateLimit(this.sessionLimit.rate, burst);
+	}
+
+	/**
+	 * The sustained number of trade frames per second and the burst allowed
+	 * per user across all their sessions. Set with the
+	 * "portfolio.trade.rate-limit.user" and "portfolio.trade.rate-limit.user-burst"
+	 * properties.
+	 * <p>By default this is set to 50 per second with bursts of 20.
+	 * A rate of 0 disables the limit.
+	 */
+	@Value("${portfolio.trade.rate-limit.user:50}")
+	public void setUserRate(int rate) {
+		this.userLimit = new RateLimit(rate, this.userLimit.burst);
+	}
+
+	@Value("${portfolio.trade.rate-limit.user-burst:20}")
+	public void setUserBurst(int burst) {
+		this.userLimit = new RateLimit(this.userLimit.rate, burst);
+	}
+
+	/**
+	 * Where to send the rejected acks of frames over the limit. Without it,
+	 * frames are dropped silently.
+	 */
+	@Autowired(required = false)
+	public void setMessagingTemplate(SimpMessageSendingOperations messagingTemplate) {
+		this.messagingTemplate = messagingTemplate;
+	}
+
+	@Override
+	public Message<?> preSend(Message<?> message, MessageChannel channel) {
+		MessageHeaders headers = message.getHeaders();
+		SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(headers);
+		if (messageType == SimpMessageType.MESSAGE) {
+			String destination = SimpMessageHeaderAccessor.getDestination(headers);
+			if (destination != null && this.destinations.contains(destination) && !tryAcquire(headers)) {
+				sendRejectedAck(headers);
+				return null;
+			}
+		}
+		else if (messageType == SimpMessageType.DISCONNECT) {
+			removeBuckets(headers);
+		}
+		return message;
+	}
+
+	private boolean tryAcquire(MessageHeaders headers) {
+		long now = System.nanoTime();
+		String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+		RateLimit sessionLimit = this.sessionLimit;
+		Bucket sessionBucket = null;
+		if (sessionId != null && sessionLimit.isEnabled()) {
+			sessionBucket = this.sessionBuckets.computeIfAbsent(sessionId, id -> new Bucket());
+			if (!sessionBucket.tryAcquire(sessionLimit, now)) {
+				this.sessionRejectedCount.incrementAndGet();
+				logger.debug("Trade rate limit exceeded in session " + sessionId);
+				return false;
+			}
+		}
+		Principal user = SimpMessageHeaderAccessor.getUser(headers);
+		RateLimit userLimit = this.userLimit;
+		if (user != null && userLimit.isEnabled() &&
+				!this.userBuckets.computeIfAbsent(user.getName(), name -> new Bucket()).tryAcquire(userLimit, now)) {
+			if (sessionBucket != null) {
+				// The frame is dropped, so it does not count against the session
+				sessionBucket.release(sessionLimit);
+			}
+			this.userRejectedCount.incrementAndGet();
+			logger.debug("Trade rate limit exceeded by " + user.getName());
+			return false;
+		}
+		this.acceptedCount.incrementAndGet();
+		return true;
+	}
+
+	private void sendRejectedAck(MessageHeaders headers) {
+		Principal user = SimpMessageHeaderAccessor.getUser(headers);
+		if (this.messagingTemplate == null || user == null) {
+			return;
+		}
+		Trade trade = new Trade();
+		trade.setOrderId(SimpMessageHeaderAccessor.getFirstNativeHeader(ORDER_ID_HEADER, headers));
+		// To the session of the frame only, like the acks of the controllers
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		accessor.setSessionId(SimpMessageHeaderAccessor.getSessionId(headers));
+		accessor.setLeaveMutable(true);
+		this.messagingTemplate.convertAndSendToUser(user.getName(), ACK_DESTINATION,
+				TradeAck.rejected(trade, "Rate limit exceeded"), accessor.getMessageHeaders());
+	}
+
+	private void removeBuckets(MessageHeaders headers) {
+		String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+		if (sessionId != null) {
+			this.sessionBuckets.remove(sessionId);
+		}
+		Principal user = SimpMessageHeaderAccessor.getUser(headers);
+		long now = System.nanoTime();
+		if (user != null) {
+			this.userBuckets.computeIfPresent(user.getName(), (name, bucket) -> (bucket.isFull(now) ? null : bucket));
+		}
+		long sweepTime = this.nextSweepTime.get();
+		if (sweepTime - now <= 0 && !this.userBuckets.isEmpty()) {
+			RateLimit userLimit = this.userLimit;
+			long fillNanos = Math.max(userLimit.intervalNanos * userLimit.burst, TimeUnit.MILLISECONDS.toNanos(1));
+			if (this.nextSweepTime.compareAndSet(sweepTime, now + fillNanos)) {
+				this.userBuckets.values().removeIf(bucket -> bucket.isFull(now));
+			}
+		}
+	}
+
+	public long getAcceptedCount() {
+		return this.acceptedCount.get();
+	}
+
+	/**
+	 * The number of trade frames rejected for exceeding the session limit.
+	 */
+	public long getSessionRejectedCount() {
+		return this.sessionRejectedCount.get();
+	}
+
+	/**
+	 * The number of trade frames rejected for exceeding the user limit.
+	 */
+	public long getUserRejectedCount() {
+		return this.userRejectedCount.get();
+	}
+
+	/**
+	 * The number of session and user buckets.
+	 */
+	public int getBucketCount() {
+		return this.sessionBuckets.size() + this.userBuckets.size();
+	}
+
+
+	private static class RateLimit {
+
+		private final int rate;
+
+		private final int burst;
+
+		// Time to earn one token
+		private final long intervalNanos;
+
+		// How far the bucket may be from full and still allow a frame
+		private final long toleranceNanos;
+
+
+		RateLimit(int rate, int burst) {
+			this.rate = rate;
+			this.burst = Math.max(burst, 1);
+			this.intervalNanos = (rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0);
+			this.toleranceNanos = this.intervalNanos * (this.burst - 1);
+		}
+
+		boolean isEnabled() {
+			return this.rate > 0;
+		}
+	}
+
+
+	/**
+	 * A token bucket stored as the time it will be full again, which avoids
+	 * refilling on a timer and fits in one CAS.
+	 */
+	private static class Bucket {
+
+		private final AtomicLong fullTime = new AtomicLong(Long.MIN_VALUE);
+
+
+		boolean tryAcquire(RateLimit limit, long now) {
+			while (true) {
+				long fullTime = this.fullTime.get();
+				long start = (fullTime == Long.MIN_VALUE || fullTime - now < 0 ? now : fullTime);
+				if (start - now > limit.toleranceNanos) {
+					return false;
+				}
+				if (this.fullTime.compareAndSet(fullTime, start + limit.intervalNanos)) {
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * Give back a token taken with {@link #tryAcquire}.
+		 */
+		void release(RateLimit limit) {
+			this.fullTime.addAndGet(-limit.intervalNanos);
+		}
+
+		boolean isFull(long now) {
+			long fullTime = this.fullTime.get();
+			return (fullTime == Long.MIN_VALUE || fullTime - now <= 0);
+		}
+	}
+
+}
@@ -2,16 +2,34 @@ angular.module('springPortfolio.controllers', ['ui.bootstrap'])
     .constant("buy", "Buy")
     .constant("sell", "Sell")
     .controller('PortfolioController',
-    ['$scope', '$uibModal', 'TradeService',
-    function ($scope, $uibModal, tradeService) {
+    ['$scope', '$uibModal', 'TradeService', 'quoteStream',
+    function ($scope, $uibModal, tradeService, quoteStream) {
         $scope.notifications = [];
         $scope.positions = {};
 
-        var processQuote = function(quote) {
-            var existing = $scope.positions[quote.ticker];
+        var updatePrice = function(ticker, price) {
+            var existing = $scope.positions[ticker];
             if(existing) {
-                existing.change = quote.price - existing.price;
-                existing.price = quote.price;
+                existing.change = price - existing.price;
+                existing.price = price;
+                existing.quoted = true;
+            }
+        };
+        var processQuote = function(quote) {
+            updatePrice(quote.ticker, quote.price);
+        };
+        var processQuoteBatch = function(batch) {
+            for (var i = 0; i < batch.tickers.length; i++) {
+                updatePrice(batch.tickers[i], batch.prices[i]);
+            }
+        };
+        var processQuoteSnapshot = function(snapshot) {
+            // Skip tickers already updated by the stream, which is newer
+            for (var i = 0; i < snapshot.tickers.length; i++) {
+                var existing = $scope.positions[snapshot.tickers[i]];
+                if (existing && !existing.quoted) {
+                    updatePrice(snapshot.tickers[i], snapshot.prices[i]);
+                }
             }
         };
         var udpatePosition = function(position) {
@@ -23,6 +41,16 @@ angular.module('springPortfolio.controllers', ['ui.bootstrap'])
         var pushNotification = function(message) {
             $scope.notifications.unshift(message);
         };
+        var orderCount = 0;
+        var pendingTrades = {};
+        var processTradeAck = function(ack) {
+            var trade = pendingTrades[ack.orderId];
+            delete pendingTrades[ack.orderId];
+            if (trade && ack.status === "Rejected") {
+                pushNotification("Trade Rejected: " + trade.action + " " + trade.shares + " " + trade.ticker +
+                        " (" + ack.reason + ")");
+            }
+        };
 
         var validateTrade = function(trade) {
             if (isNaN(trade.shares) || (trade.shares < 1)) {
@@ -53,6 +81,8 @@ angular.module('springPortfolio.controllers', ['ui.bootstrap'])
                     "shares" : result.numberOfShares
                 };
                 if(validateTrade(trade)) {
+                    trade.orderId = $scope.username + "-" + Date.now() + "-" + (++orderCount);
+                    pendingTrades[trade.orderId] = trade;
                     tradeService.sendTradeOrder(trade);
                 }
             });
@@ -75,16 +105,52 @@ angular.module('springPortfolio.controllers', ['ui.bootstrap'])
                 positions.forEach(function(pos) {
                     $scope.positions[pos.ticker] = pos;
                 });
-                tradeService.fetchQuoteStream().then(null, null,
-                    function(quote) {
-                        processQuote(quote);
-                    }
-                );
+                if (quoteStream === "batch") {
+                    tradeService.fetchQuoteBatchStream().then(null, null,
+                        function(batch) {
+                            processQuoteBatch(batch);
+                        }
+                    );
+                }
+                else if (quoteStream === "delta") {
+                    tradeService.fetchQuoteDeltaStream().then(null, null,
+                        function(quote) {
+                            processQuote(quote);
+                        }
+                    );
+                }
+                else if (quoteStream === "user") {
+                    tradeService.fetchUserQuoteStream().then(null, null,
+                        function(quote) {
+                            processQuote(quote);
+                        }
+                    );
+                }
+                else {
+                    tradeService.fetchQuoteStream().then(null, null,
+                        function(quote) {
+                            processQuote(quote);
+                        }
+                    );
+                }
+                if (quoteStream !== "delta") {
+                    tradeService.loadQuoteSnapshot(Object.keys($scope.positions)).then(processQuoteSnapshot);
+                }
                 tradeService.fetchPositionUpdateStream().then(null, null,
                     function(position) {
                         udpatePosition(position);
                     }
                 );
+                tradeService.fetchPnlStream().then(null, null,
+                    function (valuation) {
+                        $scope.valuation = valuation;
+                    }
+                );
+                tradeService.fetchTradeAckStream().then(null, null,
+                    function (ack) {
+                        processTradeAck(ack);
+                    }
+                );
                 tradeService.fetchErrorStream().then(null, null,
                     function (error) {
                         pushNotification(error);
@@ -1,6 +1,11 @@
 angular.module('springPortfolio.services', [])
     //.constant('sockJsProtocols', ["xhr-streaming", "xhr-polling"]) // only allow XHR protocols
     .constant('sockJsProtocols', [])
+    // "stock": one frame per quote
+    // "batch": all quotes of a tick in one frame, requires -Dportfolio.quote.batch=true on the server
+    // "delta": price changes with per-ticker sequence numbers, requires -Dportfolio.quote.delta=true
+    // "user": only quotes for tickers held by the user
+    .constant('quoteStream', "stock")
     .factory('StompClient', ['sockJsProtocols', '$q', function (sockJsProtocols, $q) {
         var stompClient;
         var wrappedSocket = {
@@ -39,14 +44,15 @@ angular.module('springPortfolio.services', [])
                 }
                 return deferred.promise;
             },
-            subscribeSingle: function (destination) {
+            subscribeSingle: function (destination, headers) {
                 return $q(function (resolve, reject) {
                     if (!stompClient) {
                         reject("STOMP client not created");
                     } else {
-                        stompClient.subscribe(destination, function (message) {
+                        var subscription = stompClient.subscribe(destination, function (message) {
+                            subscription.unsubscribe();
                             resolve(JSON.parse(message.body));
-                        });
+                        }, headers);
                     }
                 });
             },
@@ -71,17 +77,78 @@ angular.module('springPortfolio.services', [])
             loadPositions: function() {
                 return stompClient.subscribeSingle("/app/positions");
             },
+            loadQuoteSnapshot: function (tickers) {
+                return stompClient.subscribeSingle("/app/price.stock.snapshot", {tickers: tickers.join(",")});
+            },
             fetchQuoteStream: function () {
                 return stompClient.subscribe("/topic/price.stock.*");
             },
+            fetchUserQuoteStream: function () {
+                return stompClient.subscribe("/user/queue/quotes");
+            },
+            fetchQuoteBatchStream: function () {
+                return stompClient.subscribe("/topic/price.batch");
+            },
+            fetchQuoteDeltaStream: function () {
+                // Deltas are buffered until a snapshot arrives, then applied in sequence.
+                // A gap in the sequence of a ticker triggers a new snapshot.
+                var deferred = $q.defer();
+                var tickers = {};
+                var buffered = null;
+                var publish = function (ticker, state) {
+                    deferred.notify({ticker: ticker, price: state.ticks / Math.pow(10, state.scale)});
+                };
+                var applyDelta = function (delta) {
+                    if (buffered) {
+                        buffered.push(delta);
+                        return;
+                    }
+                    var state = tickers[delta.t];
+                    if (state && delta.s <= state.seq) {
+                        return;
+                    }
+                    if (delta.k !== undefined) {
+                        state = tickers[delta.t] = {seq: delta.s, ticks: delta.k, scale: delta.x};
+                    }
+                    else if (state && delta.s === state.seq + 1) {
+                        state.seq = delta.s;
+                        state.ticks += delta.d;
+                    }
+                    else {
+                        resync();
+                        return;
+                    }
+                    publish(delta.t, state);
+                };
+                var resync = function () {
+                    buffered = [];
+                    stompClient.subscribeSingle("/app/price.delta.snapshot").then(function (snapshot) {
+                        var deltas = buffered;
+                        buffered = null;
+                        tickers = {};
+                        snapshot.forEach(applyDelta);
+                        deltas.forEach(applyDelta);
+                    });
+                };
+                stompClient.subscribe("/topic/price.delta.*").then(null, null, applyDelta);
+                resync();
+                return deferred.promise;
+            },
             fetchPositionUpdateStream: function () {
                 return stompClient.subscribe("/user/queue/position-updates");
             },
+            fetchPnlStream: function () {
+                return stompClient.subscribe("/user/queue/pnl");
+            },
+            fetchTradeAckStream: function () {
+                return stompClient.subscribe("/user/queue/trade-acks");
+            },
             fetchErrorStream: function () {
                 return stompClient.subscribe("/user/queue/errors");
             },
             sendTradeOrder: function(tradeOrder) {
-                return stompClient.send("/app/trade", JSON.stringify(tradeOrder), {});
+                // The order id header lets the server reject the trade without reading the body
+                return stompClient.send("/app/trade", JSON.stringify(tradeOrder), {"order-id": tradeOrder.orderId});
             }
         };
 
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+
+/**
+ * Compares the throughput of concurrent trades and position reads on one
+ * portfolio for the previous unsynchronized {@code LinkedHashMap} version,
+ * the same with {@code synchronized} methods, and the current
+ * compare-and-set {@link Portfolio}. Lost updates are counted by comparing
+ * the final number of shares with the number of successful buys.
+ *
+ * <p>Run the main method from the IDE. Optional arguments are the number of
+ * operations per thread and the percentage of them that are trades.
+ */
+public class PortfolioContentionBenchmark {
+
+	private static final String[] TICKERS = {"CTXS", "DELL", "MSFT", "ORCL"};
+
+	private static final int[] THREAD_COUNTS = {1, 2, 4, 8};
+
+
+	public static void main(String[] args) throws Exception {
+		int operations = (args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000);
+		int tradePercent = (args.length > 1 ? Integer.parseInt(args[1]) : 20);
+
+		System.out.println("Portfolio contention, " + operations + " operations per thread, " +
+				tradePercent + "% trades");
+		System.out.printf("%-14s %8s %14s %14s%n", "portfolio", "threads", "ops/ms", "lost updates");
+
+		for (int threadCount : THREAD_COUNTS) {
+			run("LinkedHashMap", LinkedHashMapPortfolio::new, threadCount, operations, tradePercent);
+			run("synchronized", SynchronizedPortfolio::new, threadCount, operations, tradePercent);
+			run("CAS", CasPortfolio::new, threadCount, operations, tradePercent);
+		}
+	}
+
+	private static void run(String name, Supplier<Positions> supplier, int threadCount,
+			int operations, int tradePercent) throws Exception {
+
+		// Warm-up on a separate instance
+		measure(supplier.get(), threadCount, operations / 4, tradePercent);
+
+		Positions positions = supplier.get();
+		long initialShares = totalShares(positions);
+		AtomicLong buys = new AtomicLong();
+		long nanos = measure(positions, threadCount, operations, tradePercent, buys);
+		long lostUpdates = initialShares + buys.get() - totalShares(positions);
+
+		System.out.printf("%-14s %8d %14.0f %14d%n", name, threadCount,
+				(double) threadCount * operations / (nanos / 1_000_000.0), lostUpdates);
+	}
+
+	private static long measure(Positions positions, int threadCount, int operations, int tradePercent) throws Exception {
+		return measure(positions, threadCount, operations, tradePercent, new AtomicLong());
+	}
+
+	private static long measure(Positions positions, int threadCount, int operations, int tradePercent,
+			AtomicLong buys) throws Exception {
+
+		CountDownLatch startLatch = new CountDownLatch(1);
+		CountDownLatch doneLatch = new CountDownLatch(threadCount);
+		AtomicLong sink = new AtomicLong();
+		for (int i = 0; i < threadCount; i++) {
+			SplittableRandom random = new SplittableRandom(i);
+			Thread thread = new Thread(() -> {
+				long successfulBuys = 0;
+				long sum = 0;
+				try {
+					startLatch.await();
+					for (int j = 0; j < operations; j++) {
+						if (random.nextInt(100) < tradePercent) {
+							if (positions.buy(TICKERS[random.nextInt(TICKERS.length)], 1) != null) {
+								successfulBuys++;
+							}
+						}
+						else {
+							for (PortfolioPosition position : positions.getPositions()) {
+								sum += position.getShares();
+							}
+						}
+					}
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+				buys.addAndGet(successfulBuys);
+				sink.addAndGet(sum);
+				doneLatch.countDown();
+			});
+			thread.start();
+		}
+		long start = System.nanoTime();
+		startLatch.countDown();
+		doneLatch.await();
+		return System.nanoTime() - start;
+	}
+
+	private static long totalShares(Positions positions) {
+		long shares = 0;
+		for (PortfolioPosition position : positions.getPositions()) {
+			shares += position.getShares();
+		}
+		return shares;
+	}
+
+	private static void addPositions(Positions positions) {
+		for (String ticker : TICKERS) {
+			positions.addPosition(new PortfolioPosition(ticker, ticker, 10.0, 100));
+		}
+	}
+
+
+	private interface Positions {
+
+		List<PortfolioPosition> getPositions();
+
+		void addPosition(PortfolioPosition position);
+
+		PortfolioPosition buy(String ticker, int sharesToBuy);
+	}
+
+
+	/**
+	 * The portfolio before it was made thread-safe.
+	 */
+	private static class LinkedHashMapPortfolio implements Positions {
+
+		private final Map<String, PortfolioPosition> positionLookup = new LinkedHashMap<>();
+
+		LinkedHashMapPortfolio() {
+			addPositions(this);
+		}
+
+		@Override
+		public List<PortfolioPosition> getPositions() {
+			return new ArrayList<>(this.positionLookup.values());
+		}
+
+		@Override
+		public void addPosition(PortfolioPosition position) {
+			this.positionLookup.put(position.getTicker(), position);
+		}
+
+		@Override
+		public PortfolioPosition buy(String ticker, int sharesToBuy) {
+			PortfolioPosition position = this.positionLookup.get(ticker);
+			if ((position == null) || (sharesToBuy < 1)) {
+				return null;
+			}
+			position = new PortfolioPosition(position, sharesToBuy);
+			this.positionLookup.put(ticker, position);
+			return position;
+		}
+	}
+
+
+	private static class SynchronizedPortfolio extends LinkedHashMapPortfolio {
+
+		@Override
+		public synchronized List<PortfolioPosition> getPositions() {
+			return super.getPositions();
+		}
+
+		@Override
+		public synchronized void addPosition(PortfolioPosition position) {
+			super.addPosition(position);
+		}
+
+		@Override
+		public synchronized PortfolioPosition buy(String ticker, int sharesToBuy) {
+			return super.buy(ticker, sharesToBuy);
+		}
+	}
+
+
+	private static class CasPortfolio implements Positions {
+
+		private final Portfolio portfolio = new Portfolio();
+
+		CasPortfolio() {
+			addPositions(this);
+		}
+
+		@Override
+		public List<PortfolioPosition> getPositions() {
+			return this.portfolio.getPositions();
+		}
+
+		@Override
+		public void addPosition(PortfolioPosition position) {
+			this.portfolio.addPosition(position);
+		}
+
+		@Override
+		public PortfolioPosition buy(String ticker, int sharesToBuy) {
+			return this.portfolio.buy(ticker, sharesToBuy);
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+
+public class PortfolioTests {
+
+	private final Portfolio portfolio = new Portfolio();
+
+
+	@Test
+	public void buyAndSell() {
+		this.portfolio.addPosition(new PortfolioPosition("Google Inc", "GOOG", 905.09, 5));
+		this.portfolio.addPosition(new PortfolioPosition("Red Hat", "RHT", 48.30, 15));
+
+		List<PortfolioPosition> positions = this.portfolio.getPositions();
+		assertSame(positions, this.portfolio.getPositions());
+		assertSame(positions, this.portfolio.copy().getPositions());
+		assertEquals(2, positions.size());
+		assertEquals("Red Hat", positions.get(1).getCompany());
+		assertEquals(48.30, positions.get(1).getPrice(), 0);
+
+		assertEquals(8, this.portfolio.buy("GOOG", 3).getShares());
+		assertEquals(0, this.portfolio.sell("RHT", 15).getShares());
+		assertNull(this.portfolio.sell("RHT", 1));
+		assertNull(this.portfolio.buy("MSFT", 1));
+		assertEquals(2, this.portfolio.getVersion());
+
+		// Earlier views are unaffected
+		assertEquals(5, positions.get(0).getShares());
+		assertNotSame(positions, this.portfolio.getPositions());
+		assertEquals("GOOG", this.portfolio.getPositions().get(0).getTicker());
+		assertEquals(8, this.portfolio.getPortfolioPosition("GOOG").getShares());
+	}
+
+	@Test
+	public void buyAtAverageCost() {
+		this.portfolio.addPosition(new PortfolioPosition("Red Hat", "RHT", 40.00, 10));
+
+		assertEquals(45.00, this.portfolio.buy("RHT", 10, 50.00).getPrice(), 0.000001);
+		assertEquals(45.00, this.portfolio.sell("RHT", 20).getPrice(), 0.000001);
+
+		// The price of an empty position is the price paid
+		assertEquals(48.00, this.portfolio.buy("RHT", 4, 48.00).getPrice(), 0.000001);
+		assertEquals(48.00, this.portfolio.buy("RHT", 4).getPrice(), 0.000001);
+		assertNull(this.portfolio.buy("RHT", 0, 48.00));
+	}
+
+	@Test
+	public void restoreAndCopy() {
+		this.portfolio.addPosition(new PortfolioPosition("Google Inc", "GOOG", 905.09, 5));
+		Portfolio copy = this.portfolio.copy();
+		this.portfolio.buy("GOOG", 1);
+
+		Portfolio restored = new Portfolio();
+		restored.restore(copy.getPositions(), copy.getVersion());
+		assertEquals(0, restored.getVersion());
+		assertEquals(5, restored.getPortfolioPosition("GOOG").getShares());
+		assertEquals(905.09, restored.getPortfolioPosition("GOOG").getPrice(), 0);
+		assertEquals("Google Inc", restored.getPortfolioPosition("GOOG").getCompany());
+		assertEquals(6, this.portfolio.getPortfolioPosition("GOOG").getShares());
+	}
+
+	@Test
+	public void concurrentBuys() throws Exception {
+		this.portfolio.addPosition(new PortfolioPosition("Google Inc", "GOOG", 905.09, 0));
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			threads.add(new Thread(() -> {
+				for (int j = 0; j < 10000; j++) {
+					this.portfolio.buy("GOOG", 1);
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(40000, this.portfolio.getPortfolioPosition("GOOG").getShares());
+	}
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+
+public class AccessBufferTests {
+
+	@Test
+	public void offerAndDrain() {
+		AccessBuffer<String> buffer = new AccessBuffer<>(3);
+		for (int i = 0; i < 4; i++) {
+			assertTrue(buffer.offer("user" + i));
+		}
+		assertFalse(buffer.offer("user4"));
+
+		List<String> drained = new ArrayList<>();
+		buffer.drainTo(drained::add);
+		assertEquals(Arrays.asList("user0", "user1", "user2", "user3"), drained);
+
+		// Slots are reused once drained
+		assertTrue(buffer.offer("user5"));
+		drained.clear();
+		buffer.drainTo(drained::add);
+		assertEquals(Arrays.asList("user5"), drained);
+	}
+
+	@Test
+	public void concurrentOffers() throws Exception {
+		AccessBuffer<String> buffer = new AccessBuffer<>(64);
+		AtomicInteger drained = new AtomicInteger();
+		AtomicInteger added = new AtomicInteger();
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 10000; i++) {
+					if (buffer.offer("user" + i)) {
+						added.incrementAndGet();
+					}
+					else {
+						synchronized (buffer) {
+							buffer.drainTo(username -> drained.incrementAndGet());
+						}
+					}
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		buffer.drainTo(username -> drained.incrementAndGet());
+
+		// Offers that lost the race for a slot are dropped
+		assertTrue(drained.get() > 0);
+		assertTrue(drained.get() + " > " + added.get(), drained.get() <= added.get());
+	}
+
+}
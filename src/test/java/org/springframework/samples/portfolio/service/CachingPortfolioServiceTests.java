@@ -0,0 +1,237 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.samples.portfolio.Portfolio;
+import org.springframework.samples.portfolio.PortfolioPosition;
+
+
+public class CachingPortfolioServiceTests {
+
+	private TestRepository repository;
+
+
+	@Before
+	public void setup() {
+		this.repository = new TestRepository();
+		for (int i = 0; i < 200; i++) {
+			Portfolio portfolio = new Portfolio();
+			portfolio.addPosition(new PortfolioPosition("Red Hat", "RHT", 48.30, 15));
+			this.repository.portfolios.put("user" + i, portfolio);
+		}
+	}
+
+
+	@Test
+	public void singleFlightLoad() throws Exception {
+		CachingPortfolioService service = new CachingPortfolioService(this.repository, 10);
+		this.repository.loadLatch = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		try {
+			List<Future<Portfolio>> futures = new ArrayList<>();
+			for (int i = 0; i < 16; i++) {
+				futures.add(executor.submit(() -> service.findPortfolio("user1")));
+			}
+			while (service.getSharedLoadCount() < 15) {
+				Thread.sleep(1);
+			}
+			this.repository.loadLatch.countDown();
+			Portfolio portfolio = futures.get(0).get(5, TimeUnit.SECONDS);
+			for (Future<Portfolio> future : futures) {
+				assertSame(portfolio, future.get(5, TimeUnit.SECONDS));
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		assertEquals(1, this.repository.loadCount.get());
+		assertEquals(1, service.getLoadCount());
+		assertEquals(15, service.getSharedLoadCount());
+		assertEquals(1, service.getSize());
+	}
+
+	@Test
+	public void cacheHit() {
+		CachingPortfolioService service = new CachingPortfolioService(this.repository, 10);
+		Portfolio portfolio = service.findPortfolio("user1");
+		assertSame(portfolio, service.findPortfolio("user1"));
+		assertEquals(1, service.getHitCount());
+		assertEquals(1, this.repository.loadCount.get());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownUser() {
+		new CachingPortfolioService(this.repository, 10).findPortfolio("rossen");
+	}
+
+	@Test
+	public void frequentUsersSurviveScan() {
+		CachingPortfolioService service = new CachingPortfolioService(this.repository, 10);
+		for (int i = 0; i < 5; i++) {
+			for (int j = 0; j < 5; j++) {
+				service.findPortfolio("user" + j);
+			}
+		}
+		for (int i = 100; i < 200; i++) {
+			service.findPortfolio("user" + i);
+		}
+		assertEquals(10, service.getSize());
+		assertTrue(service.getRejectedCount() > 0);
+
+		int loads = this.repository.loadCount.get();
+		for (int j = 0; j < 5; j++) {
+			service.findPortfolio("user" + j);
+		}
+		assertEquals(loads, this.repository.loadCount.get());
+	}
+
+	@Test
+	public void evictedPortfolioWrittenBack() {
+		CachingPortfolioService service = new CachingPortfolioService(this.repository, 1);
+		service.setWriteBackDelay(0);
+		Portfolio portfolio = service.findPortfolio("user1");
+		portfolio.buy("RHT", 10);
+
+		// Not kept on first use, then used more often than user1
+		service.findPortfolio("user2");
+		service.findPortfolio("user2");
+		assertEquals(2, service.getEvictionCount());
+		assertEquals(1, service.getPendingWriteCount());
+
+		service.writeBackEvicted();
+		assertEquals(0, service.getPendingWriteCount());
+		assertEquals(1, service.getWriteCount());
+		assertEquals(25, this.repository.portfolios.get("user1").getPortfolioPosition("RHT").getShares());
+		assertEquals(1, this.repository.portfolios.get("user1").getVersion());
+
+		// Loaded again, with the saved change
+		assertEquals(25, service.findPortfolio("user1").getPortfolioPosition("RHT").getShares());
+	}
+
+	@Test
+	public void evictedPortfolioTakenBackBeforeWriteBack() {
+		CachingPortfolioService service = new CachingPortfolioService(this.repository, 1);
+		Portfolio portfolio = service.findPortfolio("user1");
+		service.findPortfolio("user2");
+		service.findPortfolio("user2");
+		assertEquals(1, service.getPendingWriteCount());
+
+		service.findPortfolio("user1");
+		assertSame(portfolio, service.findPortfolio("user1"));
+		assertEquals(2, this.repository.loadCount.get());
+	}
+
+	@Test
+	public void stopSavesChangedPortfolios() {
+		CachingPortfolioService service = new CachingPortfolioService(this.repository, 10);
+		service.start();
+		service.findPortfolio("user1").sell("RHT", 5);
+		service.findPortfolio("user2");
+		service.stop();
+		assertEquals(1, service.getWriteCount());
+		assertEquals(10, this.repository.portfolios.get("user1").getPortfolioPosition("RHT").getShares());
+	}
+
+	@Test
+	public void forEachPortfolio() {
+		CachingPortfolioService service = new CachingPortfolioService(this.repository, 10);
+		Portfolio portfolio = service.findPortfolio("user1");
+		portfolio.buy("RHT", 1);
+
+		Map<String, Portfolio> portfolios = new ConcurrentHashMap<>();
+		service.forEachPortfolio(portfolios::put);
+		assertEquals(200, portfolios.size());
+		assertSame(portfolio, portfolios.get("user1"));
+		assertEquals(1, service.getSize());
+	}
+
+	@Test
+	public void forEachPortfolioTakenBackDuringScan() {
+		CachingPortfolioService service = new CachingPortfolioService(this.repository, 1);
+		Portfolio portfolio = service.findPortfolio("user1");
+		portfolio.buy("RHT", 10);
+		service.findPortfolio("user2");
+		service.findPortfolio("user2");
+		assertEquals(1, service.getPendingWriteCount());
+
+		Map<String, Portfolio> portfolios = new ConcurrentHashMap<>();
+		service.forEachPortfolio((username, visited) -> {
+			if (portfolios.isEmpty()) {
+				assertSame(portfolio, service.findPortfolio("user1"));
+			}
+			portfolios.put(username, visited);
+		});
+		assertEquals(200, portfolios.size());
+		assertSame(portfolio, portfolios.get("user1"));
+		assertEquals(25, portfolios.get("user1").getPortfolioPosition("RHT").getShares());
+	}
+
+
+	private static class TestRepository implements PortfolioRepository {
+
+		private final Map<String, Portfolio> portfolios = new ConcurrentHashMap<>();
+
+		private final AtomicInteger loadCount = new AtomicInteger();
+
+		private volatile CountDownLatch loadLatch;
+
+
+		@Override
+		public Portfolio load(String username) {
+			this.loadCount.incrementAndGet();
+			if (this.loadLatch != null) {
+				try {
+					this.loadLatch.await(5, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			Portfolio portfolio = this.portfolios.get(username);
+			return (portfolio != null ? portfolio.copy() : null);
+		}
+
+		@Override
+		public void save(String username, Portfolio portfolio) {
+			this.portfolios.put(username, portfolio);
+		}
+
+		@Override
+		public void forEach(BiConsumer<String, Portfolio> action) {
+			this.portfolios.forEach(action);
+		}
+	}
+
+}
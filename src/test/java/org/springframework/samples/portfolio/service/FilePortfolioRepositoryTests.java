@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.samples.portfolio.Portfolio;
+import org.springframework.samples.portfolio.PortfolioPosition;
+
+
+public class FilePortfolioRepositoryTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+
+	@Test
+	public void seedSamplePortfolios() throws Exception {
+		String path = this.folder.getRoot().toPath().resolve("portfolios").toString();
+		FilePortfolioRepository repository = new FilePortfolioRepository(path);
+
+		Map<String, Portfolio> portfolios = new HashMap<>();
+		repository.forEach(portfolios::put);
+		assertEquals(2, portfolios.size());
+		assertEquals(4, portfolios.get("fabrice").getPositions().size());
+		assertEquals(5, repository.load("paulson").getPortfolioPosition("GOOG").getShares());
+		assertNull(repository.load("rossen"));
+	}
+
+	@Test
+	public void saveAndLoad() throws Exception {
+		String path = this.folder.getRoot().toPath().resolve("portfolios").toString();
+		FilePortfolioRepository repository = new FilePortfolioRepository(path);
+
+		Portfolio portfolio = repository.load("fabrice");
+		portfolio.buy("CTXS", 10);
+		repository.save("fabrice", portfolio);
+
+		Portfolio other = new Portfolio();
+		other.addPosition(new PortfolioPosition("Red Hat", "RHT", 48.30, 15));
+		repository.save("rossen/stoyanchev", other);
+
+		// Not seeded again
+		repository = new FilePortfolioRepository(path);
+		portfolio = repository.load("fabrice");
+		assertEquals(85, portfolio.getPortfolioPosition("CTXS").getShares());
+		assertEquals(1, portfolio.getVersion());
+		assertEquals(15, repository.load("rossen/stoyanchev").getPortfolioPosition("RHT").getShares());
+		assertEquals(3, Files.list(repository.getDirectory()).count());
+	}
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+
+public class FrequencySketchTests {
+
+	@Test
+	public void increment() {
+		FrequencySketch sketch = new FrequencySketch(100);
+		for (int i = 0; i < 5; i++) {
+			sketch.increment("fabrice");
+		}
+		sketch.increment("paulson");
+		assertEquals(5, sketch.frequency("fabrice"));
+		assertEquals(1, sketch.frequency("paulson"));
+		assertEquals(0, sketch.frequency("rossen"));
+	}
+
+	@Test
+	public void maxFrequency() {
+		FrequencySketch sketch = new FrequencySketch(100);
+		for (int i = 0; i < 100; i++) {
+			sketch.increment("fabrice");
+		}
+		assertEquals(15, sketch.frequency("fabrice"));
+	}
+
+	@Test
+	public void aging() {
+		FrequencySketch sketch = new FrequencySketch(16);
+		for (int i = 0; i < 8; i++) {
+			sketch.increment("fabrice");
+		}
+		// Ten increments per entry halve all counters
+		for (int i = 0; i < 160 - 8; i++) {
+			sketch.increment("user" + i);
+		}
+		int frequency = sketch.frequency("fabrice");
+		assertTrue("Frequency " + frequency, frequency >= 4 && frequency < 8);
+	}
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+
+public class LastValueCacheTests {
+
+	private final LastValueCache cache = new LastValueCache();
+
+
+	@Test
+	public void snapshot() {
+		assertTrue(this.cache.getSnapshot(Arrays.asList("GOOG", "MSFT")).isEmpty());
+
+		this.cache.onQuote(new Quote("GOOG", 89349, 2));
+		this.cache.onQuote(new Quote("GOOG", 89410, 2));
+		assertEquals(1, this.cache.size());
+		assertEquals(89410, this.cache.getQuote("GOOG").getPriceTicks());
+
+		List<Quote> quotes = this.cache.getSnapshot(Arrays.asList("GOOG", "MSFT")).getQuotes();
+		assertEquals(1, quotes.size());
+		assertEquals(89410, quotes.get(0).getPriceTicks());
+	}
+
+	@Test
+	public void snapshotOnlyRequestedTickers() {
+		this.cache.onQuote(new Quote("GOOG", 89349, 2));
+		this.cache.onQuote(new Quote("MSFT", 3421, 2));
+		this.cache.onQuote(new Quote("ORCL", 4120, 2));
+
+		List<Quote> quotes = this.cache.getSnapshot(Collections.singletonList("MSFT")).getQuotes();
+		assertEquals(1, quotes.size());
+		assertEquals("MSFT", quotes.get(0).getTicker());
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.BiPredicate;
+
+import org.springframework.samples.portfolio.Portfolio;
+import org.springframework.samples.portfolio.PortfolioPosition;
+
+
+/**
+ * Compares the latency of position lookups and trades, and the heap used,
+ * with portfolios on the heap in {@link PortfolioServiceImpl} and off the heap
+ * in {@link MappedPortfolioService}.
+ *
+ * <p>Run the main method from the IDE. Optional arguments are the number of
+ * users and the number of operations per run, of which a quarter are trades.
+ */
+public class MappedPortfolioBenchmark {
+
+	private static final String[] TICKERS = {"CTXS", "DELL", "MSFT", "ORCL", "EMC", "GOOG", "VMW", "RHT"};
+
+
+	public static void main(String[] args) throws Exception {
+		int userCount = (args.length > 0 ? Integer.parseInt(args[0]) : 200_000);
+		int operations = (args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000);
+
+		System.out.println("Portfolios, " + userCount + " users with " + TICKERS.length + " positions, " +
+				operations + " operations per run");
+
+		long baseline = usedHeap();
+		PortfolioServiceImpl heapService = new PortfolioServiceImpl();
+		populate(userCount, heapService::addPortfolio);
+		System.out.printf("%nheap:   %d MB heap used%n", (usedHeap() - baseline) >> 20);
+		run(heapService, userCount, operations);
+		heapService = null;
+
+		Path file = Files.createTempFile("portfolio-positions", ".dat");
+		Files.delete(file);
+		baseline = usedHeap();
+		MappedPortfolioService mappedService =
+				new MappedPortfolioService(file.toString(), userCount * (TICKERS.length + 1) * 2);
+		try {
+			populate(userCount, mappedService::addPortfolio);
+			System.out.printf("%nmapped: %d MB heap used, %d MB file%n",
+					(usedHeap() - baseline) >> 20, Files.size(file) >> 20);
+			run(mappedService, userCount, operations);
+		}
+		finally {
+			mappedService.destroy();
+			Files.deleteIfExists(file);
+		}
+	}
+
+	private static void populate(int userCount, BiPredicate<String, Portfolio> addAction) {
+		SplittableRandom random = new SplittableRandom(1);
+		for (int i = 0; i < userCount; i++) {
+			Portfolio portfolio = new Portfolio();
+			for (String ticker : TICKERS) {
+				portfolio.addPosition(new PortfolioPosition(ticker, ticker, 10 + random.nextInt(1000),
+						100 + random.nextInt(10000)));
+			}
+			addAction.test("user" + i, portfolio);
+		}
+	}
+
+	private static void run(PortfolioService service, int userCount, int operations) {
+		String[] usernames = new String[userCount];
+		for (int i = 0; i < userCount; i++) {
+			usernames[i] = "user" + i;
+		}
+		long[] lookups = new long[operations];
+		long[] trades = new long[operations];
+		for (int run = 0; run < 3; run++) {
+			SplittableRandom random = new SplittableRandom(run);
+			int lookupCount = 0;
+			int tradeCount = 0;
+			long checksum = 0;
+			for (int i = 0; i < operations; i++) {
+				String username = usernames[random.nextInt(userCount)];
+				String ticker = TICKERS[random.nextInt(TICKERS.length)];
+				boolean trade = (random.nextInt(4) == 0);
+				long start = System.nanoTime();
+				Portfolio portfolio = service.findPortfolio(username);
+				PortfolioPosition position = (trade ?
+						(random.nextBoolean() ? portfolio.buy(ticker, 1) : portfolio.sell(ticker, 1)) :
+						portfolio.getPortfolioPosition(ticker));
+				long nanos = System.nanoTime() - start;
+				checksum += (position != null ? position.getShares() : 0);
+				if (trade) {
+					trades[tradeCount++] = nanos;
+				}
+				else {
+					lookups[lookupCount++] = nanos;
+				}
+			}
+			if (run == 2) {
+				printPercentiles("lookup", Arrays.copyOf(lookups, lookupCount));
+				printPercentiles("trade", Arrays.copyOf(trades, tradeCount));
+				System.out.println("checksum " + checksum);
+			}
+		}
+	}
+
+	private static void printPercentiles(String label, long[] latencies) {
+		Arrays.sort(latencies);
+		StringBuilder sb = new StringBuilder(String.format("  %-7s", label));
+		for (double percentile : new double[] {50, 90, 99, 99.9}) {
+			int index = (int) Math.min(latencies.length - 1, Math.ceil(percentile / 100 * latencies.length) - 1);
+			sb.append(String.format(" p%-5s %6d ns", percentile, latencies[index]));
+		}
+		System.out.println(sb);
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.samples.portfolio.Portfolio;
+import org.springframework.samples.portfolio.PortfolioPosition;
+
+
+public class MappedPortfolioServiceTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+
+	@Test
+	public void tradesSurviveRestart() throws Exception {
+		String path = this.folder.getRoot().toPath().resolve("positions.dat").toString();
+		MappedPortfolioService service = new MappedPortfolioService(path, 100);
+		assertEquals(128, service.getCapacity());
+
+		Portfolio portfolio = service.findPortfolio("fabrice");
+		assertEquals(4, portfolio.getPositions().size());
+		assertEquals("Citrix Systems, Inc.", portfolio.getPositions().get(0).getCompany());
+		assertEquals(85, portfolio.buy("CTXS", 10).getShares());
+		assertEquals(0, portfolio.sell("DELL", 50).getShares());
+		assertNull(portfolio.sell("DELL", 1));
+		assertNull(portfolio.buy("GOOG", 1));
+		assertEquals(2, portfolio.getVersion());
+		service.destroy();
+
+		service = new MappedPortfolioService(path, 0);
+		portfolio = service.findPortfolio("fabrice");
+		assertEquals(85, portfolio.getPortfolioPosition("CTXS").getShares());
+		assertEquals(24.30, portfolio.getPortfolioPosition("CTXS").getPrice(), 0);
+		assertEquals(0, portfolio.getPortfolioPosition("DELL").getShares());
+		assertEquals(2, portfolio.getVersion());
+		assertEquals(5, service.findPortfolio("paulson").getPortfolioPosition("GOOG").getShares());
+		assertEquals(10, service.getUsedRecordCount());
+
+		// Bought at a price, the position is at the average cost
+		assertEquals(24.45, portfolio.buy("CTXS", 15, 25.30).getPrice(), 0.000001);
+		service.destroy();
+	}
+
+	@Test
+	public void addAndRestore() throws Exception {
+		String path = this.folder.getRoot().toPath().resolve("positions.dat").toString();
+		MappedPortfolioService service = new MappedPortfolioService(path, 16);
+
+		Portfolio source = new Portfolio();
+		source.addPosition(new PortfolioPosition("Red Hat", "RHT", 48.30, 15));
+		assertTrue(service.addPortfolio("rossen", source));
+		assertFalse(service.addPortfolio("rossen", source));
+
+		Portfolio portfolio = service.findPortfolio("rossen");
+		portfolio.restore(Arrays.asList(new PortfolioPosition("Google Inc", "GOOG", 905.09, 5),
+				new PortfolioPosition("VMware, Inc.", "VMW", 65.58, 23)), 7);
+		assertEquals(7, portfolio.getVersion());
+		assertNull(portfolio.getPortfolioPosition("RHT"));
+		assertEquals(2, portfolio.getPositions().size());
+		assertEquals("VMW", portfolio.copy().getPositions().get(1).getTicker());
+
+		List<String> usernames = new ArrayList<>();
+		service.forEachPortfolio((username, p) -> usernames.add(username));
+		usernames.sort(null);
+		assertEquals(Arrays.asList("fabrice", "paulson", "rossen"), usernames);
+		service.destroy();
+	}
+
+	@Test
+	public void full() throws Exception {
+		String path = this.folder.getRoot().toPath().resolve("positions.dat").toString();
+		MappedPortfolioService service = new MappedPortfolioService(path, 16);
+		int added = 0;
+		try {
+			while (added < 16) {
+				service.addPortfolio("user" + added, new Portfolio());
+				added++;
+			}
+			fail("Expected IllegalStateException");
+		}
+		catch (IllegalStateException ex) {
+			// 10 records for the sample users, 1 per new user
+			assertEquals(6, added);
+			assertEquals(16, service.getUsedRecordCount());
+		}
+		finally {
+			service.destroy();
+		}
+	}
+
+	@Test
+	public void findPortfoliosAddedConcurrently() throws Exception {
+		String path = this.folder.getRoot().toPath().resolve("positions.dat").toString();
+		MappedPortfolioService service = new MappedPortfolioService(path, 16384);
+		try {
+			List<Thread> threads = new ArrayList<>();
+			List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+			for (int t = 0; t < 4; t++) {
+				int thread = t;
+				threads.add(new Thread(() -> {
+					try {
+						for (int i = 0; i < 1000; i++) {
+							String username = "user" + thread + "-" + i;
+							Portfolio portfolio = new Portfolio();
+							portfolio.addPosition(new PortfolioPosition("Dell Inc.", "DELL", 13.44, i));
+							service.addPortfolio(username, portfolio);
+							// Probes past the records other threads are adding
+							assertEquals(i, service.findPortfolio(username).getPortfolioPosition("DELL").getShares());
+						}
+					}
+					catch (Throwable ex) {
+						failures.add(ex);
+					}
+				}));
+			}
+			threads.forEach(Thread::start);
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			assertEquals(Collections.emptyList(), failures);
+			assertEquals(10 + 4 * 1000 * 2, service.getUsedRecordCount());
+		}
+		finally {
+			service.destroy();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownUser() throws Exception {
+		String path = this.folder.getRoot().toPath().resolve("positions.dat").toString();
+		MappedPortfolioService service = new MappedPortfolioService(path, 16);
+		try {
+			service.findPortfolio("nobody");
+		}
+		finally {
+			service.destroy();
+		}
+	}
+
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.samples.portfolio.PortfolioPosition;
+import org.springframework.samples.portfolio.service.Trade.TradeAction;
+
+
+public class MatchingEngineTests {
+
+	private final BlockingQueue<Message<?>> messages = new LinkedBlockingQueue<>();
+
+	private final PortfolioServiceImpl portfolioService = new PortfolioServiceImpl();
+
+	private SimpMessagingTemplate messagingTemplate;
+
+	private TradeServiceImpl tradeService;
+
+	private MatchingEngine matchingEngine;
+
+
+	@Before
+	public void setup() {
+		MessageChannel channel = (message, timeout) -> this.messages.add(message);
+		this.messagingTemplate = new SimpMessagingTemplate(channel);
+		this.tradeService = new TradeServiceImpl(this.messagingTemplate, this.portfolioService);
+		this.tradeService.start();
+		this.matchingEngine = new MatchingEngine(this.tradeService, this.portfolioService, this.messagingTemplate);
+		this.matchingEngine.start();
+	}
+
+	@After
+	public void tearDown() {
+		this.matchingEngine.stop();
+		this.tradeService.stop();
+	}
+
+	@Test
+	public void fillSettlesBothSides() throws Exception {
+		// Give paulson a CTXS position to buy into
+		this.portfolioService.findPortfolio("paulson").addPosition(new PortfolioPosition("Citrix Systems, Inc.", "CTXS", 24.30, 0));
+
+		TradeAck ack = placeOrder("fabrice", "s1", "CTXS", TradeAction.Sell, "24.50", 50);
+		assertEquals(TradeAck.Status.Accepted, ack.getStatus());
+		assertEquals(1, this.matchingEngine.getRestingOrderCount());
+
+		// 50 of 75 shares are reserved by the resting order
+		ack = placeOrder("fabrice", "s2", "CTXS", TradeAction.Sell, "24.60", 30);
+		assertEquals(TradeAck.Status.Rejected, ack.getStatus());
+		assertEquals("Not enough shares", ack.getReason());
+
+		ack = placeOrder("paulson", "b1", "CTXS", TradeAction.Buy, "25.00", 20);
+		assertEquals(TradeAck.Status.Accepted, ack.getStatus());
+		assertEquals(1, this.matchingEngine.getFillCount());
+
+		Map<String, PortfolioPosition> updates = new HashMap<>();
+		for (int i = 0; i < 2; i++) {
+			Message<?> message = this.messages.poll(5, TimeUnit.SECONDS);
+			assertNotNull(message);
+			updates.put(SimpMessageHeaderAccessor.wrap(message).getDestination(), (PortfolioPosition) message.getPayload());
+		}
+		assertEquals(55, updates.get("/user/fabrice/queue/position-updates").getShares());
+		assertEquals(20, updates.get("/user/paulson/queue/position-updates").getShares());
+
+		// Settled at the price of the resting order
+		assertEquals(24.50, updates.get("/user/paulson/queue/position-updates").getPrice(), 0.000001);
+		assertEquals(24.30, updates.get("/user/fabrice/queue/position-updates").getPrice(), 0.000001);
+
+		ack = this.matchingEngine.cancelOrder("paulson", "s1").get(5, TimeUnit.SECONDS);
+		assertEquals(TradeAck.Status.Rejected, ack.getStatus());
+		ack = this.matchingEngine.cancelOrder("fabrice", "s1").get(5, TimeUnit.SECONDS);
+		assertEquals(TradeAck.Status.Cancelled, ack.getStatus());
+		assertEquals(0, this.matchingEngine.getRestingOrderCount());
+
+		// The cancelled shares are no longer reserved
+		ack = placeOrder("fabrice", "s3", "CTXS", TradeAction.Sell, "24.60", 55);
+		assertEquals(TradeAck.Status.Accepted, ack.getStatus());
+	}
+
+	@Test
+	public void reserveMatchedSharesUntilSettled() throws Exception {
+		this.portfolioService.findPortfolio("paulson").addPosition(new PortfolioPosition("Citrix Systems, Inc.", "CTXS", 24.30, 0));
+		List<Trade> settlements = new ArrayList<>();
+		List<CompletableFuture<TradeAck>> results = new ArrayList<>();
+		TradeService tradeService = trade -> {
+			CompletableFuture<TradeAck> result = new CompletableFuture<>();
+			settlements.add(trade);
+			results.add(result);
+			return result;
+		};
+		this.matchingEngine.stop();
+		this.matchingEngine = new MatchingEngine(tradeService, this.portfolioService, this.messagingTemplate);
+		this.matchingEngine.start();
+
+		assertEquals(TradeAck.Status.Accepted, placeOrder("paulson", "b1", "CTXS", TradeAction.Buy, "25.00", 20).getStatus());
+		assertEquals(TradeAck.Status.Accepted, placeOrder("fabrice", "s1", "CTXS", TradeAction.Sell, "24.50", 60).getStatus());
+		assertEquals(1, settlements.size());
+
+		// The 20 filled shares are reserved until the seller is settled
+		TradeAck ack = placeOrder("fabrice", "s2", "CTXS", TradeAction.Sell, "24.60", 20);
+		assertEquals(TradeAck.Status.Rejected, ack.getStatus());
+		assertEquals("Not enough shares", ack.getReason());
+
+		// The seller no longer holds the shares, so the fill is dropped
+		results.get(0).complete(TradeAck.rejected(settlements.get(0), "Not enough shares"));
+		assertEquals(1, settlements.size());
+		assertEquals(1, this.matchingEngine.getDroppedFillCount());
+		Map<String, TradeAck> acks = new HashMap<>();
+		for (int i = 0; i < 2; i++) {
+			Message<?> message = this.messages.poll(5, TimeUnit.SECONDS);
+			assertNotNull(message);
+			acks.put(SimpMessageHeaderAccessor.wrap(message).getDestination(), (TradeAck) message.getPayload());
+		}
+		TradeAck buyerAck = acks.get("/user/paulson/queue/trade-acks");
+		assertEquals(TradeAck.Status.Rejected, buyerAck.getStatus());
+		assertEquals("b1", buyerAck.getOrderId());
+		assertEquals(20, buyerAck.getShares());
+		assertEquals(TradeAck.Status.Rejected, acks.get("/user/fabrice/queue/trade-acks").getStatus());
+
+		// Only the 40 resting shares are still reserved
+		ack = placeOrder("fabrice", "s3", "CTXS", TradeAction.Sell, "24.60", 35);
+		assertEquals(TradeAck.Status.Accepted, ack.getStatus());
+	}
+
+	@Test
+	public void orderIdPerUser() throws Exception {
+		this.portfolioService.findPortfolio("paulson").addPosition(new PortfolioPosition("Citrix Systems, Inc.", "CTXS", 24.30, 0));
+
+		assertEquals(TradeAck.Status.Accepted, placeOrder("fabrice", "o1", "CTXS", TradeAction.Sell, "24.50", 10).getStatus());
+		assertEquals(TradeAck.Status.Accepted, placeOrder("paulson", "o1", "CTXS", TradeAction.Buy, "24.00", 10).getStatus());
+		assertEquals(TradeAck.Status.Rejected, placeOrder("paulson", "o1", "CTXS", TradeAction.Buy, "24.00", 10).getStatus());
+		assertEquals(2, this.matchingEngine.getRestingOrderCount());
+
+		TradeAck ack = this.matchingEngine.cancelOrder("paulson", "o1").get(5, TimeUnit.SECONDS);
+		assertEquals(TradeAck.Status.Cancelled, ack.getStatus());
+		assertEquals(TradeAction.Buy, ack.getAction());
+		assertEquals(1, this.matchingEngine.getRestingOrderCount());
+	}
+
+	@Test
+	public void restingBuysCountTowardsPositionLimit() throws Exception {
+		this.portfolioService.findPortfolio("paulson").addPosition(new PortfolioPosition("Citrix Systems, Inc.", "CTXS", 24.30, 0));
+		RiskLimitCache limitCache = new RiskLimitCache(username -> new RiskLimits(1000, 100, 0));
+		this.matchingEngine.setRiskPipeline(new PreTradeRiskPipeline(limitCache, new LastValueCache()));
+		try {
+			assertEquals(TradeAck.Status.Accepted, placeOrder("paulson", "b1", "CTXS", TradeAction.Buy, "20.00", 60).getStatus());
+			TradeAck ack = placeOrder("paulson", "b2", "CTXS", TradeAction.Buy, "20.00", 50);
+			assertEquals(TradeAck.Status.Rejected, ack.getStatus());
+			assertEquals("Position over limit of 100 shares", ack.getReason());
+
+			this.matchingEngine.cancelOrder("paulson", "b1").get(5, TimeUnit.SECONDS);
+			assertEquals(TradeAck.Status.Accepted, placeOrder("paulson", "b2", "CTXS", TradeAction.Buy, "20.00", 50).getStatus());
+		}
+		finally {
+			limitCache.stop();
+		}
+	}
+
+	@Test
+	public void restingBuysCountTowardsTradePositionLimit() throws Exception {
+		this.portfolioService.findPortfolio("paulson").addPosition(new PortfolioPosition("Citrix Systems, Inc.", "CTXS", 24.30, 0));
+		RiskLimitCache limitCache = new RiskLimitCache(username -> new RiskLimits(1000, 100, 0));
+		PreTradeRiskPipeline riskPipeline = new PreTradeRiskPipeline(limitCache, new LastValueCache());
+		this.matchingEngine.setRiskPipeline(riskPipeline);
+		this.tradeService.setRiskPipeline(riskPipeline);
+		this.tradeService.setOrderReservations(this.matchingEngine);
+		try {
+			assertEquals(TradeAck.Status.Accepted, placeOrder("paulson", "b1", "CTXS", TradeAction.Buy, "20.00", 60).getStatus());
+
+			Trade trade = new Trade();
+			trade.setUsername("paulson");
+			trade.setTicker("CTXS");
+			trade.setAction(TradeAction.Buy);
+			trade.setShares(50);
+			TradeAck ack = this.tradeService.executeTrade(trade).get(5, TimeUnit.SECONDS);
+			assertEquals(TradeAck.Status.Rejected, ack.getStatus());
+			assertEquals("Position over limit of 100 shares", ack.getReason());
+
+			trade.setShares(40);
+			assertEquals(TradeAck.Status.Accepted, this.tradeService.executeTrade(trade).get(5, TimeUnit.SECONDS).getStatus());
+		}
+		finally {
+			limitCache.stop();
+		}
+	}
+
+	@Test
+	public void tradeCannotSellReservedShares() throws Exception {
+		this.tradeService.setOrderReservations(this.matchingEngine);
+		assertEquals(TradeAck.Status.Accepted, placeOrder("fabrice", "s1", "CTXS", TradeAction.Sell, "24.50", 50).getStatus());
+
+		Trade trade = new Trade();
+		trade.setUsername("fabrice");
+		trade.setTicker("CTXS");
+		trade.setAction(TradeAction.Sell);
+		trade.setShares(30);
+		TradeAck ack = this.tradeService.executeTrade(trade).get(5, TimeUnit.SECONDS);
+		assertEquals(TradeAck.Status.Rejected, ack.getStatus());
+		assertEquals("Not enough shares, 50 reserved by sell orders", ack.getReason());
+
+		trade.setShares(25);
+		assertEquals(TradeAck.Status.Accepted, this.tradeService.executeTrade(trade).get(5, TimeUnit.SECONDS).getStatus());
+
+		this.matchingEngine.cancelOrder("fabrice", "s1").get(5, TimeUnit.SECONDS);
+		assertEquals(TradeAck.Status.Accepted, this.tradeService.executeTrade(trade).get(5, TimeUnit.SECONDS).getStatus());
+	}
+
+	@Test
+	public void rejectOrderWithoutPosition() throws Exception {
+		TradeAck ack = placeOrder("fabrice", "b1", "GOOG", TradeAction.Buy, "900.00", 1);
+		assertEquals(TradeAck.Status.Rejected, ack.getStatus());
+		assertEquals("No position in GOOG", ack.getReason());
+	}
+
+	@Test
+	public void rejectSubCentPrice() throws Exception {
+		TradeAck ack = placeOrder("fabrice", "s1", "CTXS", TradeAction.Sell, "24.505", 1);
+		assertEquals(TradeAck.Status.Rejected, ack.getStatus());
+		assertEquals("Invalid price", ack.getReason());
+
+		ack = placeOrder("fabrice", "s2", "CTXS", TradeAction.Sell, "24.5000", 1);
+		assertEquals(TradeAck.Status.Accepted, ack.getStatus());
+	}
+
+	private TradeAck placeOrder(String username, String orderId, String ticker, TradeAction action,
+			String price, int shares) throws Exception {
+
+		LimitOrder order = OrderBookTests.createOrder(orderId, action, price, shares);
+		order.setUsername(username);
+		order.setTicker(ticker);
+		return this.matchingEngine.placeOrder(order).get(5, TimeUnit.SECONDS);
+	}
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.springframework.samples.portfolio.service.Trade.TradeAction;
+
+
+/**
+ * Measures the throughput of an {@link OrderBook} and the latency of each
+ * order and cancel, printed as percentiles and as a histogram with
+ * power-of-two buckets.
+ *
+ * <p>Orders are generated up front with prices around a fixed mid price, so
+ * that about half of them cross the spread and the book keeps a realistic
+ * depth, and a share of the operations cancel an earlier order.
+ *
+ * <p>Run the main method from the IDE. Optional arguments are the number of
+ * operations and the percentage of them that are cancels.
+ */
+public class OrderBookBenchmark {
+
+	private static final long MID_PRICE = 10000;
+
+	private static final int PRICE_RANGE = 50;
+
+	private static final int USER_COUNT = 100;
+
+
+	public static void main(String[] args) {
+		int operations = (args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000);
+		int cancelPercent = (args.length > 1 ? Integer.parseInt(args[1]) : 30);
+
+		// Warm-up
+		run(createOperations(operations, cancelPercent, 1), new long[operations]);
+
+		long[] latencies = new long[operations];
+		Operation[] ops = createOperations(operations, cancelPercent, 2);
+		long start = System.nanoTime();
+		long fills = run(ops, latencies);
+		long nanos = System.nanoTime() - start;
+
+		System.out.println("Order book, " + operations + " operations, " + cancelPercent + "% cancels");
+		System.out.printf("%.0f operations/s, %d fills%n", operations / (nanos / 1e9), fills);
+		printPercentiles(latencies);
+		printHistogram(latencies);
+	}
+
+	private static Operation[] createOperations(int count, int cancelPercent, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		Operation[] ops = new Operation[count];
+		for (int i = 0; i < count; i++) {
+			if (i > 0 && random.nextInt(100) < cancelPercent) {
+				int orderIndex = random.nextInt(i);
+				ops[i] = new Operation(null, "user" + (orderIndex % USER_COUNT), "o" + orderIndex);
+			}
+			else {
+				TradeAction action = (random.nextBoolean() ? TradeAction.Buy : TradeAction.Sell);
+				// Buys mostly below and sells mostly above the mid price
+				long offset = random.nextInt(PRICE_RANGE) - PRICE_RANGE / 4;
+				long priceTicks = (action == TradeAction.Buy ? MID_PRICE - offset : MID_PRICE + offset);
+				LimitOrder order = new LimitOrder();
+				order.setOrderId("o" + i);
+				order.setUsername("user" + (i % USER_COUNT));
+				order.setTicker("GOOG");
+				order.setAction(action);
+				order.setPriceTicks(priceTicks);
+				order.setShares(1 + random.nextInt(100));
+				ops[i] = new Operation(order, null, null);
+			}
+		}
+		return ops;
+	}
+
+	private static long run(Operation[] ops, long[] latencies) {
+		OrderBook book = new OrderBook("GOOG");
+		long[] fills = new long[1];
+		OrderBook.FillHandler handler = (buy, sell, priceTicks, shares) -> fills[0]++;
+		for (int i = 0; i < ops.length; i++) {
+			Operation op = ops[i];
+			long start = System.nanoTime();
+			if (op.order != null) {
+				book.submit(op.order, handler);
+			}
+			else {
+				book.cancel(op.cancelUsername, op.cancelId);
+			}
+			latencies[i] = System.nanoTime() - start;
+		}
+		return fills[0];
+	}
+
+	private static void printPercentiles(long[] latencies) {
+		long[] sorted = latencies.clone();
+		Arrays.sort(sorted);
+		System.out.printf("%-8s %10s%n", "pct", "nanos");
+		for (double percentile : new double[] {50, 90, 99, 99.9, 99.99}) {
+			int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile / 100 * sorted.length) - 1);
+			System.out.printf("%-8s %10d%n", percentile, sorted[index]);
+		}
+		System.out.printf("%-8s %10d%n", "max", sorted[sorted.length - 1]);
+	}
+
+	private static void printHistogram(long[] latencies) {
+		long[] buckets = new long[64];
+		for (long latency : latencies) {
+			buckets[64 - Long.numberOfLeadingZeros(Math.max(latency, 1))]++;
+		}
+		System.out.printf("%n%-22s %10s %8s%n", "nanos", "count", "%");
+		for (int i = 0; i < buckets.length; i++) {
+			if (buckets[i] > 0) {
+				long low = (i == 0 ? 0 : 1L << (i - 1));
+				System.out.printf("%-22s %10d %8.3f%n", low + " - " + ((1L << i) - 1), buckets[i],
+						100.0 * buckets[i] / latencies.length);
+			}
+		}
+	}
+
+
+	private static class Operation {
+
+		private final LimitOrder order;
+
+		private final String cancelUsername;
+
+		private final String cancelId;
+
+
+		Operation(LimitOrder order, String cancelUsername, String cancelId) {
+			this.order = order;
+			this.cancelUsername = cancelUsername;
+			this.cancelId = cancelId;
+		}
+	}
+
+}
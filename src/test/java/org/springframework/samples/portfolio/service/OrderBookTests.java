@@ -0,0 +1,116 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.springframework.samples.portfolio.service.Trade.TradeAction;
+
+
+public class OrderBookTests {
+
+	private final OrderBook book = new OrderBook("GOOG");
+
+	private final List<String> fills = new ArrayList<>();
+
+
+	@Test
+	public void matchByPriceThenTime() {
+		submit("s1", TradeAction.Sell, "10.02", 5);
+		submit("s2", TradeAction.Sell, "10.01", 5);
+		submit("s3", TradeAction.Sell, "10.01", 5);
+		submit("b1", TradeAction.Buy, "10.00", 5);
+		assertTrue(this.fills.isEmpty());
+		assertEquals(1000, this.book.getBestBid());
+		assertEquals(1001, this.book.getBestAsk());
+
+		assertEquals(12, submit("b2", TradeAction.Buy, "10.02", 12));
+		assertEquals("[b2<-s2 5@1001, b2<-s3 5@1001, b2<-s1 2@1002]", this.fills.toString());
+		assertEquals(1002, this.book.getBestAsk());
+		assertEquals(3, this.book.getOrder("fabrice", "s1").getRemaining());
+		assertEquals(2, this.book.getOrderCount());
+
+		// Remainder rests at the limit price
+		this.fills.clear();
+		assertEquals(5, submit("s4", TradeAction.Sell, "9.00", 8));
+		assertEquals("[b1<-s4 5@1000]", this.fills.toString());
+		assertEquals(900, this.book.getBestAsk());
+		assertEquals(3, this.book.getShares(TradeAction.Sell, 900));
+		assertEquals(0, this.book.getBestBid());
+	}
+
+	@Test
+	public void cancel() {
+		submit("b1", TradeAction.Buy, "10.00", 5);
+		submit("b2", TradeAction.Buy, "10.00", 6);
+		submit("b3", TradeAction.Buy, "10.00", 7);
+
+		assertNull(this.book.cancel("paulson", "b2"));
+		assertEquals("b2", this.book.cancel("fabrice", "b2").getOrderId());
+		assertNull(this.book.cancel("fabrice", "b2"));
+		assertEquals(12, this.book.getShares(TradeAction.Buy, 1000));
+
+		submit("s1", TradeAction.Sell, "10.00", 6);
+		assertEquals("[b1<-s1 5@1000, b3<-s1 1@1000]", this.fills.toString());
+
+		this.book.cancel("fabrice", "b3");
+		assertEquals(0, this.book.getOrderCount());
+		assertEquals(0, this.book.getBestBid());
+		assertEquals(0, this.book.getShares(TradeAction.Buy, 1000));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void duplicateOrderId() {
+		submit("b1", TradeAction.Buy, "10.00", 5);
+		submit("b1", TradeAction.Buy, "10.00", 5);
+	}
+
+	@Test
+	public void orderIdPerUser() {
+		submit("b1", TradeAction.Buy, "10.00", 5);
+		LimitOrder order = createOrder("b1", TradeAction.Buy, "10.00", 6);
+		order.setUsername("paulson");
+		this.book.submit(order, (buy, sell, priceTicks, filled) -> {});
+		assertEquals(2, this.book.getOrderCount());
+
+		assertEquals(6, this.book.cancel("paulson", "b1").getShares());
+		assertEquals(5, this.book.getOrder("fabrice", "b1").getShares());
+	}
+
+	private int submit(String orderId, TradeAction action, String price, int shares) {
+		return this.book.submit(createOrder(orderId, action, price, shares), (buy, sell, priceTicks, filled) ->
+				this.fills.add(buy.getOrderId() + "<-" + sell.getOrderId() + " " + filled + "@" + priceTicks));
+	}
+
+	static LimitOrder createOrder(String orderId, TradeAction action, String price, int shares) {
+		LimitOrder order = new LimitOrder();
+		order.setOrderId(orderId);
+		order.setUsername("fabrice");
+		order.setTicker("GOOG");
+		order.setAction(action);
+		order.setPrice(new BigDecimal(price));
+		order.setShares(shares);
+		return order;
+	}
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import org.junit.Test;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.samples.portfolio.Portfolio;
+import org.springframework.samples.portfolio.PortfolioPosition;
+import org.springframework.samples.portfolio.web.support.TestPrincipal;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+
+public class PnlServiceTests {
+
+	// fabrice: CTXS 75 @ 24.30, DELL 50 @ 13.44, MSFT 33 @ 34.15, ORCL 45 @ 31.22
+	private static final double FABRICE_COST = 75 * 24.30 + 50 * 13.44 + 33 * 34.15 + 45 * 31.22;
+
+	private static final double DELTA = 0.001;
+
+
+	private final List<Message<?>> messages = new ArrayList<>();
+
+	private final PortfolioService portfolioService = new PortfolioServiceImpl();
+
+	private final PnlService pnlService;
+
+
+	public PnlServiceTests() {
+		MessageChannel channel = (message, timeout) -> this.messages.add(message);
+		this.pnlService = new PnlService(new SimpMessagingTemplate(channel), this.portfolioService);
+	}
+
+
+	@Test
+	public void quotesUpdateHolders() {
+		subscribe("fabrice", "s1", PnlService.PNL_DESTINATION);
+		this.pnlService.onQuote(new Quote("MSFT", 3515, 2));
+		this.pnlService.onQuote(new Quote("GOOG", 90000, 2));
+
+		PortfolioValuation valuation = this.pnlService.getValuation("fabrice");
+		assertEquals(FABRICE_COST, valuation.getCost(), DELTA);
+		assertEquals(33, valuation.getProfitAndLoss(), DELTA);
+
+		this.pnlService.onQuote(new Quote("MSFT", 3315, 2));
+		this.pnlService.onQuote(new Quote("DELL", 1444, 2));
+		valuation = this.pnlService.getValuation("fabrice");
+		assertEquals(-33 + 50, valuation.getProfitAndLoss(), DELTA);
+		assertNull(this.pnlService.getValuation("paulson"));
+	}
+
+	@Test
+	public void positionChangeRevalues() {
+		subscribe("fabrice", "s1", PnlService.PNL_DESTINATION);
+		this.pnlService.onQuote(new Quote("MSFT", 3515, 2));
+
+		Portfolio portfolio = this.portfolioService.findPortfolio("fabrice");
+		PortfolioPosition position = portfolio.sell("MSFT", 13);
+		this.pnlService.onPositionChange("fabrice", position);
+		this.pnlService.onQuote(new Quote("MSFT", 3615, 2));
+
+		assertEquals(20 * 2, this.pnlService.getValuation("fabrice").getProfitAndLoss(), DELTA);
+	}
+
+	@Test
+	public void revalueReloadedPortfolio() {
+		Map<String, Portfolio> portfolios = new HashMap<>();
+		portfolios.put("fabrice", this.portfolioService.findPortfolio("fabrice").copy());
+		PortfolioService reloadingService = new PortfolioService() {
+			@Override
+			public Portfolio findPortfolio(String username) {
+				return portfolios.get(username);
+			}
+
+			@Override
+			public void forEachPortfolio(BiConsumer<String, Portfolio> action) {
+				portfolios.forEach(action);
+			}
+		};
+		PnlService pnlService = new PnlService(new SimpMessagingTemplate((message, timeout) -> true), reloadingService);
+		subscribe(pnlService, "fabrice", "s1", PnlService.PNL_DESTINATION);
+		assertEquals(FABRICE_COST, pnlService.getValuation("fabrice").getCost(), DELTA);
+
+		// Evicted and loaded again, then traded
+		Portfolio reloaded = portfolios.get("fabrice").copy();
+		portfolios.put("fabrice", reloaded);
+		pnlService.onPositionChange("fabrice", reloaded.sell("MSFT", 33));
+		pnlService.onQuote(new Quote("MSFT", 4415, 2));
+
+		PortfolioValuation valuation = pnlService.getValuation("fabrice");
+		assertEquals(FABRICE_COST - 33 * 34.15, valuation.getCost(), DELTA);
+		assertEquals(0, valuation.getProfitAndLoss(), DELTA);
+	}
+
+	@Test
+	public void sendAtMostOncePerInterval() {
+		subscribe("fabrice", "s1", PnlService.PNL_DESTINATION);
+		subscribe("paulson", "s2", PnlService.PNL_DESTINATION);
+		for (int i = 1; i <= 10; i++) {
+			this.pnlService.onQuote(new Quote("MSFT", 3415 + i, 2));
+		}
+		this.pnlService.sendValuations();
+		assertEquals(2, this.messages.size());
+
+		this.messages.clear();
+		this.pnlService.onQuote(new Quote("GOOG", 90600, 2));
+		this.pnlService.onQuote(new Quote("GOOG", 90700, 2));
+		this.pnlService.sendValuations();
+		assertEquals(1, this.messages.size());
+		SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(this.messages.get(0));
+		assertEquals("/user/paulson/queue/pnl", headers.getDestination());
+		PortfolioValuation valuation = (PortfolioValuation) this.messages.get(0).getPayload();
+		assertEquals(5 * (907.00 - 905.09), valuation.getProfitAndLoss(), DELTA);
+
+		this.messages.clear();
+		this.pnlService.sendValuations();
+		assertEquals(0, this.messages.size());
+	}
+
+	@Test
+	public void dropValuationOnLastDisconnect() {
+		subscribe("fabrice", "s1", TickerInterestIndex.QUOTE_DESTINATION);
+		assertNull(this.pnlService.getValuation("fabrice"));
+
+		subscribe("fabrice", "s1", PnlService.PNL_DESTINATION);
+		subscribe("fabrice", "s2", PnlService.PNL_DESTINATION);
+		this.pnlService.onQuote(new Quote("MSFT", 3515, 2));
+		disconnect("fabrice", "s1");
+		assertEquals(33, this.pnlService.getValuation("fabrice").getProfitAndLoss(), DELTA);
+
+		disconnect("fabrice", "s2");
+		assertNull(this.pnlService.getValuation("fabrice"));
+		this.pnlService.sendValuations();
+		assertEquals(0, this.messages.size());
+	}
+
+
+	private void subscribe(String username, String sessionId, String destination) {
+		subscribe(this.pnlService, username, sessionId, destination);
+	}
+
+	private static void subscribe(PnlService pnlService, String username, String sessionId, String destination) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+		accessor.setSessionId(sessionId);
+		accessor.setDestination(destination);
+		Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+		pnlService.onApplicationEvent(new SessionSubscribeEvent(pnlService, message, new TestPrincipal(username)));
+	}
+
+	private void disconnect(String username, String sessionId) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+		accessor.setSessionId(sessionId);
+		Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+		this.pnlService.onApplicationEvent(new SessionDisconnectEvent(this, message, sessionId,
+				CloseStatus.NORMAL, new TestPrincipal(username)));
+	}
+
+}
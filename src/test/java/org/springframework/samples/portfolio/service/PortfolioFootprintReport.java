@@ -0,0 +1,157 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.samples.portfolio.Portfolio;
+import org.springframework.samples.portfolio.PortfolioPosition;
+
+
+/**
+ * Reports the heap used per million users by a {@link PortfolioStore} of
+ * compact {@link Portfolio} instances, compared with one
+ * {@link PortfolioPosition} object per position and a hash map index per
+ * portfolio, as portfolios were stored before.
+ *
+ * <p>Heap use is measured after a full GC before and after filling each
+ * store, so the numbers include usernames and hash table entries. Run the
+ * main method with a large enough heap, e.g. {@code -Xmx4g}. Optional
+ * arguments are the number of users and of positions per user.
+ */
+public class PortfolioFootprintReport {
+
+	private static final String[][] INSTRUMENTS = {
+			{"CTXS", "Citrix Systems, Inc."}, {"DELL", "Dell Inc."}, {"MSFT", "Microsoft"},
+			{"ORCL", "Oracle"}, {"EMC", "EMC Corporation"}, {"GOOG", "Google Inc"},
+			{"VMW", "VMware, Inc."}, {"RHT", "Red Hat"}, {"AAPL", "Apple Inc."}, {"IBM", "IBM"},
+			{"INTC", "Intel"}, {"CSCO", "Cisco Systems"}, {"AMZN", "Amazon"}, {"SAP", "SAP SE"},
+			{"ADBE", "Adobe"}, {"CRM", "Salesforce"}};
+
+	// Keeps the measured store reachable
+	private static Object retained;
+
+
+	public static void main(String[] args) throws Exception {
+		int userCount = (args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000);
+		int positionCount = (args.length > 1 ? Integer.parseInt(args[1]) : 8);
+
+		System.out.println(userCount + " users, " + positionCount + " positions each");
+		System.out.printf("%-28s %14s %16s %14s%n", "layout", "bytes/user", "bytes/position", "MB/1M users");
+
+		long compact = measure(() -> {
+			PortfolioStore store = new PortfolioStore(64, userCount);
+			for (int i = 0; i < userCount; i++) {
+				Portfolio portfolio = new Portfolio();
+				for (int j = 0; j < positionCount; j++) {
+					String[] instrument = INSTRUMENTS[(i + j) % INSTRUMENTS.length];
+					portfolio.addPosition(new PortfolioPosition(instrument[1], instrument[0], 10.0 + j, 10 * j));
+				}
+				store.putIfAbsent("user" + i, portfolio);
+			}
+			return store;
+		});
+		print("compact, sharded store", compact, userCount, positionCount);
+
+		long objects = measure(() -> {
+			Map<String, ObjectPortfolio> store = new HashMap<>();
+			for (int i = 0; i < userCount; i++) {
+				ObjectPortfolio portfolio = new ObjectPortfolio();
+				for (int j = 0; j < positionCount; j++) {
+					String[] instrument = INSTRUMENTS[(i + j) % INSTRUMENTS.length];
+					portfolio.addPosition(new PortfolioPosition(instrument[1], instrument[0], 10.0 + j, 10 * j));
+				}
+				store.put("user" + i, portfolio);
+			}
+			return store;
+		});
+		print("position objects, hash map", objects, userCount, positionCount);
+	}
+
+	private static long measure(StoreFactory factory) throws Exception {
+		retained = null;
+		long before = getUsedHeap();
+		retained = factory.create();
+		long after = getUsedHeap();
+		retained = null;
+		return after - before;
+	}
+
+	private static long getUsedHeap() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static void print(String layout, long bytes, int userCount, int positionCount) {
+		System.out.printf("%-28s %14.1f %16.1f %14.1f%n", layout, (double) bytes / userCount,
+				(double) bytes / userCount / positionCount, bytes / (userCount / 1_000_000.0) / (1024 * 1024));
+	}
+
+
+	private interface StoreFactory {
+
+		Object create();
+	}
+
+
+	/**
+	 * The previous layout of a portfolio: an immutable snapshot of position
+	 * objects with a list view and an index by ticker.
+	 */
+	private static class ObjectPortfolio {
+
+		private final AtomicReference<Snapshot> snapshot =
+				new AtomicReference<>(new Snapshot(Collections.emptyMap(), new PortfolioPosition[0]));
+
+
+		void addPosition(PortfolioPosition position) {
+			Snapshot current = this.snapshot.get();
+			Map<String, Integer> indexLookup = new HashMap<>(current.indexLookup);
+			indexLookup.put(position.getTicker(), current.positions.length);
+			PortfolioPosition[] positions = Arrays.copyOf(current.positions, current.positions.length + 1);
+			positions[current.positions.length] = position;
+			this.snapshot.set(new Snapshot(Collections.unmodifiableMap(indexLookup), positions));
+		}
+
+
+		private static class Snapshot {
+
+			private final Map<String, Integer> indexLookup;
+
+			private final PortfolioPosition[] positions;
+
+			private final List<PortfolioPosition> positionList;
+
+
+			Snapshot(Map<String, Integer> indexLookup, PortfolioPosition[] positions) {
+				this.indexLookup = indexLookup;
+				this.positions = positions;
+				this.positionList = Collections.unmodifiableList(Arrays.asList(positions));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import org.springframework.samples.portfolio.Portfolio;
+import org.springframework.samples.portfolio.PortfolioPosition;
+
+
+public class PortfolioStoreTests {
+
+	@Test
+	public void shardCount() {
+		assertEquals(1, new PortfolioStore(1, 0).getShardCount());
+		assertEquals(64, new PortfolioStore(64, 0).getShardCount());
+		assertEquals(128, new PortfolioStore(100, 0).getShardCount());
+	}
+
+	@Test
+	public void putAndGet() {
+		PortfolioStore store = new PortfolioStore(16, 10000);
+		for (int i = 0; i < 10000; i++) {
+			Portfolio portfolio = new Portfolio();
+			portfolio.addPosition(new PortfolioPosition("Dell Inc.", "DELL", 13.44, i));
+			assertNull(store.putIfAbsent("user" + i, portfolio));
+		}
+		assertNotNull(store.putIfAbsent("user5", new Portfolio()));
+		assertEquals(10000, store.size());
+		assertEquals(5, store.get("user5").getPortfolioPosition("DELL").getShares());
+		assertNull(store.get("nobody"));
+
+		Set<String> usernames = new HashSet<>();
+		store.forEach((username, portfolio) -> usernames.add(username));
+		assertEquals(10000, usernames.size());
+	}
+
+}
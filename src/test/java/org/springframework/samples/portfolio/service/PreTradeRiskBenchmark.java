@@ -0,0 +1,77 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import java.util.SplittableRandom;
+
+import org.springframework.samples.portfolio.PortfolioPosition;
+import org.springframework.samples.portfolio.service.Trade.TradeAction;
+
+
+/**
+ * Measures the time {@link PreTradeRiskPipeline} adds to a trade, with the
+ * limits of many users cached and every ticker quoted, as on a busy server.
+ *
+ * <p>Run the main method from the IDE. Optional arguments are the number of
+ * users and the number of checks per run.
+ */
+public class PreTradeRiskBenchmark {
+
+	private static final String[] TICKERS = {"CTXS", "DELL", "MSFT", "ORCL", "EMC", "GOOG", "VMW", "RHT"};
+
+
+	public static void main(String[] args) {
+		int userCount = (args.length > 0 ? Integer.parseInt(args[0]) : 100_000);
+		int checkCount = (args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000);
+
+		RiskLimits limits = new RiskLimits(10000, 100000, 1000000);
+		RiskLimitCache limitCache = new RiskLimitCache(username -> limits);
+		LastValueCache lastValueCache = new LastValueCache();
+		PreTradeRiskPipeline pipeline = new PreTradeRiskPipeline(limitCache, lastValueCache);
+
+		SplittableRandom random = new SplittableRandom(1);
+		PortfolioPosition[] positions = new PortfolioPosition[TICKERS.length];
+		for (int i = 0; i < TICKERS.length; i++) {
+			lastValueCache.onQuote(new Quote(TICKERS[i], 1000 + random.nextInt(100000), 2));
+			positions[i] = new PortfolioPosition(TICKERS[i], TICKERS[i], 50.0, 1000);
+		}
+		Trade[] trades = new Trade[userCount];
+		for (int i = 0; i < userCount; i++) {
+			trades[i] = new Trade();
+			trades[i].setUsername("user" + i);
+			trades[i].setTicker(TICKERS[i % TICKERS.length]);
+			trades[i].setAction(random.nextBoolean() ? TradeAction.Buy : TradeAction.Sell);
+			trades[i].setShares(1 + random.nextInt(1000));
+			limitCache.getLimits(trades[i].getUsername());
+		}
+
+		System.out.println("Pre-trade checks, " + userCount + " users, " + checkCount + " checks per run");
+		for (int run = 0; run < 5; run++) {
+			int rejected = 0;
+			long start = System.nanoTime();
+			for (int i = 0; i < checkCount; i++) {
+				Trade trade = trades[random.nextInt(userCount)];
+				if (pipeline.check(trade, positions[i & (TICKERS.length - 1)]) != null) {
+					rejected++;
+				}
+			}
+			long nanos = System.nanoTime() - start;
+			System.out.printf("run %d: %.1f ns/check, %d rejected%n", run, (double) nanos / checkCount, rejected);
+		}
+	}
+
+}
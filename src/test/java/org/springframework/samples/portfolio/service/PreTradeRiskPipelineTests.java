@@ -0,0 +1,165 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.samples.portfolio.PortfolioPosition;
+import org.springframework.samples.portfolio.service.Trade.TradeAction;
+
+
+public class PreTradeRiskPipelineTests {
+
+	private final AtomicInteger loadCount = new AtomicInteger();
+
+	private volatile RiskLimits limits = new RiskLimits(100, 500, 10000);
+
+	private final RiskLimitCache limitCache = new RiskLimitCache(username -> {
+		this.loadCount.incrementAndGet();
+		return this.limits;
+	});
+
+	private final LastValueCache lastValueCache = new LastValueCache();
+
+	private final PreTradeRiskPipeline pipeline = new PreTradeRiskPipeline(this.limitCache, this.lastValueCache);
+
+	// 450 shares at 50.00
+	private final PortfolioPosition position = new PortfolioPosition("Dell Inc.", "DELL", 50.00, 450);
+
+
+	@After
+	public void tearDown() {
+		this.limitCache.stop();
+	}
+
+
+	@Test
+	public void stages() {
+		assertNull(this.pipeline.check(createTrade(TradeAction.Buy, 50), this.position));
+		assertEquals("Order size over limit of 100 shares",
+				this.pipeline.check(createTrade(TradeAction.Sell, 101), this.position));
+		assertEquals("Position over limit of 500 shares",
+				this.pipeline.check(createTrade(TradeAction.Buy, 51), this.position));
+		assertNull(this.pipeline.check(createTrade(TradeAction.Sell, 100), this.position));
+
+		// 100 shares at 100.01 is over 10000
+		this.lastValueCache.onQuote(new Quote("DELL", 10001, 2));
+		assertEquals("Order value over limit of 10000.0",
+				this.pipeline.check(createTrade(TradeAction.Sell, 100), this.position));
+
+		assertEquals(Long.valueOf(1), this.pipeline.getRejectedCounts().get("orderSize"));
+		assertEquals(Long.valueOf(1), this.pipeline.getRejectedCounts().get("position"));
+		assertEquals(Long.valueOf(1), this.pipeline.getRejectedCounts().get("notional"));
+	}
+
+	@Test
+	public void restingBuyShares() {
+		assertNull(this.pipeline.check(createTrade(TradeAction.Buy, 20), this.position, 30));
+		assertEquals("Position over limit of 500 shares",
+				this.pipeline.check(createTrade(TradeAction.Buy, 20), this.position, 31));
+		assertNull(this.pipeline.check(createTrade(TradeAction.Sell, 20), this.position, 100));
+	}
+
+	@Test
+	public void limitOrderValuedAtLimitPrice() {
+		this.lastValueCache.onQuote(new Quote("DELL", 5000, 2));
+		LimitOrder order = new LimitOrder();
+		order.setUsername("fabrice");
+		order.setTicker("DELL");
+		order.setAction(TradeAction.Buy);
+		order.setShares(50);
+		order.setPriceTicks(20001);
+		assertEquals("Order value over limit of 10000.0", this.pipeline.check(order, this.position));
+
+		this.lastValueCache.onQuote(new Quote("DELL", 30000, 2));
+		order.setPriceTicks(20000);
+		assertNull(this.pipeline.check(order, this.position));
+	}
+
+	@Test
+	public void limitsRefreshedInBackground() throws Exception {
+		assertNull(this.pipeline.check(createTrade(TradeAction.Sell, 100), this.position));
+		this.limits = new RiskLimits(10, 0, 0);
+		// Cached until reloaded
+		assertNull(this.pipeline.check(createTrade(TradeAction.Sell, 100), this.position));
+		assertEquals(1, this.loadCount.get());
+
+		this.limitCache.setRefreshInterval(1);
+		this.limitCache.start();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (this.limitCache.getRefreshCount() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals("Order size over limit of 10 shares",
+				this.pipeline.check(createTrade(TradeAction.Sell, 100), this.position));
+	}
+
+	@Test
+	public void idleLimitsDropped() {
+		this.limitCache.setRefreshInterval(0);
+		assertNull(this.pipeline.check(createTrade(TradeAction.Sell, 100), this.position));
+		assertEquals(1, this.limitCache.size());
+
+		// Used since loaded, then idle for one interval
+		this.limitCache.refreshStaleLimits();
+		this.limitCache.refreshStaleLimits();
+		assertEquals(3, this.loadCount.get());
+		assertEquals(1, this.limitCache.size());
+
+		this.limitCache.refreshStaleLimits();
+		assertEquals(3, this.loadCount.get());
+		assertEquals(0, this.limitCache.size());
+
+		assertNull(this.pipeline.check(createTrade(TradeAction.Sell, 100), this.position));
+		assertEquals(4, this.loadCount.get());
+	}
+
+	@Test
+	public void tradeServiceRejects() {
+		PortfolioServiceImpl portfolioService = new PortfolioServiceImpl();
+		TradeServiceImpl tradeService = new TradeServiceImpl(
+				new SimpMessagingTemplate((message, timeout) -> true), portfolioService);
+		tradeService.setRiskPipeline(this.pipeline);
+		tradeService.start();
+		try {
+			Trade trade = createTrade(TradeAction.Sell, 200);
+			trade.setTicker("CTXS");
+			TradeAck ack = tradeService.executeTrade(trade).join();
+			assertEquals(TradeAck.Status.Rejected, ack.getStatus());
+			assertEquals(75, portfolioService.findPortfolio("fabrice").getPortfolioPosition("CTXS").getShares());
+		}
+		finally {
+			tradeService.stop();
+		}
+	}
+
+	private static Trade createTrade(TradeAction action, int shares) {
+		Trade trade = new Trade();
+		trade.setUsername("fabrice");
+		trade.setTicker("DELL");
+		trade.setAction(action);
+		trade.setShares(shares);
+		return trade;
+	}
+
+}
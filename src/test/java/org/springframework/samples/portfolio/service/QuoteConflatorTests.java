@@ -0,0 +1,63 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+
+public class QuoteConflatorTests {
+
+	private final QuoteConflator conflator = new QuoteConflator();
+
+
+	@Test
+	public void flushLatestPerTicker() {
+		this.conflator.offer(new Quote("GOOG", 89349, 2));
+		this.conflator.offer(new Quote("MSFT", 3421, 2));
+		this.conflator.offer(new Quote("GOOG", 89410, 2));
+
+		List<Quote> quotes = new ArrayList<>();
+		assertEquals(2, this.conflator.flush(quotes::add));
+		assertEquals(2, quotes.size());
+		for (Quote quote : quotes) {
+			if (quote.getTicker().equals("GOOG")) {
+				assertEquals(89410, quote.getPriceTicks());
+			}
+		}
+		assertEquals(3, this.conflator.getOfferedCount());
+		assertEquals(1, this.conflator.getConflatedCount());
+	}
+
+	@Test
+	public void flushOnlyChangesSinceLastFlush() {
+		this.conflator.offer(new Quote("GOOG", 89349, 2));
+		this.conflator.flush(quote -> {});
+		this.conflator.offer(new Quote("MSFT", 3421, 2));
+
+		List<Quote> quotes = new ArrayList<>();
+		this.conflator.flush(quotes::add);
+		assertEquals(1, quotes.size());
+		assertEquals("MSFT", quotes.get(0).getTicker());
+		assertEquals(0, this.conflator.getPendingCount());
+	}
+
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.samples.portfolio.web.support.TestWebSocketSession;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.messaging.StompSubProtocolHandler;
+
+/**
+ * Measures the CPU time and heap allocation per subscriber of publishing
+ * quotes through the simple broker, comparing {@code convertAndSend} with the
+ * configured message converters against the pre-serialized
+ * {@link JsonMessageSender} path used by {@link QuoteService}, with the STOMP
+ * frame encoded per session or shared through {@link SharedFrameStompEncoder}.
+ *
+ * <p>Each delivered message is optionally passed to a
+ * {@code StompSubProtocolHandler} that encodes it into a WebSocket message
+ * for a session which discards it.
+ *
+ * <p>Run the main method from the IDE; pass {@code --no-stomp} to measure
+ * the broker fan-out only. Measurements use the calling thread's CPU time and
+ * allocated bytes as reported by the JVM, so they are only comparable on the
+ * same machine and JVM.
+ */
+public class QuoteFanOutBenchmark {
+
+	private static final String[] TICKERS = {"AAPL", "AMZN", "CSCO", "EBAY", "GOOG", "IBM", "MSFT", "ORCL"};
+
+	private static final int[] SUBSCRIBER_COUNTS = {1, 10, 100, 1000};
+
+	private static final int DELIVERIES_PER_RUN = 2_000_000;
+
+	private static final String[] MODES = {"convertAndSend", "pre-serialized", "shared-frame"};
+
+
+	public static void main(String[] args) {
+		boolean stomp = !Arrays.asList(args).contains("--no-stomp");
+
+		System.out.println("Quote fan-out through the simple broker" + (stomp ? " with STOMP encoding" : ""));
+		System.out.printf("%-16s %11s %14s %14s %16s%n",
+				"mode", "subscribers", "ns/quote", "ns/subscriber", "bytes/subscriber");
+
+		for (int subscriberCount : SUBSCRIBER_COUNTS) {
+			for (String mode : MODES) {
+				boolean sharedFrame = mode.equals("shared-frame");
+				if (sharedFrame && !stomp) {
+					continue;
+				}
+				boolean preSerialized = !mode.equals("convertAndSend");
+				Fixture fixture = new Fixture(subscriberCount, stomp, sharedFrame);
+				int quoteCount = Math.max(DELIVERIES_PER_RUN / subscriberCount, 10_000);
+				fixture.publish(preSerialized, quoteCount / 2);  // warm-up
+				Result result = fixture.publish(preSerialized, quoteCount);
+				System.out.printf("%-16s %11d %14.0f %14.1f %16.1f%n", mode, subscriberCount,
+						(double) result.cpuNanos / quoteCount,
+						(double) result.cpuNanos / result.deliveries,
+						(double) result.allocatedBytes / result.deliveries);
+			}
+		}
+	}
+
+
+	private static class Fixture {
+
+		private final SimpMessagingTemplate template;
+
+		private final JsonMessageSender messageSender;
+
+		private final StompSubProtocolHandler protocolHandler = new StompSubProtocolHandler();
+
+		private final Map<String, DiscardingSession> sessions = new HashMap<>();
+
+		private final boolean stomp;
+
+		private long deliveries;
+
+
+		Fixture(int subscriberCount, boolean stomp, boolean sharedFrame) {
+			this.stomp = stomp;
+			if (sharedFrame) {
+				this.protocolHandler.setEncoder(new SharedFrameStompEncoder());
+			}
+			ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+			SimpleBrokerMessageHandler broker = new SimpleBrokerMessageHandler(new ExecutorSubscribableChannel(),
+					this::deliver, brokerChannel, Collections.singletonList("/topic/"));
+			broker.start();
+
+			for (int i = 0; i < subscriberCount; i++) {
+				String sessionId = "session" + i;
+				this.sessions.put(sessionId, new DiscardingSession(sessionId));
+				broker.handleMessage(createMessage(SimpMessageType.CONNECT, sessionId, null, null));
+				for (String ticker : TICKERS) {
+					broker.handleMessage(createMessage(SimpMessageType.SUBSCRIBE, sessionId, ticker,
+							"/topic/price.stock." + ticker));
+				}
+			}
+
+			this.template = new SimpMessagingTemplate(brokerChannel);
+			this.template.setMessageConverter(new CompositeMessageConverter(Arrays.asList(
+					new StringMessageConverter(), new ByteArrayMessageConverter(), new MappingJackson2MessageConverter())));
+			this.messageSender = new JsonMessageSender(this.template);
+		}
+
+		private static Message<byte[]> createMessage(SimpMessageType type, String sessionId,
+				String subscriptionId, String destination) {
+
+			SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+			accessor.setSessionId(sessionId);
+			accessor.setSubscriptionId(subscriptionId);
+			accessor.setDestination(destination);
+			return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+		}
+
+		Result publish(boolean preSerialized, int quoteCount) {
+			Quote[] quotes = new Quote[TICKERS.length];
+			for (int i = 0; i < TICKERS.length; i++) {
+				quotes[i] = new Quote(TICKERS[i], 10000 + i * 1000, 2);
+			}
+			com.sun.management.ThreadMXBean threadBean =
+					(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+			long threadId = Thread.currentThread().getId();
+			this.deliveries = 0;
+
+			long cpuStart = threadBean.getCurrentThreadCpuTime();
+			long allocatedStart = threadBean.getThreadAllocatedBytes(threadId);
+			for (int i = 0; i < quoteCount; i++) {
+				Quote quote = quotes[i % quotes.length];
+				String destination = "/topic/price.stock." + quote.getTicker();
+				if (preSerialized) {
+					this.messageSender.convertAndSend(destination, quote);
+				}
+				else {
+					this.template.convertAndSend(destination, quote);
+				}
+			}
+			long cpuNanos = threadBean.getCurrentThreadCpuTime() - cpuStart;
+			long allocatedBytes = threadBean.getThreadAllocatedBytes(threadId) - allocatedStart;
+			return new Result(cpuNanos, allocatedBytes, this.deliveries);
+		}
+
+		private boolean deliver(Message<?> message, long timeout) {
+			SimpMessageHeaderAccessor simpAccessor = SimpMessageHeaderAccessor.wrap(message);
+			if (simpAccessor.getMessageType() != SimpMessageType.MESSAGE) {
+				return true;
+			}
+			this.deliveries++;
+			if (this.stomp) {
+				this.protocolHandler.handleMessageToClient(this.sessions.get(simpAccessor.getSessionId()), message);
+			}
+			return true;
+		}
+	}
+
+
+	private static class DiscardingSession extends TestWebSocketSession {
+
+		private long frameBytes;
+
+
+		DiscardingSession(String id) {
+			super(id);
+		}
+
+
+		@Override
+		public void sendMessage(WebSocketMessage<?> message) throws IOException {
+			this.frameBytes += message.getPayloadLength();
+		}
+	}
+
+
+	private static class Result {
+
+		final long cpuNanos;
+
+		final long allocatedBytes;
+
+		final long deliveries;
+
+
+		Result(long cpuNanos, long allocatedBytes, long deliveries) {
+			this.cpuNanos = cpuNanos;
+			this.allocatedBytes = allocatedBytes;
+			this.deliveries = deliveries;
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class QuoteJournalTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+
+	@Test
+	public void recordAndReplay() throws Exception {
+		File directory = this.folder.getRoot();
+		QuoteJournal journal = new QuoteJournal(directory.getPath(), 16);
+		journal.setSegmentSize(TickFile.HEADER_SIZE + 10 * TickFile.RECORD_SIZE);
+		journal.start();
+		for (int i = 0; i < 25; i++) {
+			journal.onQuote(new Quote("GOOG", 89300 + i, 2));
+			while (journal.getWrittenCount() < i + 1 - 8) {
+				Thread.sleep(1);
+			}
+		}
+		journal.stop();
+
+		assertEquals(0, journal.getDroppedCount());
+		assertEquals(25, journal.getWrittenCount());
+		assertEquals(3, directory.list((dir, name) -> name.endsWith(".ticks")).length);
+		assertEquals(3, directory.list((dir, name) -> name.endsWith(".idx")).length);
+
+		List<Quote> replayed = new ArrayList<>();
+		TickFileQuoteFeed feed = new TickFileQuoteFeed(directory.getPath());
+		feed.setSpeed(0);
+		feed.replay(replayed::add);
+		assertEquals(25, replayed.size());
+		for (int i = 0; i < 25; i++) {
+			assertEquals(89300 + i, replayed.get(i).getPriceTicks());
+		}
+
+		List<Long> timestamps = new ArrayList<>();
+		QuoteJournalReader reader = new QuoteJournalReader(directory.toPath());
+		assertEquals(25, reader.read(0, Long.MAX_VALUE, (timestamp, quote) -> timestamps.add(timestamp)));
+		long last = timestamps.get(24);
+		assertEquals(0, reader.read(last + 1, Long.MAX_VALUE, (timestamp, quote) -> {}));
+		assertTrue(reader.read(last, Long.MAX_VALUE, (timestamp, quote) -> {}) >= 1);
+	}
+
+	@Test
+	public void skipUnencodableTickers() throws Exception {
+		QuoteJournal journal = new QuoteJournal(this.folder.getRoot().getPath(), 16);
+		journal.start();
+		journal.onQuote(new Quote("GOOG", 89349, 2));
+		journal.onQuote(new Quote("SYNTHETIC123", 1000, 2));
+		journal.onQuote(new Quote("\u00c9DF", 1000, 2));
+		journal.onQuote(new Quote("MSFT", 3421, 2));
+		while (journal.getWrittenCount() < 2) {
+			Thread.sleep(1);
+		}
+		journal.stop();
+		assertEquals(2, journal.getWrittenCount());
+		assertEquals(2, journal.getSkippedCount());
+	}
+
+}
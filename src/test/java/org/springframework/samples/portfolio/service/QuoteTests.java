@@ -0,0 +1,105 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+/**
+ * Tests for the fixed-point {@link Quote} price and its JSON representation.
+ */
+public class QuoteTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+
+	@Test
+	public void parseAndFormat() {
+		assertEquals(2430, FixedPointPrice.parse("24.30", 2));
+		assertEquals(2400, FixedPointPrice.parse("24", 2));
+		assertEquals(89349, FixedPointPrice.parse("893.495", 2));
+		assertEquals(-105, FixedPointPrice.parse("-1.05", 2));
+
+		char[] buffer = new char[FixedPointPrice.MAX_LENGTH];
+		assertEquals("24.30", new String(buffer, 0, FixedPointPrice.format(2430, 2, buffer)));
+		assertEquals("0.05", new String(buffer, 0, FixedPointPrice.format(5, 2, buffer)));
+		assertEquals("-1.05", new String(buffer, 0, FixedPointPrice.format(-105, 2, buffer)));
+		assertEquals("7", new String(buffer, 0, FixedPointPrice.format(7, 0, buffer)));
+	}
+
+	@Test
+	public void parseOutOfRange() {
+		assertEquals(Long.MAX_VALUE, FixedPointPrice.parse(String.valueOf(Long.MAX_VALUE), 0));
+		assertEquals(Long.MAX_VALUE / 100 * 100, FixedPointPrice.parse(String.valueOf(Long.MAX_VALUE / 100), 2));
+		for (String value : new String[] {"9223372036854775808", "92233720368547758.08", "99999999999999999999"}) {
+			try {
+				FixedPointPrice.parse(value, 2);
+				fail("Expected IllegalArgumentException for " + value);
+			}
+			catch (IllegalArgumentException ex) {
+				// expected
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void formatMinValue() {
+		FixedPointPrice.format(Long.MIN_VALUE, 2, new char[FixedPointPrice.MAX_LENGTH]);
+	}
+
+	@Test
+	public void serialize() throws Exception {
+		String json = this.objectMapper.writeValueAsString(new Quote("GOOG", 89349, 2));
+		assertEquals("{\"ticker\":\"GOOG\",\"price\":893.49}", json);
+	}
+
+	@Test
+	public void serializeBatch() throws Exception {
+		QuoteBatch batch = new QuoteBatch();
+		batch.add(new Quote("GOOG", 89349, 2));
+		batch.add(new Quote("MSFT", 3421, 2));
+		String json = this.objectMapper.writeValueAsString(batch);
+		assertEquals("{\"tickers\":[\"GOOG\",\"MSFT\"],\"prices\":[893.49,34.21]}", json);
+	}
+
+	@Test
+	public void deltaEncoding() throws Exception {
+		QuoteDeltaEncoder encoder = new QuoteDeltaEncoder();
+		String first = this.objectMapper.writeValueAsString(encoder.encode(new Quote("GOOG", 89349, 2)));
+		String second = this.objectMapper.writeValueAsString(encoder.encode(new Quote("GOOG", 89336, 2)));
+		assertEquals("{\"t\":\"GOOG\",\"s\":1,\"k\":89349,\"x\":2}", first);
+		assertEquals("{\"t\":\"GOOG\",\"s\":2,\"d\":-13}", second);
+
+		QuoteDelta snapshot = encoder.getSnapshot().get(0);
+		assertTrue(snapshot.isFull());
+		assertEquals(2, snapshot.getSequence());
+		assertEquals(89336, snapshot.getPriceTicks());
+	}
+
+	@Test
+	public void deserialize() throws Exception {
+		Quote quote = this.objectMapper.readValue("{\"ticker\":\"GOOG\",\"price\":893.49}", Quote.class);
+		assertEquals("GOOG", quote.getTicker());
+		assertEquals(89349, quote.getPriceTicks());
+		assertEquals(new BigDecimal("893.49"), quote.getPrice());
+	}
+
+}
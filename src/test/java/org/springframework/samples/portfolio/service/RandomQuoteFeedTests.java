@@ -0,0 +1,62 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+
+public class RandomQuoteFeedTests {
+
+	@Test
+	public void generateQuotesForLargeUniverse() {
+		RandomQuoteFeed feed = new RandomQuoteFeed(100_000);
+		Set<String> tickers = new HashSet<>();
+		feed.generateQuotes(quote -> {
+			assertTrue(quote.getTicker().length() <= 8);
+			assertTrue(quote.getPriceTicks() > 0);
+			tickers.add(quote.getTicker());
+		});
+		assertEquals(100_000, tickers.size());
+		assertTrue(tickers.contains("GOOG"));
+		assertTrue(tickers.contains("X0"));
+	}
+
+	@Test
+	public void shardsTickInParallel() throws Exception {
+		RandomQuoteFeed feed = new RandomQuoteFeed(10_000);
+		feed.setThreadCount(4);
+		feed.setInterval(10);
+		QuoteConflator conflator = new QuoteConflator();
+		feed.start(conflator::offer);
+		try {
+			long deadline = System.currentTimeMillis() + 5000;
+			while (conflator.getPendingCount() < 10_000 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+		}
+		finally {
+			feed.stop();
+		}
+		assertEquals(10_000, conflator.getPendingCount());
+	}
+
+}
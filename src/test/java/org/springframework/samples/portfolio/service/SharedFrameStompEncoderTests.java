@@ -0,0 +1,145 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.samples.portfolio.web.support.TestWebSocketSession;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.messaging.StompSubProtocolHandler;
+
+
+public class SharedFrameStompEncoderTests {
+
+	private final StompSubProtocolHandler protocolHandler = new StompSubProtocolHandler();
+
+	private final Map<String, TestWebSocketSession> sessions = new HashMap<>();
+
+	private SimpleBrokerMessageHandler broker;
+
+	private JsonMessageSender messageSender;
+
+
+	@Before
+	public void setup() {
+		this.protocolHandler.setEncoder(new SharedFrameStompEncoder());
+		ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+		this.broker = new SimpleBrokerMessageHandler(new ExecutorSubscribableChannel(), (message, timeout) -> {
+			if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE) {
+				String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+				this.protocolHandler.handleMessageToClient(this.sessions.get(sessionId), message);
+			}
+			return true;
+		}, brokerChannel, Collections.singletonList("/topic/"));
+		this.broker.start();
+		this.messageSender = new JsonMessageSender(new SimpMessagingTemplate(brokerChannel));
+	}
+
+
+	@Test
+	public void sameFrameForSameSubscriptionId() {
+		subscribe("a", "sub-0", "/topic/price.stock.GOOG");
+		subscribe("b", "sub-0", "/topic/price.stock.GOOG");
+
+		this.messageSender.convertAndSend("/topic/price.stock.GOOG", new Quote("GOOG", 89349, 2));
+
+		TextMessage first = frameOf("a");
+		TextMessage second = frameOf("b");
+		assertSame(first.asBytes(), second.asBytes());
+		String frame = first.getPayload();
+		assertTrue(frame, frame.startsWith("MESSAGE\n"));
+		assertTrue(frame, frame.contains("subscription:sub-0\n"));
+		assertTrue(frame, frame.contains("\"ticker\":\"GOOG\""));
+		assertFalse(frame, frame.contains(SharedFrameStompEncoder.FRAME_CACHE_HEADER));
+	}
+
+	@Test
+	public void ownFrameForOtherSubscriptionId() {
+		subscribe("a", "sub-0", "/topic/price.stock.GOOG");
+		subscribe("b", "sub-3", "/topic/price.stock.GOOG");
+
+		this.messageSender.convertAndSend("/topic/price.stock.GOOG", new Quote("GOOG", 89349, 2));
+
+		assertTrue(frameOf("a").getPayload().contains("subscription:sub-0\n"));
+		assertTrue(frameOf("b").getPayload().contains("subscription:sub-3\n"));
+	}
+
+	@Test
+	public void newFrameForNextMessage() {
+		subscribe("a", "sub-0", "/topic/price.stock.GOOG");
+
+		this.messageSender.convertAndSend("/topic/price.stock.GOOG", new Quote("GOOG", 89349, 2));
+		this.messageSender.convertAndSend("/topic/price.stock.GOOG", new Quote("GOOG", 89410, 2));
+
+		TestWebSocketSession session = this.sessions.get("a");
+		assertEquals(2, session.getMessages().size());
+		assertTrue(((TextMessage) session.getMessages().get(1)).getPayload().contains("894.10"));
+	}
+
+	@Test
+	public void encodePerSessionWithoutFrameCache() {
+		SharedFrameStompEncoder encoder = new SharedFrameStompEncoder();
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+		accessor.setSubscriptionId("sub-0");
+		accessor.setDestination("/topic/price.stock.GOOG");
+		byte[] payload = "{}".getBytes(StandardCharsets.UTF_8);
+
+		Map<String, Object> headers = accessor.getMessageHeaders();
+		assertNotSame(encoder.encode(headers, payload), encoder.encode(headers, payload));
+	}
+
+
+	private void subscribe(String sessionId, String subscriptionId, String destination) {
+		this.sessions.put(sessionId, new TestWebSocketSession(sessionId));
+		this.broker.handleMessage(createMessage(SimpMessageType.CONNECT, sessionId, null, null));
+		this.broker.handleMessage(createMessage(SimpMessageType.SUBSCRIBE, sessionId, subscriptionId, destination));
+	}
+
+	private static Message<byte[]> createMessage(SimpMessageType type, String sessionId,
+			String subscriptionId, String destination) {
+
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+		accessor.setSessionId(sessionId);
+		accessor.setSubscriptionId(subscriptionId);
+		accessor.setDestination(destination);
+		return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+	}
+
+	private TextMessage frameOf(String sessionId) {
+		TestWebSocketSession session = this.sessions.get(sessionId);
+		assertEquals(1, session.getMessages().size());
+		return (TextMessage) session.getMessages().get(0);
+	}
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class TickFileQuoteFeedTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+
+	@Test
+	public void replayFile() throws Exception {
+		Path file = this.folder.newFile("session.ticks").toPath();
+		try (TickFileWriter writer = new TickFileWriter(file, 2)) {
+			writer.write(1000, new Quote("GOOG", 89349, 2));
+			writer.write(1010, new Quote("MSFT", 3421, 2));
+			writer.write(1020, new Quote("GOOG", 89336, 2));
+		}
+
+		TickFileQuoteFeed feed = new TickFileQuoteFeed(file.toString());
+		feed.setSpeed(0);
+		List<Quote> quotes = new ArrayList<>();
+		assertEquals(3, feed.replay(quotes::add));
+
+		assertEquals("GOOG", quotes.get(0).getTicker());
+		assertEquals(89349, quotes.get(0).getPriceTicks());
+		assertEquals("MSFT", quotes.get(1).getTicker());
+		assertEquals(2, quotes.get(1).getScale());
+		assertEquals(89336, quotes.get(2).getPriceTicks());
+		assertSame(quotes.get(0).getTicker(), quotes.get(2).getTicker());
+	}
+
+	@Test
+	public void replayDirectoryAtRecordedPace() throws Exception {
+		try (TickFileWriter writer = new TickFileWriter(this.folder.newFile("1.ticks").toPath())) {
+			writer.write(1000, new Quote("GOOG", 89349, 2));
+		}
+		try (TickFileWriter writer = new TickFileWriter(this.folder.newFile("2.ticks").toPath())) {
+			writer.write(1100, new Quote("GOOG", 89350, 2));
+		}
+
+		TickFileQuoteFeed feed = new TickFileQuoteFeed(this.folder.getRoot().toString());
+		List<Quote> quotes = new ArrayList<>();
+		long start = System.nanoTime();
+		assertEquals(2, feed.replay(quotes::add));
+		assertTrue(System.nanoTime() - start >= 100_000_000);
+		assertEquals(89350, quotes.get(1).getPriceTicks());
+	}
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.junit.Test;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.samples.portfolio.Portfolio;
+import org.springframework.samples.portfolio.PortfolioPosition;
+import org.springframework.samples.portfolio.web.support.TestPrincipal;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+
+public class TickerInterestIndexTests {
+
+	private final PortfolioService portfolioService = new PortfolioServiceImpl();
+
+	private final TickerInterestIndex index = new TickerInterestIndex(this.portfolioService);
+
+
+	@Test
+	public void register() {
+		assertArrayEquals(new String[0], this.index.getUsers("GOOG"));
+
+		this.index.register("fabrice");
+		this.index.register("paulson");
+		assertArrayEquals(new String[] {"fabrice"}, this.index.getUsers("MSFT"));
+		assertArrayEquals(new String[] {"paulson"}, this.index.getUsers("GOOG"));
+	}
+
+	@Test
+	public void positionChanges() {
+		this.index.register("fabrice");
+		Portfolio portfolio = this.portfolioService.findPortfolio("fabrice");
+
+		PortfolioPosition position = portfolio.sell("MSFT", 33);
+		this.index.onPositionChange("fabrice", position);
+		assertEquals(0, this.index.getUsers("MSFT").length);
+
+		position = portfolio.buy("MSFT", 10);
+		this.index.onPositionChange("fabrice", position);
+		assertArrayEquals(new String[] {"fabrice"}, this.index.getUsers("MSFT"));
+	}
+
+	@Test
+	public void positionChangeOfUnregisteredUser() {
+		PortfolioPosition position = this.portfolioService.findPortfolio("paulson").buy("GOOG", 1);
+		this.index.onPositionChange("paulson", position);
+		assertEquals(0, this.index.getUsers("GOOG").length);
+	}
+
+	@Test
+	public void positionChangeWhileRegistering() throws Exception {
+		CountDownLatch loadLatch = new CountDownLatch(1);
+		PortfolioService loadingService = new PortfolioService() {
+			@Override
+			public Portfolio findPortfolio(String username) {
+				// Holdings as of before the trades below
+				Portfolio portfolio = portfolioService.findPortfolio(username).copy();
+				try {
+					loadLatch.await(5, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+				return portfolio;
+			}
+
+			@Override
+			public void forEachPortfolio(BiConsumer<String, Portfolio> action) {
+				portfolioService.forEachPortfolio(action);
+			}
+		};
+		TickerInterestIndex index = new TickerInterestIndex(loadingService);
+		Thread thread = new Thread(() -> index.register("fabrice"));
+		thread.start();
+		while (!index.isRegistered("fabrice")) {
+			Thread.sleep(1);
+		}
+
+		Portfolio portfolio = this.portfolioService.findPortfolio("fabrice");
+		index.onPositionChange("fabrice", portfolio.sell("MSFT", 33));
+		index.onPositionChange("fabrice", portfolio.sell("CTXS", 75));
+		index.onPositionChange("fabrice", portfolio.buy("CTXS", 10));
+		assertTrue(thread.isAlive());
+		loadLatch.countDown();
+		thread.join(5000);
+
+		assertEquals(0, index.getUsers("MSFT").length);
+		assertArrayEquals(new String[] {"fabrice"}, index.getUsers("CTXS"));
+		assertArrayEquals(new String[] {"fabrice"}, index.getUsers("DELL"));
+	}
+
+	@Test
+	public void removeOnLastDisconnect() {
+		subscribe("fabrice", "s1", TickerInterestIndex.QUOTE_DESTINATION);
+		subscribe("fabrice", "s2", TickerInterestIndex.QUOTE_DESTINATION);
+		subscribe("paulson", "s3", TickerInterestIndex.QUOTE_DESTINATION);
+		assertEquals(2, this.index.getUserCount());
+
+		disconnect("fabrice", "s1");
+		assertArrayEquals(new String[] {"fabrice"}, this.index.getUsers("MSFT"));
+
+		disconnect("fabrice", "s2");
+		assertEquals(0, this.index.getUsers("MSFT").length);
+		assertArrayEquals(new String[] {"paulson"}, this.index.getUsers("GOOG"));
+		assertEquals(1, this.index.getUserCount());
+
+		PortfolioPosition position = this.portfolioService.findPortfolio("fabrice").buy("GOOG", 1);
+		this.index.onPositionChange("fabrice", position);
+		assertArrayEquals(new String[] {"paulson"}, this.index.getUsers("GOOG"));
+	}
+
+	@Test
+	public void ignoreOtherSessionsAndDestinations() {
+		subscribe("fabrice", "s1", TickerInterestIndex.QUOTE_DESTINATION);
+		subscribe("fabrice", "s2", "/topic/price.stock.*");
+
+		disconnect("fabrice", "s2");
+		assertArrayEquals(new String[] {"fabrice"}, this.index.getUsers("MSFT"));
+
+		disconnect("fabrice", "s1");
+		assertEquals(0, this.index.getUserCount());
+	}
+
+
+	private void subscribe(String username, String sessionId, String destination) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+		accessor.setSessionId(sessionId);
+		accessor.setDestination(destination);
+		Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+		this.index.onApplicationEvent(new SessionSubscribeEvent(this, message, new TestPrincipal(username)));
+	}
+
+	private void disconnect(String username, String sessionId) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+		accessor.setSessionId(sessionId);
+		Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+		this.index.onApplicationEvent(new SessionDisconnectEvent(this, message, sessionId,
+				CloseStatus.NORMAL, new TestPrincipal(username)));
+	}
+
+}
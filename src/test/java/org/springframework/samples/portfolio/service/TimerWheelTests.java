@@ -0,0 +1,65 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+
+public class TimerWheelTests {
+
+	private final List<Long> expired = new CopyOnWriteArrayList<>();
+
+	private final CountDownLatch latch = new CountDownLatch(3);
+
+	// 8 slots of 5ms, so delays over 40ms need more than one rotation
+	private final TimerWheel<Long> timerWheel = new TimerWheel<>("test", 5, TimeUnit.MILLISECONDS, 8,
+			scheduledAt -> {
+				this.expired.add(System.nanoTime() - scheduledAt);
+				this.latch.countDown();
+			});
+
+
+	@After
+	public void tearDown() {
+		this.timerWheel.stop();
+	}
+
+	@Test
+	public void expireAfterDelay() throws Exception {
+		this.timerWheel.start();
+		this.timerWheel.schedule(System.nanoTime(), 100, TimeUnit.MILLISECONDS);
+		this.timerWheel.schedule(System.nanoTime(), 20, TimeUnit.MILLISECONDS);
+		this.timerWheel.schedule(System.nanoTime(), 0, TimeUnit.MILLISECONDS);
+		assertEquals(3, this.timerWheel.getPendingCount());
+
+		assertTrue(this.latch.await(5, TimeUnit.SECONDS));
+		assertEquals(3, this.expired.size());
+		assertTrue(this.expired.get(1) >= TimeUnit.MILLISECONDS.toNanos(20));
+		assertTrue(this.expired.get(2) >= TimeUnit.MILLISECONDS.toNanos(100));
+		assertEquals(0, this.timerWheel.getPendingCount());
+		assertEquals(3, this.timerWheel.getExpiredCount());
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+import org.springframework.samples.portfolio.service.Trade.TradeAction;
+
+
+public class TradeDeduplicatorTests {
+
+	private final TradeDeduplicator deduplicator = new TradeDeduplicator();
+
+	private final List<Trade> executed = new ArrayList<>();
+
+
+	@Test
+	public void duplicateReturnsOriginalOutcome() throws Exception {
+		CompletableFuture<TradeAck> first = this.deduplicator.execute(createTrade("fabrice", "o1"), this::accept);
+		CompletableFuture<TradeAck> second = this.deduplicator.execute(createTrade("fabrice", "o1"), this::accept);
+
+		assertEquals(1, this.executed.size());
+		assertSame(first.get(), second.get());
+		assertEquals(1, this.deduplicator.getDuplicateCount());
+
+		// Order ids are per user
+		this.deduplicator.execute(createTrade("paulson", "o1"), this::accept);
+		assertEquals(2, this.executed.size());
+	}
+
+	@Test
+	public void failedTradeIsForgotten() {
+		CompletableFuture<TradeAck> failed = new CompletableFuture<>();
+		this.deduplicator.execute(createTrade("fabrice", "o1"), trade -> failed);
+		failed.completeExceptionally(new IllegalStateException("Stopped"));
+
+		this.deduplicator.execute(createTrade("fabrice", "o1"), this::accept);
+		assertEquals(1, this.executed.size());
+	}
+
+	@Test
+	public void tradeWithoutOrderId() {
+		this.deduplicator.execute(createTrade("fabrice", null), this::accept);
+		this.deduplicator.execute(createTrade("fabrice", null), this::accept);
+		assertEquals(2, this.executed.size());
+		assertEquals(0, this.deduplicator.getSize());
+	}
+
+	@Test
+	public void expiry() throws Exception {
+		this.deduplicator.setTimeToLive(1);
+		this.deduplicator.execute(createTrade("fabrice", "o1"), this::accept);
+		Thread.sleep(10);
+		this.deduplicator.execute(createTrade("fabrice", "o1"), this::accept);
+		assertEquals(2, this.executed.size());
+	}
+
+	@Test
+	public void maxEntries() {
+		this.deduplicator.setMaxEntries(64);
+		for (int i = 0; i < 1000; i++) {
+			this.deduplicator.execute(createTrade("fabrice", "o" + i), this::accept);
+		}
+		assertTrue(this.deduplicator.getSize() <= 64);
+	}
+
+	private CompletableFuture<TradeAck> accept(Trade trade) {
+		this.executed.add(trade);
+		return CompletableFuture.completedFuture(TradeAck.accepted(trade, null));
+	}
+
+	private static Trade createTrade(String username, String orderId) {
+		Trade trade = new Trade();
+		trade.setUsername(username);
+		trade.setOrderId(orderId);
+		trade.setTicker("DELL");
+		trade.setAction(TradeAction.Buy);
+		trade.setShares(1);
+		return trade;
+	}
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.samples.portfolio.Portfolio;
+import org.springframework.util.FileSystemUtils;
+
+
+/**
+ * Measures the throughput and acknowledgement latency of {@link TradeJournal}
+ * for different commit intervals and numbers of concurrent clients. Each
+ * client appends a trade and waits until it is durable before appending the
+ * next, like a user waiting for the acknowledgement of an order.
+ *
+ * <p>It also compares the time to restart from the full journal with the
+ * time to restart from a snapshot and the tail of the journal.
+ *
+ * <p>Run the main method from the IDE. Optional arguments are the directory
+ * to write to, which should be on the device to measure, and the duration of
+ * each run in milliseconds.
+ */
+public class TradeJournalBenchmark {
+
+	private static final long[] COMMIT_INTERVALS = {0, 100, 500, 1000, 5000};
+
+	private static final int[] CLIENT_COUNTS = {1, 16, 128};
+
+
+	public static void main(String[] args) throws Exception {
+		Path directory = (args.length > 0 ? Paths.get(args[0]) : Files.createTempDirectory("trade-journal"));
+		long duration = (args.length > 1 ? Long.parseLong(args[1]) : 2000);
+
+		System.out.println("Trade journal in " + directory + ", " + duration + "ms per run");
+		System.out.printf("%-12s %8s %12s %12s %14s %14s%n",
+				"interval us", "clients", "trades/s", "commits/s", "trades/commit", "avg ack us");
+
+		for (long interval : COMMIT_INTERVALS) {
+			for (int clients : CLIENT_COUNTS) {
+				run(directory, interval, clients, duration);
+			}
+		}
+
+		measureRecovery(directory, 1_000_000, 1000);
+	}
+
+	private static void run(Path directory, long interval, int clientCount, long duration) throws Exception {
+		Path runDirectory = directory.resolve("run-" + interval + "-" + clientCount);
+		TradeJournal journal = new TradeJournal(runDirectory.toString(), new PortfolioServiceImpl());
+		journal.setCommitInterval(interval);
+		journal.start();
+
+		AtomicLong totalLatency = new AtomicLong();
+		CountDownLatch doneLatch = new CountDownLatch(clientCount);
+		long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(duration);
+		for (int i = 0; i < clientCount; i++) {
+			Trade trade = new Trade();
+			trade.setUsername("user" + i);
+			trade.setTicker("GOOG");
+			trade.setAction(Trade.TradeAction.Buy);
+			trade.setShares(1);
+			Thread thread = new Thread(() -> {
+				long latency = 0;
+				try {
+					for (long version = 1; System.nanoTime() < end; version++) {
+						long start = System.nanoTime();
+						journal.append(trade, version).get();
+						latency += System.nanoTime() - start;
+					}
+				}
+				catch (Exception ex) {
+					ex.printStackTrace();
+				}
+				totalLatency.addAndGet(latency);
+				doneLatch.countDown();
+			});
+			thread.start();
+		}
+		doneLatch.await();
+		journal.stop();
+		FileSystemUtils.deleteRecursively(runDirectory);
+
+		long trades = journal.getCommittedCount();
+		long commits = journal.getCommitCount();
+		double seconds = duration / 1000.0;
+		System.out.printf("%-12d %8d %12.0f %12.0f %14.1f %14.1f%n", interval, clientCount,
+				trades / seconds, commits / seconds, (double) trades / Math.max(commits, 1),
+				(double) totalLatency.get() / Math.max(trades, 1) / 1000);
+	}
+
+	private static void measureRecovery(Path directory, int tradeCount, int tailCount) throws Exception {
+		Path runDirectory = directory.resolve("recovery");
+		PortfolioServiceImpl portfolioService = new PortfolioServiceImpl();
+		TradeJournal journal = new TradeJournal(runDirectory.toString(), portfolioService);
+		journal.setSnapshotInterval(0);
+		journal.start();
+		appendTrades(journal, portfolioService, tradeCount);
+
+		System.out.println();
+		System.out.printf("%-30s %12s %12s%n", "restart from", "replayed", "millis");
+		long millis = measureRestart(runDirectory);
+		System.out.printf("%-30s %12d %12d%n", "journal of " + tradeCount + " trades", tradeCount, millis);
+
+		journal.takeSnapshot();
+		appendTrades(journal, portfolioService, tailCount);
+		journal.stop();
+		millis = measureRestart(runDirectory);
+		System.out.printf("%-30s %12d %12d%n", "snapshot and " + tailCount + " trades", tailCount, millis);
+		FileSystemUtils.deleteRecursively(runDirectory);
+	}
+
+	private static void appendTrades(TradeJournal journal, PortfolioService portfolioService, int count)
+			throws Exception {
+
+		Portfolio portfolio = portfolioService.findPortfolio("fabrice");
+		Trade trade = new Trade();
+		trade.setUsername("fabrice");
+		trade.setTicker("MSFT");
+		trade.setAction(Trade.TradeAction.Buy);
+		trade.setShares(1);
+		CompletableFuture<Void> last = null;
+		for (int i = 0; i < count; i++) {
+			portfolio.buy("MSFT", 1);
+			last = journal.append(trade, portfolio.getVersion());
+		}
+		last.get();
+	}
+
+	private static long measureRestart(Path directory) {
+		long start = System.nanoTime();
+		TradeJournal journal = new TradeJournal(directory.toString(), new PortfolioServiceImpl());
+		journal.setSnapshotInterval(0);
+		journal.start();
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		journal.stop();
+		return millis;
+	}
+
+}
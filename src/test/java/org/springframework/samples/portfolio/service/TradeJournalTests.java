@@ -0,0 +1,236 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.samples.portfolio.Portfolio;
+
+
+public class TradeJournalTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+
+	@Test
+	public void appendAndReplay() throws Exception {
+		File directory = this.folder.getRoot();
+		PortfolioServiceImpl portfolioService = new PortfolioServiceImpl();
+		TradeJournal journal = new TradeJournal(directory.getPath(), portfolioService);
+		journal.setSegmentSize(200);
+		journal.start();
+
+		MessageChannel channel = (message, timeout) -> true;
+		TradeServiceImpl tradeService = new TradeServiceImpl(new SimpMessagingTemplate(channel), portfolioService);
+		tradeService.setTradeJournal(journal);
+		tradeService.start();
+		try {
+			for (int i = 0; i < 10; i++) {
+				tradeService.executeTrade(createTrade("fabrice", "CTXS", Trade.TradeAction.Buy, 2)).get(5, TimeUnit.SECONDS);
+				tradeService.executeTrade(createTrade("paulson", "GOOG", Trade.TradeAction.Sell, 0)).get(5, TimeUnit.SECONDS);
+			}
+			tradeService.executeTrade(createTrade("paulson", "GOOG", Trade.TradeAction.Sell, 5)).get(5, TimeUnit.SECONDS);
+		}
+		finally {
+			tradeService.stop();
+			journal.stop();
+		}
+
+		// Rejected trades are not journaled
+		assertEquals(11, journal.getCommittedCount());
+		assertTrue(journal.getCommitCount() <= 11);
+		assertTrue(TradeJournal.getSegments(directory.toPath()).size() > 1);
+
+		PortfolioServiceImpl restored = new PortfolioServiceImpl();
+		journal = new TradeJournal(directory.getPath(), restored);
+		journal.start();
+		journal.stop();
+
+		assertEquals(11, journal.getReplayedCount());
+		assertEquals(95, restored.findPortfolio("fabrice").getPortfolioPosition("CTXS").getShares());
+		assertEquals(10, restored.findPortfolio("fabrice").getVersion());
+		assertEquals(0, restored.findPortfolio("paulson").getPortfolioPosition("GOOG").getShares());
+
+		// Trades the portfolios already contain are skipped
+		journal = new TradeJournal(directory.getPath(), restored);
+		journal.start();
+		journal.stop();
+
+		assertEquals(0, journal.getReplayedCount());
+		assertEquals(95, restored.findPortfolio("fabrice").getPortfolioPosition("CTXS").getShares());
+	}
+
+	@Test
+	public void discardIncompleteRecord() throws Exception {
+		File directory = this.folder.getRoot();
+		PortfolioServiceImpl portfolioService = new PortfolioServiceImpl();
+		TradeJournal journal = new TradeJournal(directory.getPath(), portfolioService);
+		journal.start();
+		Portfolio portfolio = portfolioService.findPortfolio("fabrice");
+		portfolio.buy("DELL", 10);
+		journal.append(createTrade("fabrice", "DELL", Trade.TradeAction.Buy, 10), portfolio.getVersion()).get(5, TimeUnit.SECONDS);
+		journal.stop();
+
+		// Simulate a crash in the middle of writing the next record
+		List<Path> segments = TradeJournal.getSegments(directory.toPath());
+		assertEquals(1, segments.size());
+		long size;
+		try (FileChannel channel = FileChannel.open(segments.get(0), StandardOpenOption.WRITE)) {
+			size = channel.size();
+			channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 40, 1, 2, 3}), size);
+		}
+
+		PortfolioServiceImpl restored = new PortfolioServiceImpl();
+		journal = new TradeJournal(directory.getPath(), restored);
+		journal.start();
+		try {
+			assertEquals(1, journal.getReplayedCount());
+			assertEquals(60, restored.findPortfolio("fabrice").getPortfolioPosition("DELL").getShares());
+			assertEquals(size, segments.get(0).toFile().length());
+
+			Portfolio restoredPortfolio = restored.findPortfolio("fabrice");
+			restoredPortfolio.sell("DELL", 60);
+			journal.append(createTrade("fabrice", "DELL", Trade.TradeAction.Sell, 60),
+					restoredPortfolio.getVersion()).get(5, TimeUnit.SECONDS);
+		}
+		finally {
+			journal.stop();
+		}
+
+		// Appended to a new segment
+		assertEquals(2, TradeJournal.getSegments(directory.toPath()).size());
+
+		restored = new PortfolioServiceImpl();
+		journal = new TradeJournal(directory.getPath(), restored);
+		journal.start();
+		journal.stop();
+		assertEquals(2, journal.getReplayedCount());
+		assertEquals(0, restored.findPortfolio("fabrice").getPortfolioPosition("DELL").getShares());
+	}
+
+	@Test
+	public void replayPrice() throws Exception {
+		File directory = this.folder.getRoot();
+		PortfolioServiceImpl portfolioService = new PortfolioServiceImpl();
+		TradeJournal journal = new TradeJournal(directory.getPath(), portfolioService);
+		journal.start();
+		Portfolio portfolio = portfolioService.findPortfolio("fabrice");
+		portfolio.buy("DELL", 50, 14.44);
+		Trade trade = createTrade("fabrice", "DELL", Trade.TradeAction.Buy, 50);
+		trade.setPrice(1444, 2);
+		journal.append(trade, portfolio.getVersion()).get(5, TimeUnit.SECONDS);
+		journal.stop();
+
+		PortfolioServiceImpl restored = new PortfolioServiceImpl();
+		journal = new TradeJournal(directory.getPath(), restored);
+		journal.start();
+		journal.stop();
+		assertEquals(1, journal.getReplayedCount());
+		assertEquals(100, restored.findPortfolio("fabrice").getPortfolioPosition("DELL").getShares());
+		assertEquals(13.94, restored.findPortfolio("fabrice").getPortfolioPosition("DELL").getPrice(), 0.000001);
+	}
+
+	@Test
+	public void snapshotAndCompact() throws Exception {
+		Path directory = this.folder.getRoot().toPath();
+		PortfolioServiceImpl portfolioService = new PortfolioServiceImpl();
+		TradeJournal journal = new TradeJournal(directory.toString(), portfolioService);
+		journal.setSnapshotInterval(0);
+		journal.setSegmentSize(200);
+		journal.start();
+		Portfolio portfolio = portfolioService.findPortfolio("paulson");
+		try {
+			for (int i = 0; i < 10; i++) {
+				portfolio.buy("RHT", 1);
+				journal.append(createTrade("paulson", "RHT", Trade.TradeAction.Buy, 1), portfolio.getVersion()).get(5, TimeUnit.SECONDS);
+			}
+			Path snapshot = journal.takeSnapshot();
+			assertEquals(snapshot, journal.takeSnapshot());
+			assertEquals(1, journal.getSnapshotCount());
+			assertEquals(0, TradeJournal.getSegments(directory).size());
+			assertEquals(1, TradeJournal.getSnapshots(directory).size());
+
+			for (int i = 0; i < 3; i++) {
+				portfolio.sell("RHT", 1);
+				journal.append(createTrade("paulson", "RHT", Trade.TradeAction.Sell, 1), portfolio.getVersion()).get(5, TimeUnit.SECONDS);
+			}
+		}
+		finally {
+			journal.stop();
+		}
+
+		PortfolioServiceImpl restored = new PortfolioServiceImpl();
+		journal = new TradeJournal(directory.toString(), restored);
+		journal.setSnapshotInterval(0);
+		journal.start();
+		try {
+			// Only trades after the snapshot are replayed
+			assertEquals(3, journal.getReplayedCount());
+			Portfolio restoredPortfolio = restored.findPortfolio("paulson");
+			assertEquals(22, restoredPortfolio.getPortfolioPosition("RHT").getShares());
+			assertEquals(13, restoredPortfolio.getVersion());
+			assertEquals(portfolio.getPositions().size(), restoredPortfolio.getPositions().size());
+			assertEquals("Red Hat", restoredPortfolio.getPortfolioPosition("RHT").getCompany());
+			assertEquals(5, restoredPortfolio.getPortfolioPosition("GOOG").getShares());
+
+			journal.takeSnapshot();
+			assertEquals(0, TradeJournal.getSegments(directory).size());
+			assertEquals(1, TradeJournal.getSnapshots(directory).size());
+		}
+		finally {
+			journal.stop();
+		}
+	}
+
+	@Test
+	public void appendWhenStopped() throws Exception {
+		TradeJournal journal = new TradeJournal(this.folder.getRoot().getPath(), new PortfolioServiceImpl());
+		try {
+			journal.append(createTrade("fabrice", "DELL", Trade.TradeAction.Buy, 10), 1).get(5, TimeUnit.SECONDS);
+			fail("Expected ExecutionException");
+		}
+		catch (ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	private static Trade createTrade(String username, String ticker, Trade.TradeAction action, int shares) {
+		Trade trade = new Trade();
+		trade.setUsername(username);
+		trade.setTicker(ticker);
+		trade.setAction(action);
+		trade.setShares(shares);
+		return trade;
+	}
+
+}
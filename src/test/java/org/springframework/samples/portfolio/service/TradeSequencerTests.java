@@ -0,0 +1,76 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.samples.portfolio.Portfolio;
+
+
+public class TradeSequencerTests {
+
+	private final TradeSequencer sequencer = new TradeSequencer("test-", 4);
+
+
+	@After
+	public void tearDown() {
+		this.sequencer.stop();
+	}
+
+	@Test
+	public void noLostUpdatesForConcurrentTrades() throws Exception {
+		this.sequencer.start();
+		Portfolio portfolio = new PortfolioServiceImpl().findPortfolio("fabrice");
+		int initialShares = portfolio.getPortfolioPosition("MSFT").getShares();
+		int tradeCount = 10000;
+		CountDownLatch latch = new CountDownLatch(tradeCount);
+
+		// Submit from many threads, as the clientInboundChannel does
+		ExecutorService submitters = Executors.newFixedThreadPool(8);
+		for (int i = 0; i < tradeCount; i++) {
+			submitters.execute(() -> this.sequencer.execute("fabrice", () -> {
+				portfolio.buy("MSFT", 1);
+				latch.countDown();
+			}));
+		}
+		submitters.shutdown();
+
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertEquals(initialShares + tradeCount, portfolio.getPortfolioPosition("MSFT").getShares());
+	}
+
+	@Test
+	public void sameShardForSameKey() {
+		assertEquals(this.sequencer.getShard("fabrice"), this.sequencer.getShard(new String("fabrice")));
+		assertTrue(this.sequencer.getShard("paulson") < this.sequencer.getShardCount());
+	}
+
+	@Test(expected = RejectedExecutionException.class)
+	public void notRunning() {
+		this.sequencer.execute("fabrice", () -> {});
+	}
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.service;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.samples.portfolio.PortfolioPosition;
+
+
+public class TradeServiceImplTests {
+
+	private final BlockingQueue<Message<?>> messages = new LinkedBlockingQueue<>();
+
+	private final PortfolioService portfolioService = new PortfolioServiceImpl();
+
+	private final List<PortfolioPosition> positionChanges = new CopyOnWriteArrayList<>();
+
+	private TradeServiceImpl tradeService;
+
+
+	@Before
+	public void setup() {
+		MessageChannel channel = (message, timeout) -> this.messages.add(message);
+		this.tradeService = new TradeServiceImpl(new SimpMessagingTemplate(channel), this.portfolioService);
+		this.tradeService.setPositionListeners(Collections.singletonList(
+				(username, position) -> this.positionChanges.add(position)));
+	}
+
+	@After
+	public void tearDown() {
+		this.tradeService.stop();
+	}
+
+	@Test
+	public void executeTrade() throws Exception {
+		this.tradeService.start();
+
+		TradeAck ack = this.tradeService.executeTrade(createTrade("1", Trade.TradeAction.Buy, 25)).get(5, TimeUnit.SECONDS);
+		assertEquals("1", ack.getOrderId());
+		assertEquals(TradeAck.Status.Accepted, ack.getStatus());
+		assertEquals(75, ack.getPosition().getShares());
+
+		ack = this.tradeService.executeTrade(createTrade("2", Trade.TradeAction.Sell, 100)).get(5, TimeUnit.SECONDS);
+		assertEquals(TradeAck.Status.Rejected, ack.getStatus());
+		assertEquals("Not enough shares", ack.getReason());
+
+		Message<?> message = this.messages.poll(5, TimeUnit.SECONDS);
+		assertNotNull(message);
+		assertEquals("/user/fabrice/queue/position-updates", SimpMessageHeaderAccessor.wrap(message).getDestination());
+		assertEquals(75, ((PortfolioPosition) message.getPayload()).getShares());
+	}
+
+	@Test
+	public void coalescePositionUpdates() throws Exception {
+		this.tradeService.setCoalesce(true);
+		this.tradeService.start();
+
+		for (int i = 0; i < 5; i++) {
+			this.tradeService.executeTrade(createTrade(String.valueOf(i), Trade.TradeAction.Buy, 1)).get(5, TimeUnit.SECONDS);
+		}
+
+		Message<?> message = this.messages.poll(5, TimeUnit.SECONDS);
+		assertNotNull(message);
+		assertEquals(55, ((PortfolioPosition) message.getPayload()).getShares());
+		assertNull(this.messages.poll(500, TimeUnit.MILLISECONDS));
+		assertEquals(4, this.tradeService.getCoalescedCount());
+	}
+
+	@Test
+	public void notifyOnceJournaled() throws Exception {
+		TestTradeJournal journal = new TestTradeJournal(this.portfolioService);
+		this.tradeService.setTradeJournal(journal);
+		this.tradeService.start();
+
+		CompletableFuture<TradeAck> future = this.tradeService.executeTrade(createTrade("1", Trade.TradeAction.Buy, 25));
+		CompletableFuture<Void> journaled = journal.appended.poll(5, TimeUnit.SECONDS);
+		assertNotNull(journaled);
+		assertFalse(future.isDone());
+		assertTrue(this.positionChanges.isEmpty());
+
+		journaled.complete(null);
+		assertEquals(TradeAck.Status.Accepted, future.get(5, TimeUnit.SECONDS).getStatus());
+		assertEquals(1, this.positionChanges.size());
+		assertEquals(75, this.positionChanges.get(0).getShares());
+		assertNotNull(this.messages.poll(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void revertOnJournalFailure() throws Exception {
+		TestTradeJournal journal = new TestTradeJournal(this.portfolioService);
+		this.tradeService.setTradeJournal(journal);
+		this.tradeService.start();
+
+		CompletableFuture<TradeAck> future = this.tradeService.executeTrade(createTrade("1", Trade.TradeAction.Sell, 20));
+		journal.appended.poll(5, TimeUnit.SECONDS).completeExceptionally(new IllegalStateException("Disk full"));
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail("Expected journal failure");
+		}
+		catch (ExecutionException ex) {
+			assertEquals("Disk full", ex.getCause().getMessage());
+		}
+		assertEquals(50, this.portfolioService.findPortfolio("fabrice").getPortfolioPosition("DELL").getShares());
+		assertTrue(this.positionChanges.isEmpty());
+		assertNull(this.messages.poll(2, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void rejectTradeJournalCannotHold() throws Exception {
+		this.tradeService.setTradeJournal(new TestTradeJournal(this.portfolioService));
+		this.tradeService.start();
+
+		Trade trade = createTrade("1", Trade.TradeAction.Buy, 1);
+		trade.setTicker("TOOLONGTICKER");
+		TradeAck ack = this.tradeService.executeTrade(trade).get(5, TimeUnit.SECONDS);
+		assertEquals(TradeAck.Status.Rejected, ack.getStatus());
+		assertEquals("Invalid ticker", ack.getReason());
+		assertTrue(this.positionChanges.isEmpty());
+	}
+
+	private static Trade createTrade(String orderId, Trade.TradeAction action, int shares) {
+		Trade trade = new Trade();
+		trade.setOrderId(orderId);
+		trade.setUsername("fabrice");
+		trade.setTicker("DELL");
+		trade.setAction(action);
+		trade.setShares(shares);
+		return trade;
+	}
+
+
+	private static class TestTradeJournal extends TradeJournal {
+
+		private final BlockingQueue<CompletableFuture<Void>> appended = new LinkedBlockingQueue<>();
+
+
+		TestTradeJournal(PortfolioService portfolioService) {
+			super("unused", portfolioService);
+		}
+
+
+		@Override
+		public CompletableFuture<Void> append(Trade trade, long version) {
+			CompletableFuture<Void> future = new CompletableFuture<>();
+			this.appended.add(future);
+			return future;
+		}
+	}
+
+}
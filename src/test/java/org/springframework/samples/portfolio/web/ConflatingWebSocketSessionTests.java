@@ -0,0 +1,189 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.web;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import org.springframework.samples.portfolio.web.support.TestWebSocketSession;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+
+public class ConflatingWebSocketSessionTests {
+
+	private static final String PREFIX = "/topic/price.stock.";
+
+
+	private final TestWebSocketSession delegate = new TestWebSocketSession();
+
+	// Send tasks, run by the test to simulate a busy client
+	private final List<Runnable> tasks = new ArrayList<>();
+
+	private final AtomicLong conflatedCount = new AtomicLong();
+
+
+	@Test
+	public void sendImmediatelyWhenNotBusy() throws Exception {
+		ConflatingWebSocketSession session =
+				new ConflatingWebSocketSession(this.delegate, PREFIX, Runnable::run, 10, this.conflatedCount);
+
+		session.sendMessage(quote("0", "GOOG", "893.49"));
+		session.sendMessage(quote("0", "GOOG", "893.36"));
+		session.sendMessage(quote("0", "GOOG", "893.12"));
+
+		assertEquals(3, this.delegate.getMessages().size());
+		assertEquals(0, this.conflatedCount.get());
+	}
+
+	@Test
+	public void conflateWhileBusy() throws Exception {
+		ConflatingWebSocketSession session =
+				new ConflatingWebSocketSession(this.delegate, PREFIX, this.tasks::add, 10, this.conflatedCount);
+
+		session.sendMessage(quote("0", "GOOG", "893.49"));
+		session.sendMessage(quote("0", "MSFT", "34.21"));
+		session.sendMessage(frame("MESSAGE", "/user/queue/position-updates", "1", "{}"));
+		session.sendMessage(quote("0", "GOOG", "893.36"));
+		session.sendMessage(quote("0", "GOOG", "893.12"));
+		session.sendMessage(quote("1", "GOOG", "893.10"));
+		assertEquals(1, this.tasks.size());
+		assertEquals(0, this.delegate.getMessages().size());
+
+		runTasks();
+		assertEquals(2, this.conflatedCount.get());
+		assertEquals(4, this.delegate.getMessages().size());
+		// Each conflated frame keeps the place of the first one it replaced
+		assertTrue(payload(0).contains("destination:" + PREFIX + "GOOG") && payload(0).endsWith("893.12\0"));
+		assertTrue(payload(1).contains("destination:" + PREFIX + "MSFT"));
+		assertTrue(payload(2).contains("destination:/user/queue/position-updates"));
+		assertTrue(payload(3).contains("subscription:1") && payload(3).endsWith("893.10\0"));
+	}
+
+	@Test
+	public void passThroughOtherFrames() throws Exception {
+		ConflatingWebSocketSession session =
+				new ConflatingWebSocketSession(this.delegate, PREFIX, this.tasks::add, 10, this.conflatedCount);
+
+		// Not MESSAGE frames, no subscription, destination in the body, binary
+		session.sendMessage(new TextMessage("RECEIPT\nreceipt-id:1\n\n\0"));
+		session.sendMessage(new TextMessage("RECEIPT\nreceipt-id:1\n\n\0"));
+		session.sendMessage(new TextMessage("MESSAGE\ndestination:" + PREFIX + "GOOG\n\n1\0"));
+		session.sendMessage(new TextMessage("MESSAGE\ndestination:" + PREFIX + "GOOG\n\n2\0"));
+		session.sendMessage(new TextMessage("MESSAGE\nsubscription:0\n\n\ndestination:" + PREFIX + "GOOG\n\0"));
+		session.sendMessage(new TextMessage("MESSAGE\nsubscription:0\n\n\ndestination:" + PREFIX + "GOOG\n\0"));
+		session.sendMessage(new BinaryMessage(new byte[] {1}));
+		session.sendMessage(new BinaryMessage(new byte[] {1}));
+
+		runTasks();
+		assertEquals(8, this.delegate.getMessages().size());
+		assertEquals(0, this.conflatedCount.get());
+	}
+
+	@Test
+	public void closeWhenBufferSizeLimitExceeded() throws Exception {
+		ConflatingWebSocketSession session =
+				new ConflatingWebSocketSession(this.delegate, PREFIX, this.tasks::add, 2, this.conflatedCount);
+
+		// Conflated frames take one slot per destination
+		session.sendMessage(quote("0", "GOOG", "893.49"));
+		session.sendMessage(quote("0", "GOOG", "893.36"));
+		session.sendMessage(quote("0", "MSFT", "34.21"));
+		assertNull(this.delegate.getCloseStatus());
+
+		session.sendMessage(quote("0", "ORCL", "31.22"));
+		assertEquals(CloseStatus.SESSION_NOT_RELIABLE, this.delegate.getCloseStatus());
+
+		session.sendMessage(quote("0", "EMC", "24.30"));
+		runTasks();
+		assertEquals(0, this.delegate.getMessages().size());
+	}
+
+	@Test
+	public void discardAfterSendFailure() throws Exception {
+		ConflatingWebSocketSession session =
+				new ConflatingWebSocketSession(this.delegate, PREFIX, this.tasks::add, 10, this.conflatedCount);
+		this.delegate.setFailure(new IOException("Broken pipe"));
+
+		session.sendMessage(quote("0", "GOOG", "893.49"));
+		session.sendMessage(quote("0", "MSFT", "34.21"));
+		runTasks();
+		assertEquals(0, this.delegate.getMessages().size());
+
+		this.delegate.setFailure(null);
+		session.sendMessage(quote("0", "GOOG", "893.36"));
+		runTasks();
+		assertEquals(0, this.delegate.getMessages().size());
+	}
+
+	@Test
+	public void decorateHandler() throws Exception {
+		ConflatingWebSocketHandlerDecoratorFactory factory =
+				new ConflatingWebSocketHandlerDecoratorFactory(PREFIX, this.tasks::add);
+		List<WebSocketSession> sessions = new ArrayList<>();
+		WebSocketHandler handler = factory.decorate(new TextWebSocketHandler() {
+
+			@Override
+			public void afterConnectionEstablished(WebSocketSession session) {
+				sessions.add(session);
+			}
+		});
+
+		handler.afterConnectionEstablished(this.delegate);
+		assertEquals(1, sessions.size());
+		assertTrue(sessions.get(0) instanceof ConflatingWebSocketSession);
+		WebSocketSession session = sessions.get(0);
+		session.sendMessage(quote("0", "GOOG", "893.49"));
+		session.sendMessage(quote("0", "GOOG", "893.36"));
+		assertEquals(1, factory.getConflatedCount());
+
+		// Pending messages are dropped when the connection closes
+		handler.afterConnectionClosed(this.delegate, CloseStatus.NORMAL);
+		runTasks();
+		assertEquals(0, this.delegate.getMessages().size());
+	}
+
+	private void runTasks() {
+		while (!this.tasks.isEmpty()) {
+			this.tasks.remove(0).run();
+		}
+	}
+
+	private String payload(int index) {
+		return ((TextMessage) this.delegate.getMessages().get(index)).getPayload();
+	}
+
+	private static TextMessage quote(String subscription, String ticker, String price) {
+		return frame("MESSAGE", PREFIX + ticker, subscription, "{\"ticker\":\"" + ticker + "\",\"price\":" + price);
+	}
+
+	private static TextMessage frame(String command, String destination, String subscription, String body) {
+		return new TextMessage(command + "\ndestination:" + destination + "\ncontent-type:application/json\n" +
+				"subscription:" + subscription + "\nmessage-id:1\n\n" + body + "\0");
+	}
+
+}
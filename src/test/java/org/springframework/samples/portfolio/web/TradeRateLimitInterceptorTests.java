@@ -0,0 +1,171 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.web;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.samples.portfolio.service.TradeAck;
+import org.springframework.samples.portfolio.web.support.TestPrincipal;
+
+
+public class TradeRateLimitInterceptorTests {
+
+	private final TradeRateLimitInterceptor interceptor = new TradeRateLimitInterceptor("/app/trade");
+
+
+	@Test
+	public void sessionBurst() {
+		this.interceptor.setSessionRate(1);
+		this.interceptor.setSessionBurst(3);
+
+		assertEquals(3, sendTrades("s1", "fabrice", 10));
+		assertEquals(7, this.interceptor.getSessionRejectedCount());
+
+		// Another session of the same user has its own bucket
+		assertEquals(3, sendTrades("s2", "fabrice", 10));
+	}
+
+	@Test
+	public void userLimitAcrossSessions() {
+		this.interceptor.setSessionRate(0);
+		this.interceptor.setUserRate(1);
+		this.interceptor.setUserBurst(4);
+
+		assertEquals(2, sendTrades("s1", "fabrice", 2));
+		assertEquals(2, sendTrades("s2", "fabrice", 5));
+		assertEquals(3, this.interceptor.getUserRejectedCount());
+		assertEquals(4, sendTrades("s3", "paulson", 4));
+	}
+
+	@Test
+	public void userRejectKeepsSessionToken() {
+		this.interceptor.setSessionRate(1);
+		this.interceptor.setSessionBurst(2);
+		this.interceptor.setUserRate(1);
+		this.interceptor.setUserBurst(1);
+
+		assertEquals(1, sendTrades("s1", "fabrice", 3));
+		assertEquals(2, this.interceptor.getUserRejectedCount());
+
+		this.interceptor.setUserRate(0);
+		assertEquals(1, sendTrades("s1", "fabrice", 2));
+		assertEquals(1, this.interceptor.getSessionRejectedCount());
+	}
+
+	@Test
+	public void refill() throws Exception {
+		this.interceptor.setSessionRate(5);
+		this.interceptor.setSessionBurst(1);
+
+		assertEquals(1, sendTrades("s1", "fabrice", 5));
+		Thread.sleep(250);
+		assertEquals(1, sendTrades("s1", "fabrice", 1));
+	}
+
+	@Test
+	public void rejectedAck() {
+		List<Message<?>> messages = new ArrayList<>();
+		this.interceptor.setMessagingTemplate(new SimpMessagingTemplate((message, timeout) -> messages.add(message)));
+		this.interceptor.setSessionRate(1);
+		this.interceptor.setSessionBurst(1);
+
+		assertEquals(1, sendTrades("s1", "fabrice", 1));
+		assertTrue(messages.isEmpty());
+
+		StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.SEND);
+		headers.setDestination("/app/trade");
+		headers.setSessionId("s1");
+		headers.setUser(new TestPrincipal("fabrice"));
+		headers.setNativeHeader(TradeRateLimitInterceptor.ORDER_ID_HEADER, "o2");
+		assertNull(this.interceptor.preSend(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()), null));
+
+		assertEquals(1, messages.size());
+		SimpMessageHeaderAccessor ackHeaders = SimpMessageHeaderAccessor.wrap(messages.get(0));
+		assertEquals("/user/fabrice/queue/trade-acks", ackHeaders.getDestination());
+		assertEquals("s1", ackHeaders.getSessionId());
+		TradeAck ack = (TradeAck) messages.get(0).getPayload();
+		assertEquals(TradeAck.Status.Rejected, ack.getStatus());
+		assertEquals("o2", ack.getOrderId());
+		assertEquals("Rate limit exceeded", ack.getReason());
+	}
+
+	@Test
+	public void otherDestinationsNotLimited() {
+		this.interceptor.setSessionRate(1);
+		this.interceptor.setSessionBurst(1);
+
+		for (int i = 0; i < 5; i++) {
+			Message<?> message = createMessage(StompCommand.SUBSCRIBE, "/app/positions", "s1", "fabrice");
+			assertNotNull(this.interceptor.preSend(message, null));
+		}
+		assertEquals(0, this.interceptor.getBucketCount());
+	}
+
+	@Test
+	public void disconnectRemovesBuckets() {
+		assertEquals(1, sendTrades("s1", "fabrice", 1));
+		assertEquals(2, this.interceptor.getBucketCount());
+
+		// The user bucket is kept until full again
+		this.interceptor.preSend(createMessage(StompCommand.DISCONNECT, null, "s1", "fabrice"), null);
+		assertEquals(1, this.interceptor.getBucketCount());
+	}
+
+	@Test
+	public void userBucketSweptOnLaterDisconnect() throws Exception {
+		this.interceptor.setUserRate(5);
+		this.interceptor.setUserBurst(1);
+		assertEquals(1, sendTrades("s1", "fabrice", 1));
+		this.interceptor.preSend(createMessage(StompCommand.DISCONNECT, null, "s1", "fabrice"), null);
+		assertEquals(1, this.interceptor.getBucketCount());
+
+		Thread.sleep(250);
+		this.interceptor.preSend(createMessage(StompCommand.DISCONNECT, null, "s2", "paulson"), null);
+		assertEquals(0, this.interceptor.getBucketCount());
+	}
+
+	private int sendTrades(String sessionId, String user, int count) {
+		int accepted = 0;
+		for (int i = 0; i < count; i++) {
+			Message<?> message = createMessage(StompCommand.SEND, "/app/trade", sessionId, user);
+			if (this.interceptor.preSend(message, null) != null) {
+				accepted++;
+			}
+		}
+		return accepted;
+	}
+
+	private static Message<?> createMessage(StompCommand command, String destination, String sessionId, String user) {
+		StompHeaderAccessor headers = StompHeaderAccessor.create(command);
+		headers.setDestination(destination);
+		headers.setSessionId(sessionId);
+		headers.setUser(new TestPrincipal(user));
+		return MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+	}
+
+}
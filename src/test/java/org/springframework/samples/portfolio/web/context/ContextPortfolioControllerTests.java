@@ -43,12 +43,15 @@ import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.AbstractSubscribableChannel;
 import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.samples.portfolio.service.LastValueCache;
+import org.springframework.samples.portfolio.service.Quote;
 import org.springframework.samples.portfolio.service.Trade;
 import org.springframework.samples.portfolio.web.support.TestPrincipal;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.util.JsonPathExpectationsHelper;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.socket.config.annotation.AbstractWebSocketMessageBrokerConfigurer;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
@@ -91,6 +94,8 @@ public class ContextPortfolioControllerTests {
 
 	@Autowired private AbstractSubscribableChannel brokerChannel;
 
+	@Autowired private LastValueCache lastValueCache;
+
 	private TestChannelInterceptor clientOutboundChannelInterceptor;
 
 	private TestChannelInterceptor brokerChannelInterceptor;
@@ -136,6 +141,34 @@ public class ContextPortfolioControllerTests {
 		new JsonPathExpectationsHelper("$[3].company").assertValue(json, "Oracle");
 	}
 
+	@Test
+	public void getQuoteSnapshot() throws Exception {
+
+		this.lastValueCache.onQuote(new Quote("TEST.A", 12345, 2));
+		this.lastValueCache.onQuote(new Quote("TEST.B", 6789, 2));
+
+		StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+		headers.setSubscriptionId("0");
+		headers.setDestination("/app/price.stock.snapshot");
+		headers.setNativeHeader("tickers", "TEST.A,TEST.C");
+		headers.setSessionId("0");
+		headers.setUser(new TestPrincipal("fabrice"));
+		headers.setSessionAttributes(new HashMap<>());
+		Message<byte[]> message = MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+
+		this.clientOutboundChannelInterceptor.setIncludedDestinations("/app/price.stock.snapshot");
+		this.clientInboundChannel.send(message);
+
+		Message<?> reply = this.clientOutboundChannelInterceptor.awaitMessage(5);
+		assertNotNull(reply);
+
+		StompHeaderAccessor replyHeaders = StompHeaderAccessor.wrap(reply);
+		assertEquals(MimeTypeUtils.APPLICATION_JSON, replyHeaders.getContentType());
+
+		String json = new String((byte[]) reply.getPayload(), Charset.forName("UTF-8"));
+		assertEquals("{\"tickers\":[\"TEST.A\"],\"prices\":[123.45]}", json);
+	}
+
 	@Test
 	public void executeTrade() throws Exception {
 
@@ -143,6 +176,7 @@ public class ContextPortfolioControllerTests {
 		trade.setAction(Trade.TradeAction.Buy);
 		trade.setTicker("DELL");
 		trade.setShares(25);
+		trade.setOrderId("order-1");
 
 		byte[] payload = new ObjectMapper().writeValueAsBytes(trade);
 
@@ -156,6 +190,17 @@ public class ContextPortfolioControllerTests {
 		this.brokerChannelInterceptor.setIncludedDestinations("/user/**");
 		this.clientInboundChannel.send(message);
 
+		Message<?> ack = this.brokerChannelInterceptor.awaitMessage(5);
+		assertNotNull(ack);
+
+		StompHeaderAccessor ackHeaders = StompHeaderAccessor.wrap(ack);
+		assertEquals("/user/fabrice/queue/trade-acks", ackHeaders.getDestination());
+
+		String ackJson = new String((byte[]) ack.getPayload(), Charset.forName("UTF-8"));
+		new JsonPathExpectationsHelper("$.orderId").assertValue(ackJson, "order-1");
+		new JsonPathExpectationsHelper("$.status").assertValue(ackJson, "Accepted");
+		new JsonPathExpectationsHelper("$.position.shares").assertValue(ackJson, 75);
+
 		Message<?> positionUpdate = this.brokerChannelInterceptor.awaitMessage(5);
 		assertNotNull(positionUpdate);
 
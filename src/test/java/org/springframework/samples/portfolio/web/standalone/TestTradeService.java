@@ -17,10 +17,12 @@
 package org.springframework.samples.portfolio.web.standalone;
 
 import org.springframework.samples.portfolio.service.Trade;
+import org.springframework.samples.portfolio.service.TradeAck;
 import org.springframework.samples.portfolio.service.TradeService;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 
 public class TestTradeService  implements TradeService {
@@ -32,8 +34,9 @@ public class TestTradeService  implements TradeService {
 	}
 
 	@Override
-	public void executeTrade(Trade trade) {
+	public CompletableFuture<TradeAck> executeTrade(Trade trade) {
 		this.trades.add(trade);
+		return CompletableFuture.completedFuture(TradeAck.accepted(trade, null));
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2002-2026 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.portfolio.web.support;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * A {@link WebSocketSession} that records the messages sent to it.
+ */
+public class TestWebSocketSession implements WebSocketSession {
+
+	private final String id;
+
+	private final List<WebSocketMessage<?>> messages = new ArrayList<>();
+
+	private IOException failure;
+
+	private CloseStatus closeStatus;
+
+
+	public TestWebSocketSession() {
+		this("1");
+	}
+
+	public TestWebSocketSession(String id) {
+		this.id = id;
+	}
+
+
+	/**
+	 * The messages sent so far.
+	 */
+	public List<WebSocketMessage<?>> getMessages() {
+		return this.messages;
+	}
+
+	/**
+	 * Fail further sends with the given exception, or succeed again with {@code null}.
+	 */
+	public void setFailure(IOException failure) {
+		this.failure = failure;
+	}
+
+	public CloseStatus getCloseStatus() {
+		return this.closeStatus;
+	}
+
+	@Override
+	public String getId() {
+		return this.id;
+	}
+
+	@Override
+	public URI getUri() {
+		return URI.create("ws://localhost/portfolio");
+	}
+
+	@Override
+	public HttpHeaders getHandshakeHeaders() {
+		return new HttpHeaders();
+	}
+
+	@Override
+	public Map<String, Object> getAttributes() {
+		return new HashMap<>();
+	}
+
+	@Override
+	public Principal getPrincipal() {
+		return null;
+	}
+
+	@Override
+	public InetSocketAddress getLocalAddress() {
+		return null;
+	}
+
+	@Override
+	public InetSocketAddress getRemoteAddress() {
+		return null;
+	}
+
+	@Override
+	public String getAcceptedProtocol() {
+		return "v12.stomp";
+	}
+
+	@Override
+	public void setTextMessageSizeLimit(int messageSizeLimit) {
+	}
+
+	@Override
+	public int getTextMessageSizeLimit() {
+		return 64 * 1024;
+	}
+
+	@Override
+	public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+	}
+
+	@Override
+	public int getBinaryMessageSizeLimit() {
+		return 64 * 1024;
+	}
+
+	@Override
+	public List<WebSocketExtension> getExtensions() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public void sendMessage(WebSocketMessage<?> message) throws IOException {
+		if (this.failure != null) {
+			throw this.failure;
+		}
+		this.messages.add(message);
+	}
+
+	@Override
+	public boolean isOpen() {
+		return (this.closeStatus == null);
+	}
+
+	@Override
+	public void close() {
+		close(CloseStatus.NORMAL);
+	}
+
+	@Override
+	public void close(CloseStatus status) {
+		this.closeStatus = status;
+	}
+
+}